@@ -0,0 +1,181 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * Decompression stage submitted by Solution.java.
+ * Reads every gzipped file as raw bytes and hands batches of whole lines to
+ * the FileThread workers through a bounded queue, so that a single large file
+ * is parsed by all workers instead of one. The bytes are never decoded here,
+ * the workers tokenize them with CsvTokenizer.
+ */
+class BatchReader implements Callable<Void>{
+    static int BATCHBYTES = 1 << 20;
+
+    private List<String> fileNames;
+    private BlockingQueue<LineBatch> queue;
+    private int workers;
+
+    /**
+     * Constructor
+     * @param fileNames gzipped files to be read.
+     * @param queue bounded queue shared with the workers.
+     * @param workers number of workers draining the queue.
+     *
+     */
+    public BatchReader(List<String> fileNames, BlockingQueue<LineBatch> queue,
+                                                                    int workers){
+        this.fileNames = fileNames;
+        this.queue = queue;
+        this.workers = workers;
+    }
+
+    /**
+     * call
+     * overrides Callable.call method
+     * reads the given gzipped files and puts batches of about BATCHBYTES 
+     * bytes on the queue. Once all files are read, one LineBatch.END is put 
+     * for every worker. A reader interrupted by Solution.map, whose workers
+     * failed, stops without them. A file which can not be read fails the
+     * reader, after the workers got their END.
+     *
+     * @return  null.
+     * @throws  IOException if a file is missing, truncated or corrupt.
+     */
+    @Override
+    public Void call() throws InterruptedException, IOException{
+        boolean interrupted = false;
+        try{
+            for (String file: this.fileNames){
+                this.readFile(file);
+            }
+        }
+        catch(InterruptedException e){
+            interrupted = true;
+            throw e;
+        }
+        finally{
+            // workers block on the queue until they see the end of input
+            for (int i = 0; i < this.workers && !interrupted; i++){
+                this.queue.put(LineBatch.END);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * readFile
+     * reads a single gzipped file and queues its records in batches. Every 
+     * batch is cut after the last complete line of the buffer, the rest is 
+     * carried over to the next batch. The header is parsed once and shared by
+     * all batches of the file.
+     *
+     * @params  String name of the gzipped file.
+     * @throws  IOException if the file is missing, truncated or corrupt, the
+     *          batches queued before are not taken back.
+     */
+    public void readFile(String file) throws InterruptedException, IOException{
+        InputStream in = null;
+        try{
+            in = new GZIPInputStream(new FileInputStream(file));
+            byte[] buffer = new byte[BATCHBYTES];
+            int length = 0;
+            String[] headers = null;
+            boolean firstOfFile = true;
+            int read;
+            while ((read = in.read(buffer, length, buffer.length - length)) >= 0){
+                length += read;
+                //Fetch Headers
+                if (headers == null){
+                    int end = indexOf(buffer, 0, length, (byte) '\n');
+                    if (end >= 0){
+                        headers = parseHeaders(buffer, end);
+                        length -= end + 1;
+                        System.arraycopy(buffer, end + 1, buffer, 0, length);
+                    }
+                }
+                if (length < buffer.length){
+                    continue;
+                }
+                int cut = lastIndexOf(buffer, length, (byte) '\n') + 1;
+                if (cut == 0 || headers == null){
+                    // a single line longer than the buffer
+                    buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+                    continue;
+                }
+                byte[] next = new byte[buffer.length];
+                System.arraycopy(buffer, cut, next, 0, length - cut);
+                this.queue.put(new LineBatch(headers, buffer, cut, firstOfFile));
+                firstOfFile = false;
+                buffer = next;
+                length -= cut;
+            }
+            if (headers == null){
+                if (length == 0){
+                    return;
+                }
+                // file with only a header and no line break
+                headers = parseHeaders(buffer, length);
+                length = 0;
+            }
+            if (length > 0 || firstOfFile){
+                this.queue.put(new LineBatch(headers, buffer, length, firstOfFile));
+            }
+        }
+        finally{
+            if (in != null){
+                try{
+                    in.close();
+                }
+                catch(IOException e){
+                    System.out.println(e.getClass().getName() + "\n" + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * parseHeaders
+     * @params  byte array starting with the header line.
+     * @params  int length of the header line.
+     * @return  String array of column names.
+     */
+    static String[] parseHeaders(byte[] bytes, int length){
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        int count = tokenizer.reset(bytes, 0, length);
+        String[] headers = new String[count];
+        for (int i = 0; i < count; i++){
+            headers[i] = tokenizer.getString(i).trim();
+        }
+        return headers;
+    }
+
+    /**
+     * indexOf
+     * @return  position of the first b in bytes[from, to), -1 if none.
+     */
+    static int indexOf(byte[] bytes, int from, int to, byte b){
+        for (int i = from; i < to; i++){
+            if (bytes[i] == b){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * lastIndexOf
+     * @return  position of the last b in bytes[0, length), -1 if none.
+     */
+    static int lastIndexOf(byte[] bytes, int length, byte b){
+        for (int i = length - 1; i >= 0; i--){
+            if (bytes[i] == b){
+                return i;
+            }
+        }
+        return -1;
+    }
+}
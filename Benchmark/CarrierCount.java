@@ -16,6 +16,8 @@ import org.apache.hadoop.mapreduce.*;
 import org.apache.hadoop.util.*;
 import org.apache.hadoop.mapreduce.lib.output.*;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.DoubleWritable;
@@ -25,115 +27,1283 @@ import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
 
 public class CarrierCount{	
 
+	// Configuration key of the number of partial sums MeanMapper keeps before it emits them
+	public static final String AGGREGATE_LIMIT = "carriercount.aggregate.limit";
+	public static final int DEFAULT_AGGREGATE_LIMIT = 1 << 16;
+	// Configuration key of the number of reduce tasks, the median samples a partition plan for them
+	public static final String REDUCES = "carriercount.reduces";
+	// Configuration key of the relative width of the price buckets of histogram-median
+	public static final String HISTOGRAM_ACCURACY = "carriercount.histogram.accuracy";
+	public static final double DEFAULT_HISTOGRAM_ACCURACY = 0.005;
+	// Configuration key of the median buckets found by the first round of histogram-median
+	public static final String MEDIAN_BUCKETS = "carriercount.median.buckets";
+	// System property of the filter of the input records(see FlightFilter), only the columnar input
+	// can skip the files and blocks which do not match
+	public static final String FILTER = "carriercount.filter";
+	// System property of the PriceCube directory of the query modes, <input>_cube if not set
+	public static final String CUBE = "carriercount.cube";
+	// System property of the state directory of the incremental mean and approx-median, which keeps the
+	// partial sums or sketches of every input file, only new or changed files are read again
+	public static final String STATE = "carriercount.state";
+	// Fingerprint of the input file a partial of the state was built from, hidden from the merge job
+	private static final String FINGERPRINT = "_FINGERPRINT";
+
+	// Appends the bytes of a column to the given Text, without decoding them
+	private static void appendField(Text text, FlightRecord record, int column){
+		CsvTokenizer fields = record.getTokenizer();
+		int index = record.getIndex(column);
+		text.append(fields.getBytes(), fields.getStart(index), fields.getLength(index));
+	}
+
+	// Diagnostics of a mapper task, records are sampled to the task log when diagnostics.samples is set
+	private static Diagnostics newDiagnostics(TaskAttemptContext context){
+		return new Diagnostics(context.getTaskAttemptID().toString(), SanityChecker.RULE_NAMES,
+				context.getConfiguration().getInt(Diagnostics.SAMPLES, 0), System.err);
+	}
+
+	// Counts a record rejected by the checker under the rule which failed
+	private static void reject(Diagnostics diagnostics, SanityChecker checker, Text value){
+		int rule = checker.getFailedRule();
+		if (diagnostics.count(rule)){
+			diagnostics.sample(rule, value);
+		}
+	}
+
+	// Publishes the rejected records per failed rule as counters of the SanityChecker group
+	private static void publish(Diagnostics diagnostics, TaskAttemptContext context){
+		for (int rule = 0; rule < diagnostics.getReasonCount(); rule++){
+			if (diagnostics.getCount(rule) > 0){
+				context.getCounter("SanityChecker", diagnostics.getReason(rule)).increment(diagnostics.getCount(rule));
+			}
+		}
+	}
+
 	// Mapper class in the Map-Reduce model
-	public static class FlightMapper extends Mapper<Object, Text, Text, Text>{
+	public static class FlightMapper extends Mapper<Object, Text, Text, MonthPrice>{
+
+		// Initialize the text variable, for holding the carrier codes
+		private Text carrierCode = new Text();
+		// Month, active in 2015 flag and Average Price of the record
+		private MonthPrice monthPrice = new MonthPrice();
+		// Flight record re-used for every line, fields are read from the bytes of the Text
+		private FlightRecord record = new FlightRecord();
+		// Sanity rules of the Map-Reduce jobs
+		private SanityChecker checker = new SanityChecker(SanityChecker.MAP_REDUCE);
+		// Counts of the rejected records per failed rule
+		private Diagnostics diagnostics;
+
+		@Override
+		protected void setup(Context context){
+			diagnostics = newDiagnostics(context);
+		}
+
+		//Map to have a list of average price, month and year and set it with the corresponding key(carrier code)
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException{
+			// Splitting the record into fields, without copying it
+			record.reset(value.getBytes(), 0, value.getLength());
+			// Check whether the flight is sane
+			int code = checker.check(record);
+			// Code 0 is returned when the flight is sane
+			if (code == SanityChecker.SANE){
+				try{
+					// Logic to check whether Average Price is present for the particular flight or not
+					if (record.getTokenizer().getFieldCount() == 110 && !record.isEmpty(FlightRecord.AVG_TICKET_PRICE)){
+						// Month, active flag and Average Price, parsed once here
+						monthPrice.set(record.getInt(FlightRecord.MONTH), record.getInt(FlightRecord.YEAR) == 2015,
+								record.getDouble(FlightRecord.AVG_TICKET_PRICE));
+						// Setting the carrier code as the key
+						carrierCode.clear();
+						appendField(carrierCode, record, FlightRecord.CARRIER);
+						// Mapper output -> carrier code as the key, month, active flag and price for that carrier as the value
+						context.write(carrierCode, monthPrice);
+					}
+				}
+				// for debugging purposes, the price, month or year is not a number
+				catch(NumberFormatException e){
+					//System.err.println("Error.." + e.getMessage());
+				}
+			}
+			// insane or incorrect format, counted under the rule which failed
+			else{
+				reject(diagnostics, checker, value);
+			}
+		}
+
+		@Override
+		protected void cleanup(Context context){
+			publish(diagnostics, context);
+		}
+	}
+
+	// Mapper class for the median - emits the price of every sane record in a composite key of carrier
+	// code, month, slice and price, so the prices of a carrier and month reach the reducer sorted. The 
+	// slice is the price range of the key in the partition plan, 0 unless the key is split. It also 
+	// counts the prices per slice and emits the counts once the split is processed, in header keys 
+	// which sort before the prices of their slice
+	public static class MedianMapper extends Mapper<Object, Text, CarrierMonthPrice, MonthCount>{
+
+		// Prices of a carrier and month of the split, counted per slice of the partition plan
+		private static class SliceCounts{
+			private final double[] bounds;
+			private final long[] counts;
+			// lowest price of every slice, the upper middle of an even count may be in the next one
+			private final double[] mins;
+
+			SliceCounts(double[] bounds){
+				this.bounds = bounds;
+				this.counts = new long[bounds.length + 1];
+				this.mins = new double[bounds.length + 1];
+				Arrays.fill(this.mins, Double.POSITIVE_INFINITY);
+			}
+
+			// Counts a price, returns its slice
+			int add(double price){
+				int slice = PartitionPlan.slice(bounds, price);
+				counts[slice]++;
+				mins[slice] = Math.min(mins[slice], price);
+				return slice;
+			}
+		}
+
+		// Composite key of the price records, the carrier code is copied from the record bytes
+		private CarrierMonthPrice price = new CarrierMonthPrice();
+		// Value of the price records, the counts and active flag are only read from the headers
+		private MonthCount none = new MonthCount();
+		// Value of the headers
+		private MonthCount header = new MonthCount();
+		// Price ranges of the carrier and month keys which are split over several reducers
+		private PartitionPlan plan;
+		// Flight record re-used for every line, fields are read from the bytes of the Text
+		private FlightRecord record = new FlightRecord();
+		// Sanity rules of the Map-Reduce jobs
+		private SanityChecker checker = new SanityChecker(SanityChecker.MAP_REDUCE);
+		// Counts of the rejected records per failed rule
+		private Diagnostics diagnostics;
+		// Map of carrier code and month to the number of their prices
+		private HashMap<String, SliceCounts> countMap = new HashMap<String, SliceCounts>();
+		// Carrier codes which have a flight in 2015
+		private HashSet<String> activeCarriers = new HashSet<String>();
+		// Carrier code, month and count of the last sane record, the records
+		// of a split mostly come grouped by carrier and month
+		private String lastCarrier;
+		private String lastMonth;
+		private SliceCounts lastCount;
+
+		@Override
+		protected void setup(Context context){
+			diagnostics = newDiagnostics(context);
+			plan = PartitionPlan.fromConfiguration(context.getConfiguration());
+		}
+
+		//Map to emit the average price of the record under its carrier and month and count it
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException{
+			// Splitting the record into fields, without copying it
+			record.reset(value.getBytes(), 0, value.getLength());
+			// Code 0 is returned when the flight is sane
+			if (checker.check(record) != SanityChecker.SANE){
+				reject(diagnostics, checker, value);
+			}
+			else if (record.getTokenizer().getFieldCount() == 110 && !record.isEmpty(FlightRecord.AVG_TICKET_PRICE)){
+				try{
+					double ticketPrice = record.getDouble(FlightRecord.AVG_TICKET_PRICE);
+					int month = record.getInt(FlightRecord.MONTH);
+					// Key of the count is the carrier code and month, only built
+					// when they differ from the last record
+					if (lastCount == null || !record.fieldEquals(FlightRecord.CARRIER, lastCarrier)
+							|| !record.fieldEquals(FlightRecord.MONTH, lastMonth)){
+						lastCarrier = record.getString(FlightRecord.CARRIER);
+						lastMonth = record.getString(FlightRecord.MONTH);
+						String carrierMonth = lastCarrier + ";" + month;
+						lastCount = countMap.get(carrierMonth);
+						if (lastCount == null){
+							lastCount = new SliceCounts(plan.getBounds(lastCarrier, month));
+							countMap.put(carrierMonth, lastCount);
+						}
+					}
+					// Set the carrier active if the year is 2015
+					if (record.getInt(FlightRecord.YEAR) == 2015){
+						activeCarriers.add(lastCarrier);
+					}
+					CsvTokenizer fields = record.getTokenizer();
+					int index = record.getIndex(FlightRecord.CARRIER);
+					int slice = lastCount.add(ticketPrice);
+					price.set(fields.getBytes(), fields.getStart(index), fields.getLength(index), month, slice, false, ticketPrice);
+					context.write(price, none);
+				}
+				// for debugging purposes, the price, month or year is not a number
+				catch(NumberFormatException e){
+					//System.err.println("Error.." + e.getMessage());
+				}
+			}
+		}
+
+		// Emits the headers of every slice - carrier code, month and slice with the number of prices
+		// of the split, the number of them in the lower slices, the lowest price of the higher slices 
+		// and the active flag of the carrier. An active carrier gets headers for every month, so the
+		// reducers of each of its months learn that it is active even when this split has no price 
+		// of the month.
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException{
+			publish(diagnostics, context);
+			for (String carrier: activeCarriers){
+				for (int month = 1; month <= 12; month++){
+					if (!countMap.containsKey(carrier + ";" + month)){
+						countMap.put(carrier + ";" + month, new SliceCounts(plan.getBounds(carrier, month)));
+					}
+				}
+			}
+			for (Map.Entry<String, SliceCounts> entry: countMap.entrySet()){
+				String[] carrierMonth = entry.getKey().split(";");
+				SliceCounts counts = entry.getValue();
+				boolean active = activeCarriers.contains(carrierMonth[0]);
+				byte[] carrier = carrierMonth[0].getBytes("UTF-8");
+				int month = Integer.parseInt(carrierMonth[1]);
+				long total = 0;
+				for (long count: counts.counts){
+					total += count;
+				}
+				long below = 0;
+				for (int slice = 0; slice < counts.counts.length; slice++){
+					double next = Double.POSITIVE_INFINITY;
+					for (int higher = slice + 1; higher < counts.mins.length; higher++){
+						next = Math.min(next, counts.mins[higher]);
+					}
+					header.set(active, total, below, next);
+					price.set(carrier, 0, carrier.length, month, slice, true, 0.0);
+					context.write(price, header);
+					below += counts.counts[slice];
+				}
+			}
+		}
+	}
+
+	// Mapper class for the mean - adds the price of every sane record to the partial sum of its 
+	// carrier and month in memory (in-mapper combining) and emits the sums when the split is 
+	// processed, or earlier once the table holds carriercount.aggregate.limit sums
+	public static class MeanMapper extends Mapper<Object, Text, Text, MonthSum>{
+
+		// Initialize the text variable, for holding the carrier codes
+		private Text carrierCode = new Text();
+		// Partial sum for the records whose carrier code and month can not be packed
+		private MonthSum monthSum = new MonthSum();
+		// Flight record re-used for every line, fields are read from the bytes of the Text
+		private FlightRecord record = new FlightRecord();
+		// Sanity rules of the Map-Reduce jobs
+		private SanityChecker checker = new SanityChecker(SanityChecker.MAP_REDUCE);
+		// Counts of the rejected records per failed rule
+		private Diagnostics diagnostics;
+		// Partial sums of the split, keyed by the packed carrier code and month
+		private MonthSumTable table;
+		// Number of partial sums after which the table is emitted
+		private int limit;
+		// Key and partial sum of the last record, the records of a split mostly 
+		// come grouped by carrier and month
+		private long lastKey;
+		private MonthSum lastSum;
+
+		@Override
+		protected void setup(Context context){
+			diagnostics = newDiagnostics(context);
+			limit = Math.max(context.getConfiguration().getInt(AGGREGATE_LIMIT, DEFAULT_AGGREGATE_LIMIT), 1);
+			table = new MonthSumTable(limit);
+		}
+
+		//Map to add the average price of the record to the partial sum of its carrier and month
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException{
+			// Splitting the record into fields, without copying it
+			record.reset(value.getBytes(), 0, value.getLength());
+			// Code 0 is returned when the flight is sane
+			if (checker.check(record) != SanityChecker.SANE){
+				reject(diagnostics, checker, value);
+			}
+			else if (record.getTokenizer().getFieldCount() == 110 && !record.isEmpty(FlightRecord.AVG_TICKET_PRICE)){
+				try{
+					double price = record.getDouble(FlightRecord.AVG_TICKET_PRICE);
+					int month = record.getInt(FlightRecord.MONTH);
+					boolean active = record.getInt(FlightRecord.YEAR) == 2015;
+					long carrierMonth = packCarrierMonth(record, month);
+					if (carrierMonth < 0){
+						// rare long carrier code, sent as it is
+						monthSum.set(month, active, price, 1);
+						carrierCode.clear();
+						appendField(carrierCode, record, FlightRecord.CARRIER);
+						context.write(carrierCode, monthSum);
+						return;
+					}
+					if (lastSum == null || carrierMonth != lastKey){
+						lastKey = carrierMonth;
+						lastSum = table.get(carrierMonth, month);
+					}
+					lastSum.add(price, active);
+					if (table.size() >= limit){
+						flush(context);
+					}
+				}
+				// for debugging purposes, the price, month or year is not a number
+				catch(NumberFormatException e){
+					//System.err.println("Error.." + e.getMessage());
+				}
+			}
+		}
+
+		// Emits the partial sums of the table - carrier code as the key, month, active flag, sum 
+		// and count as the value - and empties it
+		private void flush(Context context) throws IOException, InterruptedException{
+			byte[] carrier = new byte[PACKED_CARRIER_LENGTH];
+			for (int slot = 0; slot < table.capacity(); slot++){
+				MonthSum sum = table.getSum(slot);
+				if (sum != null){
+					int length = unpackCarrier(table.getKey(slot), carrier);
+					carrierCode.set(carrier, carrier.length - length, length);
+					context.write(carrierCode, sum);
+				}
+			}
+			table.clear();
+			lastSum = null;
+		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException{
+			publish(diagnostics, context);
+			flush(context);
+		}
+	}
+
+	// Longest carrier code packed with its month, the 8 bits of every character and the 16 bits of the
+	// month have to fit in the 63 bits of a non negative long
+	static final int PACKED_CARRIER_LENGTH = 5;
+
+	// Packs a carrier code of up to PACKED_CARRIER_LENGTH ASCII characters and the month into a non
+	// negative long, -1 if they do not fit. MeanMapper writes the records of a longer carrier code
+	// as their own partial sums instead of adding them to the table.
+	static long packCarrierMonth(FlightRecord record, int month){
+		CsvTokenizer fields = record.getTokenizer();
+		int index = record.getIndex(FlightRecord.CARRIER);
+		int start = fields.getStart(index);
+		int length = fields.getLength(index);
+		if (length > PACKED_CARRIER_LENGTH || month < 0 || month > 0xffff){
+			return -1;
+		}
+		byte[] bytes = fields.getBytes();
+		long packed = 0;
+		for (int i = start; i < start + length; i++){
+			// no zero bytes, so the length is known from the packed value
+			if (bytes[i] <= 0){
+				return -1;
+			}
+			packed = (packed << 8) | bytes[i];
+		}
+		return (packed << 16) | month;
+	}
+
+	// Writes the carrier code of a packed key to the end of the array, returns its length
+	static int unpackCarrier(long carrierMonth, byte[] carrier){
+		long packed = carrierMonth >>> 16;
+		int length = 0;
+		while (packed != 0){
+			carrier[carrier.length - 1 - length] = (byte) packed;
+			packed >>>= 8;
+			length++;
+		}
+		return length;
+	}
+
+	// Open addressing table of the partial sums of a mapper, keyed by the packed carrier code and
+	// month. A lookup is a hash and a few array reads, the table is sized for the limit of the
+	// mapper and emptied before it is reached, so it never grows.
+	public static class MonthSumTable{
+		private final long[] keys;
+		private final MonthSum[] sums;
+		private int size;
+
+		public MonthSumTable(int limit){
+			int capacity = Integer.highestOneBit(Math.max(limit, 2) * 2 - 1) << 1;
+			this.keys = new long[capacity];
+			this.sums = new MonthSum[capacity];
+		}
+
+		// Returns the partial sum of the key, a new empty one for the given month if there is none
+		public MonthSum get(long key, int month){
+			int mask = keys.length - 1;
+			int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+			while (sums[slot] != null){
+				if (keys[slot] == key){
+					return sums[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			sums[slot] = new MonthSum(month);
+			size++;
+			return sums[slot];
+		}
+
+		public int size(){
+			return size;
+		}
+
+		public int capacity(){
+			return keys.length;
+		}
+
+		public long getKey(int slot){
+			return keys[slot];
+		}
+
+		// Partial sum held in the slot, null for an empty slot
+		public MonthSum getSum(int slot){
+			return sums[slot];
+		}
+
+		public void clear(){
+			Arrays.fill(sums, null);
+			size = 0;
+		}
+	}
+
+	// Mapper class for the approximate median - keeps one quantile sketch per carrier and month
+	// in memory and emits the sketches once the input split is processed
+	public static class ApproxMedianMapper extends Mapper<Object, Text, Text, MonthSketch>{
+
+		// Relative accuracy of the sketches, set from the 4th argument of the job
+		private double accuracy;
+		// Map of carrier code and month to the sketch of their prices
+		private HashMap<String, QuantileSketch> sketchMap = new HashMap<String, QuantileSketch>();
+		// Carrier codes which have a flight in 2015
+		private HashSet<String> activeCarriers = new HashSet<String>();
+		// Initialize the text variable, for holding the carrier codes
+		private Text carrierCode = new Text();
+		// Flight record re-used for every line, fields are read from the bytes of the Text
+		private FlightRecord record = new FlightRecord();
+		// Sanity rules of the Map-Reduce jobs
+		private SanityChecker checker = new SanityChecker(SanityChecker.MAP_REDUCE);
+		// Counts of the rejected records per failed rule
+		private Diagnostics diagnostics;
+		// Carrier code, month and sketch of the last sane record, the records
+		// of a split mostly come grouped by carrier and month
+		private String lastCarrier;
+		private String lastMonth;
+		private QuantileSketch lastSketch;
+
+		@Override
+		protected void setup(Context context){
+			accuracy = context.getConfiguration().getDouble("approx.accuracy", QuantileSketch.DEFAULTACCURACY);
+			diagnostics = newDiagnostics(context);
+		}
+
+		//Map to add the average price of the record to the sketch of its carrier and month
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException{
+			// Splitting the record into fields, without copying it
+			record.reset(value.getBytes(), 0, value.getLength());
+			// Code 0 is returned when the flight is sane
+			if (checker.check(record) != SanityChecker.SANE){
+				reject(diagnostics, checker, value);
+			}
+			else if (record.getTokenizer().getFieldCount() == 110 && !record.isEmpty(FlightRecord.AVG_TICKET_PRICE)){
+				try{
+					double price = record.getDouble(FlightRecord.AVG_TICKET_PRICE);
+					// Key of the sketch is the carrier code and month, only built
+					// when they differ from the last record
+					if (lastSketch == null || !record.fieldEquals(FlightRecord.CARRIER, lastCarrier)
+							|| !record.fieldEquals(FlightRecord.MONTH, lastMonth)){
+						lastCarrier = record.getString(FlightRecord.CARRIER);
+						lastMonth = record.getString(FlightRecord.MONTH);
+						String carrierMonth = lastCarrier + ";" + lastMonth;
+						lastSketch = sketchMap.get(carrierMonth);
+						if (lastSketch == null){
+							lastSketch = new QuantileSketch(accuracy);
+							sketchMap.put(carrierMonth, lastSketch);
+						}
+					}
+					lastSketch.add(price);
+					// Set the carrier active if the year is 2015
+					if (record.fieldEquals(FlightRecord.YEAR, "2015")){
+						activeCarriers.add(lastCarrier);
+					}
+				}
+				// for debugging purposes, the price is not a number
+				catch(NumberFormatException e){
+					//System.err.println("Error.." + e.getMessage());
+				}
+			}
+		}
+
+		// Emits one sketch per carrier and month - carrier code as the key, month, 
+		// active flag and sketch as the value
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException{
+			publish(diagnostics, context);
+			for (Map.Entry<String, QuantileSketch> entry: sketchMap.entrySet()){
+				String[] carrierMonth = entry.getKey().split(";");
+				carrierCode.set(carrierMonth[0]);
+				context.write(carrierCode, new MonthSketch(Integer.parseInt(carrierMonth[1]),
+						activeCarriers.contains(carrierMonth[0]), entry.getValue()));
+			}
+		}
+	}
+
+	// Mapper class for the first round of histogram-median - counts the prices of every carrier and
+	// month in memory, in logarithmic buckets, and emits the histograms once the split is processed
+	public static class HistogramMapper extends Mapper<Object, Text, Text, MonthHistogram>{
+
+		// Log of the ratio of the bounds of a bucket
+		private double logGamma;
+		// Map of carrier code and month to the histogram of their prices
+		private HashMap<String, MonthHistogram> histogramMap = new HashMap<String, MonthHistogram>();
+		// Carrier codes which have a flight in 2015
+		private HashSet<String> activeCarriers = new HashSet<String>();
+		// Initialize the text variable, for holding the carrier codes
+		private Text carrierCode = new Text();
+		// Flight record re-used for every line, fields are read from the bytes of the Text
+		private FlightRecord record = new FlightRecord();
+		// Sanity rules of the Map-Reduce jobs
+		private SanityChecker checker = new SanityChecker(SanityChecker.MAP_REDUCE);
+		// Counts of the rejected records per failed rule
+		private Diagnostics diagnostics;
+		// Carrier code, month and histogram of the last sane record, the records
+		// of a split mostly come grouped by carrier and month
+		private String lastCarrier;
+		private String lastMonth;
+		private MonthHistogram lastHistogram;
+
+		@Override
+		protected void setup(Context context){
+			logGamma = logGamma(context.getConfiguration());
+			diagnostics = newDiagnostics(context);
+		}
+
+		//Map to count the average price of the record in the histogram of its carrier and month
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException{
+			// Splitting the record into fields, without copying it
+			record.reset(value.getBytes(), 0, value.getLength());
+			// Code 0 is returned when the flight is sane
+			if (checker.check(record) != SanityChecker.SANE){
+				reject(diagnostics, checker, value);
+			}
+			else if (record.getTokenizer().getFieldCount() == 110 && !record.isEmpty(FlightRecord.AVG_TICKET_PRICE)){
+				try{
+					double price = record.getDouble(FlightRecord.AVG_TICKET_PRICE);
+					int month = record.getInt(FlightRecord.MONTH);
+					// Key of the histogram is the carrier code and month, only built
+					// when they differ from the last record
+					if (lastHistogram == null || !record.fieldEquals(FlightRecord.CARRIER, lastCarrier)
+							|| !record.fieldEquals(FlightRecord.MONTH, lastMonth)){
+						lastCarrier = record.getString(FlightRecord.CARRIER);
+						lastMonth = record.getString(FlightRecord.MONTH);
+						String carrierMonth = lastCarrier + ";" + month;
+						lastHistogram = histogramMap.get(carrierMonth);
+						if (lastHistogram == null){
+							lastHistogram = new MonthHistogram(month);
+							histogramMap.put(carrierMonth, lastHistogram);
+						}
+					}
+					lastHistogram.add(bucketOf(price, logGamma), 1);
+					// Set the carrier active if the year is 2015
+					if (record.getInt(FlightRecord.YEAR) == 2015){
+						activeCarriers.add(lastCarrier);
+					}
+				}
+				// for debugging purposes, the price, month or year is not a number
+				catch(NumberFormatException e){
+					//System.err.println("Error.." + e.getMessage());
+				}
+			}
+		}
+
+		// Emits one histogram per carrier and month - carrier code as the key, month, active flag
+		// and bucket counts as the value
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException{
+			publish(diagnostics, context);
+			for (Map.Entry<String, MonthHistogram> entry: histogramMap.entrySet()){
+				String carrier = entry.getKey().split(";")[0];
+				MonthHistogram histogram = entry.getValue();
+				histogram.setActive(activeCarriers.contains(carrier));
+				carrierCode.set(carrier);
+				context.write(carrierCode, histogram);
+			}
+		}
+	}
+
+	// Mapper class for the second round of histogram-median - emits only the prices which fall in
+	// the median buckets of their carrier and month, found by the first round
+	public static class BucketMapper extends Mapper<Object, Text, Text, MonthPrice>{
+
+		// Log of the ratio of the bounds of a bucket, as in the first round
+		private double logGamma;
+		// Map of carrier code and month to the median buckets and ranks
+		private HashMap<String, MedianBuckets> bucketsMap;
+		// Initialize the text variable, for holding the carrier codes
+		private Text carrierCode = new Text();
+		// Month and Average Price of the record, the carriers are active
+		private MonthPrice monthPrice = new MonthPrice();
+		// Flight record re-used for every line, fields are read from the bytes of the Text
+		private FlightRecord record = new FlightRecord();
+		// Sanity rules of the Map-Reduce jobs
+		private SanityChecker checker = new SanityChecker(SanityChecker.MAP_REDUCE);
+		// Carrier code, month and median buckets of the last sane record
+		private String lastCarrier;
+		private String lastMonth;
+		private MedianBuckets lastBuckets;
+
+		@Override
+		protected void setup(Context context){
+			logGamma = logGamma(context.getConfiguration());
+			bucketsMap = MedianBuckets.fromConfiguration(context.getConfiguration());
+		}
+
+		//Map to emit the average price of the record if it is in a median bucket
+		public void map(Object key, Text value, Context context) throws IOException, InterruptedException{
+			// Splitting the record into fields, without copying it
+			record.reset(value.getBytes(), 0, value.getLength());
+			// rejected records were counted by the first round
+			if (checker.check(record) == SanityChecker.SANE && record.getTokenizer().getFieldCount() == 110 
+					&& !record.isEmpty(FlightRecord.AVG_TICKET_PRICE)){
+				try{
+					double price = record.getDouble(FlightRecord.AVG_TICKET_PRICE);
+					int month = record.getInt(FlightRecord.MONTH);
+					if (lastCarrier == null || !record.fieldEquals(FlightRecord.CARRIER, lastCarrier)
+							|| !record.fieldEquals(FlightRecord.MONTH, lastMonth)){
+						lastCarrier = record.getString(FlightRecord.CARRIER);
+						lastMonth = record.getString(FlightRecord.MONTH);
+						lastBuckets = bucketsMap.get(lastCarrier + ";" + month);
+					}
+					// carriers which are not active in 2015 have no median buckets
+					if (lastBuckets != null && lastBuckets.contains(bucketOf(price, logGamma))){
+						monthPrice.set(month, true, price);
+						// same carrier code as the key of the median buckets
+						carrierCode.set(lastCarrier);
+						context.write(carrierCode, monthPrice);
+					}
+				}
+				// for debugging purposes, the price or month is not a number
+				catch(NumberFormatException e){
+					//System.err.println("Error.." + e.getMessage());
+				}
+			}
+		}
+	}
+
+	// Log of the ratio of the bounds of a histogram-median bucket
+	static double logGamma(Configuration conf){
+		double accuracy = conf.getDouble(HISTOGRAM_ACCURACY, DEFAULT_HISTOGRAM_ACCURACY);
+		return StrictMath.log((1 + accuracy) / (1 - accuracy));
+	}
+
+	// Bucket (gamma^(i-1), gamma^i] of a price, prices <= 0 share the lowest bucket. StrictMath gives
+	// the same bucket on every node, so both rounds agree.
+	static int bucketOf(double price, double logGamma){
+		if (price <= 0){
+			return Integer.MIN_VALUE;
+		}
+		return (int) Math.ceil(StrictMath.log(price) / logGamma);
+	}
+
+	// Median buckets of a carrier and month found by the first round of histogram-median - the 
+	// buckets of the lower and upper middle price(empty buckets lie between them), the number of
+	// prices below the lower one and the number of prices
+	public static class MedianBuckets{
+		private final int low;
+		private final int high;
+		private final long below;
+		private final long count;
+
+		public MedianBuckets(int low, int high, long below, long count){
+			this.low = low;
+			this.high = high;
+			this.below = below;
+			this.count = count;
+		}
+
+		// Finds the median buckets in a merged histogram
+		public static MedianBuckets of(MonthHistogram histogram){
+			long count = histogram.getCount();
+			long seen = 0;
+			int low = 0;
+			long below = 0;
+			for (Map.Entry<Integer, Long> bucket: histogram.getBuckets().entrySet()){
+				if (seen <= (count - 1) / 2 && (count - 1) / 2 < seen + bucket.getValue()){
+					low = bucket.getKey();
+					below = seen;
+				}
+				seen += bucket.getValue();
+				if (count / 2 < seen){
+					return new MedianBuckets(low, bucket.getKey(), below, count);
+				}
+			}
+			throw new IllegalArgumentException("Empty histogram");
+		}
+
+		public boolean contains(int bucket){
+			return bucket >= low && bucket <= high;
+		}
+
+		// Median of the prices of the median buckets, sorted
+		public double median(double[] prices){
+			double lower = prices[(int) ((count - 1) / 2 - below)];
+			double upper = prices[(int) (count / 2 - below)];
+			// Mean of the middle two values, the middle value for an odd count
+			return (lower + upper) / 2.0;
+		}
+
+		// Reads the buckets of the job configuration, keyed by carrier code and month
+		public static HashMap<String, MedianBuckets> fromConfiguration(Configuration conf){
+			HashMap<String, MedianBuckets> bucketsMap = new HashMap<String, MedianBuckets>();
+			for (String entry: conf.get(MEDIAN_BUCKETS, "").split(" ")){
+				if (entry.isEmpty()){
+					continue;
+				}
+				String[] fields = entry.split(";");
+				bucketsMap.put(fields[0] + ";" + fields[1], new MedianBuckets(Integer.parseInt(fields[2]), 
+						Integer.parseInt(fields[3]), Long.parseLong(fields[4]), Long.parseLong(fields[5])));
+			}
+			return bucketsMap;
+		}
+
+		// Entry of the job configuration, "low;high;below;count"
+		@Override
+		public String toString(){
+			return low + ";" + high + ";" + below + ";" + count;
+		}
+	}
+
+	// Value class of the median - month, active in 2015 flag and price of one record
+	public static class MonthPrice implements Writable{
+		private int month;
+		private boolean active;
+		private double price;
+
+		public MonthPrice(){
+		}
+
+		public void set(int month, boolean active, double price){
+			this.month = month;
+			this.active = active;
+			this.price = price;
+		}
+
+		public int getMonth(){
+			return month;
+		}
+
+		public boolean isActive(){
+			return active;
+		}
+
+		public double getPrice(){
+			return price;
+		}
+
+		@Override
+		public void write(DataOutput out) throws IOException{
+			WritableUtils.writeVInt(out, month);
+			out.writeBoolean(active);
+			out.writeDouble(price);
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException{
+			month = WritableUtils.readVInt(in);
+			active = in.readBoolean();
+			price = in.readDouble();
+		}
+	}
+
+	// Key class of the median - carrier code, month, slice and price. The header of a slice carries 
+	// the counts of a mapper in its value and sorts before the prices, the prices sort ascending.
+	// Serialized as the carrier Text, the month and slice as varints, the header flag and the price.
+	public static class CarrierMonthPrice implements WritableComparable<CarrierMonthPrice>{
+		private final Text carrier = new Text();
+		private int month;
+		private int slice;
+		private boolean header;
+		private double price;
+
+		public void set(byte[] carrierBytes, int start, int length, int month, int slice, boolean header, double price){
+			this.carrier.set(carrierBytes, start, length);
+			this.month = month;
+			this.slice = slice;
+			this.header = header;
+			this.price = price;
+		}
+
+		public Text getCarrier(){
+			return carrier;
+		}
+
+		public int getMonth(){
+			return month;
+		}
+
+		public int getSlice(){
+			return slice;
+		}
+
+		public boolean isHeader(){
+			return header;
+		}
+
+		public double getPrice(){
+			return price;
+		}
+
+		@Override
+		public void write(DataOutput out) throws IOException{
+			carrier.write(out);
+			WritableUtils.writeVInt(out, month);
+			WritableUtils.writeVInt(out, slice);
+			out.writeBoolean(header);
+			out.writeDouble(price);
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException{
+			carrier.readFields(in);
+			month = WritableUtils.readVInt(in);
+			slice = WritableUtils.readVInt(in);
+			header = in.readBoolean();
+			price = in.readDouble();
+		}
+
+		// Orders by carrier code, month and slice, then the header before the prices in ascending order
+		@Override
+		public int compareTo(CarrierMonthPrice other){
+			int cmp = compareGroup(other);
+			if (cmp == 0 && header != other.header){
+				cmp = header ? -1 : 1;
+			}
+			if (cmp == 0){
+				cmp = Double.compare(price, other.price);
+			}
+			return cmp;
+		}
+
+		// Orders by carrier code, month and slice only
+		public int compareGroup(CarrierMonthPrice other){
+			int cmp = carrier.compareTo(other.carrier);
+			if (cmp == 0){
+				cmp = Integer.compare(month, other.month);
+			}
+			if (cmp == 0){
+				cmp = Integer.compare(slice, other.slice);
+			}
+			return cmp;
+		}
+
+		@Override
+		public boolean equals(Object other){
+			return other instanceof CarrierMonthPrice && compareTo((CarrierMonthPrice) other) == 0;
+		}
+
+		@Override
+		public int hashCode(){
+			return ((carrier.hashCode() * 31 + month) * 31 + slice) * 31 + Double.valueOf(price).hashCode();
+		}
+	}
+
+	// Sort comparator of the median - orders the serialized keys like CarrierMonthPrice.compareTo
+	public static class CarrierMonthPriceComparator extends WritableComparator{
+
+		public CarrierMonthPriceComparator(){
+			super(CarrierMonthPrice.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2){
+			int cmp = compareGroup(b1, s1, b2, s2);
+			if (cmp != 0){
+				return cmp;
+			}
+			// header flag and price are the last 9 bytes of a key
+			int end1 = s1 + l1 - 9;
+			int end2 = s2 + l2 - 9;
+			if (b1[end1] != b2[end2]){
+				return b1[end1] != 0 ? -1 : 1;
+			}
+			return Double.compare(readDouble(b1, end1 + 1), readDouble(b2, end2 + 1));
+		}
+
+		// Compares the carrier code, month and slice at the start of two serialized keys
+		static int compareGroup(byte[] b1, int s1, byte[] b2, int s2){
+			try{
+				int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+				int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+				int length1 = readVInt(b1, s1);
+				int length2 = readVInt(b2, s2);
+				int cmp = compareBytes(b1, s1 + n1, length1, b2, s2 + n2, length2);
+				if (cmp != 0){
+					return cmp;
+				}
+				s1 += n1 + length1;
+				s2 += n2 + length2;
+				cmp = Integer.compare(readVInt(b1, s1), readVInt(b2, s2));
+				if (cmp != 0){
+					return cmp;
+				}
+				s1 += WritableUtils.decodeVIntSize(b1[s1]);
+				s2 += WritableUtils.decodeVIntSize(b2[s2]);
+				return Integer.compare(readVInt(b1, s1), readVInt(b2, s2));
+			}
+			catch (IOException e){
+				throw new IllegalArgumentException(e);
+			}
+		}
+	}
+
+	// Grouping comparator of the median - one reduce call gets the headers and the sorted prices of a
+	// slice of a carrier and month
+	public static class CarrierMonthComparator extends WritableComparator{
+
+		public CarrierMonthComparator(){
+			super(CarrierMonthPrice.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2){
+			return CarrierMonthPriceComparator.compareGroup(b1, s1, b2, s2);
+		}
+	}
+
+	// Partitioner of the median - on the carrier code and month, so the months of a large carrier
+	// are spread over the reducers instead of landing on one. The slices of a split carrier and 
+	// month go to consecutive reducers.
+	public static class CarrierMonthPartitioner extends Partitioner<CarrierMonthPrice, MonthCount>{
+
+		@Override
+		public int getPartition(CarrierMonthPrice key, MonthCount value, int numPartitions){
+			int partition = ((key.getCarrier().hashCode() * 31 + key.getMonth()) & Integer.MAX_VALUE) % numPartitions;
+			return (partition + key.getSlice()) % numPartitions;
+		}
+	}
+
+	// Value class of the median - number of prices of a carrier and month, number of them in the
+	// lower slices, lowest price of the higher slices and the active in 2015 flag of the carrier, 
+	// set in the headers only. Written as a flag byte, the counts as varints and the lowest price 
+	// only if there is one.
+	public static class MonthCount implements Writable{
+		private static final int ACTIVE = 1;
+		private static final int HAS_NEXT = 2;
+		private boolean active;
+		private long count;
+		private long below;
+		private double next = Double.POSITIVE_INFINITY;
+
+		public void set(boolean active, long count, long below, double next){
+			this.active = active;
+			this.count = count;
+			this.below = below;
+			this.next = next;
+		}
+
+		public boolean isActive(){
+			return active;
+		}
+
+		public long getCount(){
+			return count;
+		}
+
+		public long getBelow(){
+			return below;
+		}
+
+		// Lowest price of the higher slices, positive infinity if there is none
+		public double getNext(){
+			return next;
+		}
+
+		@Override
+		public void write(DataOutput out) throws IOException{
+			boolean hasNext = next != Double.POSITIVE_INFINITY;
+			out.writeByte((active ? ACTIVE : 0) | (hasNext ? HAS_NEXT : 0));
+			WritableUtils.writeVLong(out, count);
+			WritableUtils.writeVLong(out, below);
+			if (hasNext){
+				out.writeDouble(next);
+			}
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException{
+			int flags = in.readByte();
+			active = (flags & ACTIVE) != 0;
+			count = WritableUtils.readVLong(in);
+			below = WritableUtils.readVLong(in);
+			next = (flags & HAS_NEXT) != 0 ? in.readDouble() : Double.POSITIVE_INFINITY;
+		}
+	}
+
+	// Value class of the mean - month, active in 2015 flag and the sum and count of the prices
+	public static class MonthSum implements Writable{
+		private int month;
+		private boolean active;
+		private double sum;
+		private long count;
 
-		// Initialize the text variable, for holding the carrier codes
-		private Text carrierCode = new Text();
+		public MonthSum(){
+		}
 
-		//Map to have a list of average price, month and year and set it with the corresponding key(carrier code)
-		public void map(Object key, Text value, Context context) throws IOException, InterruptedException{
-			// This variable stores the data of each record in the form of an array
-			String[] itr = null;
-			// To clean the values and splitting them with ','
-			itr = value.toString().replaceAll("\"","").split(",");
-			// Initializing the text variable
-			Text priceMonthYear = null;
-			// Check whether the flight is sane
-			Integer code = isSane(itr);
-			// Code 0 is returned when the flight is sane
-			if (code.equals(0)){
-				try{
-					// Logic to check whether Average Price is present for the particular flight or not
-					if (itr.length == 112 && itr[111] != ""){
-						// Code block to debug errors
-						if (itr[0] == ""){
-							//System.err.println("Error in the input string");;
-						}
-						else{
-							// Text which contains a concatenated value of Average Price, Month and Year
-							priceMonthYear = new Text(itr[111] + ";" + itr[2] + ";" + itr[0]);
-							// Setting the carrier code as the key
-							carrierCode.set(itr[8]);
-							// Mapper output -> carrier code as the key, price, month and year for that carrier as the value
-							context.write(carrierCode, priceMonthYear);
-						}
-					}
-				}
-				// Debugger to check errors
-				catch(ArrayIndexOutOfBoundsException e){
-					//System.err.println("Error.." + e.getMessage());
-				}
+		public MonthSum(int month){
+			this.month = month;
+		}
+
+		public void set(int month, boolean active, double sum, long count){
+			this.month = month;
+			this.active = active;
+			this.sum = sum;
+			this.count = count;
+		}
+
+		// Adds one price of the month
+		public void add(double price, boolean active){
+			this.active |= active;
+			this.sum += price;
+			this.count++;
+		}
+
+		// Adds the prices of another partial sum of the same month
+		public void merge(MonthSum other){
+			this.month = other.month;
+			this.active |= other.active;
+			this.sum += other.sum;
+			this.count += other.count;
+		}
+
+		public int getMonth(){
+			return month;
+		}
+
+		public boolean isActive(){
+			return active;
+		}
+
+		public double getMean(){
+			return sum / count;
+		}
+
+		@Override
+		public void write(DataOutput out) throws IOException{
+			WritableUtils.writeVInt(out, month);
+			out.writeBoolean(active);
+			out.writeDouble(sum);
+			WritableUtils.writeVLong(out, count);
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException{
+			month = WritableUtils.readVInt(in);
+			active = in.readBoolean();
+			sum = in.readDouble();
+			count = WritableUtils.readVLong(in);
+		}
+	}
+
+	// Value class of the approximate median - month, active in 2015 flag and quantile sketch of the prices
+	public static class MonthSketch implements Writable{
+		private int month;
+		private boolean active;
+		private QuantileSketch sketch;
+
+		public MonthSketch(){
+			this.sketch = new QuantileSketch();
+		}
+
+		public MonthSketch(int month, boolean active, QuantileSketch sketch){
+			this.month = month;
+			this.active = active;
+			this.sketch = sketch;
+		}
+
+		public int getMonth(){
+			return month;
+		}
+
+		public boolean isActive(){
+			return active;
+		}
+
+		public QuantileSketch getSketch(){
+			return sketch;
+		}
+
+		// Adds the prices of another sketch of the same month
+		public void merge(MonthSketch other){
+			this.active |= other.active;
+			this.sketch.merge(other.sketch);
+		}
+
+		@Override
+		public void write(DataOutput out) throws IOException{
+			out.writeInt(month);
+			out.writeBoolean(active);
+			sketch.write(out);
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException{
+			month = in.readInt();
+			active = in.readBoolean();
+			sketch.readFields(in);
+		}
+	}
+
+	// Value class of the first round of histogram-median - month, active in 2015 flag and the number of
+	// prices per bucket. Written as the number of buckets and then the bucket as the difference to 
+	// the previous one and its count, as varints.
+	public static class MonthHistogram implements Writable{
+		private int month;
+		private boolean active;
+		private TreeMap<Integer, Long> buckets = new TreeMap<Integer, Long>();
+
+		public MonthHistogram(){
+		}
+
+		public MonthHistogram(int month){
+			this.month = month;
+		}
+
+		// Adds to the count of a bucket
+		public void add(int bucket, long count){
+			Long current = buckets.get(bucket);
+			buckets.put(bucket, current == null ? count : current + count);
+		}
+
+		// Adds the counts of another histogram of the same month
+		public void merge(MonthHistogram other){
+			this.month = other.month;
+			this.active |= other.active;
+			for (Map.Entry<Integer, Long> bucket: other.buckets.entrySet()){
+				add(bucket.getKey(), bucket.getValue());
+			}
+		}
+
+		public void setActive(boolean active){
+			this.active = active;
+		}
+
+		public int getMonth(){
+			return month;
+		}
+
+		public boolean isActive(){
+			return active;
+		}
+
+		// Counts of the non empty buckets in ascending order
+		public TreeMap<Integer, Long> getBuckets(){
+			return buckets;
+		}
+
+		public long getCount(){
+			long count = 0;
+			for (long bucketCount: buckets.values()){
+				count += bucketCount;
+			}
+			return count;
+		}
+
+		@Override
+		public void write(DataOutput out) throws IOException{
+			WritableUtils.writeVInt(out, month);
+			out.writeBoolean(active);
+			WritableUtils.writeVInt(out, buckets.size());
+			long previous = 0;
+			for (Map.Entry<Integer, Long> bucket: buckets.entrySet()){
+				WritableUtils.writeVLong(out, bucket.getKey() - previous);
+				WritableUtils.writeVLong(out, bucket.getValue());
+				previous = bucket.getKey();
 			}
-			else if(code.equals(1)){
-				// for debugging purposes
-				//System.err.println("Error..Flight record is not sane");
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException{
+			month = WritableUtils.readVInt(in);
+			active = in.readBoolean();
+			buckets.clear();
+			int size = WritableUtils.readVInt(in);
+			long previous = 0;
+			for (int i = 0; i < size; i++){
+				previous += WritableUtils.readVLong(in);
+				buckets.put((int) previous, WritableUtils.readVLong(in));
 			}
-			else{
-				// for debugging purposes
-				//System.err.println("Error..Failed sanity check");
+		}
+	}
+
+	// Merges the histograms of a carrier per month, into new objects since Hadoop re-uses the value object
+	private static HashMap<Integer, MonthHistogram> mergeHistograms(Iterable<MonthHistogram> values){
+		HashMap<Integer, MonthHistogram> monthHistogramMap = new HashMap<Integer, MonthHistogram>();
+		for (MonthHistogram val: values){
+			MonthHistogram histogram = monthHistogramMap.get(val.getMonth());
+			if (histogram == null){
+				histogram = new MonthHistogram();
+				monthHistogramMap.put(val.getMonth(), histogram);
+			}
+			histogram.merge(val);
+		}
+		return monthHistogramMap;
+	}
+
+	// Combiner class of the first round of histogram-median - merges the histograms of the mapper 
+	// output per carrier and month
+	public static class HistogramCombiner extends Reducer<Text, MonthHistogram, Text, MonthHistogram> {
+
+		public void reduce(Text key, Iterable<MonthHistogram> values, Context context) throws IOException, InterruptedException{
+			for (MonthHistogram histogram: mergeHistograms(values).values()){
+				context.write(key, histogram);
+			}
+		}
+	}
+
+	// Merges the partial sums of a carrier per month, into new objects since Hadoop re-uses the value object
+	private static HashMap<Integer, MonthSum> mergeByMonth(Iterable<MonthSum> values){
+		HashMap<Integer, MonthSum> monthSumMap = new HashMap<Integer, MonthSum>();
+		for (MonthSum val: values){
+			MonthSum monthSum = monthSumMap.get(val.getMonth());
+			if (monthSum == null){
+				monthSum = new MonthSum();
+				monthSumMap.put(val.getMonth(), monthSum);
+			}
+			monthSum.merge(val);
+		}
+		return monthSumMap;
+	}
+
+	// Combiner class of the mean - merges the partial sums of the mapper output per carrier and month,
+	// so one value per carrier and month leaves every spill of a mapper
+	public static class MeanCombiner extends Reducer<Text, MonthSum, Text, MonthSum> {
+
+		public void reduce(Text key, Iterable<MonthSum> values, Context context) throws IOException, InterruptedException{
+			for (MonthSum monthSum: mergeByMonth(values).values()){
+				context.write(key, monthSum);
 			}
 		}
 	}
 
 	// Reduce class of Map-Reduce model - This reducer class computes the mean price for the flights
-	public static class MeanReducer extends Reducer<Text, Text, Text, Text> {
+	public static class MeanReducer extends Reducer<Text, MonthSum, Text, Text> {
 
-		// Reduce method to merge the values of a particular carrier
-		public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException{
+		// Reduce method to merge the partial sums of a particular carrier
+		public void reduce(Text key, Iterable<MonthSum> values, Context context) throws IOException, InterruptedException{
 
+			// Map of the month and the sum and count of the average prices
+			HashMap<Integer, MonthSum> monthSumMap = mergeByMonth(values);
 			// Boolean value to check whether the flight is active in 2015 or not.
 			Boolean isActive = false;
-			// Map to put the month and the sum of average prices
-			HashMap<Integer, ArrayList<Double>> monthPriceMap= new HashMap<Integer, ArrayList<Double>>();
-			// Iterate through the set of values for the current carrier code
-			for (Text val:values){
-				// Get the array of year, month and ticket prices for the particular carrier
-				String[] arr = val.toString().split(";");
-				Integer year = 0;
-				Integer month = 0;
-				Double ticketP = 0.0;
-				if (arr.length == 3){
-					year = Integer.parseInt(arr[2]);
-					month = Integer.parseInt(arr[1]);
-					ticketP = Double.parseDouble(arr[0]);
-				}
-				else{
-					System.err.println("The values are not proper for this " + key + "carrier");
-					System.err.println(val.toString());
-				}
-				// Set the isActive boolean if the year is 2015
-				if (year.equals(2015)){
+			for (MonthSum monthSum: monthSumMap.values()){
+				if (monthSum.isActive()){
 					isActive = true;
 				}
-				// To update the average price value for a particular month
-				ArrayList<Double> priceList = new ArrayList<Double>();
-				if (monthPriceMap.containsKey(month)){
-					priceList = monthPriceMap.get(month);
-				}
-				// Aggregate all the price values into one list for the month
-				priceList.add(ticketP);
-				// Put the list back to the map
-				monthPriceMap.put(month, priceList);
 			}
 			if (isActive){
-				// Code to calculate the sum of all average price for a particular carrier for a particular month
-				for (Integer mapKey: monthPriceMap.keySet()){
-					ArrayList<Double> priceList = monthPriceMap.get(mapKey);
-					// Initializing the sum and the count variables for computing mean
-					Double sum = 0.0;
-					Integer count = priceList.size();
-					// Summing up all the ticket prices in the list
-					for (Double ticketPrice: priceList){
-						sum += ticketPrice;
-					}
+				for (Integer mapKey: monthSumMap.keySet()){
 					// Calculating the mean
-					Double meanPrice = sum/count;
+					Double meanPrice = monthSumMap.get(mapKey).getMean();
 					// Writing the result to the output - carrier code, month and mean price
 					context.write(key, new Text(mapKey.toString() + "\t" + meanPrice.toString()));
 				}
@@ -142,107 +1312,87 @@ public class CarrierCount{
 	}
 
 	// Reduce class of Map-Reduce model - This reducer class computes the median price for the flights
-	public static class MedianReducer extends Reducer<Text, Text, Text, Text> {
+	// of a carrier and month, from their prices sorted by the shuffle. A split carrier and month is
+	// reduced per slice, only the reducer of the slice with the lower middle price writes the median.
+	public static class MedianReducer extends Reducer<CarrierMonthPrice, MonthCount, Text, Text> {
 
-		// Reduce method to merge the values of a particular carrier
-		public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException{
+		// Initialize the text variable, for holding the carrier codes
+		private Text carrierCode = new Text();
+
+		// Reduce method to stream over the headers and the sorted prices of a particular carrier, month
+		// and slice
+		public void reduce(CarrierMonthPrice key, Iterable<MonthCount> values, Context context) throws IOException, InterruptedException{
 
 			// Boolean value to check whether the flight is active in 2015 or not.
 			Boolean isActive = false;
-			// Map to put the month and the sum of average prices
-			HashMap<Integer, ArrayList<Double>> monthPriceMap= new HashMap<Integer, ArrayList<Double>>();
-			// Iterate through the set of values for the current carrier code
-			for (Text val:values){
-				// Get the array of year, month and ticket prices for a particular carrier
-				String[] arr = val.toString().split(";");
-				Integer year = 0;
-				Integer month = 0;
-				Double ticketP = 0.0;
-				if (arr.length == 3){
-					year = Integer.parseInt(arr[2]);
-					month = Integer.parseInt(arr[1]);
-					ticketP = Double.parseDouble(arr[0]);
-				}
-				else{
-					System.err.println("The values are not proper for this " + key + "carrier");
-					System.err.println(val.toString());
-				}
-				// Set the isActive boolean if the year is 2015
-				if (year.equals(2015)){
-					isActive = true;
+			// Number of prices of the carrier and month and of them in the lower slices, the lowest 
+			// price of the higher slices, known once the headers are read
+			long count = 0;
+			long below = 0;
+			double next = Double.POSITIVE_INFINITY;
+			// Position of the current price among all prices of the carrier and month
+			long index = 0;
+			// Lower middle price, if it is in this slice
+			double low = 0;
+			boolean hasLow = false;
+			// Hadoop updates the key to the current record while iterating the values
+			for (MonthCount val: values){
+				if (key.isHeader()){
+					count += val.getCount();
+					below += val.getBelow();
+					next = Math.min(next, val.getNext());
+					if (val.isActive()){
+						isActive = true;
+					}
+					index = below;
+					continue;
 				}
-				// To update the average price value for a particular month
-				ArrayList<Double> priceList = new ArrayList<Double>();
-				if (monthPriceMap.containsKey(month)){
-					priceList = monthPriceMap.get(month);
+				if (!isActive){
+					return;
 				}
-				// Aggregate all the price values into one list for the month
-				priceList.add(ticketP);
-				// Put the list back to the map
-				monthPriceMap.put(month, priceList);
-			}
-			if (isActive){
-				// Code to calculate the sum of all average price for a particular carrier for a particular month
-				for (Integer mapKey: monthPriceMap.keySet()){
-					ArrayList<Double> priceList = monthPriceMap.get(mapKey);
-					// Calculating the median
-					Double median = findMedian(priceList);
-					// Writing the result to the output - carrier code, month and median price
-					context.write(key, new Text(mapKey.toString() + "\t" + median.toString()));
+				if (index == (count - 1) / 2){
+					low = key.getPrice();
+					hasLow = true;
+				}
+				if (index == count / 2){
+					if (hasLow){
+						writeMedian(key, low, key.getPrice(), context);
+					}
+					return;
 				}
+				index++;
+			}
+			// the upper middle price is the lowest price of the higher slices
+			if (hasLow){
+				writeMedian(key, low, next, context);
 			}
 		}
 
-		// Code to find median of the ticket price for each carrier for a particular month
-		private Double findMedian(ArrayList<Double> pricelist) {
-			try {
-				// Sort using Java Collections.sort method
-				Collections.sort(pricelist);
-				// Find whether the length list of ticket prizes is even or odd
-				if (pricelist.size() % 2 == 0){
-					double low = pricelist.get(pricelist.size()/2  - 1);
-					double high = pricelist.get(pricelist.size()/2 + 1);
-					// Return the mean of the middle two values
-					return (low+high)/2.0;
-				}else {
-					// Return the middle value
-					return pricelist.get((pricelist.size() + 1)/2 -1);
-				}
-			}catch (Exception e){
-				System.err.println("Median value is not proper " +e.getMessage());
-				return 0.0;
-			}
+		// Writes the mean of the middle two values, the middle value for an odd count
+		private void writeMedian(CarrierMonthPrice key, double low, double high, Context context) throws IOException, InterruptedException{
+			Double median = (low + high) / 2.0;
+			carrierCode.set(key.getCarrier());
+			// Writing the result to the output - carrier code, month and median price
+			context.write(carrierCode, new Text(key.getMonth() + "\t" + median.toString()));
 		}
 	}
 
 	// Reduce class of Map-Reduce model - This reducer class computes the fast median price for the flights
-	public static class FastMedianReducer extends Reducer<Text, Text, Text, Text> {
+	public static class FastMedianReducer extends Reducer<Text, MonthPrice, Text, Text> {
 
 		// Reduce method to merge the values of a particular carrier
-		public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException{
+		public void reduce(Text key, Iterable<MonthPrice> values, Context context) throws IOException, InterruptedException{
 
 			// Boolean value to check whether the flight is active in 2015 or not.
 			Boolean isActive = false;
 			// Map to put the month and the sum of average prices
 			HashMap<Integer, ArrayList<Double>> monthPriceMap= new HashMap<Integer, ArrayList<Double>>();
 			// Iterate through the set of values for the current carrier code
-			for (Text val:values){
-				// get the array of year, month abd ticket prices for a particular carrier
-				String[] arr = val.toString().split(";");
-				Integer year = 0;
-				Integer month = 0;
-				Double ticketP = 0.0;
-				if (arr.length == 3){
-					year = Integer.parseInt(arr[2]);
-					month = Integer.parseInt(arr[1]);
-					ticketP = Double.parseDouble(arr[0]);
-				}
-				else{
-					System.err.println("The values are not proper for this " + key + "carrier");
-					System.err.println(val.toString());
-				}
-				// Set the isActive boolean if the year is 2015
-				if (year.equals(2015)){
+			for (MonthPrice val:values){
+				Integer month = val.getMonth();
+				Double ticketP = val.getPrice();
+				// Set the isActive boolean if the flight is from 2015
+				if (val.isActive()){
 					isActive = true;
 				}
 				// To update the average price value for a particular month
@@ -259,87 +1409,478 @@ public class CarrierCount{
 				// Code to calculate the sum of all average price for a particular carrier for a particular month
 				for (Integer mapKey: monthPriceMap.keySet()){
 					ArrayList<Double> priceList = monthPriceMap.get(mapKey);
-					// Initializing a variable k, to find the kth lowest value in the list
-					int k = 0;
-					// To check whether the list size is even or odd
-					if (priceList.size()%2 == 0){
-						k = priceList.size()/2;
-					}else {
-						k = priceList.size()/2 + 1;
-					}
 					// Initializing an array to store the list values
 					double[] priceArr = new double[priceList.size()];
 					for (int i = 0; i < priceList.size(); i++){
 						priceArr[i] = priceList.get(i);
 					}
-					// Calculating the fast median value
-					Double fastMedian = findFastMedian(priceArr,k);
+					// Calculating the fast median value using QuickSelect(see MedianFinder)
+					Double fastMedian = MedianFinder.median(priceArr, priceArr.length);
 					// Writing the result to the output - carrier code, month and the fast median price
 					context.write(key, new Text(mapKey.toString() + "\t" + fastMedian.toString()));
 				}
 			}
 		}
+	}
 
-		// Code to find fast median for an array of values using QuickSelect Algorithm. This algorithm is referred from Adam Horvath's blog.
-		// QuickSelect Algorithm computes the median value very quickly since this method doesn't required the entire list to be sorted.
-		// It find's the median value by following an approach similar to Binary Search.
-		public static double findFastMedian(double[] priceArray, int medianIndex) {
-
-			// Initializing the start index and the end index of the array
-			int startIndex = 0;
-			int endIndex = priceArray.length - 1;
-			// Loop to check whether startIndex is lesser than endIndex
-			while (startIndex < endIndex) {
-				// Temp variables to store the index positions
-				int lower = startIndex;
-				int higher = endIndex;
-				double middleValue = priceArray[(lower + higher) / 2];
-				// Loop to check whether lower is lesser than higher
-				while (lower < higher) {
-					// Check to see if the lower index value is greater than the middle value
-					if (priceArray[lower] >= middleValue) {
-						// Swap the values at the lower and the higher indexes
-						double tempValue = priceArray[higher];
-						priceArray[higher] = priceArray[lower];
-						priceArray[lower] = tempValue;
-						higher--;
-					} else {
-						lower++;
-					}
+
+	// Combiner class of the approximate median - merges the sketches of a carrier per month, so one
+	// sketch per carrier and month is kept by a partial of the incremental approx-median
+	public static class SketchCombiner extends Reducer<Text, MonthSketch, Text, MonthSketch> {
+
+		// Relative accuracy of the sketches, set from the 4th argument of the job
+		private double accuracy;
+
+		@Override
+		protected void setup(Context context){
+			accuracy = context.getConfiguration().getDouble("approx.accuracy", QuantileSketch.DEFAULTACCURACY);
+		}
+
+		public void reduce(Text key, Iterable<MonthSketch> values, Context context) throws IOException, InterruptedException{
+			HashMap<Integer, MonthSketch> monthSketchMap = new HashMap<Integer, MonthSketch>();
+			for (MonthSketch val: values){
+				MonthSketch monthSketch = monthSketchMap.get(val.getMonth());
+				// Hadoop re-uses the value object, so the sketch is merged into a new one
+				if (monthSketch == null){
+					monthSketch = new MonthSketch(val.getMonth(), false, new QuantileSketch(accuracy));
+					monthSketchMap.put(val.getMonth(), monthSketch);
+				}
+				monthSketch.merge(val);
+			}
+			for (MonthSketch monthSketch: monthSketchMap.values()){
+				context.write(key, monthSketch);
+			}
+		}
+	}
+
+	// Reduce class of Map-Reduce model - This reducer class merges the sketches of the mappers and
+	// computes the approximate median price for the flights
+	public static class ApproxMedianReducer extends Reducer<Text, MonthSketch, Text, Text> {
+
+		// Relative accuracy of the sketches, set from the 4th argument of the job
+		private double accuracy;
+
+		@Override
+		protected void setup(Context context){
+			accuracy = context.getConfiguration().getDouble("approx.accuracy", QuantileSketch.DEFAULTACCURACY);
+		}
+
+		// Reduce method to merge the sketches of a particular carrier
+		public void reduce(Text key, Iterable<MonthSketch> values, Context context) throws IOException, InterruptedException{
+
+			// Boolean value to check whether the flight is active in 2015 or not.
+			Boolean isActive = false;
+			// Map to put the month and the merged sketch
+			HashMap<Integer, QuantileSketch> monthSketchMap = new HashMap<Integer, QuantileSketch>();
+			for (MonthSketch val: values){
+				if (val.isActive()){
+					isActive = true;
 				}
-				// Resetting the lower index value
-				if (priceArray[lower] > middleValue)
-					lower--;
+				// Hadoop re-uses the value object, so the sketch is merged into a new one
+				QuantileSketch sketch = monthSketchMap.get(val.getMonth());
+				if (sketch == null){
+					sketch = new QuantileSketch(accuracy);
+					monthSketchMap.put(val.getMonth(), sketch);
+				}
+				sketch.merge(val.getSketch());
+			}
+			if (isActive){
+				for (Integer mapKey: monthSketchMap.keySet()){
+					Double median = monthSketchMap.get(mapKey).getPrice();
+					// Writing the result to the output - carrier code, month and approximate median price
+					context.write(key, new Text(mapKey.toString() + "\t" + median.toString()));
+				}
+			}
+		}
+	}
+
+	// Reduce class of the first round of histogram-median - merges the histograms of a carrier and 
+	// writes the median buckets of its months, if the carrier is active
+	public static class HistogramReducer extends Reducer<Text, MonthHistogram, Text, Text> {
+
+		public void reduce(Text key, Iterable<MonthHistogram> values, Context context) throws IOException, InterruptedException{
+			HashMap<Integer, MonthHistogram> monthHistogramMap = mergeHistograms(values);
+			// Boolean value to check whether the flight is active in 2015 or not.
+			Boolean isActive = false;
+			for (MonthHistogram histogram: monthHistogramMap.values()){
+				if (histogram.isActive()){
+					isActive = true;
+				}
+			}
+			if (isActive){
+				for (Integer mapKey: monthHistogramMap.keySet()){
+					// Writing the result to the output - carrier code, month and the median buckets
+					context.write(key, new Text(mapKey.toString() + "\t" + MedianBuckets.of(monthHistogramMap.get(mapKey))));
+				}
+			}
+		}
+	}
+
+	// Reduce class of the second round of histogram-median - gets only the prices of the median 
+	// buckets of a carrier and computes the median price of its months from them
+	public static class BucketMedianReducer extends Reducer<Text, MonthPrice, Text, Text> {
+
+		// Map of carrier code and month to the median buckets and ranks
+		private HashMap<String, MedianBuckets> bucketsMap;
+
+		@Override
+		protected void setup(Context context){
+			bucketsMap = MedianBuckets.fromConfiguration(context.getConfiguration());
+		}
+
+		// Reduce method to merge the prices of the median buckets of a particular carrier
+		public void reduce(Text key, Iterable<MonthPrice> values, Context context) throws IOException, InterruptedException{
+			// Map to put the month and the prices of its median buckets
+			HashMap<Integer, ArrayList<Double>> monthPriceMap = new HashMap<Integer, ArrayList<Double>>();
+			for (MonthPrice val: values){
+				ArrayList<Double> priceList = monthPriceMap.get(val.getMonth());
+				if (priceList == null){
+					priceList = new ArrayList<Double>();
+					monthPriceMap.put(val.getMonth(), priceList);
+				}
+				priceList.add(val.getPrice());
+			}
+			for (Integer mapKey: monthPriceMap.keySet()){
+				ArrayList<Double> priceList = monthPriceMap.get(mapKey);
+				double[] prices = new double[priceList.size()];
+				for (int i = 0; i < priceList.size(); i++){
+					prices[i] = priceList.get(i);
+				}
+				Arrays.sort(prices);
+				Double median = bucketsMap.get(key + ";" + mapKey).median(prices);
+				// Writing the result to the output - carrier code, month and median price
+				context.write(key, new Text(mapKey.toString() + "\t" + median.toString()));
+			}
+		}
+	}
+
+	// Adds the input directory to the job, read through ColumnFileInputFormat if it holds the
+	// columnar files of ColumnFileIngest instead of the gzipped csv files
+	private static void addInput(Job job, Path input) throws IOException{
+		FileInputFormat.addInputPath(job, input);
+		if (ColumnFileInputFormat.isColumnar(job.getConfiguration(), input)){
+			job.setInputFormatClass(ColumnFileInputFormat.class);
+		}
+		else if (job.getConfiguration().get(ColumnFileInputFormat.FILTER) != null){
+			throw new IllegalArgumentException("The filter needs the columnar files of ColumnFileIngest in " + input);
+		}
+	}
+
+	// Runs the two rounds of histogram-median. The first writes the median buckets of every carrier
+	// and month to a directory next to the output, the second reads the input again and only sends
+	// the prices of those buckets to the reducers, so no reducer holds more than a bucket of prices.
+	private static boolean histogramMedian(Configuration conf, String[] args) throws Exception{
+		Path input = new Path(args[0]);
+		Path output = new Path(args[1]);
+		Path buckets = new Path(args[1] + "_buckets");
+		Job histogramJob = Job.getInstance(conf, "carrier count histogram");
+		histogramJob.setJarByClass(CarrierCount.class);
+		histogramJob.setMapperClass(HistogramMapper.class);
+		histogramJob.setMapOutputKeyClass(Text.class);
+		histogramJob.setMapOutputValueClass(MonthHistogram.class);
+		histogramJob.setCombinerClass(HistogramCombiner.class);
+		histogramJob.setReducerClass(HistogramReducer.class);
+		histogramJob.setOutputKeyClass(Text.class);
+		histogramJob.setOutputValueClass(Text.class);
+		addInput(histogramJob, input);
+		FileOutputFormat.setOutputPath(histogramJob, buckets);
+		if (!histogramJob.waitForCompletion(true)){
+			return false;
+		}
+		// median buckets of every carrier and month, "carrier;month;low;high;below;count" entries
+		FileSystem fileSystem = buckets.getFileSystem(conf);
+		StringBuilder entries = new StringBuilder();
+		for (FileStatus status: fileSystem.listStatus(buckets)){
+			if (!status.getPath().getName().startsWith("part-")){
+				continue;
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(fileSystem.open(status.getPath()), "UTF-8"));
+			String line = reader.readLine();
+			while (line != null){
+				entries.append(entries.length() == 0 ? "" : " ").append(line.replace('\t', ';'));
+				line = reader.readLine();
+			}
+			reader.close();
+		}
+		fileSystem.delete(buckets, true);
+		Configuration bucketConf = new Configuration(conf);
+		bucketConf.set(MEDIAN_BUCKETS, entries.toString());
+		Job bucketJob = Job.getInstance(bucketConf, "carrier count median buckets");
+		bucketJob.setJarByClass(CarrierCount.class);
+		bucketJob.setMapperClass(BucketMapper.class);
+		bucketJob.setMapOutputKeyClass(Text.class);
+		bucketJob.setMapOutputValueClass(MonthPrice.class);
+		bucketJob.setReducerClass(BucketMedianReducer.class);
+		bucketJob.setOutputKeyClass(Text.class);
+		bucketJob.setOutputValueClass(Text.class);
+		addInput(bucketJob, input);
+		FileOutputFormat.setOutputPath(bucketJob, output);
+		return bucketJob.waitForCompletion(true);
+	}
 
-				// Resetting the lower index 
-				if (medianIndex <= lower) {
-					endIndex = lower;
-				} else {
-					startIndex = lower + 1;
+	// Answers query-mean or query-approx-median from the PriceCube of the input directory, without a job.
+	// The partitions of new or changed input files are built first, here in the driver, the others are
+	// only read. The output directory gets the carrier code, month and price of the active carriers, as
+	// written by the reducers of mean and approx-median. The partitions are built from the gzipped csv
+	// files, an input directory without them, e.g. the columnar files of ColumnFileIngest, is rejected.
+	private static boolean queryCube(Configuration conf, String[] args, String findMeanOrMedian) throws Exception{
+		Path input = new Path(args[0]);
+		Path cube = System.getProperty(CUBE) != null ? new Path(System.getProperty(CUBE)) : input.suffix("_cube");
+		Path output = new Path(args[1]);
+		double accuracy = conf.getDouble("approx.accuracy", QuantileSketch.DEFAULTACCURACY);
+		FileSystem inputSystem = input.getFileSystem(conf);
+		FileSystem cubeSystem = cube.getFileSystem(conf);
+		FileSystem outputSystem = output.getFileSystem(conf);
+		if (outputSystem.exists(output)){
+			System.err.println("Output directory " + output + " already exists");
+			return false;
+		}
+		if (ColumnFileInputFormat.isColumnar(conf, input)){
+			throw new IllegalArgumentException("The cube is built from the gzipped csv files, not the columnar files of ColumnFileIngest in " + input);
+		}
+		cubeSystem.mkdirs(cube);
+		List<PriceCube.Partition> partitions = new ArrayList<PriceCube.Partition>();
+		Set<String> sources = new HashSet<String>();
+		int built = 0;
+		for (FileStatus status: inputSystem.listStatus(input)){
+			String name = status.getPath().getName();
+			if (!name.endsWith(".gz")){
+				continue;
+			}
+			sources.add(name);
+			Path partitionPath = new Path(cube, name + PriceCube.EXTENSION);
+			if (cubeSystem.exists(partitionPath)){
+				PriceCube.Partition partition = PriceCube.Partition.read(cubeSystem.open(partitionPath));
+				if (partition.isCurrent(status.getLen(), status.getModificationTime(), PriceCube.MAP_REDUCE, accuracy)){
+					partitions.add(partition);
+					continue;
 				}
 			}
-			return priceArray[medianIndex];
+			PriceCube.Partition partition = PriceCube.Partition.build(name, status.getLen(), status.getModificationTime(),
+					inputSystem.open(status.getPath()), PriceCube.MAP_REDUCE, accuracy);
+			// written aside first, a failed build leaves the old partition
+			Path partial = partitionPath.suffix(".tmp");
+			partition.write(cubeSystem.create(partial, true));
+			cubeSystem.delete(partitionPath, false);
+			cubeSystem.rename(partial, partitionPath);
+			partitions.add(partition);
+			built++;
+		}
+		if (sources.isEmpty()){
+			throw new IllegalArgumentException("No gzipped csv files to build the cube from in " + input);
+		}
+		// partitions of input files which are gone
+		for (FileStatus status: cubeSystem.listStatus(cube)){
+			String name = status.getPath().getName();
+			if (name.endsWith(PriceCube.EXTENSION) && !sources.contains(name.substring(0, name.length() - PriceCube.EXTENSION.length()))){
+				cubeSystem.delete(status.getPath(), false);
+			}
+		}
+		System.err.println("cube	partitions=" + partitions.size() + "	built=" + built);
+		PriceCube.Query query = PriceCube.Query.parse(System.getProperty(FILTER));
+		Set<String> active = PriceCube.activeCarriers(partitions, query, 2015);
+		TreeMap<String, TreeMap<Integer, PriceAggregate>> carriers = PriceCube.byCarrierAndMonth(partitions, query, findMeanOrMedian);
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputSystem.create(new Path(output, "part-r-00000")), "UTF-8"));
+		for (String carrier: carriers.keySet()){
+			if (!active.contains(carrier)){
+				continue;
+			}
+			for (Map.Entry<Integer, PriceAggregate> month: carriers.get(carrier).entrySet()){
+				// Writing the result to the output - carrier code, month and mean or median price
+				writer.write(carrier + "\t" + month.getKey() + "\t" + month.getValue().getPrice() + "\n");
+			}
+		}
+		writer.close();
+		outputSystem.create(new Path(output, "_SUCCESS")).close();
+		return true;
+	}
+
+	// Fingerprint kept in a partial of the state, null if the partial is missing or incomplete
+	private static String readFingerprint(FileSystem fileSystem, Path partial) throws IOException{
+		Path fingerprint = new Path(partial, FINGERPRINT);
+		if (!fileSystem.exists(fingerprint)){
+			return null;
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(fileSystem.open(fingerprint), "UTF-8"));
+		try{
+			return reader.readLine();
+		}
+		finally{
+			reader.close();
 		}
 	}
 
+	// Sets the mapper, combiner and value classes of the incremental mean or approx-median, the partial jobs
+	// read the input files and the merge job reads the partials with the identity mapper
+	private static void setIncrementalClasses(Job job, String findMeanOrMedian, boolean partial){
+		if (findMeanOrMedian.equals("mean")){
+			job.setMapperClass(partial ? MeanMapper.class : Mapper.class);
+			job.setMapOutputValueClass(MonthSum.class);
+			job.setCombinerClass(MeanCombiner.class);
+			job.setReducerClass(partial ? MeanCombiner.class : MeanReducer.class);
+			job.setOutputValueClass(partial ? MonthSum.class : Text.class);
+		}
+		else{
+			job.setMapperClass(partial ? ApproxMedianMapper.class : Mapper.class);
+			job.setMapOutputValueClass(MonthSketch.class);
+			job.setCombinerClass(SketchCombiner.class);
+			job.setReducerClass(partial ? SketchCombiner.class : ApproxMedianReducer.class);
+			job.setOutputValueClass(partial ? MonthSketch.class : Text.class);
+		}
+		job.setMapOutputKeyClass(Text.class);
+		job.setOutputKeyClass(Text.class);
+	}
+
+	// Incremental mean or approx-median. The state directory keeps one partial per input file - the merged
+	// sums or sketches of every carrier and month of the file, as a sequence file, and the fingerprint of
+	// the file. The files whose length, modification time, accuracy or filter differ from the fingerprint
+	// are read by a job of their own which replaces their partial, the partials of removed files are
+	// deleted. A last job merges the partials of all files, so a run reads the new data and the partials
+	// only. Only the mean and approx-median have partials of a fixed size per carrier and month.
+	private static boolean incremental(Configuration conf, String[] args, String findMeanOrMedian) throws Exception{
+		Path input = new Path(args[0]);
+		Path output = new Path(args[1]);
+		Path state = new Path(new Path(System.getProperty(STATE)), findMeanOrMedian);
+		String settings = conf.getDouble("approx.accuracy", QuantileSketch.DEFAULTACCURACY) + "\t"
+				+ conf.get(ColumnFileInputFormat.FILTER, "");
+		FileSystem inputSystem = input.getFileSystem(conf);
+		FileSystem stateSystem = state.getFileSystem(conf);
+		stateSystem.mkdirs(state);
+		List<Path> partials = new ArrayList<Path>();
+		Set<String> sources = new HashSet<String>();
+		int read = 0;
+		for (FileStatus status: inputSystem.listStatus(input)){
+			String name = status.getPath().getName();
+			if (name.startsWith("_") || name.startsWith(".")){
+				continue;
+			}
+			sources.add(name);
+			Path partial = new Path(state, name);
+			partials.add(partial);
+			String fingerprint = status.getLen() + "\t" + status.getModificationTime() + "\t" + settings;
+			if (fingerprint.equals(readFingerprint(stateSystem, partial))){
+				continue;
+			}
+			Job job = Job.getInstance(conf, "carrier count partial " + name);
+			job.setJarByClass(CarrierCount.class);
+			setIncrementalClasses(job, findMeanOrMedian, true);
+			job.setOutputFormatClass(SequenceFileOutputFormat.class);
+			addInput(job, status.getPath());
+			// written aside first, a failed job leaves the old partial
+			Path tmp = partial.suffix(".tmp");
+			stateSystem.delete(tmp, true);
+			FileOutputFormat.setOutputPath(job, tmp);
+			if (!job.waitForCompletion(true)){
+				return false;
+			}
+			BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+					stateSystem.create(new Path(tmp, FINGERPRINT)), "UTF-8"));
+			writer.write(fingerprint + "\n");
+			writer.close();
+			stateSystem.delete(partial, true);
+			stateSystem.rename(tmp, partial);
+			read++;
+		}
+		// partials of input files which are gone
+		for (FileStatus status: stateSystem.listStatus(state)){
+			if (!sources.contains(status.getPath().getName())){
+				stateSystem.delete(status.getPath(), true);
+			}
+		}
+		System.err.println("state\tfiles=" + partials.size() + "\tread=" + read);
+		if (partials.isEmpty()){
+			System.err.println("No input files in " + input);
+			return false;
+		}
+		Job job = Job.getInstance(conf, "carrier count merge");
+		job.setJarByClass(CarrierCount.class);
+		if (Integer.getInteger(REDUCES, 0) > 0){
+			job.setNumReduceTasks(Integer.getInteger(REDUCES));
+		}
+		setIncrementalClasses(job, findMeanOrMedian, false);
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+		for (Path partial: partials){
+			FileInputFormat.addInputPath(job, partial);
+		}
+		FileOutputFormat.setOutputPath(job, output);
+		return job.waitForCompletion(true);
+	}
 
 	// Main method to start Mapper and Reducer Model
 	public static void main(String[] args)	 throws Exception{
 		// Initializing configuration
 		Configuration conf = new Configuration();
+		// 4th argument(optional) - relative accuracy of approx-median, defaults to 0.005
+		if (args.length > 3){
+			conf.set("approx.accuracy", args[3]);
+		}
+		// Samples of the rejected records per failed rule, -Ddiagnostics.samples=N in HADOOP_OPTS
+		conf.setInt(Diagnostics.SAMPLES, Diagnostics.samplesFromProperty());
+		// Partial sums kept by MeanMapper, -Dcarriercount.aggregate.limit=N in HADOOP_OPTS
+		conf.setInt(AGGREGATE_LIMIT, Integer.getInteger(AGGREGATE_LIMIT, DEFAULT_AGGREGATE_LIMIT));
+		// Mean or approximate median of the precomputed PriceCube, no job runs, the filter
+		// may also select CARRIER, ORIGIN and DEST
+		if (args[2].equals("query-mean") || args[2].equals("query-approx-median")){
+			System.exit(queryCube(conf, args, args[2].substring("query-".length())) ? 0 : 1);
+		}
+		// Records of the queried years and months only, e.g. -Dcarriercount.filter=YEAR=2015,MONTH=1 in HADOOP_OPTS
+		if (System.getProperty(FILTER) != null){
+			// fails here on a bad filter, not in the tasks
+			FlightFilter.parse(System.getProperty(FILTER));
+			conf.set(ColumnFileInputFormat.FILTER, System.getProperty(FILTER));
+		}
+		// Mean or approximate median of the partials kept in a state directory, only the new or changed
+		// input files are read, -Dcarriercount.state=DIR in HADOOP_OPTS
+		if (System.getProperty(STATE) != null){
+			if (!args[2].equals("mean") && !args[2].equals("approx-median")){
+				System.err.println("Only mean and approx-median are incremental");
+				System.exit(1);
+			}
+			System.exit(incremental(conf, args, args[2]) ? 0 : 1);
+		}
+		// Exact median in two rounds over price histograms, runs its own jobs
+		if (args[2].equals("histogram-median")){
+			// 4th argument(optional) - relative width of the price buckets, defaults to 0.005
+			if (args.length > 3){
+				conf.set(HISTOGRAM_ACCURACY, args[3]);
+			}
+			System.exit(histogramMedian(conf, args) ? 0 : 1);
+		}
 		// Initializing the job
 		Job job = Job.getInstance(conf, "carrier count");
+		// Number of reduce tasks, -Dcarriercount.reduces=N in HADOOP_OPTS, the cluster default if not set
+		if (Integer.getInteger(REDUCES, 0) > 0){
+			job.setNumReduceTasks(Integer.getInteger(REDUCES));
+		}
 		// Setting the jar for the job
 		job.setJarByClass(CarrierCount.class);
 		// Setting the mapper class
 		job.setMapperClass(FlightMapper.class);
-		// Code to set the reducer according to the parameters - mean, median or fast
+		// Code to set the reducer according to the parameters - mean, median, fast or approx-median
 		if (args[2].equals("mean")){
+			// partial sums are built in the mapper and merged again by the combiner after
+			// early flushes, so the mapper output value differs
+			job.setMapperClass(MeanMapper.class);
+			job.setMapOutputValueClass(MonthSum.class);
+			job.setCombinerClass(MeanCombiner.class);
 			job.setReducerClass(MeanReducer.class);
 		}else if (args[2].equals("median")){
+			// prices are sorted by the shuffle, the reducers get one carrier and month at a time
+			job.setMapperClass(MedianMapper.class);
+			job.setMapOutputKeyClass(CarrierMonthPrice.class);
+			job.setMapOutputValueClass(MonthCount.class);
+			job.setPartitionerClass(CarrierMonthPartitioner.class);
+			job.setSortComparatorClass(CarrierMonthPriceComparator.class);
+			job.setGroupingComparatorClass(CarrierMonthComparator.class);
 			job.setReducerClass(MedianReducer.class);
 		}else if(args[2].equals("fast")){
+			job.setMapOutputValueClass(MonthPrice.class);
 			job.setReducerClass(FastMedianReducer.class);
+		}else if(args[2].equals("approx-median")){
+			// sketches are built in the mapper, so the mapper output value differs
+			job.setMapperClass(ApproxMedianMapper.class);
+			job.setMapOutputValueClass(MonthSketch.class);
+			job.setReducerClass(ApproxMedianReducer.class);
 		}
 		// For invalid input arguments
 		else{
@@ -350,227 +1891,16 @@ public class CarrierCount{
 		job.setOutputKeyClass(Text.class);
 		// Setting the output value class
 		job.setOutputValueClass(Text.class);
-		// 1st argument  - gives the path to the input directory
-		FileInputFormat.addInputPath(job, new Path(args[0]));
+		// 1st argument  - gives the path to the input directory, gzipped csv or columnar files
+		addInput(job, new Path(args[0]));
 		// 2nd argument  - gives the path to the output directory
 		FileOutputFormat.setOutputPath(job, new Path(args[1]));
+		// The median splits the carrier and month keys with more prices than an average reducer 
+		// into price ranges, planned from a sample of the input
+		if (args[2].equals("median")){
+			PartitionPlan.sample(job).write(job.getConfiguration());
+		}
 		// Status code for the system to exit once the job completes
 		System.exit(job.waitForCompletion(true) ? 0: 1);
 	}
-
-	// Main code block to check whether the flight is sane
-	// Status Code 0 indicates Sane Flights
-	// Status Code 1 indicates Insane Flights
-	// Status Code 2 indicates Wrong Format of the fields(Exceptions)
-	public static Integer isSane(String[] record){
-		try{
-			Integer crsArrTime = Integer.parseInt(record[42]);
-			Integer crsDepTime = Integer.parseInt(record[31]);
-			Integer crsElapsedTime = Integer.parseInt(record[52]);
-			// crsArrTime and CRSDepTime should not be zero
-			if (crsArrTime != 0 && crsDepTime != 0){
-				Integer crstimeZone = calculateCRSTimeZone(crsArrTime,crsDepTime,crsElapsedTime);
-				return checkIDFieldsExist(crstimeZone,record); 
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : CRSArrTime or CRSDepTime fields are not proper");
-				return 1;
-			}
-		}catch (Exception e){
-			// for debugging purposes
-			// System.err.println("Error : The record is not proper");
-			return 2;
-		}
-	}
-
-	// Function to check whether the ID fields exist or not
-	private static int checkIDFieldsExist(Integer crstimeZone, String[] record) {
-		// crstimeZone % 60 should be 0
-		if (crstimeZone % 60 == 0)
-		{
-			Integer originAirportID = Integer.parseInt(record[11]);
-			Integer originAirportSeqID = Integer.parseInt(record[12]);
-			Integer originCityMarketID = Integer.parseInt(record[13]);
-			Integer originStateFips = Integer.parseInt(record[18]);
-			Integer originWAC = Integer.parseInt(record[20]);
-			Integer destAirportID = Integer.parseInt(record[21]);
-			Integer destAirportSeqID = Integer.parseInt(record[22]);
-			Integer destCityMarketID = Integer.parseInt(record[23]);
-			Integer destStateFips = Integer.parseInt(record[28]);
-			Integer destWAC = Integer.parseInt(record[30]);
-			// AirportID,  AirportSeqID, CityMarketID, StateFips, Wac 
-			// should be larger than 0
-			if ((originAirportID > 0) && (originAirportSeqID > 0) && 
-					(originCityMarketID > 0) && (originStateFips > 0) && 
-					(originWAC > 0) && (destAirportID > 0) && 
-					(destAirportSeqID > 0) && (destCityMarketID > 0) && 
-					(destStateFips > 0) && (destWAC > 0)){ 
-				return checkForOriginDest(record, crstimeZone);
-			}else{
-				// for debugging purposes
-				// System.err.println("Error : The ID fields of the record are not proper");
-				return 1;
-			}
-		}else {
-			// for debugging purposes
-			// System.err.println("Error : The CRSTimeZone is not a multiple of 60");
-			return 1;
-		}
-	}
-
-	// Function to check whether Origin and Destination fields exist
-	private static int checkForOriginDest(String[] record, Integer crstimeZone) {
-		String origin = record[14];
-		String originCityName = record[15];
-		String originStateABR = record[17];
-		String originStateNM = record[19];
-		String dest = record[24];
-		String destCityName = record[25];
-		String destStateABR = record[27];
-		String destStateNM = record[29];
-		// Origin, Destination,  CityName, State, StateName 
-		// should not be empty
-		if (!origin.equals("") && !originCityName.equals("") && 
-				!originStateABR.equals("") && !originStateNM.equals("") && 
-				!dest.equals("") && !destCityName.equals("") && 
-				!destStateABR.equals("") && !destStateNM.equals("")){
-			Integer cancelled = Integer.parseInt(record[49]);
-			// Check for flights that are not Cancelled(1 = yes)
-			if(cancelled.equals(0)){
-				return checkForArrAndDepTime(record, crstimeZone);
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : The Cancelled field is not proper");
-				return 0;
-			}
-		}else {
-			// for debugging purposes
-			// System.err.println("Error : The Origin and Destination fields are not proper");
-			return 1;
-		}
-	}
-
-	// Function to check for time zone difference
-	private static int checkForArrAndDepTime(String[] record, Integer crstimeZone) {
-		Integer arrTime = Integer.parseInt(record[43]);
-		Integer depTime = Integer.parseInt(record[32]);
-		Integer actualElapsedTime = Integer.parseInt(record[53]);
-		Integer actualTimeZone = findActualTimeZone(arrTime,depTime,actualElapsedTime);
-		Integer timeZoneDiff = actualTimeZone - crstimeZone;
-		//arrTime -  depTime - actualElapsedTime - timeZone should be zero
-		if (timeZoneDiff == 0){
-			return checkForArrDelay(record);
-		}else{
-			// for debugging purposes
-			// System.err.println("Error : The arrTime -  depTime - actualElapsedTime - timeZone is not zero");
-			return 1;
-		}
-	}
-
-	// Function to check for ArrDelay Fields
-	private static int checkForArrDelay(String[] record) {
-		Integer arrDelay = (int)Double.parseDouble(record[44]);
-		Integer arrDelayMinutes = (int)Double.parseDouble(record[45]);
-		Integer arrDel15 = (int)Double.parseDouble(record[46]);
-		int finalReturnVal = 0;
-		// if ArrDelay > 0 then ArrDelay should be equal to ArrDelayMinutes
-		if (arrDelay > 0){                                        
-			if (arrDelay.equals(arrDelayMinutes)){
-				// end of sanity check for flights that are not cancelled and
-				// arrDelay > 0 and arrDelay == arrDelayMinutes .
-				finalReturnVal =  0;  
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : ArrDelay is not equal to ArrDelayMinutes");
-				finalReturnVal = 1;
-			}
-		}
-		// if ArrDelay < 0 then ArrDelayMinutes should be zero
-		else if(arrDelay < 0){
-			if (arrDelayMinutes.equals(0)){
-				// end of sanity check for flights that are not cancelled and
-				// arrDelay < 0 and arrDelayMinutes equals zero.
-				finalReturnVal =  0;
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : ArrayDelayMinutes is not equal to zero");
-				finalReturnVal = 1;
-			}
-		}
-		// if ArrDelayMinutes >= 15 then ArrDel15 should be 1(true)
-		if (arrDelayMinutes >= 15){
-			if (arrDel15.equals(1)){
-				// end of sanity check for flights that are not cancelled and
-				// arrDelayMinute >= 15 and arrDel15 == 1.
-				finalReturnVal =  0;
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : ArrayDelay15 is not equal to 1");
-				finalReturnVal = 1;
-			}
-		}else {
-			// for debugging purposes
-			// System.err.println("Error : ArrDelayMinutes is not >= 15");
-			finalReturnVal =  0;
-		}
-		return finalReturnVal;
-	}
-
-	// Helper method to calculate the CRS time zone
-	private static Integer calculateCRSTimeZone(Integer crsArrTime, Integer crsDepTime, Integer crsElapsedTime) {
-		// Logic to split the Arrival and Departure hours from CRS time
-		Integer crsArrTimeHour = crsArrTime / 100;
-		Integer crsDepTimeHour = crsDepTime / 100; 
-		// Logic to split the Arrival and Departure minutes from CRS time
-		Integer crsArrTimeMin = crsArrTime % 100;
-		Integer crsDepTimeMin = crsDepTime % 100;
-		// Logic to find the time difference between CRS Arrival time and Departure times
-		Integer crsHourDiff;
-		if (crsArrTimeHour > crsDepTimeHour){
-			crsHourDiff = crsArrTimeHour - crsDepTimeHour;
-		}
-		else if (crsArrTimeHour == crsDepTimeHour){
-			if(crsArrTimeMin > crsDepTimeMin){
-				crsHourDiff = crsArrTimeHour - crsDepTimeHour;    
-			}
-			else{
-				// Time difference when the Arrival time is next day
-				crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour;                               
-			}
-		}
-		else{
-			// Time difference when the Arrival time is next day
-			crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour;
-		}                
-		return ((crsHourDiff * 60) + (crsArrTimeMin - crsDepTimeMin)) - crsElapsedTime;
-	}
-
-	// Helper method to calculate the Actual time zone
-	private static Integer findActualTimeZone(Integer arrTime, Integer depTime, Integer actualElapsedTime) {
-		// Logic to split the Arrival and Departure hours from Actual time
-		Integer arrTimeHour = arrTime / 100;
-		Integer depTimeHour = depTime / 100;
-		// Logic to split the Arrival and Departure hours from Actual time
-		Integer arrTimeMin = arrTime % 100;
-		Integer depTimeMin = depTime % 100;                                
-		// Logic to find the time difference between Actual Arrival time and Departure times
-		Integer hourDiff;
-		if (arrTimeHour > depTimeHour){
-			hourDiff = arrTimeHour - depTimeHour;
-		}
-		else if (arrTimeHour == depTimeHour){
-			if(arrTimeMin > depTimeMin){
-				hourDiff = arrTimeHour - depTimeHour;    
-			}
-			else{
-				// Time difference when the Arrival time is next day
-				hourDiff = (24 - depTimeHour) + arrTimeHour;       
-			}
-		}
-		else{
-			// Time difference when the Arrival time is next day
-			hourDiff = (24 - depTimeHour) + arrTimeHour;   
-		}
-		return ((hourDiff * 60) + (arrTimeMin - depTimeMin)) - actualElapsedTime;
-	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,256 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * State of the incremental mode of Solution.java. The state is a directory
+ * with one partial per input file and statistic, named after the file, the
+ * statistic and EXTENSION. A partial keeps the K and F counts and the
+ * PriceAggregate of every carrier and month of its input file, together
+ * with the length and modification time of the file(and the accuracy of the
+ * sketches of approx-median). A run only reads the input files whose partial
+ * does not match them any more and merges their new partials with the ones
+ * of the other files, so the cost of a run follows the newly arrived data.
+ */
+class Checkpoint{
+    static final String EXTENSION = ".part";
+    private static final int MAGIC = 0x43484B31;
+
+    /**
+     * Partial
+     * counts and aggregates of one input file.
+     */
+    static class Partial{
+        private String source;
+        private long length;
+        private long modified;
+        private String findMeanOrMedian;
+        private double accuracy;
+        private Integer rejected;
+        private Integer sane;
+        private HashMap<String, PriceAggregate> priceHm;
+
+        Partial(String source, long length, long modified, String findMeanOrMedian,
+                            double accuracy, Integer rejected, Integer sane,
+                            HashMap<String, PriceAggregate> priceHm){
+            this.source = source;
+            this.length = length;
+            this.modified = modified;
+            this.findMeanOrMedian = findMeanOrMedian;
+            this.accuracy = accuracy;
+            this.rejected = rejected;
+            this.sane = sane;
+            this.priceHm = priceHm;
+        }
+
+        /**
+         * isCurrent
+         * @return  true if the partial was built from the given version of
+         *          its input file with the given accuracy.
+         */
+        public boolean isCurrent(long length, long modified, double accuracy){
+            return this.length == length && this.modified == modified &&
+                    this.accuracy == accuracy;
+        }
+
+        public String getSource(){
+            return this.source;
+        }
+
+        public Integer getRejectedCounter(){
+            return this.rejected;
+        }
+
+        public Integer getSaneCounter(){
+            return this.sane;
+        }
+
+        public HashMap<String, PriceAggregate> getPriceHashMap(){
+            return this.priceHm;
+        }
+
+        /**
+         * write
+         * writes the gzipped partial.
+         *
+         * @param   stream OutputStream of the partial file, closed.
+         */
+        public void write(OutputStream stream) throws IOException{
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                                                    new GZIPOutputStream(stream)));
+            try{
+                out.writeInt(MAGIC);
+                out.writeUTF(this.source);
+                out.writeLong(this.length);
+                out.writeLong(this.modified);
+                out.writeUTF(this.findMeanOrMedian);
+                out.writeDouble(this.accuracy);
+                out.writeInt(this.rejected);
+                out.writeInt(this.sane);
+                out.writeInt(this.priceHm.size());
+                for (Map.Entry<String, PriceAggregate> entry: this.priceHm.entrySet()){
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            }
+            finally{
+                out.close();
+            }
+        }
+
+        /**
+         * read
+         * reads a partial written by write.
+         *
+         * @param   stream InputStream of the partial file, closed.
+         * @return  Partial object.
+         */
+        public static Partial read(InputStream stream) throws IOException{
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                                                    new GZIPInputStream(stream)));
+            try{
+                if (in.readInt() != MAGIC){
+                    throw new IOException("Not a checkpoint partial");
+                }
+                Partial partial = new Partial(in.readUTF(), in.readLong(), in.readLong(),
+                                    in.readUTF(), in.readDouble(), in.readInt(), in.readInt(),
+                                    new HashMap<String, PriceAggregate>());
+                int size = in.readInt();
+                for (int i = 0; i < size; i++){
+                    String carrierAndMonth = in.readUTF();
+                    PriceAggregate priceAggregate = FileThread.newPriceAggregate(
+                                                        partial.findMeanOrMedian);
+                    priceAggregate.readFields(in);
+                    partial.priceHm.put(carrierAndMonth, priceAggregate);
+                }
+                return partial;
+            }
+            finally{
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * accuracy
+     * @return  accuracy a partial of the statistic is built with, only the
+     *          sketches of approx-median depend on it.
+     */
+    static double accuracy(String findMeanOrMedian){
+        return findMeanOrMedian.equals("approx-median") ? QuantileSketch.ACCURACY : 0.0;
+    }
+
+    /**
+     * refresh
+     * brings the state directory of a local input directory up to date and
+     * merges it: the input files without a current partial are read one at a
+     * time by Solution.map(each with all workers), those of removed files are
+     * deleted and the others are only read. A partial which can not be read
+     * is built again.
+     *
+     * @param   input directory of the gzipped csv files.
+     * @param   state directory of the partials, created if missing.
+     * @param   findMeanOrMedian "mean", "median" or "approx-median".
+     * @param   executor ExecutorService object for the workers.
+     * @param   readerExecutor ExecutorService object for the decompression stage.
+     * @param   workers number of worker threads.
+     * @return  ReduceResults object containing merged results of all files.
+     * @throws  ExecutionException if a file could not be read, its partial
+     *          is not written.
+     */
+    public static ReduceResults<Integer, Integer, HashMap<String, PriceAggregate>>
+                    refresh(File input, File state, String findMeanOrMedian,
+                            ExecutorService executor, ExecutorService readerExecutor,
+                            Integer workers) 
+                    throws IOException, InterruptedException, ExecutionException{
+        state.mkdirs();
+        double accuracy = accuracy(findMeanOrMedian);
+        String suffix = "." + findMeanOrMedian + EXTENSION;
+        List<Partial> partials = new ArrayList<Partial>();
+        Set<String> sources = new HashSet<String>();
+        int built = 0;
+        for (File file: input.listFiles()){
+            if (!file.getName().endsWith(".gz")){
+                continue;
+            }
+            sources.add(file.getName());
+            File partialFile = new File(state, file.getName() + suffix);
+            if (partialFile.exists()){
+                Partial partial = null;
+                try{
+                    partial = Partial.read(new FileInputStream(partialFile));
+                }
+                catch(IOException e){
+                    // a corrupt partial is built again from its file
+                    System.err.println("checkpoint\t" + partialFile + "\t" + e);
+                }
+                if (partial != null && partial.isCurrent(file.length(), file.lastModified(), accuracy)){
+                    partials.add(partial);
+                    continue;
+                }
+            }
+            // the modification time is taken before the file is read, a file
+            // which changes while it is read is read again by the next run
+            long length = file.length();
+            long modified = file.lastModified();
+            ReduceResults<Integer, Integer, HashMap<String, PriceAggregate>> result =
+                    Solution.reduce(Solution.map(Collections.singletonList(file.getPath()),
+                                    executor, readerExecutor, workers, findMeanOrMedian));
+            Partial partial = new Partial(file.getName(), length, modified, findMeanOrMedian,
+                                    accuracy, result.getA(), result.getB(), result.getC());
+            // written aside first, a failed write leaves the old partial
+            File tmp = new File(state, file.getName() + suffix + ".tmp");
+            partial.write(new FileOutputStream(tmp));
+            partialFile.delete();
+            if (!tmp.renameTo(partialFile)){
+                throw new IOException("Cannot write " + partialFile);
+            }
+            partials.add(partial);
+            built++;
+        }
+        // partials of input files which are gone
+        for (File partialFile: state.listFiles()){
+            String name = partialFile.getName();
+            if (name.endsWith(suffix) && !sources.contains(
+                            name.substring(0, name.length() - suffix.length()))){
+                partialFile.delete();
+            }
+        }
+        System.err.println("checkpoint\tfiles=" + partials.size() + "\tread=" + built);
+        return merge(partials);
+    }
+
+    /**
+     * merge
+     * adds the counts and merges the aggregates of the partials, as
+     * Solution.reduce does for the workers.
+     *
+     * @param   partials Partial objects of the input files.
+     * @return  ReduceResults object containing merged results of all files.
+     */
+    public static ReduceResults<Integer, Integer, HashMap<String, PriceAggregate>>
+                                merge(List<Partial> partials){
+        Integer totalK = 0;
+        Integer totalF = 0;
+        HashMap<String, PriceAggregate> allPriceHm =
+                                            new HashMap<String, PriceAggregate>();
+        for (Partial partial: partials){
+            totalK += partial.getRejectedCounter();
+            totalF += partial.getSaneCounter();
+            HashMap<String, PriceAggregate> priceHm = partial.getPriceHashMap();
+            for (String key: priceHm.keySet()){
+                if (allPriceHm.containsKey(key)){
+                    allPriceHm.get(key).merge(priceHm.get(key));
+                }
+                else{
+                    allPriceHm.put(key, priceHm.get(key));
+                }
+            }
+        }
+        return new ReduceResults<Integer, Integer, HashMap<String, PriceAggregate>>(totalK, totalF, allPriceHm);
+    }
+}
@@ -0,0 +1,529 @@
+/**
+ * @author: Abhijeet Sharma, Afan Ahmad Khan
+ * @version: 1.0
+ * Block compressed columnar file of flight records, written once from the
+ * gzipped BTS csv files by ColumnFileIngest and read by ColumnFileInputFormat.
+ * Only the columns of FlightRecord are kept. Every block holds up to a fixed
+ * number of rows, each column deflated on its own, with the min and max of
+ * the columns whose values are all integers. Blocks start with the sync
+ * marker of the file, so a split can start anywhere and find the next block.
+ * The trailer holds the min and max of the whole file, it is found from the
+ * end of the file, so a reader can skip a file without reading its blocks.
+ *
+ * file    := magic(FLC1) columnCount columnName* sync block* trailer
+ * block   := sync length rowCount stats (rawLength deflatedLength bytes)*
+ * trailer := sync -1 stats statsLength
+ * stats   := (numeric [min max])*
+ * column  := (vint length, bytes)* of the field bytes, quotes excluded
+ */
+import java.io.*;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class ColumnFile{
+
+	// Extension of the columnar files
+	public static final String EXTENSION = ".flc";
+	// Number of columns of the BTS csv files, the rows are read back in this layout
+	public static final int BTS_COLUMNS = 110;
+	public static final int SYNC_SIZE = 16;
+	public static final int DEFAULT_ROWS_PER_BLOCK = 1 << 16;
+	private static final byte[] MAGIC = {'F', 'L', 'C', '1'};
+	// Length written in place of a block length before the trailer
+	private static final int TRAILER = -1;
+
+	// Writes the vint of a non negative length
+	private static void writeLength(ByteArrayOutputStream out, int length){
+		while ((length & ~0x7f) != 0){
+			out.write((length & 0x7f) | 0x80);
+			length >>>= 7;
+		}
+		out.write(length);
+	}
+
+	// Writes the statistics of the columns, columns without any integer value have none
+	private static void writeStats(DataOutputStream out, boolean[] numeric, long[] mins, long[] maxs) throws IOException{
+		for (int column = 0; column < numeric.length; column++){
+			boolean hasStats = numeric[column] && mins[column] <= maxs[column];
+			out.writeBoolean(hasStats);
+			if (hasStats){
+				out.writeLong(mins[column]);
+				out.writeLong(maxs[column]);
+			}
+		}
+	}
+
+	// Value of the integer field bytes[start, start + length), or null if it is not an integer
+	private static Long parseInteger(byte[] bytes, int start, int length){
+		int i = start;
+		int end = start + length;
+		boolean negative = i < end && bytes[i] == '-';
+		if (negative){
+			i++;
+		}
+		if (i == end || end - i > 18){
+			return null;
+		}
+		long value = 0;
+		for (; i < end; i++){
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9){
+				return null;
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	// Writer of a columnar file - rows are appended as tokenized csv records and written a block at a time
+	public static class Writer implements Closeable{
+		private final DataOutputStream out;
+		private final int[] layout;
+		private final int rowsPerBlock;
+		private final byte[] sync = new byte[SYNC_SIZE];
+		private final ByteArrayOutputStream[] columns;
+		private final boolean[] numeric;
+		private final long[] mins;
+		private final long[] maxs;
+		// statistics of the written blocks
+		private final boolean[] fileNumeric;
+		private final long[] fileMins;
+		private final long[] fileMaxs;
+		private int rows;
+		private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		private byte[] deflated = new byte[1 << 16];
+
+		/**
+		 * Writes the header of the file.
+		 * @param out stream of the new file
+		 * @param layout index of every FlightRecord column in the csv records, -1 for missing columns
+		 * @param rowsPerBlock rows of a block
+		 */
+		public Writer(OutputStream out, int[] layout, int rowsPerBlock) throws IOException{
+			this.out = new DataOutputStream(new BufferedOutputStream(out));
+			this.layout = layout;
+			this.rowsPerBlock = rowsPerBlock;
+			this.columns = new ByteArrayOutputStream[FlightRecord.NAMES.length];
+			this.numeric = new boolean[columns.length];
+			this.mins = new long[columns.length];
+			this.maxs = new long[columns.length];
+			this.fileNumeric = new boolean[columns.length];
+			this.fileMins = new long[columns.length];
+			this.fileMaxs = new long[columns.length];
+			for (int column = 0; column < columns.length; column++){
+				columns[column] = new ByteArrayOutputStream();
+				fileNumeric[column] = true;
+				fileMins[column] = Long.MAX_VALUE;
+				fileMaxs[column] = Long.MIN_VALUE;
+			}
+			new Random().nextBytes(sync);
+			this.out.write(MAGIC);
+			this.out.writeInt(columns.length);
+			for (String name: FlightRecord.NAMES){
+				this.out.writeUTF(name);
+			}
+			this.out.write(sync);
+			startBlock();
+		}
+
+		private void startBlock(){
+			rows = 0;
+			for (int column = 0; column < columns.length; column++){
+				columns[column].reset();
+				numeric[column] = true;
+				mins[column] = Long.MAX_VALUE;
+				maxs[column] = Long.MIN_VALUE;
+			}
+		}
+
+		/**
+		 * Appends a row.
+		 * @param fields tokenizer holding the csv record
+		 */
+		public void append(CsvTokenizer fields) throws IOException{
+			byte[] bytes = fields.getBytes();
+			for (int column = 0; column < columns.length; column++){
+				int index = layout[column];
+				if (index < 0 || index >= fields.getFieldCount()){
+					writeLength(columns[column], 0);
+					continue;
+				}
+				int start = fields.getStart(index);
+				int length = fields.getLength(index);
+				writeLength(columns[column], length);
+				columns[column].write(bytes, start, length);
+				if (numeric[column] && length > 0){
+					Long value = parseInteger(bytes, start, length);
+					if (value == null){
+						numeric[column] = false;
+					}
+					else{
+						mins[column] = Math.min(mins[column], value);
+						maxs[column] = Math.max(maxs[column], value);
+					}
+				}
+			}
+			if (++rows == rowsPerBlock){
+				writeBlock();
+			}
+		}
+
+		private void writeBlock() throws IOException{
+			ByteArrayOutputStream block = new ByteArrayOutputStream();
+			DataOutputStream data = new DataOutputStream(block);
+			data.writeInt(rows);
+			writeStats(data, numeric, mins, maxs);
+			for (int column = 0; column < columns.length; column++){
+				fileNumeric[column] &= numeric[column];
+				fileMins[column] = Math.min(fileMins[column], mins[column]);
+				fileMaxs[column] = Math.max(fileMaxs[column], maxs[column]);
+			}
+			for (ByteArrayOutputStream column: columns){
+				byte[] raw = column.toByteArray();
+				deflater.reset();
+				deflater.setInput(raw);
+				deflater.finish();
+				int length = 0;
+				while (!deflater.finished()){
+					if (length == deflated.length){
+						deflated = Arrays.copyOf(deflated, 2 * deflated.length);
+					}
+					length += deflater.deflate(deflated, length, deflated.length - length);
+				}
+				data.writeInt(raw.length);
+				data.writeInt(length);
+				data.write(deflated, 0, length);
+			}
+			data.flush();
+			out.write(sync);
+			out.writeInt(block.size());
+			block.writeTo(out);
+			startBlock();
+		}
+
+		@Override
+		public void close() throws IOException{
+			if (rows > 0){
+				writeBlock();
+			}
+			ByteArrayOutputStream stats = new ByteArrayOutputStream();
+			DataOutputStream data = new DataOutputStream(stats);
+			writeStats(data, fileNumeric, fileMins, fileMaxs);
+			data.flush();
+			out.write(sync);
+			out.writeInt(TRAILER);
+			stats.writeTo(out);
+			out.writeInt(stats.size());
+			deflater.end();
+			out.close();
+		}
+	}
+
+	// Header of a columnar file - the column names and the sync marker
+	public static class Header{
+		private final String[] columns;
+		private final byte[] sync;
+
+		private Header(String[] columns, byte[] sync){
+			this.columns = columns;
+			this.sync = sync;
+		}
+
+		/**
+		 * Reads the header at the start of a file.
+		 * @param in stream at the start of the file
+		 * @return header of the file
+		 */
+		public static Header read(DataInputStream in) throws IOException{
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC)){
+				throw new IOException("Not a columnar flight file");
+			}
+			String[] columns = new String[in.readInt()];
+			for (int column = 0; column < columns.length; column++){
+				columns[column] = in.readUTF();
+			}
+			byte[] sync = new byte[SYNC_SIZE];
+			in.readFully(sync);
+			return new Header(columns, sync);
+		}
+
+		public String[] getColumns(){
+			return columns;
+		}
+
+		public byte[] getSync(){
+			return sync;
+		}
+
+		// Number of bytes of the header
+		public int size(){
+			int size = MAGIC.length + 4 + SYNC_SIZE;
+			for (String column: columns){
+				try{
+					size += 2 + column.getBytes("UTF-8").length;
+				}
+				catch(UnsupportedEncodingException e){
+					throw new IllegalStateException(e);
+				}
+			}
+			return size;
+		}
+	}
+
+	// Min and max of the columns of a block or a whole file
+	public static class Stats{
+		private final boolean[] hasStats;
+		private final long[] mins;
+		private final long[] maxs;
+
+		private Stats(int columnCount){
+			this.hasStats = new boolean[columnCount];
+			this.mins = new long[columnCount];
+			this.maxs = new long[columnCount];
+		}
+
+		/**
+		 * Reads the trailer, the statistics of a whole file.
+		 * @param in stream after the sync marker of the trailer
+		 * @param columnCount number of columns of the file
+		 * @return statistics of the file
+		 */
+		public static Stats readTrailer(DataInputStream in, int columnCount) throws IOException{
+			if (in.readInt() != TRAILER){
+				throw new IOException("Not a trailer");
+			}
+			Stats stats = new Stats(columnCount);
+			stats.readStats(in);
+			return stats;
+		}
+
+		// Number of bytes from the start of the trailer to the end of the file, statsLength is the
+		// last int of the file
+		public static int trailerSize(int statsLength){
+			return SYNC_SIZE + 4 + statsLength + 4;
+		}
+
+		// Reads the statistics of every column, returns the number of bytes read
+		int readStats(DataInputStream in) throws IOException{
+			int size = 0;
+			for (int column = 0; column < hasStats.length; column++){
+				hasStats[column] = in.readBoolean();
+				size++;
+				if (hasStats[column]){
+					mins[column] = in.readLong();
+					maxs[column] = in.readLong();
+					size += 16;
+				}
+			}
+			return size;
+		}
+
+		// True if every value of the column is an integer(or empty) and min and max are known
+		public boolean hasStats(int column){
+			return hasStats[column];
+		}
+
+		public long getMin(int column){
+			return mins[column];
+		}
+
+		public long getMax(int column){
+			return maxs[column];
+		}
+	}
+
+	// Block of a columnar file - the statistics are read at once, a column is only inflated when
+	// its values are read
+	public static class Block extends Stats{
+		private final int rows;
+		private final byte[] data;
+		private final int[] offsets;
+		private final int[] rawLengths;
+		private final int[] deflatedLengths;
+
+		/**
+		 * Reads the block following a sync marker.
+		 * @param in stream after the sync marker
+		 * @param columnCount number of columns of the file
+		 * @return the block, null at the trailer
+		 */
+		public static Block read(DataInputStream in, int columnCount) throws IOException{
+			int length = in.readInt();
+			if (length == TRAILER){
+				return null;
+			}
+			byte[] data = new byte[length];
+			in.readFully(data);
+			return new Block(data, columnCount);
+		}
+
+		private Block(byte[] data, int columnCount) throws IOException{
+			super(columnCount);
+			this.data = data;
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			this.rows = in.readInt();
+			int offset = 4 + readStats(in);
+			this.offsets = new int[columnCount];
+			this.rawLengths = new int[columnCount];
+			this.deflatedLengths = new int[columnCount];
+			for (int column = 0; column < columnCount; column++){
+				rawLengths[column] = in.readInt();
+				deflatedLengths[column] = in.readInt();
+				offsets[column] = offset + 8;
+				offset = offsets[column] + deflatedLengths[column];
+				in.skipBytes(deflatedLengths[column]);
+			}
+		}
+
+		public int getRows(){
+			return rows;
+		}
+
+		// Number of bytes of the block after its length
+		public int getSize(){
+			return data.length;
+		}
+
+		/**
+		 * Inflates a column.
+		 * @param column column index
+		 * @return (vint length, bytes) of every row
+		 */
+		public byte[] inflate(int column) throws IOException{
+			byte[] raw = new byte[rawLengths[column]];
+			Inflater inflater = new Inflater();
+			try{
+				inflater.setInput(data, offsets[column], deflatedLengths[column]);
+				int length = 0;
+				while (length < raw.length && !inflater.finished()){
+					length += inflater.inflate(raw, length, raw.length - length);
+				}
+			}
+			catch(DataFormatException e){
+				throw new IOException(e);
+			}
+			finally{
+				inflater.end();
+			}
+			return raw;
+		}
+	}
+
+	// Builds the rows of a block as csv records in the BTS layout, the columns which are not read
+	// stay empty, so the records are tokenized and checked like the rows of the csv files
+	public static class RowBuilder{
+		// position of every column of the file in the BTS layout, -1 if it is not read
+		private final int[] positions;
+		private byte[][] values;
+		private int[] cursors;
+		// value of every BTS position of the current row - column, start and length
+		private final int[] sources = new int[BTS_COLUMNS];
+		private final int[] starts = new int[BTS_COLUMNS];
+		private final int[] lengths = new int[BTS_COLUMNS];
+		private byte[] row = new byte[1024];
+		private int length;
+
+		/**
+		 * @param columns column names of the file
+		 * @param wanted names of the columns to read, null for all
+		 */
+		public RowBuilder(String[] columns, Set<String> wanted){
+			this.positions = new int[columns.length];
+			int[] layout = FlightRecord.layoutOf(columns);
+			Arrays.fill(positions, -1);
+			for (int id = 0; id < layout.length; id++){
+				if (layout[id] >= 0 && (wanted == null || wanted.contains(FlightRecord.NAMES[id]))){
+					positions[layout[id]] = FlightRecord.BTS_LAYOUT[id];
+				}
+			}
+		}
+
+		// Inflates the read columns of the next block
+		public void setBlock(Block block) throws IOException{
+			values = new byte[positions.length][];
+			cursors = new int[positions.length];
+			for (int column = 0; column < positions.length; column++){
+				if (positions[column] >= 0){
+					values[column] = block.inflate(column);
+				}
+			}
+		}
+
+		/**
+		 * Builds the next row of the block.
+		 * @return bytes of the row, valid until the next call
+		 */
+		public byte[] next(){
+			Arrays.fill(sources, -1);
+			for (int column = 0; column < positions.length; column++){
+				if (positions[column] < 0){
+					continue;
+				}
+				byte[] bytes = values[column];
+				int cursor = cursors[column];
+				int valueLength = 0;
+				int shift = 0;
+				while (true){
+					int b = bytes[cursor++];
+					valueLength |= (b & 0x7f) << shift;
+					if ((b & 0x80) == 0){
+						break;
+					}
+					shift += 7;
+				}
+				starts[positions[column]] = cursor;
+				lengths[positions[column]] = valueLength;
+				sources[positions[column]] = column;
+				cursors[column] = cursor + valueLength;
+			}
+			length = 0;
+			for (int position = 0; position < BTS_COLUMNS; position++){
+				if (position > 0){
+					put((byte) ',');
+				}
+				if (sources[position] < 0){
+					continue;
+				}
+				byte[] bytes = values[sources[position]];
+				int start = starts[position];
+				boolean quote = false;
+				for (int i = start; i < start + lengths[position]; i++){
+					if (bytes[i] == ',' || bytes[i] == '"'){
+						quote = true;
+						break;
+					}
+				}
+				if (quote){
+					put((byte) '"');
+				}
+				ensure(lengths[position]);
+				System.arraycopy(bytes, start, row, length, lengths[position]);
+				length += lengths[position];
+				if (quote){
+					put((byte) '"');
+				}
+			}
+			return row;
+		}
+
+		// Length of the last row
+		public int getLength(){
+			return length;
+		}
+
+		private void put(byte b){
+			ensure(1);
+			row[length++] = b;
+		}
+
+		private void ensure(int more){
+			if (length + more > row.length){
+				row = Arrays.copyOf(row, Math.max(length + more, 2 * row.length));
+			}
+		}
+	}
+}
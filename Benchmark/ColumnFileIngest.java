@@ -0,0 +1,87 @@
+/**
+ * @author: Abhijeet Sharma, Afan Ahmad Khan
+ * @version: 1.0
+ * Rewrites the gzipped BTS csv files of a directory once into columnar files
+ * (see ColumnFile), one per input file, which the MR jobs read split by
+ * split through ColumnFileInputFormat. Works on local, HDFS and S3 paths.
+ * Usage: ColumnFileIngest <input directory> <output directory> [rows per block]
+ * The header of every file is dropped and the rows whose number of fields
+ * differs from the header are skipped, both are counted and printed.
+ */
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+public class ColumnFileIngest{
+
+	/**
+	 * Converts one gzipped csv file.
+	 * @param in stream of the gzipped file
+	 * @param out stream of the columnar file
+	 * @param rowsPerBlock rows of a block
+	 * @return number of rows written and skipped
+	 */
+	public static long[] ingest(InputStream in, OutputStream out, int rowsPerBlock) throws IOException{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(in), "UTF-8"));
+		CsvTokenizer fields = new CsvTokenizer();
+		long written = 0;
+		long skipped = 0;
+		String line = reader.readLine();
+		if (line == null){
+			reader.close();
+			out.close();
+			return new long[]{0, 0};
+		}
+		byte[] bytes = line.getBytes("UTF-8");
+		String[] headers = new String[fields.reset(bytes, 0, bytes.length)];
+		for (int i = 0; i < headers.length; i++){
+			headers[i] = fields.getString(i);
+		}
+		ColumnFile.Writer writer = new ColumnFile.Writer(out, FlightRecord.layoutOf(headers), rowsPerBlock);
+		line = reader.readLine();
+		while (line != null){
+			bytes = line.getBytes("UTF-8");
+			if (fields.reset(bytes, 0, bytes.length) == headers.length){
+				writer.append(fields);
+				written++;
+			}
+			else{
+				skipped++;
+			}
+			line = reader.readLine();
+		}
+		reader.close();
+		writer.close();
+		return new long[]{written, skipped};
+	}
+
+	public static void main(String[] args) throws Exception{
+		if (args.length < 2){
+			System.err.println("Usage: ColumnFileIngest <input directory> <output directory> [rows per block]");
+			System.exit(1);
+		}
+		Configuration conf = new Configuration();
+		Path input = new Path(args[0]);
+		Path output = new Path(args[1]);
+		int rowsPerBlock = args.length > 2 ? Integer.parseInt(args[2]) : ColumnFile.DEFAULT_ROWS_PER_BLOCK;
+		FileSystem inputSystem = input.getFileSystem(conf);
+		FileSystem outputSystem = output.getFileSystem(conf);
+		outputSystem.mkdirs(output);
+		for (FileStatus status: inputSystem.listStatus(input)){
+			String name = status.getPath().getName();
+			if (!name.endsWith(".gz")){
+				continue;
+			}
+			String base = name.substring(0, name.length() - 3);
+			if (base.endsWith(".csv")){
+				base = base.substring(0, base.length() - 4);
+			}
+			Path target = new Path(output, base + ColumnFile.EXTENSION);
+			long[] counts = ingest(inputSystem.open(status.getPath()), outputSystem.create(target, true), rowsPerBlock);
+			System.out.println(name + "\t" + target + "\trows=" + counts[0] + "\tskipped=" + counts[1]);
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/**
+ * @author: Abhijeet Sharma, Afan Ahmad Khan
+ * @version: 1.0
+ * InputFormat of the columnar flight files written by ColumnFileIngest. The
+ * files are split like any other file, the reader of a split seeks to the
+ * first sync marker at or after the start of the split and reads the blocks
+ * which start before its end. The values are csv records in the BTS layout,
+ * so the mappers of the gzipped csv files read them unchanged, the keys are
+ * the positions of the blocks.
+ * "columnfile.columns" limits the columns which are inflated, the others are
+ * read as empty fields. "columnfile.filter" (see FlightFilter) only reads the
+ * matching records, the files and blocks whose min and max cannot match are
+ * skipped without inflating them.
+ */
+import java.io.*;
+import java.util.*;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+public class ColumnFileInputFormat extends FileInputFormat<LongWritable, Text>{
+
+	// Configuration key of the comma separated names of the columns to read, all if not set
+	public static final String COLUMNS = "columnfile.columns";
+	// Configuration key of the filter of the records, all records if not set
+	public static final String FILTER = "columnfile.filter";
+
+	// Blocks read and skipped by the filter
+	public static enum Blocks{
+		READ, SKIPPED
+	}
+
+	// True if every file of the input directory is a columnar file
+	public static boolean isColumnar(Configuration conf, Path input) throws IOException{
+		FileSystem fileSystem = input.getFileSystem(conf);
+		boolean columnar = false;
+		for (FileStatus status: fileSystem.listStatus(input)){
+			String name = status.getPath().getName();
+			if (name.startsWith("_") || name.startsWith(".")){
+				continue;
+			}
+			if (!name.endsWith(ColumnFile.EXTENSION)){
+				return false;
+			}
+			columnar = true;
+		}
+		return columnar;
+	}
+
+	// Leaves out the files whose trailer shows that no record matches the filter
+	@Override
+	protected List<FileStatus> listStatus(JobContext job) throws IOException{
+		List<FileStatus> files = super.listStatus(job);
+		FlightFilter filter = FlightFilter.parse(job.getConfiguration().get(FILTER));
+		if (filter == null){
+			return files;
+		}
+		List<FileStatus> matching = new ArrayList<FileStatus>();
+		for (FileStatus status: files){
+			if (mayMatch(filter, status, job.getConfiguration())){
+				matching.add(status);
+			}
+		}
+		return matching;
+	}
+
+	// Tests the filter against the trailer of a file, only the header and the trailer are read
+	private static boolean mayMatch(FlightFilter filter, FileStatus status, Configuration conf) throws IOException{
+		FSDataInputStream fileIn = status.getPath().getFileSystem(conf).open(status.getPath());
+		try{
+			ColumnFile.Header header = ColumnFile.Header.read(new DataInputStream(fileIn));
+			fileIn.seek(status.getLen() - 4);
+			fileIn.seek(status.getLen() - ColumnFile.Stats.trailerSize(fileIn.readInt()));
+			DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn));
+			byte[] sync = new byte[ColumnFile.SYNC_SIZE];
+			in.readFully(sync);
+			if (!Arrays.equals(sync, header.getSync())){
+				throw new IOException("Missing trailer in " + status.getPath());
+			}
+			ColumnFile.Stats stats = ColumnFile.Stats.readTrailer(in, header.getColumns().length);
+			return filter.mayMatch(filter.bind(header.getColumns()), stats);
+		}
+		finally{
+			fileIn.close();
+		}
+	}
+
+	@Override
+	public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context){
+		return new ColumnFileRecordReader();
+	}
+
+	// Reader of the blocks of a split
+	public static class ColumnFileRecordReader extends RecordReader<LongWritable, Text>{
+		private FSDataInputStream fileIn;
+		private DataInputStream in;
+		private ColumnFile.Header header;
+		private ColumnFile.RowBuilder rows;
+		private FlightFilter filter;
+		// columns of the filter in the file
+		private int[] bound;
+		private final FlightRecord record = new FlightRecord();
+		// not the FileInputFormat.Counter enum
+		private org.apache.hadoop.mapreduce.Counter blocksRead;
+		private org.apache.hadoop.mapreduce.Counter blocksSkipped;
+		private long start;
+		private long end;
+		// position of the stream
+		private long position;
+		// true if the sync marker of the next block was already read by seekSync
+		private boolean synced;
+		private int rowsLeft;
+		private LongWritable key = new LongWritable();
+		private Text value = new Text();
+
+		@Override
+		public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException{
+			FileSplit split = (FileSplit) genericSplit;
+			Configuration conf = context.getConfiguration();
+			Path file = split.getPath();
+			fileIn = file.getFileSystem(conf).open(file);
+			header = ColumnFile.Header.read(new DataInputStream(fileIn));
+			filter = FlightFilter.parse(conf.get(FILTER));
+			String[] columns = conf.getTrimmedStrings(COLUMNS);
+			HashSet<String> wanted = null;
+			if (columns.length > 0){
+				wanted = new HashSet<String>(Arrays.asList(columns));
+				// the filter is tested on the built rows, so its columns are read too
+				if (filter != null){
+					wanted.addAll(Arrays.asList(filter.getColumns()));
+				}
+			}
+			rows = new ColumnFile.RowBuilder(header.getColumns(), wanted);
+			if (filter != null){
+				bound = filter.bind(header.getColumns());
+			}
+			blocksRead = context.getCounter(Blocks.READ);
+			blocksSkipped = context.getCounter(Blocks.SKIPPED);
+			end = split.getStart() + split.getLength();
+			start = Math.max(split.getStart(), header.size());
+			fileIn.seek(start);
+			position = start;
+			in = new DataInputStream(new BufferedInputStream(fileIn));
+			// the first split starts at the first block, the others look for the next sync marker
+			if (start > header.size()){
+				seekSync();
+			}
+		}
+
+		// Reads up to and including the first sync marker which starts at or after the start of the
+		// split, position is then the start of that marker(or end if it starts after the split)
+		private void seekSync() throws IOException{
+			byte[] sync = header.getSync();
+			byte[] window = new byte[ColumnFile.SYNC_SIZE];
+			int filled = 0;
+			// position is the start of the window, the marker may begin before the end of the 
+			// split and run past it
+			while (position < end){
+				int b = in.read();
+				if (b < 0){
+					break;
+				}
+				if (filled == window.length){
+					System.arraycopy(window, 1, window, 0, window.length - 1);
+					filled--;
+					position++;
+				}
+				window[filled++] = (byte) b;
+				if (filled == window.length && Arrays.equals(window, sync)){
+					synced = true;
+					return;
+				}
+			}
+			position = end;
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException{
+			while (true){
+				while (rowsLeft == 0){
+					if (!nextBlock()){
+						return false;
+					}
+				}
+				byte[] row = rows.next();
+				rowsLeft--;
+				if (filter != null){
+					record.reset(row, 0, rows.getLength());
+					if (!filter.matches(record)){
+						continue;
+					}
+				}
+				value.set(row, 0, rows.getLength());
+				return true;
+			}
+		}
+
+		// Reads the next block of the split which may hold matching records, false at the end of
+		// the split or the file
+		private boolean nextBlock() throws IOException{
+			while (position < end){
+				long blockStart = position;
+				if (!synced){
+					byte[] sync = new byte[ColumnFile.SYNC_SIZE];
+					try{
+						in.readFully(sync);
+					}
+					catch(EOFException e){
+						break;
+					}
+					if (!Arrays.equals(sync, header.getSync())){
+						throw new IOException("Missing sync marker at " + position);
+					}
+				}
+				synced = false;
+				ColumnFile.Block block = ColumnFile.Block.read(in, header.getColumns().length);
+				// the trailer follows the last block
+				if (block == null){
+					break;
+				}
+				position += ColumnFile.SYNC_SIZE + 4 + block.getSize();
+				if (filter != null && !filter.mayMatch(bound, block)){
+					blocksSkipped.increment(1);
+					continue;
+				}
+				blocksRead.increment(1);
+				key.set(blockStart);
+				rows.setBlock(block);
+				rowsLeft = block.getRows();
+				return true;
+			}
+			position = end;
+			return false;
+		}
+
+		@Override
+		public LongWritable getCurrentKey(){
+			return key;
+		}
+
+		@Override
+		public Text getCurrentValue(){
+			return value;
+		}
+
+		@Override
+		public float getProgress(){
+			if (end == start){
+				return 1.0f;
+			}
+			return Math.min(1.0f, (position - start) / (float) (end - start));
+		}
+
+		@Override
+		public void close() throws IOException{
+			if (fileIn != null){
+				fileIn.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,141 @@
+import java.io.PrintStream;
+
+/**
+ * Diagnostics counts the records a job rejects, per reason, and samples a
+ * few of them to a stream as one structured line each:
+ *	diagnostics	source=FileThread-1	reason=CRS_TIME_ZONE	count=3	record=...
+ * Every reason logs its first samples occurrences and after that only the
+ * occurrences whose count is a power of two, so a dirty month writes a few
+ * dozen lines instead of one per record. Counting is an array increment and
+ * with samples set to 0 nothing is ever formatted or written, which keeps
+ * the channel cheap enough to stay on.
+ * The callers ask count(reason) first and only build the sample when it
+ * returns true. An instance is not thread safe, every worker keeps its own
+ * and merges it at the end.
+ * @author Abhijeet, Afan
+ * @version 1.0
+ */
+public class Diagnostics {
+
+	/** system property / job configuration key of the samples per reason */
+	public static final String SAMPLES = "diagnostics.samples";
+
+	private final String source;
+	private final String[] reasons;
+	private final long[] counts;
+	private final int samples;
+	private final PrintStream out;
+
+	/**
+	 * Constructs a channel which only counts.
+	 * @param source name of the task, printed with every sample
+	 * @param reasons name of every reason id
+	 */
+	public Diagnostics(String source, String[] reasons) {
+		this(source, reasons, 0, System.err);
+	}
+
+	/**
+	 * Constructs a channel.
+	 * @param source name of the task, printed with every sample
+	 * @param reasons name of every reason id
+	 * @param samples samples logged per reason before the rate limit, 0 disables sampling
+	 * @param out stream the samples are written to
+	 */
+	public Diagnostics(String source, String[] reasons, int samples, PrintStream out) {
+		this.source = source;
+		this.reasons = reasons;
+		this.counts = new long[reasons.length];
+		this.samples = Math.max(samples, 0);
+		this.out = out;
+	}
+
+	/**
+	 * @return samples per reason read from the system property SAMPLES, 0 if not set
+	 */
+	public static int samplesFromProperty() {
+		return Integer.getInteger(SAMPLES, 0);
+	}
+
+	/**
+	 * @return true if samples are written
+	 */
+	public boolean isSampling() {
+		return samples > 0;
+	}
+
+	/**
+	 * Counts one rejected record.
+	 * @param reason reason id
+	 * @return true if the caller should pass the record to sample
+	 */
+	public boolean count(int reason) {
+		long count = ++counts[reason];
+		return samples > 0 && (count <= samples || (count & (count - 1)) == 0);
+	}
+
+	/**
+	 * Counts records in bulk, none of them is sampled.
+	 * @param reason reason id
+	 * @param count number of records
+	 */
+	public void count(int reason, long count) {
+		counts[reason] += count;
+	}
+
+	/**
+	 * Writes one sample of the reason, the record is only formatted here.
+	 * @param reason reason id
+	 * @param record rejected record or a description of it
+	 */
+	public void sample(int reason, Object record) {
+		out.println("diagnostics\tsource=" + source + "\treason=" + reasons[reason]
+				+ "\tcount=" + counts[reason] + "\trecord=" + record);
+	}
+
+	/**
+	 * @return number of reasons
+	 */
+	public int getReasonCount() {
+		return reasons.length;
+	}
+
+	/**
+	 * @param reason reason id
+	 * @return name of the reason
+	 */
+	public String getReason(int reason) {
+		return reasons[reason];
+	}
+
+	/**
+	 * @param reason reason id
+	 * @return number of records counted for the reason
+	 */
+	public long getCount(int reason) {
+		return counts[reason];
+	}
+
+	/**
+	 * Adds the counts of another channel with the same reasons.
+	 * @param other channel of another worker
+	 */
+	public void merge(Diagnostics other) {
+		for (int reason = 0; reason < counts.length; reason++) {
+			counts[reason] += other.counts[reason];
+		}
+	}
+
+	/**
+	 * Writes one line with the count of every reason which occurred.
+	 */
+	public void summary() {
+		StringBuilder line = new StringBuilder("diagnostics\tsource=").append(source);
+		for (int reason = 0; reason < counts.length; reason++) {
+			if (counts[reason] > 0) {
+				line.append('\t').append(reasons[reason]).append('=').append(counts[reason]);
+			}
+		}
+		out.println(line);
+	}
+}
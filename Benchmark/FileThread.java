@@ -2,47 +2,68 @@ import java.io.*;
 import java.util.*;
 import java.lang.*;
 import java.util.concurrent.*;
-import java.util.zip.GZIPInputStream;
-import com.csvreader.CsvReader;
 
 /**
  * @author Abhijeet Sharma
  * @version 1.0, 01/19/2016
- * Class for each thread submitted by Solution.java
+ * Class for each worker thread submitted by Solution.java
  */
 class FileThread implements Callable<FileThread>{
     private Thread t;
     private final String threadName;
 
-    private String fileName;
-    private HashMap<String, ArrayList<Double>> hm;
+    private BlockingQueue<LineBatch> queue;
+    private final String findMeanOrMedian;
+    private HashMap<String, PriceAggregate> hm;
     private Integer saneCounter;
     private Integer insaneCounter;
     private Integer corruptCounter; 
+    // headers of the current file, the record layout is resolved again when
+    // a batch of a new file arrives
+    private String[] headers;
+    // flyweight re-used for every record of every batch
+    private FlightRecord record;
+    // sanity rules, compiled for the layout of the current file
+    private SanityChecker checker;
+    // counts the rejected records per failed rule and samples some of them
+    private Diagnostics diagnostics;
+    // state of the carrier and month of the last sane record
+    private String lastCarrier;
+    private String lastMonth;
+    private PriceAggregate lastAggregate;
 
     /**
      * Constructor
-     * @param filename(threadname for thread) to be parsed.
+     * @param queue of line batches filled by BatchReader.
+     * @param threadName name of the worker thread.
+     * @param findMeanOrMedian "mean", "median" or "approx-median", decides 
+     *                          the per key state.
      * 
      */
-    public FileThread(String fileName){
-        this.threadName = fileName;
+    public FileThread(BlockingQueue<LineBatch> queue, String threadName,
+                                                    String findMeanOrMedian){
+        this.threadName = threadName;
         //System.out.println("Creating " + this.threadName);
-        this.fileName = fileName;
-        this.hm = new HashMap<String, ArrayList<Double>>();
+        this.queue = queue;
+        this.findMeanOrMedian = findMeanOrMedian;
+        this.hm = new HashMap<String, PriceAggregate>();
         this.saneCounter = 0;
         this.insaneCounter = 0;
-        this.corruptCounter = 1;
+        this.corruptCounter = 0;
+        this.record = new FlightRecord();
+        this.checker = new SanityChecker(SanityChecker.SOLUTION);
+        this.diagnostics = new Diagnostics(threadName, SanityChecker.RULE_NAMES,
+                                    Diagnostics.samplesFromProperty(), System.err);
     }
     
     /**
-     * getFileName
-     * getter method for retrieving filename.
+     * getThreadName
+     * getter method for retrieving thread name.
      *
-     * @return  String filename.
+     * @return  String thread name.
      */
-    public String getFileName(){
-        return this.fileName;
+    public String getThreadName(){
+        return this.threadName;
     }
     
     /**
@@ -51,26 +72,79 @@ class FileThread implements Callable<FileThread>{
      *
      * @return  price hashmap.
      */
-    public HashMap<String, ArrayList<Double>> getPriceHashMap(){
+    public HashMap<String, PriceAggregate> getPriceHashMap(){
         return this.hm;
     }
     
     /**
-     * updateHashMap
-     * setter method for updating price hashmap.
+     * getPriceAggregate
+     * returns the state of the carrier and month of a sane record. Records 
+     * mostly come grouped by carrier and month, so the last carrier and month
+     * are compared on the record bytes first and a key is only built when 
+     * they change.
+     *
+     * @params  FlightRecord holding the csv record.
+     * @return  PriceAggregate of the carrier and month.
+     */
+    private PriceAggregate getPriceAggregate(FlightRecord flight){
+        if (this.lastAggregate != null 
+                && flight.fieldEquals(FlightRecord.CARRIER, this.lastCarrier)
+                && flight.fieldEquals(FlightRecord.MONTH, this.lastMonth)){
+            return this.lastAggregate;
+        }
+        this.lastCarrier = flight.getString(FlightRecord.CARRIER);
+        this.lastMonth = flight.getString(FlightRecord.MONTH);
+        String carrierAndMonth = this.lastCarrier.concat(this.lastMonth);
+        PriceAggregate priceAggregate = this.hm.get(carrierAndMonth);
+        if (priceAggregate == null){
+            priceAggregate = this.newPriceAggregate();
+            this.hm.put(carrierAndMonth, priceAggregate);    
+        }
+        this.lastAggregate = priceAggregate;
+        return priceAggregate;
+    }
+
+    /**
+     * newPriceAggregate
+     * creates the per key state for the requested statistic. The mean only 
+     * needs a running sum and count, the approximate median a fixed size 
+     * sketch and the exact median all prices.
+     *
+     * @return  empty PriceAggregate object.
      */
-    public void updateHashMap(String carrierAndMonth, Double avgTicketPrice) 
-                            throws IOException{
-        if (this.hm.containsKey(carrierAndMonth)){
-            this.hm.get(carrierAndMonth).add(avgTicketPrice);
+    public PriceAggregate newPriceAggregate(){
+        return newPriceAggregate(this.findMeanOrMedian);
+    }
+
+    /**
+     * newPriceAggregate
+     * creates the per key state of the given statistic, also used by
+     * Checkpoint to read the persisted partials.
+     *
+     * @param   findMeanOrMedian "mean", "median" or "approx-median".
+     * @return  empty PriceAggregate object.
+     */
+    public static PriceAggregate newPriceAggregate(String findMeanOrMedian){
+        if (findMeanOrMedian.equals("mean")){
+            return new MeanAccumulator();
         }
-        else{
-            ArrayList<Double> priceList = new ArrayList<Double>();
-            priceList.add(avgTicketPrice);
-            this.hm.put(carrierAndMonth, priceList);    
+        else if (findMeanOrMedian.equals("approx-median")){
+            return new QuantileSketch(QuantileSketch.ACCURACY);
         }
+        return new PriceAccumulator();
     }
     
+    /**
+     * getDiagnostics
+     * getter method for retrieving the counts of the rejected records per 
+     * failed sanity rule.
+     *
+     * @return  Diagnostics object.
+     */
+    public Diagnostics getDiagnostics(){
+        return this.diagnostics;
+    }
+
     /**
      * getSaneCounter
      * getter method for retrieving counter for records passing sanity check.
@@ -122,8 +196,9 @@ class FileThread implements Callable<FileThread>{
     /**
      * call
      * overrides Callable.call method
-     * reads the given gzipped file, checks all records for format and sanity 
-     * check and maintains a hashmap of average ticket price.
+     * takes batches of records from the queue until LineBatch.END is seen, 
+     * checks all records for format and sanity check and maintains a hashmap 
+     * of average ticket price.
      *
      * @return  FileThread object.
      */
@@ -131,320 +206,73 @@ class FileThread implements Callable<FileThread>{
     public FileThread call(){
         try{
             //System.out.println("Running " + this.threadName);
-            String file = this.getFileName(); 
-            //System.out.println("FILE NAME "+ file);
-            FileInputStream fis = new FileInputStream(file);
-            GZIPInputStream gis = new GZIPInputStream(fis);
-            InputStreamReader isr = new InputStreamReader(gis);
-            BufferedReader br = new BufferedReader(isr);
-            CsvReader field = new CsvReader(br);
-
-            Integer rowNum = 0;
-            
-            //Fetch Headers
-            field.readHeaders();
+            LineBatch batch = this.queue.take();
+            while (batch != LineBatch.END){
+                // header row of every file counts as incorrect format
+                if (batch.isFirstOfFile()){
+                    this.updateCorruptCounter();
+                }
+                this.setHeaders(batch.getHeaders());
+                byte[] data = batch.getData();
+                int length = batch.getLength();
 
-            //Read CSV record-wise
-            while (field.readRecord()) {
-                rowNum += 1;
-                FlightInfo flightInfo = this.getFlightInfo(field, rowNum);
-                Integer code = this.isSane(flightInfo);
-                if (code.equals(0)){
-                    this.updateSaneCounter();
-                        if (flightInfo.getAvgTicketPrice() != ""){
-                            this.updateHashMap(flightInfo.getCarrier().concat(flightInfo.getMonth()), 
-                            		Double.parseDouble(flightInfo.getAvgTicketPrice()));
+                //Read CSV record-wise, one record per line
+                int start = 0;
+                while (start < length){
+                    int end = start;
+                    while (end < length && data[end] != '\n'){
+                        end++;
+                    }
+                    int offset = start;
+                    this.record.reset(data, offset, end - offset);
+                    start = end + 1;
+                    // empty lines are not records
+                    CsvTokenizer fields = this.record.getTokenizer();
+                    if (fields.getFieldCount() == 1 && fields.isEmpty(0)){
+                        continue;
+                    }
+                    int code = this.checker.check(this.record);
+                    if (code == SanityChecker.SANE){
+                        this.updateSaneCounter();
+                        if (!this.record.isEmpty(FlightRecord.AVG_TICKET_PRICE)){
+                            this.getPriceAggregate(this.record).add(
+                                    this.record.getDouble(FlightRecord.AVG_TICKET_PRICE));
                         }
+                    }
+                    else{
+                        if (code == SanityChecker.INSANE){
+                            this.updateInsaneCounter();    
+                        }
+                        else{
+                            this.updateCorruptCounter();
+                        }
+                        int rule = this.checker.getFailedRule();
+                        if (this.diagnostics.count(rule)){
+                            this.diagnostics.sample(rule, new String(data, offset, end - offset));
+                        }
+                    }
                 }
-                else if (code.equals(1)){
-                    this.updateInsaneCounter();    
-                }
-                else{
-                    this.updateCorruptCounter();
-                }
+                batch = this.queue.take();
             }
-            Thread.sleep(50);
         }
         catch(InterruptedException e){
             System.out.println("Thread " + this.threadName + " interrupted.");
         }
-        catch(FileNotFoundException ef){
-            System.out.println(ef.getClass().getName() + "\n" + ef.getMessage());
-        }
-        catch(IOException e){
-            System.out.println(e.getClass().getName() + "\n" + e.getMessage());
-        }
         //System.out.println("Thread " + this.threadName + " exiting.");
         return this;
     }
     
     /**
-     * getFlightInfo
-     * retrieves the Flight records from the given object and stores in another 
-     * object.
-     *
-     * @params  CSVReader object a field of csv data.
-     * @params  Integer rownumber of field.
-     * @return  FlightInfo object.
-     */
-    public FlightInfo getFlightInfo(CsvReader field, Integer rowNum) 
-                    throws IOException{
-        FlightInfo flightInfo = new FlightInfo();
-        flightInfo.setRowNum(rowNum);
-        flightInfo.setCrsArrTime(field.get("CRS_ARR_TIME"));
-        flightInfo.setCrsDepTime(field.get("CRS_DEP_TIME"));
-        flightInfo.setCrsElapsedTime(field.get("CRS_ELAPSED_TIME"));
-        flightInfo.setOriginAirportID(field.get("ORIGIN_AIRPORT_ID"));
-        flightInfo.setOriginAirportSeqID(field.get("ORIGIN_AIRPORT_SEQ_ID"));
-        flightInfo.setOriginCityMarketID(field.get("ORIGIN_CITY_MARKET_ID"));
-        flightInfo.setOriginStateFips(field.get("ORIGIN_STATE_FIPS"));
-        flightInfo.setOriginWAC(field.get("ORIGIN_WAC"));
-        flightInfo.setDestAirportID(field.get("DEST_AIRPORT_ID"));
-        flightInfo.setDestAirportSeqID(field.get("DEST_AIRPORT_SEQ_ID"));
-        flightInfo.setDestCityMarketID(field.get("DEST_CITY_MARKET_ID"));
-        flightInfo.setDestStateFips(field.get("DEST_STATE_FIPS"));
-        flightInfo.setDestWAC(field.get("DEST_WAC"));
-        flightInfo.setOrigin(field.get("ORIGIN"));
-        flightInfo.setOriginCityName(field.get("ORIGIN_CITY_NAME"));
-        flightInfo.setOriginStateABR(field.get("ORIGIN_STATE_ABR"));
-        flightInfo.setOriginStateNM(field.get("ORIGIN_STATE_NM"));
-        flightInfo.setDest(field.get("DEST"));
-        flightInfo.setDestCityName(field.get("DEST_CITY_NAME"));
-        flightInfo.setDestStateABR(field.get("DEST_STATE_ABR"));
-        flightInfo.setDestStateNM(field.get("DEST_STATE_NM"));
-        flightInfo.setArrTime(field.get("ARR_TIME"));
-        flightInfo.setDepTime(field.get("DEP_TIME"));
-        flightInfo.setActualElapsedTime(field.get("ACTUAL_ELAPSED_TIME"));
-        flightInfo.setArrDelay(field.get("ARR_DELAY"));
-        flightInfo.setArrDelayMinutes(field.get("ARR_DELAY_NEW"));
-        flightInfo.setArrDel15(field.get("ARR_DEL15"));
-        flightInfo.setCarrier(field.get("CARRIER"));
-        flightInfo.setCancelled(field.get("CANCELLED"));
-        flightInfo.setAvgTicketPrice(field.get("AVG_TICKET_PRICE"));
-        flightInfo.setMonth(field.get("MONTH"));
-        flightInfo.setQuarter(field.get("QUARTER"));
-        flightInfo.setYear(field.get("YEAR"));
-
-        return flightInfo;
-    }
-    
-    /**
-     * isSane
-     * sanity check for flight data and returns sanity check code.
-     * code 0 -> sanity passed
-     * code 1 -> sanity failed
-     * code 2 -> incorrect format
-     * The sanity test is:
-     * CRSArrTime and CRSDepTime should not be zero
-     * timeZone = CRSArrTime - CRSDepTime - CRSElapsedTime;
-     * timeZone % 60 should be 0
-     * AirportID,  AirportSeqID, CityMarketID, StateFips, Wac should be larger than 0
-     * Origin, Destination,  CityName, State, StateName should not be empty
-     * For flights that not Cancelled:
-     * ArrTime -  DepTime - ActualElapsedTime - timeZone should be zero
-     * if ArrDelay > 0 then ArrDelay should equal to ArrDelayMinutes
-     * if ArrDelay < 0 then ArrDelayMinutes should be zero
-     * if ArrDelayMinutes >= 15 then ArrDel15 should be true
-     *
-     * @params  FlightInfo object containing flight information.
-     * @return  Integer sanity check code.
+     * setHeaders
+     * resolves the columns against the header of a file, only done again 
+     * when the batch belongs to another file.
      *
+     * @params  String array of column names.
      */
-    public Integer isSane(FlightInfo flightInfo){
-
-        // for debugging purposes
-        String issue = "";
-        try{
-            Integer crsArrTime = Integer.parseInt(flightInfo.getCrsArrTime());
-            Integer crsDepTime = Integer.parseInt(flightInfo.getCrsDepTime());
-            Integer crsElapsedTime = Integer.parseInt(flightInfo.getCrsElapsedTime());
-            // crsArrTime and CRSDepTime should not be zero
-            if (crsArrTime != 0 && crsDepTime != 0){
-                Integer crsArrTimeHour = crsArrTime / 100;
-                Integer crsDepTimeHour = crsDepTime / 100;
-                Integer crsArrTimeMin = crsArrTime % 100;
-                Integer crsDepTimeMin = crsDepTime % 100;
-                Integer crsHourDiff;
-                if (crsArrTimeHour > crsDepTimeHour){
-                    crsHourDiff = crsArrTimeHour - crsDepTimeHour;
-                }
-                else if (crsArrTimeHour == crsDepTimeHour){
-                    if(crsArrTimeMin > crsDepTimeMin){
-                        crsHourDiff = crsArrTimeHour - crsDepTimeHour;    
-                    }
-                    else{
-                        crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour;                               
-                    }
-                }
-                else{
-                    crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour;
-                }                
-                // timeZone = crsArrTimeMin - crsDepTimeMin - crsElapsedTime;              
-                Integer timeZone = ((crsHourDiff * 60) + (crsArrTimeMin - crsDepTimeMin)) - crsElapsedTime;
-                // timeZone % 60 should be 0
-                if (timeZone % 60 == 0){
-                    Integer originAirportID = Integer.parseInt(flightInfo.getOriginAirportID());
-                    Integer originAirportSeqID = Integer.parseInt(flightInfo.getOriginAirportSeqID());
-                    Integer originCityMarketID = Integer.parseInt(flightInfo.getOriginCityMarketID());
-                    Integer originStateFips = Integer.parseInt(flightInfo.getOriginStateFips());
-                    Integer originWAC = Integer.parseInt(flightInfo.getOriginWAC());
-                    Integer destAirportID = Integer.parseInt(flightInfo.getDestAirportID());
-                    Integer destAirportSeqID = Integer.parseInt(flightInfo.getDestAirportSeqID());
-                    Integer destCityMarketID = Integer.parseInt(flightInfo.getDestCityMarketID());
-                    Integer destStateFips = Integer.parseInt(flightInfo.getDestStateFips());
-                    Integer destWAC = Integer.parseInt(flightInfo.getDestWAC());
-                    // AirportID,  AirportSeqID, CityMarketID, StateFips, Wac 
-                    // should be larger than 0
-                    if ((originAirportID > 0) && (originAirportSeqID > 0) && 
-                        (originCityMarketID > 0) && (originStateFips > 0) && 
-                        (originWAC > 0) && (destAirportID > 0) && 
-                        (destAirportSeqID > 0) && (destCityMarketID > 0) && 
-                        (destStateFips > 0) && (destWAC > 0)){                
-                        String origin = flightInfo.getOrigin();
-                        String originCityName = flightInfo.getOriginCityName();
-                        String originStateABR = flightInfo.getOriginStateABR();
-                        String originStateNM = flightInfo.getOriginStateNM();
-                        String dest = flightInfo.getDest();
-                        String destCityName = flightInfo.getDestCityName();
-                        String destStateABR = flightInfo.getDestStateABR();
-                        String destStateNM = flightInfo.getDestStateNM();
-                        // Origin, Destination,  CityName, State, StateName 
-                        // should not be empty
-                        if (!origin.equals("") && !originCityName.equals("") && 
-                            !originStateABR.equals("") && !originStateNM.equals("") && 
-                            !dest.equals("") && !destCityName.equals("") && 
-                            !destStateABR.equals("") && !destStateNM.equals("")){                            
-                            Integer cancelled = Integer.parseInt(flightInfo.getCancelled());
-                            // For flights that are not Cancelled(1 = yes)
-                            if(cancelled.equals(0)){
-                                Integer arrTime = Integer.parseInt(flightInfo.getArrTime());
-                                Integer depTime = Integer.parseInt(flightInfo.getDepTime());
-                                Integer arrTimeHour = arrTime / 100;
-                                Integer depTimeHour = depTime / 100;
-                                Integer arrTimeMin = arrTime % 100;
-                                Integer depTimeMin = depTime % 100;                                
-                                Integer actualElapsedTime = Integer.parseInt(flightInfo.getActualElapsedTime());
-                                Integer hourDiff;
-
-                                if (arrTimeHour > depTimeHour){
-                                    hourDiff = arrTimeHour - depTimeHour;
-                                }
-                                else if (arrTimeHour == depTimeHour){
-                                    if(arrTimeMin > depTimeMin){
-                                        hourDiff = arrTimeHour - depTimeHour;    
-                                    }
-                                    else{
-                                        hourDiff = (24 - depTimeHour) + arrTimeHour;       
-                                    }
-                                }
-                                else{
-                                    hourDiff = (24 - depTimeHour) + arrTimeHour;   
-                                }
-                                Integer tempVal = ((hourDiff * 60) + (arrTimeMin - depTimeMin)) - 
-                                                    actualElapsedTime - timeZone;
-                                
-                                //arrTime -  depTime - actualElapsedTime - timeZone should be zero
-                                if (tempVal == 0){
-                                    Integer arrDelay = (int)Double.parseDouble(flightInfo.getArrDelay());
-                                    Integer arrDelayMinutes = (int)Double.parseDouble(flightInfo.getArrDelayMinutes());
-                                    Integer arrDel15 = (int)Double.parseDouble(flightInfo.getArrDel15());
-                                    // if ArrDelay > 0 then ArrDelay should be 
-                                    // equal to ArrDelayMinutes
-                                    if (arrDelay > 0){                                        
-                                        if (arrDelay.equals(arrDelayMinutes)){
-                                            // end of sanity check for flights that are not cancelled and
-                                            // arrDelay > 0 and arrDelay == arrDelayMinutes .
-                                            return 0;   
-                                        }
-                                    }
-                                    // if ArrDelay < 0 then ArrDelayMinutes 
-                                    // should be zero
-                                    else if(arrDelay < 0){
-                                        if (arrDelayMinutes.equals(0)){
-                                            // end of sanity check for flights that are not cancelled and
-                                            // arrDelay < 0 and arrDelayMinutes equals zero.
-                                            return 0;
-                                        }
-                                    }
-                                    // if ArrDelayMinutes >= 15 then 
-                                    // ArrDel15 should be 1(true)
-                                    if (arrDelayMinutes >= 15){
-                                        if (arrDel15.equals(1)){
-                                            // end of sanity check for flights that are not cancelled and
-                                            // arrDelayMinute >= 15 and arrDel15 == 1.
-                                            return 0;
-                                        }
-                                    }
-                                    else{
-                                        // end of sanity check for flights that are not cancelled and
-                                        // arrDelayMinute < 15.
-                                        return 0;
-                                    }
-                                }
-                                else{
-                                    System.out.format("arrTime: %d ", arrTime);
-                                    System.out.format("arrTimeHour: %d ", arrTimeHour);
-                                    System.out.format("arrTimeMin: %d\n", arrTimeMin);
-                                    
-                                    System.out.format("depTime: %d ", depTime);
-                                    System.out.format("depTimeHour: %d ", depTimeHour);
-                                    System.out.format("depTimeMin: %d\n", depTimeMin);
-                                    System.out.format("hourDiff: %d\n", hourDiff);
-
-                                    System.out.format("actualElapsedTime: %d ", actualElapsedTime);
-                                    System.out.format("timeZone: %d ", timeZone);
-                                    System.out.format("tempVal: %d\n", tempVal);
-                                    
-                                    System.out.format("crsarrTime: %d ", crsArrTime);
-                                    System.out.format("crsArrTimeHour: %d ", crsArrTimeHour);
-                                    System.out.format("crsArrTimeMin: %d\n", crsArrTimeMin);
-                                    
-                                    System.out.format("crsDepTime: %d ", crsDepTime);
-                                    System.out.format("crsDepTimeHour: %d ", crsDepTimeHour);
-                                    System.out.format("crsDepTimeMin: %d\n", crsDepTimeMin);
-                                    
-                                    System.out.format("crsHourDiff: %d\n",crsHourDiff);
-                                    System.out.format("crsElapsedTime: %d\n", crsElapsedTime);
-
-                                    issue = "arrTime - depTime - actualElapsedTime - timeZone is " +
-                                            "not equal to zero";
-                                }                                    
-                            }
-                            else{
-                                // end of sanity check for flights not cancelled.
-                                return 0;
-                            }
-                        }
-                        else{
-                            issue = "Origin, Destination,  CityName, State or StateName is empty";
-                        }
-                    }
-                    else{
-                        issue = "AirportID,  AirportSeqID, CityMarketID, StateFips or Wac " +
-                                "is not larger than zero";    
-                    }
-                }
-                else{
-                    System.out.println("crsArrTime: " + crsArrTime);
-                    System.out.println("crsDepTime" + crsDepTime);
-                    System.out.println("crsElapsedTime" + crsElapsedTime);
-                    issue = "timeZone % 60 is not zero";
-                }
-            }
-            else{
-                issue = "crsArrTime or CRSDepTime is zero";
-            }
-        }
-        catch(NumberFormatException e){
-            //System.out.println(e.getClass().getName() + "\n" + e.getMessage());
-            return 2;
-        }
-        catch(Exception e){
-            //System.out.format("Exception detected for Field no: %d.\n%s\nExiting with code: 0..\n", fieldNo, e);
-            //System.out.format("Issue: %s", issue);
-            return 2;
+    public void setHeaders(String[] headers){
+        if (headers != this.headers){
+            this.headers = headers;
+            this.record.setLayout(FlightRecord.layoutOf(headers));
         }
-        System.out.println("Issue: " + issue);
-        return 1;
     }
-}
\ No newline at end of file
+}
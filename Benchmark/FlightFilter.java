@@ -0,0 +1,121 @@
+/**
+ * @author: Abhijeet Sharma, Afan Ahmad Khan
+ * @version: 1.0
+ * Filter of the flight records on ranges of integer columns, e.g.
+ * "YEAR=2015,MONTH=1" or "YEAR=2014..2015,MONTH=1..3". A record matches if
+ * every column is an integer within its range. The readers of the columnar
+ * files test the filter against the min and max of a file or block first and
+ * skip the files and blocks which cannot hold a matching record.
+ */
+import java.util.*;
+
+public class FlightFilter{
+
+	// FlightRecord column ids and the inclusive bounds of their ranges
+	private final int[] ids;
+	private final long[] mins;
+	private final long[] maxs;
+
+	private FlightFilter(int[] ids, long[] mins, long[] maxs){
+		this.ids = ids;
+		this.mins = mins;
+		this.maxs = maxs;
+	}
+
+	/**
+	 * Parses a filter.
+	 * @param spec comma separated COLUMN=value or COLUMN=min..max ranges
+	 * @return the filter, null if spec is null or empty
+	 * @throws IllegalArgumentException for unknown columns and values which are not integers
+	 */
+	public static FlightFilter parse(String spec){
+		if (spec == null || spec.trim().isEmpty()){
+			return null;
+		}
+		String[] ranges = spec.split(",");
+		int[] ids = new int[ranges.length];
+		long[] mins = new long[ranges.length];
+		long[] maxs = new long[ranges.length];
+		List<String> names = Arrays.asList(FlightRecord.NAMES);
+		for (int i = 0; i < ranges.length; i++){
+			String[] range = ranges[i].trim().split("=");
+			if (range.length != 2){
+				throw new IllegalArgumentException("Filter range is not COLUMN=min..max: " + ranges[i]);
+			}
+			ids[i] = names.indexOf(range[0].trim());
+			if (ids[i] < 0){
+				throw new IllegalArgumentException("Unknown filter column: " + range[0]);
+			}
+			String[] bounds = range[1].trim().split("\\.\\.");
+			try{
+				mins[i] = Long.parseLong(bounds[0].trim());
+				maxs[i] = bounds.length > 1 ? Long.parseLong(bounds[1].trim()) : mins[i];
+			}
+			catch(NumberFormatException e){
+				throw new IllegalArgumentException("Filter bounds are not integers: " + ranges[i]);
+			}
+		}
+		return new FlightFilter(ids, mins, maxs);
+	}
+
+	// Names of the filtered columns
+	public String[] getColumns(){
+		String[] columns = new String[ids.length];
+		for (int i = 0; i < ids.length; i++){
+			columns[i] = FlightRecord.NAMES[ids[i]];
+		}
+		return columns;
+	}
+
+	// True if every filtered column of the record is an integer within its range
+	public boolean matches(FlightRecord record){
+		for (int i = 0; i < ids.length; i++){
+			if (record.isEmpty(ids[i])){
+				return false;
+			}
+			try{
+				int value = record.getInt(ids[i]);
+				if (value < mins[i] || value > maxs[i]){
+					return false;
+				}
+			}
+			catch(NumberFormatException e){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the filtered columns in the columns of a file.
+	 * @param columns column names of the file
+	 * @return index of the column of every range in the file, -1 if the file does not have it
+	 */
+	public int[] bind(String[] columns){
+		int[] layout = FlightRecord.layoutOf(columns);
+		int[] bound = new int[ids.length];
+		for (int i = 0; i < ids.length; i++){
+			bound[i] = layout[ids[i]];
+		}
+		return bound;
+	}
+
+	/**
+	 * Tests the filter against the min and max of a file or block.
+	 * @param bound columns of the ranges, from bind
+	 * @param stats statistics of the file or block
+	 * @return false if no record of the file or block can match
+	 */
+	public boolean mayMatch(int[] bound, ColumnFile.Stats stats){
+		for (int i = 0; i < bound.length; i++){
+			// a missing column is empty in every record
+			if (bound[i] < 0){
+				return false;
+			}
+			if (stats.hasStats(bound[i]) && (stats.getMax(bound[i]) < mins[i] || stats.getMin(bound[i]) > maxs[i])){
+				return false;
+			}
+		}
+		return true;
+	}
+}
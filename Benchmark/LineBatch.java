@@ -0,0 +1,40 @@
+/**
+ * Batch of consecutive csv records of one file, passed from BatchReader to
+ * the FileThread workers. The records are the raw bytes data[0, length), 
+ * separated by line breaks.
+ */
+class LineBatch{
+    static final LineBatch END = new LineBatch(null, null, 0, false);
+
+    private String[] headers;
+    private byte[] data;
+    private int length;
+    private boolean firstOfFile;
+
+    /**
+     * Constructor
+     * @param headers column names of the file.
+     * @param data bytes of the newline separated csv records.
+     * @param length number of valid bytes in data.
+     * @param firstOfFile true for the first batch of a file.
+     *
+     */
+    LineBatch(String[] headers, byte[] data, int length, boolean firstOfFile){
+        this.headers = headers;
+        this.data = data;
+        this.length = length;
+        this.firstOfFile = firstOfFile;
+    }
+    public String[] getHeaders(){
+        return this.headers;
+    }
+    public byte[] getData(){
+        return this.data;
+    }
+    public int getLength(){
+        return this.length;
+    }
+    public boolean isFirstOfFile(){
+        return this.firstOfFile;
+    }
+}
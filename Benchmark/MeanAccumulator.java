@@ -0,0 +1,119 @@
+import java.io.*;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * Running mean of ticket prices for one carrier and month. Only the sum, the 
+ * count and the Kahan compensation are kept, so the mean mode never stores 
+ * the prices themselves.
+ */
+class MeanAccumulator implements PriceAggregate{
+    private double sum;
+    private double compensation;
+    private long count;
+
+    /**
+     * Constructor
+     * creates an empty accumulator.
+     *
+     */
+    public MeanAccumulator(){
+        this.sum = 0.0;
+        this.compensation = 0.0;
+        this.count = 0;
+    }
+
+    /**
+     * add
+     * adds a price to the running sum.
+     *
+     * @param   price average ticket price.
+     */
+    @Override
+    public void add(double price){
+        this.addToSum(price);
+        this.count += 1;
+    }
+
+    /**
+     * merge
+     * adds the sum and count of another MeanAccumulator.
+     *
+     * @param   other MeanAccumulator to be merged into this one.
+     */
+    @Override
+    public void merge(PriceAggregate other){
+        MeanAccumulator mean = (MeanAccumulator) other;
+        this.addToSum(mean.sum);
+        this.addToSum(-mean.compensation);
+        this.count += mean.count;
+    }
+
+    /**
+     * addToSum
+     * Kahan summation step, keeps the low order bits lost by sum in 
+     * compensation.
+     *
+     * @param   value value to be added.
+     */
+    private void addToSum(double value){
+        double y = value - this.compensation;
+        double t = this.sum + y;
+        this.compensation = (t - this.sum) - y;
+        this.sum = t;
+    }
+
+    /**
+     * getSum
+     * @return  compensated sum of all added prices.
+     */
+    public double getSum(){
+        return this.sum - this.compensation;
+    }
+
+    /**
+     * getCount
+     * @return  number of prices added.
+     */
+    public long getCount(){
+        return this.count;
+    }
+
+    /**
+     * write
+     * serializes the sum, compensation and count.
+     *
+     * @param   out DataOutput object.
+     */
+    @Override
+    public void write(DataOutput out) throws IOException{
+        out.writeDouble(this.sum);
+        out.writeDouble(this.compensation);
+        out.writeLong(this.count);
+    }
+
+    /**
+     * readFields
+     * deserializes an accumulator written by write, replacing this one.
+     *
+     * @param   in DataInput object.
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException{
+        this.sum = in.readDouble();
+        this.compensation = in.readDouble();
+        this.count = in.readLong();
+    }
+
+    /**
+     * getPrice
+     * @return  mean of all added prices, 0.0 if none were added.
+     */
+    @Override
+    public Double getPrice(){
+        if (this.count == 0){
+            return 0.0;
+        }
+        return this.getSum() / this.count;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * Exact median of an array of prices using QuickSelect, shared by the local
+ * median mode(PriceAccumulator) and CarrierCount.FastMedianReducer.
+ * QuickSelect only partitions the side of the array holding the median
+ * instead of sorting the whole array, so it runs in expected linear time.
+ */
+public class MedianFinder{
+
+    /**
+     * median
+     * returns the median of the first size values of the given array. For an
+     * even number of values the mean of the two middle values is returned.
+     * The array is reordered in place.
+     *
+     * @param   values array of prices.
+     * @param   size number of valid values in the array.
+     * @return  median of the values, 0.0 if size is 0.
+     */
+    public static double median(double[] values, int size){
+        if (size == 0){
+            return 0.0;
+        }
+        if (size % 2 == 1){
+            return select(values, size, size / 2);
+        }
+        // after selecting the lower middle value everything on its right is
+        // greater or equal, so the upper middle value is their minimum
+        int k = size / 2 - 1;
+        double lower = select(values, size, k);
+        double upper = values[k + 1];
+        for (int i = k + 2; i < size; i++){
+            if (values[i] < upper){
+                upper = values[i];
+            }
+        }
+        return (lower + upper) / 2.0;
+    }
+
+    /**
+     * select
+     * returns the k-th smallest(0 based) of the first size values. On return
+     * values left of k are less or equal and values right of k are greater or
+     * equal to values[k].
+     *
+     * @param   values array of prices.
+     * @param   size number of valid values in the array.
+     * @param   k 0 based rank of the wanted value.
+     * @return  k-th smallest value.
+     */
+    public static double select(double[] values, int size, int k){
+        if (k < 0 || k >= size){
+            throw new IndexOutOfBoundsException("Rank: " + k + ", Size: " + size);
+        }
+        int left = 0;
+        int right = size - 1;
+        while (left < right){
+            double pivot = medianOfThree(values[left], values[(left + right) >>> 1],
+                                                                    values[right]);
+            int lower = left;
+            int higher = right;
+            // Hoare partition: [left, higher] <= pivot, [lower, right] >= pivot
+            while (lower <= higher){
+                while (values[lower] < pivot){
+                    lower++;
+                }
+                while (values[higher] > pivot){
+                    higher--;
+                }
+                if (lower <= higher){
+                    double tempValue = values[lower];
+                    values[lower] = values[higher];
+                    values[higher] = tempValue;
+                    lower++;
+                    higher--;
+                }
+            }
+            if (k <= higher){
+                right = higher;
+            }
+            else if (k >= lower){
+                left = lower;
+            }
+            else{
+                // values between higher and lower are equal to the pivot
+                return values[k];
+            }
+        }
+        return values[k];
+    }
+
+    /**
+     * medianOfThree
+     * pivot choice which avoids the quadratic case on sorted input.
+     */
+    private static double medianOfThree(double a, double b, double c){
+        if (a < b){
+            if (b < c){
+                return b;
+            }
+            return a < c ? c : a;
+        }
+        if (a < c){
+            return a;
+        }
+        return b < c ? c : b;
+    }
+}
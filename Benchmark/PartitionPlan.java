@@ -0,0 +1,211 @@
+/**
+ * @author: Abhijeet Sharma, Afan Ahmad Khan
+ * @version: 1.0
+ * The partition plan of the CarrierCount median job. A carrier and month which
+ * holds more prices than an average reducer would get is split into price range
+ * slices, and every slice is sent to its own reducer. The plan is built by the
+ * driver from a sample of the input, before the job is submitted, and passed to
+ * the tasks in the job configuration as "carrier;month;bound,bound ..." entries.
+ * Keys which are not in the plan have a single slice.
+ */
+import java.io.IOException;
+import java.util.*;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.apache.hadoop.util.ReflectionUtils;
+
+public class PartitionPlan{
+
+	// Configuration key of the plan
+	public static final String PLAN = "carriercount.partition.plan";
+	// Configuration keys of the sample - number of prices, number of splits read and the
+	// probability with which a record of a split is considered for the sample
+	public static final String SAMPLE_RECORDS = "carriercount.sample.records";
+	public static final String SAMPLE_SPLITS = "carriercount.sample.splits";
+	public static final String SAMPLE_FREQUENCY = "carriercount.sample.frequency";
+	public static final int DEFAULT_SAMPLE_RECORDS = 10000;
+	public static final int DEFAULT_SAMPLE_SPLITS = 10;
+	public static final float DEFAULT_SAMPLE_FREQUENCY = 0.05f;
+
+	// Bounds of a key which is not split
+	private static final double[] NONE = new double[0];
+
+	// Map of carrier code and month to the lower price bounds of their slices 1..n
+	private final HashMap<String, double[]> boundsMap = new HashMap<String, double[]>();
+
+	// Reads the plan of the job configuration, an empty plan if there is none
+	public static PartitionPlan fromConfiguration(Configuration conf){
+		PartitionPlan plan = new PartitionPlan();
+		for (String entry: conf.get(PLAN, "").split(" ")){
+			if (entry.isEmpty()){
+				continue;
+			}
+			String[] fields = entry.split(";");
+			String[] values = fields[2].split(",");
+			double[] bounds = new double[values.length];
+			for (int i = 0; i < values.length; i++){
+				bounds[i] = Double.parseDouble(values[i]);
+			}
+			plan.boundsMap.put(fields[0] + ";" + fields[1], bounds);
+		}
+		return plan;
+	}
+
+	// Writes the plan to the job configuration
+	public void write(Configuration conf){
+		StringBuilder entries = new StringBuilder();
+		for (Map.Entry<String, double[]> entry: boundsMap.entrySet()){
+			entries.append(entries.length() == 0 ? "" : " ").append(entry.getKey()).append(';');
+			double[] bounds = entry.getValue();
+			for (int i = 0; i < bounds.length; i++){
+				// Double.toString reads back to the same value
+				entries.append(i == 0 ? "" : ",").append(Double.toString(bounds[i]));
+			}
+		}
+		conf.set(PLAN, entries.toString());
+	}
+
+	// Splits the prices of a carrier and month at the given increasing bounds
+	public void split(String carrier, int month, double[] bounds){
+		if (bounds.length > 0){
+			boundsMap.put(carrier + ";" + month, bounds);
+		}
+	}
+
+	// Lower price bounds of the slices 1..n of a carrier and month, empty if it is not split
+	public double[] getBounds(String carrier, int month){
+		double[] bounds = boundsMap.get(carrier + ";" + month);
+		return bounds == null ? NONE : bounds;
+	}
+
+	// Number of split carrier and month keys
+	public int size(){
+		return boundsMap.size();
+	}
+
+	// Slice of a price - the number of bounds which are not above it, equal prices stay in one slice
+	public static int slice(double[] bounds, double price){
+		int low = 0;
+		int high = bounds.length;
+		while (low < high){
+			int middle = (low + high) >>> 1;
+			if (bounds[middle] <= price){
+				low = middle + 1;
+			}
+			else{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// Builds the plan from the sampled prices of every carrier and month. A key with more than
+	// the average share of a reducer gets one slice per share, cut at the quantiles of its sample.
+	public static PartitionPlan build(HashMap<String, ArrayList<Double>> samples, int reduces){
+		PartitionPlan plan = new PartitionPlan();
+		long total = 0;
+		for (ArrayList<Double> prices: samples.values()){
+			total += prices.size();
+		}
+		if (reduces <= 1 || total == 0){
+			return plan;
+		}
+		double share = (double) total / reduces;
+		for (Map.Entry<String, ArrayList<Double>> entry: samples.entrySet()){
+			ArrayList<Double> prices = entry.getValue();
+			int slices = (int) Math.min(reduces, Math.ceil(prices.size() / share));
+			if (slices <= 1){
+				continue;
+			}
+			Collections.sort(prices);
+			double[] bounds = new double[slices - 1];
+			int length = 0;
+			for (int i = 1; i < slices; i++){
+				double bound = prices.get(i * prices.size() / slices);
+				// a price repeated across a quantile gives one bound
+				if (length == 0 || bound > bounds[length - 1]){
+					bounds[length++] = bound;
+				}
+			}
+			String[] carrierMonth = entry.getKey().split(";");
+			plan.split(carrierMonth[0], Integer.parseInt(carrierMonth[1]), Arrays.copyOf(bounds, length));
+		}
+		return plan;
+	}
+
+	// Samples the prices of the input of the job and builds the plan for the number of reduce tasks
+	// of the job. Evenly spread splits are read to their end, as a gzipped file is one split and its
+	// first records are only its first months. The records are considered with SAMPLE_FREQUENCY
+	// and every split keeps a uniform reservoir of its part of SAMPLE_RECORDS. The records are
+	// checked like in the mappers.
+	public static PartitionPlan sample(Job job) throws IOException, InterruptedException, ClassNotFoundException{
+		Configuration conf = job.getConfiguration();
+		HashMap<String, ArrayList<Double>> samples = new HashMap<String, ArrayList<Double>>();
+		if (job.getNumReduceTasks() <= 1){
+			return build(samples, job.getNumReduceTasks());
+		}
+		// the records are read like in the tasks, the gzipped csv or the columnar files
+		@SuppressWarnings("unchecked")
+		InputFormat<LongWritable, Text> format = (InputFormat<LongWritable, Text>) ReflectionUtils.newInstance(job.getInputFormatClass(), conf);
+		List<InputSplit> splits = format.getSplits(job);
+		int splitCount = Math.min(conf.getInt(SAMPLE_SPLITS, DEFAULT_SAMPLE_SPLITS), splits.size());
+		int perSplit = Math.max(conf.getInt(SAMPLE_RECORDS, DEFAULT_SAMPLE_RECORDS) / Math.max(splitCount, 1), 1);
+		float frequency = conf.getFloat(SAMPLE_FREQUENCY, DEFAULT_SAMPLE_FREQUENCY);
+		Random random = new Random(42);
+		FlightRecord record = new FlightRecord();
+		SanityChecker checker = new SanityChecker(SanityChecker.MAP_REDUCE);
+		// reservoir of a split - carrier code and month and the price of the sampled records
+		String[] carrierMonths = new String[perSplit];
+		double[] prices = new double[perSplit];
+		for (int i = 0; i < splitCount; i++){
+			InputSplit split = splits.get(i * splits.size() / splitCount);
+			TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+			RecordReader<LongWritable, Text> reader = format.createRecordReader(split, context);
+			reader.initialize(split, context);
+			// sane records with a price seen in the split
+			long seen = 0;
+			while (reader.nextKeyValue()){
+				if (random.nextFloat() >= frequency){
+					continue;
+				}
+				Text value = reader.getCurrentValue();
+				record.reset(value.getBytes(), 0, value.getLength());
+				if (checker.check(record) == SanityChecker.SANE && record.getTokenizer().getFieldCount() == 110
+						&& !record.isEmpty(FlightRecord.AVG_TICKET_PRICE)){
+					try{
+						double price = record.getDouble(FlightRecord.AVG_TICKET_PRICE);
+						int month = record.getInt(FlightRecord.MONTH);
+						// the n-th record replaces a random one of the reservoir with probability perSplit / n
+						long slot = seen < perSplit ? seen : (long) (random.nextDouble() * (seen + 1));
+						seen++;
+						if (slot < perSplit){
+							carrierMonths[(int) slot] = record.getString(FlightRecord.CARRIER) + ";" + month;
+							prices[(int) slot] = price;
+						}
+					}
+					// the price or month is not a number, the mappers skip it too
+					catch(NumberFormatException e){
+					}
+				}
+			}
+			reader.close();
+			for (int slot = 0; slot < Math.min(seen, perSplit); slot++){
+				ArrayList<Double> sample = samples.get(carrierMonths[slot]);
+				if (sample == null){
+					sample = new ArrayList<Double>();
+					samples.put(carrierMonths[slot], sample);
+				}
+				sample.add(prices[slot]);
+			}
+		}
+		return build(samples, job.getNumReduceTasks());
+	}
+}
@@ -0,0 +1,137 @@
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * Growable list of primitive ticket prices for one carrier and month, used
+ * instead of ArrayList<Double> so that prices are never boxed. Needed by the
+ * median, which requires all prices.
+ */
+class PriceAccumulator implements PriceAggregate{
+    static int INITIALCAPACITY = 16;
+
+    private double[] prices;
+    private int size;
+
+    /**
+     * Constructor
+     * creates an empty accumulator.
+     *
+     */
+    public PriceAccumulator(){
+        this.prices = new double[INITIALCAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * add
+     * appends a price, doubling the backing array when it is full.
+     *
+     * @param   price average ticket price.
+     */
+    @Override
+    public void add(double price){
+        if (this.size == this.prices.length){
+            this.grow(this.size + 1);
+        }
+        this.prices[this.size] = price;
+        this.size += 1;
+    }
+
+    /**
+     * merge
+     * appends all prices of another accumulator.
+     *
+     * @param   aggregate PriceAccumulator to be merged into this one.
+     */
+    @Override
+    public void merge(PriceAggregate aggregate){
+        PriceAccumulator other = (PriceAccumulator) aggregate;
+        if (this.size + other.size > this.prices.length){
+            this.grow(this.size + other.size);
+        }
+        System.arraycopy(other.prices, 0, this.prices, this.size, other.size);
+        this.size += other.size;
+    }
+
+    /**
+     * grow
+     * resizes the backing array to hold at least minCapacity prices.
+     *
+     * @param   minCapacity required capacity.
+     */
+    private void grow(int minCapacity){
+        int capacity = Math.max(this.prices.length * 2, minCapacity);
+        this.prices = Arrays.copyOf(this.prices, capacity);
+    }
+
+    /**
+     * size
+     * @return  number of prices added.
+     */
+    public int size(){
+        return this.size;
+    }
+
+    /**
+     * isEmpty
+     * @return  true if no price was added.
+     */
+    public boolean isEmpty(){
+        return this.size == 0;
+    }
+
+    /**
+     * get
+     * @param   index position of the price.
+     * @return  price at given position.
+     */
+    public double get(int index){
+        if (index >= this.size){
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.prices[index];
+    }
+
+    /**
+     * write
+     * serializes the number of prices and the prices.
+     *
+     * @param   out DataOutput object.
+     */
+    @Override
+    public void write(DataOutput out) throws IOException{
+        out.writeInt(this.size);
+        for (int i = 0; i < this.size; i++){
+            out.writeDouble(this.prices[i]);
+        }
+    }
+
+    /**
+     * readFields
+     * deserializes an accumulator written by write, replacing this one.
+     *
+     * @param   in DataInput object.
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException{
+        this.size = in.readInt();
+        this.prices = new double[Math.max(this.size, INITIALCAPACITY)];
+        for (int i = 0; i < this.size; i++){
+            this.prices[i] = in.readDouble();
+        }
+    }
+
+    /**
+     * getPrice
+     * returns the median of the prices using QuickSelect, which reorders
+     * them in place.
+     *
+     * @return  median of all added prices, 0.0 if none were added.
+     */
+    @Override
+    public Double getPrice(){
+        return MedianFinder.median(this.prices, this.size);
+    }
+}
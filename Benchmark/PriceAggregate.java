@@ -0,0 +1,48 @@
+import java.io.*;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * Per carrier and month state kept by FileThread and merged by Solution.reduce.
+ * Implemented by PriceAccumulator for the median and by MeanAccumulator for 
+ * the mean.
+ */
+interface PriceAggregate{
+    /**
+     * add
+     * adds a single average ticket price.
+     *
+     * @param   price average ticket price.
+     */
+    void add(double price);
+
+    /**
+     * merge
+     * merges the state of another aggregate of the same type.
+     *
+     * @param   other PriceAggregate to be merged into this one.
+     */
+    void merge(PriceAggregate other);
+
+    /**
+     * getPrice
+     * @return  final price(mean or median) of all added prices.
+     */
+    Double getPrice();
+
+    /**
+     * write
+     * serializes the state, kept by Checkpoint between runs.
+     *
+     * @param   out DataOutput to write to.
+     */
+    void write(DataOutput out) throws IOException;
+
+    /**
+     * readFields
+     * deserializes a state written by write, replacing this one.
+     *
+     * @param   in DataInput to read from.
+     */
+    void readFields(DataInput in) throws IOException;
+}
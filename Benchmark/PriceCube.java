@@ -0,0 +1,466 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * Precomputed store of the ticket prices by carrier, year, month, origin and
+ * destination. Every cell keeps the sum and count of its prices(for the mean)
+ * and a QuantileSketch(for the approximate median), so the mean or median of
+ * a cut is merged from the cells without reading any flight again.
+ * The cube is a directory with one partition per input file, named after the
+ * file with EXTENSION. A partition records the length and modification time
+ * of its input file and the sanity rules and accuracy it was built with, only
+ * the partitions which do not match them any more are built again.
+ * Used by the -cube mode of Solution.java and the query modes of
+ * CarrierCount.java.
+ */
+class PriceCube{
+    static final String EXTENSION = ".cube";
+    // sanity rules of a partition, those of FileThread or of the Map-Reduce jobs
+    static final String SOLUTION = "solution";
+    static final String MAP_REDUCE = "mapreduce";
+    private static final int MAGIC = 0x43554231;
+
+    /**
+     * Cell
+     * prices of one carrier, year, month, origin and destination.
+     */
+    static class Cell{
+        private String carrier;
+        private int year;
+        private int month;
+        private String origin;
+        private String dest;
+        private MeanAccumulator mean;
+        private QuantileSketch sketch;
+
+        Cell(String carrier, int year, int month, String origin, String dest,
+                                                            double accuracy){
+            this.carrier = carrier;
+            this.year = year;
+            this.month = month;
+            this.origin = origin;
+            this.dest = dest;
+            this.mean = new MeanAccumulator();
+            this.sketch = new QuantileSketch(accuracy);
+        }
+
+        void add(double price){
+            this.mean.add(price);
+            this.sketch.add(price);
+        }
+
+        public String getCarrier(){
+            return this.carrier;
+        }
+        public int getYear(){
+            return this.year;
+        }
+        public int getMonth(){
+            return this.month;
+        }
+        public String getOrigin(){
+            return this.origin;
+        }
+        public String getDest(){
+            return this.dest;
+        }
+        public MeanAccumulator getMean(){
+            return this.mean;
+        }
+        public QuantileSketch getSketch(){
+            return this.sketch;
+        }
+
+        void write(DataOutput out) throws IOException{
+            out.writeUTF(this.carrier);
+            out.writeInt(this.year);
+            out.writeInt(this.month);
+            out.writeUTF(this.origin);
+            out.writeUTF(this.dest);
+            this.mean.write(out);
+            this.sketch.write(out);
+        }
+
+        static Cell read(DataInput in, double accuracy) throws IOException{
+            Cell cell = new Cell(in.readUTF(), in.readInt(), in.readInt(),
+                                            in.readUTF(), in.readUTF(), accuracy);
+            cell.mean.readFields(in);
+            cell.sketch.readFields(in);
+            return cell;
+        }
+    }
+
+    /**
+     * Partition
+     * cells built from one input file.
+     */
+    static class Partition{
+        private String source;
+        private long length;
+        private long modified;
+        private String profile;
+        private double accuracy;
+        private LinkedHashMap<String, Cell> cells;
+
+        Partition(String source, long length, long modified, String profile,
+                                                            double accuracy){
+            this.source = source;
+            this.length = length;
+            this.modified = modified;
+            this.profile = profile;
+            this.accuracy = accuracy;
+            this.cells = new LinkedHashMap<String, Cell>();
+        }
+
+        /**
+         * isCurrent
+         * @return  true if the partition was built from the given version of
+         *          its input file with the given rules and accuracy.
+         */
+        public boolean isCurrent(long length, long modified, String profile,
+                                                            double accuracy){
+            return this.length == length && this.modified == modified &&
+                    this.profile.equals(profile) && this.accuracy == accuracy;
+        }
+
+        public String getSource(){
+            return this.source;
+        }
+
+        public Collection<Cell> getCells(){
+            return this.cells.values();
+        }
+
+        /**
+         * add
+         * adds the price of a sane record to its cell.
+         */
+        void add(FlightRecord record, double price){
+            String carrier = record.getString(FlightRecord.CARRIER);
+            int year = record.getInt(FlightRecord.YEAR);
+            int month = record.getInt(FlightRecord.MONTH);
+            String origin = record.getString(FlightRecord.ORIGIN);
+            String dest = record.getString(FlightRecord.DEST);
+            String key = carrier + "\t" + year + "\t" + month + "\t" + origin + "\t" + dest;
+            Cell cell = this.cells.get(key);
+            if (cell == null){
+                cell = new Cell(carrier, year, month, origin, dest, this.accuracy);
+                this.cells.put(key, cell);
+            }
+            cell.add(price);
+        }
+
+        /**
+         * write
+         * writes the gzipped partition.
+         *
+         * @param   stream OutputStream of the partition file, closed.
+         */
+        public void write(OutputStream stream) throws IOException{
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                                                    new GZIPOutputStream(stream)));
+            try{
+                out.writeInt(MAGIC);
+                out.writeUTF(this.source);
+                out.writeLong(this.length);
+                out.writeLong(this.modified);
+                out.writeUTF(this.profile);
+                out.writeDouble(this.accuracy);
+                out.writeInt(this.cells.size());
+                for (Cell cell: this.cells.values()){
+                    cell.write(out);
+                }
+            }
+            finally{
+                out.close();
+            }
+        }
+
+        /**
+         * read
+         * reads a partition written by write.
+         *
+         * @param   stream InputStream of the partition file, closed.
+         * @return  Partition object.
+         */
+        public static Partition read(InputStream stream) throws IOException{
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                                                    new GZIPInputStream(stream)));
+            try{
+                if (in.readInt() != MAGIC){
+                    throw new IOException("Not a cube partition");
+                }
+                Partition partition = new Partition(in.readUTF(), in.readLong(),
+                                    in.readLong(), in.readUTF(), in.readDouble());
+                int size = in.readInt();
+                for (int i = 0; i < size; i++){
+                    Cell cell = Cell.read(in, partition.accuracy);
+                    partition.cells.put(cell.carrier + "\t" + cell.year + "\t" + cell.month
+                                        + "\t" + cell.origin + "\t" + cell.dest, cell);
+                }
+                return partition;
+            }
+            finally{
+                in.close();
+            }
+        }
+
+        /**
+         * build
+         * reads a gzipped csv input file and adds the price of every sane
+         * record, checked with the sanity rules of the given profile.
+         *
+         * @param   stream InputStream of the input file, closed.
+         * @return  Partition object.
+         */
+        public static Partition build(String source, long length, long modified,
+                            InputStream stream, String profile, double accuracy)
+                            throws IOException{
+            Partition partition = new Partition(source, length, modified, profile, accuracy);
+            boolean mapReduce = profile.equals(MAP_REDUCE);
+            SanityChecker checker = new SanityChecker(mapReduce ? SanityChecker.MAP_REDUCE
+                                                                : SanityChecker.SOLUTION);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                                                new GZIPInputStream(stream), "UTF-8"));
+            try{
+                String line = reader.readLine();
+                if (line == null){
+                    return partition;
+                }
+                CsvTokenizer fields = new CsvTokenizer();
+                byte[] bytes = line.getBytes("UTF-8");
+                String[] headers = new String[fields.reset(bytes, 0, bytes.length)];
+                for (int i = 0; i < headers.length; i++){
+                    headers[i] = fields.getString(i);
+                }
+                FlightRecord record = new FlightRecord(FlightRecord.layoutOf(headers));
+                line = reader.readLine();
+                while (line != null){
+                    bytes = line.getBytes("UTF-8");
+                    record.reset(bytes, 0, bytes.length);
+                    line = reader.readLine();
+                    // the Map-Reduce jobs only take the records of the BTS layout
+                    if (mapReduce && record.getTokenizer().getFieldCount() != ColumnFile.BTS_COLUMNS){
+                        continue;
+                    }
+                    if (checker.check(record) != SanityChecker.SANE
+                            || record.isEmpty(FlightRecord.AVG_TICKET_PRICE)){
+                        continue;
+                    }
+                    try{
+                        partition.add(record, record.getDouble(FlightRecord.AVG_TICKET_PRICE));
+                    }
+                    // the price, year or month is not a number
+                    catch(NumberFormatException e){
+                    }
+                }
+            }
+            finally{
+                reader.close();
+            }
+            return partition;
+        }
+    }
+
+    /**
+     * Query
+     * selects the cells of a cut, e.g. "YEAR=2014..2015,MONTH=1,ORIGIN=BOS".
+     * YEAR and MONTH take a value or an inclusive range, CARRIER, ORIGIN and
+     * DEST a code.
+     */
+    static class Query{
+        private int minYear = Integer.MIN_VALUE;
+        private int maxYear = Integer.MAX_VALUE;
+        private int minMonth = Integer.MIN_VALUE;
+        private int maxMonth = Integer.MAX_VALUE;
+        private String carrier;
+        private String origin;
+        private String dest;
+
+        /**
+         * parse
+         * @param   spec comma separated COLUMN=value ranges, null or empty
+         *          for all cells.
+         * @return  Query object.
+         * @throws  IllegalArgumentException for unknown columns or ranges
+         *          which are not integers.
+         */
+        public static Query parse(String spec){
+            Query query = new Query();
+            if (spec == null || spec.trim().isEmpty()){
+                return query;
+            }
+            for (String range: spec.split(",")){
+                String[] nameAndValue = range.trim().split("=");
+                if (nameAndValue.length != 2){
+                    throw new IllegalArgumentException("Query range is not COLUMN=value: " + range);
+                }
+                String name = nameAndValue[0].trim();
+                String value = nameAndValue[1].trim();
+                if (name.equals("CARRIER")){
+                    query.carrier = value;
+                }
+                else if (name.equals("ORIGIN")){
+                    query.origin = value;
+                }
+                else if (name.equals("DEST")){
+                    query.dest = value;
+                }
+                else if (name.equals("YEAR") || name.equals("MONTH")){
+                    String[] bounds = value.split("\\.\\.");
+                    try{
+                        int min = Integer.parseInt(bounds[0].trim());
+                        int max = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : min;
+                        if (name.equals("YEAR")){
+                            query.minYear = min;
+                            query.maxYear = max;
+                        }
+                        else{
+                            query.minMonth = min;
+                            query.maxMonth = max;
+                        }
+                    }
+                    catch(NumberFormatException e){
+                        throw new IllegalArgumentException("Query range is not an integer: " + range);
+                    }
+                }
+                else{
+                    throw new IllegalArgumentException("Unknown query column: " + name);
+                }
+            }
+            return query;
+        }
+
+        public boolean matches(Cell cell){
+            return cell.year >= this.minYear && cell.year <= this.maxYear
+                    && cell.month >= this.minMonth && cell.month <= this.maxMonth
+                    && (this.carrier == null || this.carrier.equals(cell.carrier))
+                    && (this.origin == null || this.origin.equals(cell.origin))
+                    && (this.dest == null || this.dest.equals(cell.dest));
+        }
+    }
+
+    /**
+     * byCarrierAndMonth
+     * merges the cells of the query by carrier and month, over all years,
+     * origins and destinations.
+     *
+     * @param   partitions partitions of the cube.
+     * @param   query Query object.
+     * @param   findMeanOrMedian "mean" or "approx-median".
+     * @return  PriceAggregate of every carrier and month, MeanAccumulator for
+     *          the mean and QuantileSketch for the approximate median.
+     */
+    public static TreeMap<String, TreeMap<Integer, PriceAggregate>> byCarrierAndMonth(
+                    Collection<Partition> partitions, Query query, String findMeanOrMedian){
+        boolean mean = findMeanOrMedian.equals("mean");
+        TreeMap<String, TreeMap<Integer, PriceAggregate>> carriers =
+                                    new TreeMap<String, TreeMap<Integer, PriceAggregate>>();
+        for (Partition partition: partitions){
+            for (Cell cell: partition.getCells()){
+                if (!query.matches(cell)){
+                    continue;
+                }
+                TreeMap<Integer, PriceAggregate> months = carriers.get(cell.carrier);
+                if (months == null){
+                    months = new TreeMap<Integer, PriceAggregate>();
+                    carriers.put(cell.carrier, months);
+                }
+                PriceAggregate aggregate = months.get(cell.month);
+                if (aggregate == null){
+                    aggregate = mean ? new MeanAccumulator()
+                                     : new QuantileSketch(partition.accuracy);
+                    months.put(cell.month, aggregate);
+                }
+                aggregate.merge(mean ? cell.mean : cell.sketch);
+            }
+        }
+        return carriers;
+    }
+
+    /**
+     * activeCarriers
+     * @return  carriers with a cell of the query in the given year.
+     */
+    public static Set<String> activeCarriers(Collection<Partition> partitions, Query query, int year){
+        Set<String> carriers = new HashSet<String>();
+        for (Partition partition: partitions){
+            for (Cell cell: partition.getCells()){
+                if (cell.year == year && query.matches(cell)){
+                    carriers.add(cell.carrier);
+                }
+            }
+        }
+        return carriers;
+    }
+
+    /**
+     * refresh
+     * brings the cube directory of a local input directory up to date: the
+     * partitions of new or changed input files are built(in parallel on the
+     * executor), those of removed files are deleted and the others are read.
+     *
+     * @param   input directory of the gzipped csv files.
+     * @param   cube directory of the partitions, created if missing.
+     * @param   profile SOLUTION or MAP_REDUCE.
+     * @param   accuracy relative accuracy of the sketches.
+     * @param   executor ExecutorService for building the partitions.
+     * @return  partitions of all input files.
+     */
+    public static List<Partition> refresh(File input, final File cube, final String profile,
+                    final double accuracy, ExecutorService executor)
+                    throws IOException, InterruptedException, ExecutionException{
+        cube.mkdirs();
+        List<Partition> partitions = new ArrayList<Partition>();
+        List<Callable<Partition>> builds = new ArrayList<Callable<Partition>>();
+        Set<String> sources = new HashSet<String>();
+        for (final File file: input.listFiles()){
+            if (!file.getName().endsWith(".gz")){
+                continue;
+            }
+            sources.add(file.getName());
+            File partitionFile = new File(cube, file.getName() + EXTENSION);
+            if (partitionFile.exists()){
+                Partition partition = Partition.read(new FileInputStream(partitionFile));
+                if (partition.isCurrent(file.length(), file.lastModified(), profile, accuracy)){
+                    partitions.add(partition);
+                    continue;
+                }
+            }
+            builds.add(new Callable<Partition>(){
+                @Override
+                public Partition call() throws IOException{
+                    Partition partition = Partition.build(file.getName(), file.length(),
+                                    file.lastModified(), new FileInputStream(file), profile, accuracy);
+                    // written aside first, a failed build leaves the old partition
+                    File partial = new File(cube, file.getName() + EXTENSION + ".tmp");
+                    partition.write(new FileOutputStream(partial));
+                    File partitionFile = new File(cube, file.getName() + EXTENSION);
+                    partitionFile.delete();
+                    if (!partial.renameTo(partitionFile)){
+                        throw new IOException("Cannot write " + partitionFile);
+                    }
+                    return partition;
+                }
+            });
+        }
+        for (Future<Partition> future: executor.invokeAll(builds)){
+            partitions.add(future.get());
+        }
+        // partitions of input files which are gone
+        for (File partitionFile: cube.listFiles()){
+            String name = partitionFile.getName();
+            if (name.endsWith(EXTENSION) && !sources.contains(
+                            name.substring(0, name.length() - EXTENSION.length()))){
+                partitionFile.delete();
+            }
+        }
+        System.err.println("cube\tpartitions=" + partitions.size() + "\tbuilt=" + builds.size());
+        return partitions;
+    }
+}
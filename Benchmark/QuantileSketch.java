@@ -0,0 +1,275 @@
+import java.io.*;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * Mergeable quantile sketch with a relative error guarantee, used by the
+ * "approx-median" mode of Solution.java and CarrierCount.java.
+ * Prices are counted in logarithmic buckets: bucket i holds the prices in
+ * (gamma^(i-1), gamma^i] with gamma = (1 + accuracy) / (1 - accuracy), so any
+ * quantile is returned within the relative accuracy of the true value.
+ * At most MAXBUCKETS counters are kept per sketch(kilobytes, independent of
+ * the number of prices), merging two sketches adds their counters.
+ */
+class QuantileSketch implements PriceAggregate{
+    static double DEFAULTACCURACY = 0.005;
+    static int MAXBUCKETS = 2048;
+    // relative accuracy used by FileThread, -Dapprox.accuracy=0.01
+    static double ACCURACY = Double.parseDouble(
+                    System.getProperty("approx.accuracy", String.valueOf(DEFAULTACCURACY)));
+
+    private double relativeAccuracy;
+    private double gamma;
+    private double logGamma;
+    // counts[i] is the count of bucket offset + i
+    private long[] counts;
+    private int offset;
+    private long zeroCount;
+    private long count;
+
+    /**
+     * Constructor
+     * creates an empty sketch with DEFAULTACCURACY.
+     *
+     */
+    public QuantileSketch(){
+        this(DEFAULTACCURACY);
+    }
+
+    /**
+     * Constructor
+     * creates an empty sketch.
+     * @param relativeAccuracy relative error of the quantiles, in (0, 1).
+     *
+     */
+    public QuantileSketch(double relativeAccuracy){
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1){
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): "
+                                                                + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(this.gamma);
+        this.counts = new long[0];
+        this.offset = 0;
+        this.zeroCount = 0;
+        this.count = 0;
+    }
+
+    /**
+     * add
+     * counts a price in its bucket, prices <= 0 are counted as zero.
+     *
+     * @param   price average ticket price.
+     */
+    @Override
+    public void add(double price){
+        if (price <= 0){
+            this.zeroCount += 1;
+        }
+        else{
+            this.addToBucket(this.bucketIndex(price), 1);
+        }
+        this.count += 1;
+    }
+
+    /**
+     * merge
+     * adds the counters of another sketch with the same accuracy.
+     *
+     * @param   other QuantileSketch to be merged into this one.
+     */
+    @Override
+    public void merge(PriceAggregate aggregate){
+        QuantileSketch other = (QuantileSketch) aggregate;
+        if (other.relativeAccuracy != this.relativeAccuracy){
+            throw new IllegalArgumentException("Cannot merge sketches of accuracy "
+                        + this.relativeAccuracy + " and " + other.relativeAccuracy);
+        }
+        for (int i = other.counts.length - 1; i >= 0; i--){
+            if (other.counts[i] > 0){
+                this.addToBucket(other.offset + i, other.counts[i]);
+            }
+        }
+        this.zeroCount += other.zeroCount;
+        this.count += other.count;
+    }
+
+    /**
+     * getPrice
+     * @return  approximate median of all added prices, 0.0 if none were added.
+     */
+    @Override
+    public Double getPrice(){
+        if (this.count == 0){
+            return 0.0;
+        }
+        // mean of the two middle values for an even count, as the exact median
+        double lower = this.valueAtRank((this.count - 1) / 2);
+        double upper = this.valueAtRank(this.count / 2);
+        return (lower + upper) / 2.0;
+    }
+
+    /**
+     * getQuantile
+     * @param   quantile in [0, 1].
+     * @return  approximate quantile of all added prices.
+     */
+    public double getQuantile(double quantile){
+        if (this.count == 0){
+            return 0.0;
+        }
+        return this.valueAtRank((long) (quantile * (this.count - 1)));
+    }
+
+    /**
+     * getCount
+     * @return  number of prices added.
+     */
+    public long getCount(){
+        return this.count;
+    }
+
+    /**
+     * getRelativeAccuracy
+     * @return  relative accuracy of the sketch.
+     */
+    public double getRelativeAccuracy(){
+        return this.relativeAccuracy;
+    }
+
+    /**
+     * valueAtRank
+     * walks the buckets in ascending order until the 0 based rank is reached.
+     *
+     * @param   rank 0 based rank of the wanted price.
+     * @return  representative value of the bucket holding the rank.
+     */
+    private double valueAtRank(long rank){
+        long seen = this.zeroCount;
+        if (rank < seen){
+            return 0.0;
+        }
+        for (int i = 0; i < this.counts.length; i++){
+            seen += this.counts[i];
+            if (rank < seen){
+                return this.bucketValue(this.offset + i);
+            }
+        }
+        return this.bucketValue(this.offset + this.counts.length - 1);
+    }
+
+    /**
+     * bucketIndex
+     * @return  index of the bucket (gamma^(i-1), gamma^i] holding the price.
+     */
+    private int bucketIndex(double price){
+        return (int) Math.ceil(Math.log(price) / this.logGamma);
+    }
+
+    /**
+     * bucketValue
+     * @return  value within relative accuracy of every price of bucket i.
+     */
+    private double bucketValue(int index){
+        return 2 * Math.pow(this.gamma, index) / (this.gamma + 1);
+    }
+
+    /**
+     * addToBucket
+     * adds to the counter of a bucket, widening the counters if needed. When
+     * more than MAXBUCKETS would be needed the lowest buckets are collapsed,
+     * which only loses accuracy for the lowest prices.
+     */
+    private void addToBucket(int index, long value){
+        if (this.counts.length == 0){
+            this.counts = new long[16];
+            this.offset = index - 8;
+        }
+        if (index < this.offset || index >= this.offset + this.counts.length){
+            this.extendTo(index);
+        }
+        if (index < this.offset){
+            // collapsed into the lowest kept bucket
+            index = this.offset;
+        }
+        this.counts[index - this.offset] += value;
+    }
+
+    /**
+     * extendTo
+     * re-allocates the counters so that they cover the given bucket, keeping
+     * at most MAXBUCKETS counters.
+     */
+    private void extendTo(int index){
+        int low = Math.min(index, this.offset);
+        int high = Math.max(index, this.offset + this.counts.length - 1);
+        // some slack so that neighbouring prices don't re-allocate again
+        int length = Math.min(MAXBUCKETS, Math.max(high - low + 1, 2 * this.counts.length));
+        // slack goes on the side that grows, lowest buckets are dropped when
+        // the range is longer than MAXBUCKETS
+        int newOffset = low;
+        if (index < this.offset || high - low + 1 > length){
+            newOffset = high - length + 1;
+        }
+        long[] newCounts = new long[length];
+        for (int i = 0; i < this.counts.length; i++){
+            int bucket = this.offset + i;
+            int target = Math.max(bucket, newOffset) - newOffset;
+            newCounts[target] += this.counts[i];
+        }
+        this.counts = newCounts;
+        this.offset = newOffset;
+    }
+
+    /**
+     * write
+     * serializes the sketch, only buckets between the lowest and highest
+     * non empty bucket are written.
+     *
+     * @param   out DataOutput object.
+     */
+    @Override
+    public void write(DataOutput out) throws IOException{
+        int first = 0;
+        int last = this.counts.length - 1;
+        while (first <= last && this.counts[first] == 0){
+            first++;
+        }
+        while (last >= first && this.counts[last] == 0){
+            last--;
+        }
+        out.writeDouble(this.relativeAccuracy);
+        out.writeLong(this.zeroCount);
+        out.writeInt(this.offset + first);
+        out.writeInt(last - first + 1);
+        for (int i = first; i <= last; i++){
+            out.writeLong(this.counts[i]);
+        }
+    }
+
+    /**
+     * readFields
+     * deserializes a sketch written by write, replacing this sketch.
+     *
+     * @param   in DataInput object.
+     */
+    @Override
+    public void readFields(DataInput in) throws IOException{
+        double accuracy = in.readDouble();
+        if (accuracy != this.relativeAccuracy){
+            this.relativeAccuracy = accuracy;
+            this.gamma = (1 + accuracy) / (1 - accuracy);
+            this.logGamma = Math.log(this.gamma);
+        }
+        this.zeroCount = in.readLong();
+        this.offset = in.readInt();
+        int length = in.readInt();
+        this.counts = new long[length];
+        this.count = this.zeroCount;
+        for (int i = 0; i < length; i++){
+            this.counts[i] = in.readLong();
+            this.count += this.counts[i];
+        }
+    }
+}
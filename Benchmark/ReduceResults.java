@@ -0,0 +1,30 @@
+/**
+ * Generic version of ReduceResults class.(Since multiple returns not possible
+ * in JAVA)
+ * @param A, B, C the type of the value being boxed.
+ */
+class ReduceResults<A, B, C>{
+    private A _1;
+    private B _2;
+    private C _3;
+    
+    /**
+     * Constructor
+     * @param initializes the values.
+     * 
+     */
+    ReduceResults(A _1, B _2, C _3){
+        this._1 = _1;
+        this._2 = _2;
+        this._3 = _3;
+    }
+    public A getA(){
+        return this._1;
+    }
+    public B getB(){
+        return this._2;
+    }
+    public C getC(){
+        return this._3;
+    }
+}
\ No newline at end of file
@@ -12,11 +12,16 @@ public class Solution{
     
     static int MINTHREADS = 1;
     static int MAXTHREADS = 5;
+    static int QUEUESIZE = 16;
 
     /**
      * Main Method
      *
-     * @param   args command-line arguments [-p for Parallel processing,-input=DIR for source directory,Mean/Median]
+     * @param   args command-line arguments [-p for Parallel processing,-input=DIR for source directory,Mean/Median/Approx-Median,
+     *          -cube=DIR to answer the mean or approx-median from the PriceCube in DIR,
+     *          -where=QUERY to restrict the cube to a cut, e.g. YEAR=2015,ORIGIN=BOS,
+     *          -state=DIR to only read the new or changed input files and merge
+     *          them with the partials of the others kept in DIR]
      *
      */
     public static void main(String[] args){
@@ -25,28 +30,44 @@ public class Solution{
             boolean doParallel = false;
             String dirPath = "";
             String findMeanOrMedian = null;
+            String cubePath = null;
+            String where = null;
+            String statePath = null;
             try{
                 // check for command-line arguments are proper
-                if (args.length == 3 && args[0].equals("-p")){
-                    doParallel = true;
-                    dirPath = args[1].split("=")[1];
-                    findMeanOrMedian = args[2];
-                    
-                }
-                else if (args.length == 3 && args[1].equals("-p")){
-                    doParallel = true;
-                    dirPath = args[0].split("=")[1];
-                    findMeanOrMedian = args[2];
+                for (String arg: args){
+                    if (arg.equals("-p")){
+                        doParallel = true;
+                    }
+                    else if (arg.startsWith("-input=")){
+                        dirPath = arg.split("=")[1];
+                    }
+                    else if (arg.startsWith("-cube=")){
+                        cubePath = arg.split("=")[1];
+                    }
+                    else if (arg.startsWith("-where=")){
+                        where = arg.substring("-where=".length());
+                    }
+                    else if (arg.startsWith("-state=")){
+                        statePath = arg.split("=")[1];
+                    }
+                    else{
+                        findMeanOrMedian = arg;
+                    }
                 }
-                else{
-                    dirPath = args[0].split("=")[1];
-                    findMeanOrMedian = args[1];
-                }                
             }
             catch(ArrayIndexOutOfBoundsException e){
+                dirPath = "";
+            }
+            if (dirPath.isEmpty() || findMeanOrMedian == null){
                 System.err.println("Insufficient number of Arguments");
                 System.exit(0);
             }
+            if (cubePath != null && !findMeanOrMedian.equals("mean") 
+                                && !findMeanOrMedian.equals("approx-median")){
+                System.err.println("The cube keeps sums and sketches, only mean and approx-median are answered from it");
+                System.exit(0);
+            }
             
             File folder = new File(dirPath); 
             
@@ -58,64 +79,75 @@ public class Solution{
             }
 
             ExecutorService executor;
+            Integer workers;
             if (doParallel){
                 //To play nice with Java 1.8 code
                 //executor = Executors.newWorkStealingPool();
                 //To play nice with Java 1.7 code
-                executor = Executors.newFixedThreadPool(MAXTHREADS);
+                workers = MAXTHREADS;
             }
             else{
-                executor = Executors.newFixedThreadPool(MINTHREADS);    
+                workers = MINTHREADS;
+            }
+            executor = Executors.newFixedThreadPool(workers);
+            if (cubePath != null){
+                // only the partitions of new or changed input files are built
+                List<PriceCube.Partition> partitions = PriceCube.refresh(folder, new File(cubePath),
+                                        PriceCube.SOLUTION, QuantileSketch.ACCURACY, executor);
+                executor.shutdown();
+                HashMap<String, PriceAggregate> cubeHm = new HashMap<String, PriceAggregate>();
+                TreeMap<String, TreeMap<Integer, PriceAggregate>> carriers = PriceCube.byCarrierAndMonth(
+                                        partitions, PriceCube.Query.parse(where), findMeanOrMedian);
+                for (String carrier: carriers.keySet()){
+                    for (Map.Entry<Integer, PriceAggregate> month: carriers.get(carrier).entrySet()){
+                        cubeHm.put(carrier.concat(month.getKey().toString()), month.getValue());
+                    }
+                }
+                writeOutput("output/output_cube_" + findMeanOrMedian + ".txt", getPriceByCarrier(cubeHm));
+                return;
+            }
+            // the decompression stage runs on its own thread, feeding the workers
+            ExecutorService readerExecutor = Executors.newSingleThreadExecutor();
+
+            ReduceResults<Integer, Integer, HashMap<String, PriceAggregate>> result;
+            if (statePath != null){
+                // map and reduce only the files without a current partial
+                result = Checkpoint.refresh(folder, new File(statePath), findMeanOrMedian,
+                                        executor, readerExecutor, workers);
+            }
+            else{
+                // call Map function
+                List<Future<FileThread>> futures = map(folder, dirPath, executor, 
+                                            readerExecutor, workers, findMeanOrMedian);
+        
+                // call Reduce function
+                result = reduce(futures);
             }
-    
-            // call Map function
-            List<Future<FileThread>> futures = map(folder, dirPath, executor);
-    
-            // call Reduce function
-            ReduceResults<Integer, Integer, HashMap<String, ArrayList<Double>>> result = reduce(futures);
             
             // shutdown all threads(once processing is complete)
             executor.shutdown();
+            readerExecutor.shutdown();
     
             // wait until all threads are finished
-            while(!executor.isTerminated()){}
+            while(!executor.isTerminated() || !readerExecutor.isTerminated()){}
 
             // System.out.println("Finished all Threads");
 
-            HashMap<String, ArrayList<Double>> allPriceHm = result.getC();
+            HashMap<String, PriceAggregate> allPriceHm = result.getC();
 
             HashMap<String, Double> mapValue = new HashMap<String, Double>();
             
-            if (findMeanOrMedian.equals("mean")){
-            	mapValue = getMeanPriceByCarrier(allPriceHm);
-            }else if (findMeanOrMedian.equals("median")){
-            	mapValue = getMedianPriceByCarrier(allPriceHm);
+            if (findMeanOrMedian.equals("mean") || findMeanOrMedian.equals("median")
+                                    || findMeanOrMedian.equals("approx-median")){
+                // mean or median, decided by the PriceAggregate built in FileThread
+            	mapValue = getPriceByCarrier(allPriceHm);
             }
       
-            // sort the HashMap in ascending order and display in stdout
-            TreeMap<Double, String> sortedHm = sortHashMap(mapValue);
-            Writer writer = null;
-            try{                
-                if (doParallel){
-                    writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("output/output_multi_"+findMeanOrMedian+".txt"), "utf-8"));
-                }
-                else{
-                    writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("output/output_single_"+findMeanOrMedian+".txt"), "utf-8"));
-                }
-                
-
-                for(Double menaOrMedianprice: sortedHm.keySet()){
-                    String monthAndCarrier = sortedHm.get(menaOrMedianprice);
-                    String carrier = monthAndCarrier.substring(0, 2);
-                    String month = monthAndCarrier.substring(2,monthAndCarrier.length());
-                    writer.write(month + " " + carrier + " "+ Math.round(menaOrMedianprice*100.0)/100.0 + "\n");  
-                }
-            }
-            catch(Exception e){
-                //e.getMessage();
+            if (doParallel){
+                writeOutput("output/output_multi_"+findMeanOrMedian+".txt", mapValue);
             }
-            finally{
-                writer.close();
+            else{
+                writeOutput("output/output_single_"+findMeanOrMedian+".txt", mapValue);
             }
         }
         catch(Exception e){
@@ -123,33 +155,111 @@ public class Solution{
             e.printStackTrace();
         }
     }
+
+    /**
+     * writeOutput
+     * sorts the HashMap in ascending order and writes month, carrier and 
+     * price of every entry to the output file.
+     * @param   fileName output file.
+     * @param   mapValue HashMap of mean or median ticket price by carrier and month.
+     */
+    public static void writeOutput(String fileName, HashMap<String, Double> mapValue) 
+                                                                throws IOException{
+        List<Map.Entry<String, Double>> sortedHm = sortHashMap(mapValue);
+        Writer writer = null;
+        try{                
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), "utf-8"));
+            for(Map.Entry<String, Double> entry: sortedHm){
+                Double menaOrMedianprice = entry.getValue();
+                String monthAndCarrier = entry.getKey();
+                String carrier = monthAndCarrier.substring(0, 2);
+                String month = monthAndCarrier.substring(2,monthAndCarrier.length());
+                writer.write(month + " " + carrier + " "+ Math.round(menaOrMedianprice*100.0)/100.0 + "\n");  
+            }
+        }
+        catch(Exception e){
+            //e.getMessage();
+        }
+        finally{
+            writer.close();
+        }
+    }
     
     /**
      * map
-     * Runs multiple threads for processing data in each folder in given folder.
+     * Runs one decompression thread reading all files in given folder and 
+     * multiple worker threads parsing the batches of records it produces.
      * @param   folder File directory folder object.
      * @param   dirPath String directory path.
-     * @param   executor ExecutorService object.
+     * @param   executor ExecutorService object for the workers.
+     * @param   readerExecutor ExecutorService object for the decompression stage.
+     * @param   workers number of worker threads.
+     * @param   findMeanOrMedian String "mean", "median" or "approx-median".
      *
      * @return  List object.
+     * @throws  ExecutionException if a worker or the decompression stage failed.
      */
     public static List<Future<FileThread>> map(File folder, String dirPath , 
-                                                        ExecutorService executor){
-        List<Future<FileThread>> futures = null;
+                                                        ExecutorService executor,
+                                                        ExecutorService readerExecutor,
+                                                        Integer workers,
+                                                        String findMeanOrMedian)
+                                    throws InterruptedException, ExecutionException{
+        List<String> fileNames = new ArrayList<String>();
+        for (final File fileEntry : folder.listFiles()){
+            String fileName = fileEntry.getName();
+            String completeFileName = dirPath + "/" + fileName;
+            fileNames.add(completeFileName);
+        }
+        return map(fileNames, executor, readerExecutor, workers, findMeanOrMedian);
+    }
+
+    /**
+     * map
+     * Runs one decompression thread reading the given files and multiple 
+     * worker threads parsing the batches of records it produces.
+     * @param   fileNames gzipped files to be read.
+     * @param   executor ExecutorService object for the workers.
+     * @param   readerExecutor ExecutorService object for the decompression stage.
+     * @param   workers number of worker threads.
+     * @param   findMeanOrMedian String "mean", "median" or "approx-median".
+     *
+     * @return  List object, the futures of the workers which all completed.
+     * @throws  ExecutionException if a worker or the decompression stage 
+     *          failed, the other workers and the reader are cancelled.
+     */
+    public static List<Future<FileThread>> map(List<String> fileNames, 
+                                                        ExecutorService executor,
+                                                        ExecutorService readerExecutor,
+                                                        Integer workers,
+                                                        String findMeanOrMedian)
+                                    throws InterruptedException, ExecutionException{
+        BlockingQueue<LineBatch> queue = new ArrayBlockingQueue<LineBatch>(QUEUESIZE);
+        Future<Void> reader = readerExecutor.submit(new BatchReader(fileNames, queue, workers));
+
+        CompletionService<FileThread> completion = new ExecutorCompletionService<FileThread>(executor);
+        List<Future<FileThread>> futures = new ArrayList<Future<FileThread>>();
+        for (int i = 0; i < workers; i++){
+            Callable<FileThread> fileThread = new FileThread(queue, "worker-" + i, 
+                                                            findMeanOrMedian);
+            futures.add(completion.submit(fileThread));
+        }
         try{
-            Set<Callable<FileThread>> callables = new HashSet<Callable<FileThread>>();
-            for (final File fileEntry : folder.listFiles()){
-                String fileName = fileEntry.getName();
-                String completeFileName = dirPath + "/" + fileName;
-                Callable<FileThread> fileThread = new FileThread(completeFileName);
-                callables.add(fileThread);
+            for (int i = 0; i < workers; i++){
+                completion.take().get();
             }
-            futures = executor.invokeAll(callables);            
         }
-        catch(InterruptedException e){
-            System.out.println(e.getClass().getName() + "\n" + e.getMessage());
-            e.printStackTrace();
+        catch(ExecutionException e){
+            // a dead worker no longer drains the queue, the reader and the
+            // other workers would wait on it forever
+            reader.cancel(true);
+            for (Future<FileThread> future: futures){
+                future.cancel(true);
+            }
+            throw e;
         }
+        // surface failures of the decompression stage
+        reader.get();
         return futures;
     }
 
@@ -159,170 +269,86 @@ public class Solution{
      * main program.
      * @param   futures List of Future object.
      * @return   ReduceResults object containing merged results of all threads.
+     * @throws  ExecutionException if a worker failed or was cancelled.
      *
      */
-    public static ReduceResults<Integer, Integer, HashMap<String, ArrayList<Double>>> 
-                                reduce(List<Future<FileThread>> futures){        
+    public static ReduceResults<Integer, Integer, HashMap<String, PriceAggregate>> 
+                                reduce(List<Future<FileThread>> futures)
+                                    throws InterruptedException, ExecutionException{        
         Integer totalK = 0;
         Integer totalF = 0;
-        HashMap<String, ArrayList<Double>> allPriceHm = 
-                                            new HashMap<String, ArrayList<Double>>();
-        try{
-            for (Future<FileThread> future: futures){
-                FileThread ft = future.get();
-                Integer K = ft.getInsaneCounter() + ft.getCorruptCounter();
-                Integer F = ft.getSaneCounter();
-                totalK += K;
-                totalF += F;
-                HashMap<String, ArrayList<Double>> priceHm = ft.getPriceHashMap();
-                for(String key: priceHm.keySet()){
-                    if (allPriceHm.containsKey(key)){
-                        allPriceHm.get(key).addAll(priceHm.get(key));
-                    }
-                    else{
-                        allPriceHm.put(key, priceHm.get(key));
-                    }
+        HashMap<String, PriceAggregate> allPriceHm = 
+                                            new HashMap<String, PriceAggregate>();
+        Diagnostics allDiagnostics = new Diagnostics("Solution", SanityChecker.RULE_NAMES,
+                                    Diagnostics.samplesFromProperty(), System.err);
+        for (Future<FileThread> future: futures){
+            FileThread ft;
+            try{
+                ft = future.get();
+            }
+            catch(CancellationException e){
+                throw new ExecutionException("Worker cancelled", e);
+            }
+            Integer K = ft.getInsaneCounter() + ft.getCorruptCounter();
+            Integer F = ft.getSaneCounter();
+            totalK += K;
+            totalF += F;
+            allDiagnostics.merge(ft.getDiagnostics());
+            HashMap<String, PriceAggregate> priceHm = ft.getPriceHashMap();
+            for(String key: priceHm.keySet()){
+                if (allPriceHm.containsKey(key)){
+                    allPriceHm.get(key).merge(priceHm.get(key));
+                }
+                else{
+                    allPriceHm.put(key, priceHm.get(key));
                 }
-                /*priceHm.forEach((k, v) -> allPriceHm.merge(k, v, (v1, v2) -> {
-                    v1.addAll(v2);
-                    return v1;
-                }));*/
             }
+            /*priceHm.forEach((k, v) -> allPriceHm.merge(k, v, (v1, v2) -> {
+                v1.addAll(v2);
+                return v1;
+            }));*/
         }
-        catch(InterruptedException e){
-            System.out.println(e.getClass().getName() + "\n" + e.getMessage());
-            e.printStackTrace();
+        // rejected records per failed rule, only when diagnostics are on
+        if (allDiagnostics.isSampling()){
+            allDiagnostics.summary();
         }
-        catch(ExecutionException e){
-            System.out.println(e.getClass().getName() + "\n" + e.getMessage());
-            e.printStackTrace();
-        }
-        return new ReduceResults<Integer, Integer, HashMap<String, ArrayList<Double>>>(totalK, totalF, allPriceHm);
+        return new ReduceResults<Integer, Integer, HashMap<String, PriceAggregate>>(totalK, totalF, allPriceHm);
     }
     
     /**
-     * getMeanPriceByCarrier
-     * calculates the mean price with respect to carrier name.
-     * @param   allPriceHm HashMap containing list of average ticket prices.
-     * @return  HashMap of mean ticket price with Carrier name as keys.
+     * getPriceByCarrier
+     * calculates the mean or median price with respect to carrier name.
+     * @param   allPriceHm HashMap containing price aggregates.
+     * @return  HashMap of mean or median ticket price with Carrier name as keys.
      *
      */
-    public static HashMap<String, Double> getMeanPriceByCarrier(HashMap<String, ArrayList<Double>> allPriceHm){
-        // calculate mean of average_ticket_price
-        HashMap<String, Double> meanHm = new HashMap<String, Double>();
+    public static HashMap<String, Double> getPriceByCarrier(HashMap<String, PriceAggregate> allPriceHm){
+        HashMap<String, Double> priceHm = new HashMap<String, Double>();
         for(String carrierAndMonth: allPriceHm.keySet()){
-            ArrayList<Double> priceList = allPriceHm.get(carrierAndMonth);            
-            Double meanPrice = calculateMeanPrice(priceList);
-            meanHm.put(carrierAndMonth, meanPrice);
+            priceHm.put(carrierAndMonth, allPriceHm.get(carrierAndMonth).getPrice());
         }
-        return meanHm;
+        return priceHm;
     }
 
-    /**
-     * calculateMeanPrice
-     * returns the mean of a given arrayList.
-     * @param   priceList An ArrayList of Double elements.
-     * @return  Mean of given ArrayList.
-     *
-     */
-    public static Double calculateMeanPrice(ArrayList<Double> priceList){
-        Double sum = 0.0;
-        if (!priceList.isEmpty()){
-            for(Double price: priceList){
-                sum += price;
-            }
-            return sum/priceList.size();
-        }
-        return sum;
-    }
-    
-    /**
-     * getMedianPriceByCarrier
-     * calculates the median price with respect to carrier name.
-     * @param   allPriceHm Hashmap containing list of average ticket prices.
-     * @return  Hashmap of median ticket price with Carrier name as keys.
-     *
-     */
-    public static HashMap<String, Double> getMedianPriceByCarrier(HashMap<String, ArrayList<Double>> allPriceHm){
-        // calculate median of average_ticket_price
-        HashMap<String, Double> medianHm = new HashMap<String, Double>();
-        for(String carrierAndMonth: allPriceHm.keySet()){
-            ArrayList<Double> priceList = allPriceHm.get(carrierAndMonth);            
-            Double medianPrice = calculateMedianPrice(priceList);
-            medianHm.put(carrierAndMonth, medianPrice);
-        }
-        return medianHm;
-    }
-    
-    /**
-     * calculateMedianPrice
-     * returns the median of a given arrayList.
-     * @param   priceList An ArrayList of Double elements.
-     * @return  Median of given ArrayList.
-     *
-     */
-    public static Double calculateMedianPrice(ArrayList<Double> priceList){
-        try{
-            Collections.sort(priceList);
-            if(priceList.size() % 2 == 1){
-                return priceList.get((priceList.size() + 1) / 2 - 1);
-            }
-            else{
-                double lower = priceList.get(priceList.size()/2 - 1);
-                double upper = priceList.get(priceList.size()/2);
-                return (lower + upper) / 2.0;
-            }
-        }
-        catch(Exception e){
-            System.out.println(e.getClass().getName() + "\n" + e.getMessage());
-            return 0.0;
-        }
-    }   
-
     /**
      * sortHashMap
-     * returns a TreeMap sorted by value from the given HashMap.
+     * returns the entries of the given HashMap sorted by value, equal values
+     * are sorted by carrier name so that none of them is lost.
      * @param   unsortedMap An Unsorted HashMap of double values.
-     * @return  A sorted TreeMap with values as "keys" and carrier names as "values".
+     * @return  A sorted List of carrier names and values.
      *
      */    
-    public static TreeMap<Double, String> sortHashMap(HashMap<String, Double> unsortedMap){
-        // Function returns a sorted TreeMap given an unsorted HashMap as input
-        TreeMap<Double, String> sortedMap = new TreeMap<Double, String>();
-        for (Map.Entry<String, Double> entry : unsortedMap.entrySet()) {
-            sortedMap.put(entry.getValue(), entry.getKey());
-        }
-        return sortedMap;
+    public static List<Map.Entry<String, Double>> sortHashMap(HashMap<String, Double> unsortedMap){
+        // Function returns a sorted List given an unsorted HashMap as input
+        List<Map.Entry<String, Double>> sortedList = 
+                            new ArrayList<Map.Entry<String, Double>>(unsortedMap.entrySet());
+        Collections.sort(sortedList, new Comparator<Map.Entry<String, Double>>(){
+            @Override
+            public int compare(Map.Entry<String, Double> e1, Map.Entry<String, Double> e2){
+                int byValue = e1.getValue().compareTo(e2.getValue());
+                return byValue != 0 ? byValue : e1.getKey().compareTo(e2.getKey());
+            }
+        });
+        return sortedList;
     }
 }
-
-/**
- * Generic version of ReduceResults class.(Since multiple returns not possible
- * in JAVA)
- * @param A, B, C the type of the value being boxed.
- */
-class ReduceResults<A, B, C>{
-    private A _1;
-    private B _2;
-    private C _3;
-    
-    /**
-     * Constructor
-     * @param initializes the values.
-     * 
-     */
-    ReduceResults(A _1, B _2, C _3){
-        this._1 = _1;
-        this._2 = _2;
-        this._3 = _3;
-    }
-    public A getA(){
-        return this._1;
-    }
-    public B getB(){
-        return this._2;
-    }
-    public C getC(){
-        return this._3;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,1123 @@
+import java.util.*;
+import java.util.concurrent.*;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Test;
+import junit.framework.*;
+import static org.junit.Assert.assertEquals;
+
+public class TestJunit extends TestCase {
+   protected HashMap<String, PriceAggregate> priceHm;
+   PriceAccumulator al;
+
+   protected void setUp(){
+      this.priceHm = new HashMap<String, PriceAggregate>();
+      this.al = new PriceAccumulator();
+      this.al.add(20.5);
+      this.al.add(10.5);
+      this.al.add(30.5);
+      this.priceHm.put("AA", al);
+      this.al = new PriceAccumulator();
+      this.al.add(1.5);
+      this.al.add(3.3);
+      this.al.add(2.2);
+      this.al.add(4.5);
+      this.priceHm.put("BB", al);
+   }
+   
+   @Test
+   public void testSortAvgPrice(){
+      HashMap<String, Double> priceHm = new HashMap<String, Double>();  
+      priceHm.put("AA", 1.1);
+      priceHm.put("BB", 1.3);
+      priceHm.put("DD", 1.2);
+      priceHm.put("CC", 1.1);
+      List<Map.Entry<String, Double>> sortedHm = Solution.sortHashMap(priceHm);
+      assertEquals(4, sortedHm.size());
+      assertEquals("AA", sortedHm.get(0).getKey());
+      assertEquals("CC", sortedHm.get(1).getKey());
+      assertEquals("DD", sortedHm.get(2).getKey());
+      assertEquals("BB", sortedHm.get(3).getKey());
+   }
+
+   @Test
+   public void testGetMedianPriceByCarrier(){
+      HashMap<String, Double> medianHm = new HashMap<String, Double>();
+      medianHm.put("AA", 20.5);
+      medianHm.put("BB", 2.75);
+      assertEquals(medianHm, Solution.getPriceByCarrier(this.priceHm));
+   }
+
+   @Test
+   public void testPriceAccumulatorMerge(){
+      PriceAccumulator other = new PriceAccumulator();
+      other.add(0.5);
+      other.add(9.5);
+      this.al.merge(other);
+      assertEquals(6, this.al.size());
+      assertEquals(2.75, this.al.getPrice(), 0.0);
+   }
+
+   @Test
+   public void testMeanAccumulator(){
+      MeanAccumulator mean = new MeanAccumulator();
+      assertEquals(0.0, mean.getPrice(), 0.0);
+      mean.add(1.5);
+      mean.add(3.3);
+      MeanAccumulator other = new MeanAccumulator();
+      other.add(2.2);
+      other.add(4.5);
+      mean.merge(other);
+      assertEquals(4, mean.getCount());
+      assertEquals(2.875, mean.getPrice(), 1e-12);
+   }
+
+   @Test
+   public void testMedianOddAndEven(){
+      assertEquals(0.0, MedianFinder.median(new double[0], 0), 0.0);
+      assertEquals(7.0, MedianFinder.median(new double[]{7.0}, 1), 0.0);
+      assertEquals(20.5, MedianFinder.median(new double[]{20.5, 10.5, 30.5}, 3), 0.0);
+      assertEquals(2.75, MedianFinder.median(new double[]{1.5, 3.3, 2.2, 4.5}, 4), 0.0);
+      assertEquals(1.5, MedianFinder.median(new double[]{2.0, 1.0}, 2), 0.0);
+   }
+
+   @Test
+   public void testMedianIgnoresUnusedCapacity(){
+      double[] values = {4.0, 1.0, 3.0, 2.0, 100.0, -100.0};
+      assertEquals(2.5, MedianFinder.median(values, 4), 0.0);
+   }
+
+   @Test
+   public void testMedianWithDuplicates(){
+      assertEquals(5.0, MedianFinder.median(new double[]{5.0, 5.0, 5.0, 5.0}, 4), 0.0);
+      assertEquals(2.0, MedianFinder.median(new double[]{2.0, 1.0, 2.0, 2.0, 3.0}, 5), 0.0);
+      assertEquals(1.5, MedianFinder.median(new double[]{2.0, 1.0, 1.0, 2.0}, 4), 0.0);
+   }
+
+   @Test
+   public void testMedianMatchesSort(){
+      Random random = new Random(42);
+      for (int n = 1; n < 200; n++){
+         double[] values = new double[n];
+         for (int i = 0; i < n; i++){
+            // few distinct values to exercise the equal-to-pivot case
+            values[i] = (i % 3 == 0) ? random.nextInt(5) : random.nextDouble() * 1000;
+         }
+         double[] sorted = Arrays.copyOf(values, n);
+         Arrays.sort(sorted);
+         double expected = (n % 2 == 1) ? sorted[n / 2] 
+                                        : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+         assertEquals(expected, MedianFinder.median(values, n), 0.0);
+         for (int k = 0; k < n; k += 7){
+            assertEquals(sorted[k], MedianFinder.select(Arrays.copyOf(sorted, n), n, k), 0.0);
+         }
+      }
+   }
+
+   @Test
+   public void testSketchMedianWithinAccuracy(){
+      Random random = new Random(7);
+      QuantileSketch sketch = new QuantileSketch(0.005);
+      PriceAccumulator exact = new PriceAccumulator();
+      for (int i = 0; i < 100001; i++){
+         double price = Math.abs(random.nextGaussian() * 150 + 400) + 1;
+         sketch.add(price);
+         exact.add(price);
+      }
+      double median = exact.getPrice();
+      assertEquals(median, sketch.getPrice(), median * 0.005);
+   }
+
+   @Test
+   public void testSketchMergeEqualsSingleSketch(){
+      QuantileSketch all = new QuantileSketch(0.01);
+      QuantileSketch low = new QuantileSketch(0.01);
+      QuantileSketch high = new QuantileSketch(0.01);
+      for (int i = 1; i <= 1000; i++){
+         all.add(i);
+         if (i % 2 == 0){
+            low.add(i);
+         }
+         else{
+            high.add(i);
+         }
+      }
+      low.merge(high);
+      assertEquals(all.getCount(), low.getCount());
+      assertEquals(all.getPrice(), low.getPrice(), 0.0);
+      assertEquals(all.getQuantile(0.9), low.getQuantile(0.9), 0.0);
+   }
+
+   @Test
+   public void testSketchWriteAndRead() throws Exception{
+      QuantileSketch sketch = new QuantileSketch(0.02);
+      sketch.add(0.0);
+      sketch.add(12.5);
+      sketch.add(350.0);
+      sketch.add(9999.0);
+      java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+      sketch.write(new java.io.DataOutputStream(bytes));
+      QuantileSketch copy = new QuantileSketch();
+      copy.readFields(new java.io.DataInputStream(
+                        new java.io.ByteArrayInputStream(bytes.toByteArray())));
+      assertEquals(0.02, copy.getRelativeAccuracy(), 0.0);
+      assertEquals(4, copy.getCount());
+      assertEquals(sketch.getPrice(), copy.getPrice(), 0.0);
+      assertEquals(0.0, copy.getQuantile(0.0), 0.0);
+   }
+
+   @Test
+   public void testSketchIsBounded(){
+      QuantileSketch sketch = new QuantileSketch(0.001);
+      for (double price = 1e-6; price < 1e9; price *= 1.0005){
+         sketch.add(price);
+      }
+      java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+      try{
+         sketch.write(new java.io.DataOutputStream(bytes));
+      }
+      catch(java.io.IOException e){
+         fail(e.getMessage());
+      }
+      assertTrue(bytes.size() <= 24 + 8 * QuantileSketch.MAXBUCKETS);
+      // upper quantiles keep their accuracy
+      double top = sketch.getQuantile(1.0);
+      assertEquals(1e9, top, 1e9 * 0.002);
+   }
+
+   @Test
+   public void testTokenizerQuotedFields(){
+      CsvTokenizer tokenizer = new CsvTokenizer();
+      byte[] line = "2015,\"AA\",\"Dallas, TX\",,\"say \"\"hi\"\"\",12.50\r".getBytes();
+      assertEquals(6, tokenizer.reset(line, 0, line.length));
+      assertEquals(2015, tokenizer.getInt(0));
+      assertEquals("AA", tokenizer.getString(1));
+      assertTrue(tokenizer.fieldEquals(1, "AA"));
+      assertEquals("Dallas, TX", tokenizer.getString(2));
+      assertTrue(tokenizer.isEmpty(3));
+      assertEquals("say \"hi\"", tokenizer.getString(4));
+      assertEquals(12.5, tokenizer.getDouble(5), 0.0);
+      // the record can be a slice of a larger array
+      assertEquals(1, tokenizer.reset(line, 5, 4));
+      assertEquals("AA", tokenizer.getString(0));
+      assertEquals(2, tokenizer.reset(line, 0, 9));
+      assertEquals(2015, tokenizer.getLong(0));
+   }
+
+   @Test
+   public void testTokenizerNumbersMatchJdk(){
+      CsvTokenizer tokenizer = new CsvTokenizer();
+      String[] values = {"0", "-7", "+15", "1234.5", "-0.25", "00.10", "1e3", 
+                         "123456789012345678", "0.1000000000000000055511", "2147483647"};
+      for (String value: values){
+         byte[] line = value.getBytes();
+         tokenizer.reset(line, 0, line.length);
+         assertEquals(value, Double.parseDouble(value), tokenizer.getDouble(0), 0.0);
+      }
+      Random random = new Random(7);
+      for (int i = 0; i < 10000; i++){
+         String value = String.valueOf(random.nextInt(10000000)) + "." + random.nextInt(100);
+         byte[] line = value.getBytes();
+         tokenizer.reset(line, 0, line.length);
+         assertEquals(value, Double.parseDouble(value), tokenizer.getDouble(0), 0.0);
+      }
+      byte[] line = "2147483647,-2147483648,9876543210".getBytes();
+      tokenizer.reset(line, 0, line.length);
+      assertEquals(Integer.MAX_VALUE, tokenizer.getInt(0));
+      assertEquals(Integer.MIN_VALUE, tokenizer.getInt(1));
+      assertEquals(9876543210L, tokenizer.getLong(2));
+   }
+
+   @Test
+   public void testTokenizerRejectsBadNumbers(){
+      CsvTokenizer tokenizer = new CsvTokenizer();
+      byte[] line = ",12a,-,2147483648,1.2.3".getBytes();
+      tokenizer.reset(line, 0, line.length);
+      for (int i = 0; i < 4; i++){
+         try{
+            tokenizer.getInt(i);
+            fail("field " + i + " is not an int");
+         }
+         catch(NumberFormatException e){
+         }
+      }
+      try{
+         tokenizer.getDouble(4);
+         fail("field 4 is not a double");
+      }
+      catch(NumberFormatException e){
+      }
+   }
+
+   @Test
+   public void testTokenizerSkipAndBounds(){
+      CsvTokenizer tokenizer = new CsvTokenizer();
+      tokenizer.reset(java.nio.ByteBuffer.wrap("7,a,b,".getBytes()));
+      assertEquals(4, tokenizer.getFieldCount());
+      tokenizer.skip(1);
+      assertEquals(3, tokenizer.getFieldCount());
+      assertEquals("a", tokenizer.getString(0));
+      assertTrue(tokenizer.isEmpty(2));
+      try{
+         tokenizer.getString(3);
+         fail("only 3 fields after skip");
+      }
+      catch(ArrayIndexOutOfBoundsException e){
+      }
+      java.nio.ByteBuffer direct = java.nio.ByteBuffer.allocateDirect(8);
+      direct.put("x,\"y\"".getBytes()).flip();
+      assertEquals(2, tokenizer.reset(direct));
+      assertEquals("y", tokenizer.getString(1));
+      assertEquals(0, direct.position());
+   }
+
+   @Test
+   public void testFlightRecordReadsColumnsByName(){
+      String[] headers = {"MONTH", "CARRIER", "AVG_TICKET_PRICE", "CARRIER"};
+      FlightRecord record = new FlightRecord(FlightRecord.layoutOf(headers));
+      assertEquals(0, record.getLayout()[FlightRecord.MONTH]);
+      // last occurrence of a repeated header wins
+      assertEquals(3, record.getLayout()[FlightRecord.CARRIER]);
+      assertEquals(-1, record.getLayout()[FlightRecord.ORIGIN]);
+      byte[] line = "7,AA,12.5".getBytes();
+      record.reset(line, 0, line.length);
+      assertEquals(7, record.getInt(FlightRecord.MONTH));
+      assertEquals(12.5, record.getDouble(FlightRecord.AVG_TICKET_PRICE), 0.0);
+      // missing from the header or from the record reads as ""
+      assertEquals("", record.getString(FlightRecord.ORIGIN));
+      assertEquals("", record.getString(FlightRecord.CARRIER));
+      assertTrue(record.isEmpty(FlightRecord.CARRIER));
+      assertTrue(record.fieldEquals(FlightRecord.CARRIER, ""));
+      try{
+         record.getInt(FlightRecord.ORIGIN);
+         fail("missing column is not an int");
+      }
+      catch(NumberFormatException e){
+      }
+      // parsed values do not survive a reset
+      line = "8,AA,13".getBytes();
+      record.reset(line, 0, line.length);
+      assertEquals(8, record.getInt(FlightRecord.MONTH));
+      assertEquals(13.0, record.getDouble(FlightRecord.AVG_TICKET_PRICE), 0.0);
+   }
+
+   @Test
+   public void testFlightRecordBtsLayout(){
+      String[] values = new String[110];
+      Arrays.fill(values, "");
+      values[8] = "\"AA\"";
+      values[40] = "1230";
+      values[109] = "99.5";
+      FlightRecord record = new FlightRecord();
+      tokenize(record, values);
+      assertTrue(record.fieldEquals(FlightRecord.CARRIER, "AA"));
+      assertEquals(1230, record.getInt(FlightRecord.CRS_ARR_TIME));
+      assertEquals(99.5, record.getDouble(FlightRecord.AVG_TICKET_PRICE), 0.0);
+      assertTrue(record.isEmpty(FlightRecord.ORIGIN));
+   }
+
+   @Test
+   public void testIsSaneOnFlightRecord(){
+      String[] values = new String[FlightRecord.NAMES.length];
+      Arrays.fill(values, "1");
+      values[FlightRecord.CRS_ARR_TIME] = "1200";
+      values[FlightRecord.CRS_DEP_TIME] = "1000";
+      values[FlightRecord.CRS_ELAPSED_TIME] = "120";
+      values[FlightRecord.ORIGIN] = "\"BOS\"";
+      values[FlightRecord.ARR_TIME] = "1210";
+      values[FlightRecord.DEP_TIME] = "1005";
+      values[FlightRecord.ACTUAL_ELAPSED_TIME] = "125";
+      values[FlightRecord.ARR_DELAY] = "10.00";
+      values[FlightRecord.ARR_DELAY_NEW] = "10.00";
+      values[FlightRecord.ARR_DEL15] = "0.00";
+      SanityChecker checker = new SanityChecker(SanityChecker.SOLUTION);
+      FlightRecord record = new FlightRecord(FlightRecord.layoutOf(FlightRecord.NAMES));
+      values[FlightRecord.CANCELLED] = "0";
+      assertEquals(SanityChecker.SANE, checker.check(tokenize(record, values)));
+      // ArrDelay > 0 has to equal ArrDelayMinutes, ArrDel15 is not set
+      values[FlightRecord.ARR_DELAY_NEW] = "20.00";
+      assertEquals(SanityChecker.INSANE, checker.check(tokenize(record, values)));
+      // a record cut short before CRS_ELAPSED_TIME is a format error
+      String[] shortValues = Arrays.copyOf(values, FlightRecord.CRS_ELAPSED_TIME);
+      assertEquals(SanityChecker.CORRUPT, checker.check(tokenize(record, shortValues)));
+   }
+
+   @Test
+   public void testSanityCheckerProfiles(){
+      String[] values = new String[FlightRecord.NAMES.length];
+      Arrays.fill(values, "1");
+      values[FlightRecord.CRS_ARR_TIME] = "1200";
+      values[FlightRecord.CRS_DEP_TIME] = "1000";
+      values[FlightRecord.CRS_ELAPSED_TIME] = "120";
+      values[FlightRecord.ARR_TIME] = "1210";
+      values[FlightRecord.DEP_TIME] = "1005";
+      values[FlightRecord.ACTUAL_ELAPSED_TIME] = "125";
+      values[FlightRecord.CANCELLED] = "0";
+      // delayed by 20 minutes but ArrDel15 is not set
+      values[FlightRecord.ARR_DELAY] = "20.00";
+      values[FlightRecord.ARR_DELAY_NEW] = "20.00";
+      values[FlightRecord.ARR_DEL15] = "0.00";
+      FlightRecord record = new FlightRecord(FlightRecord.layoutOf(FlightRecord.NAMES));
+      tokenize(record, values);
+      assertEquals(SanityChecker.SANE, new SanityChecker(SanityChecker.SOLUTION).check(record));
+      assertEquals(SanityChecker.INSANE, new SanityChecker(SanityChecker.MAP_REDUCE).check(record));
+      assertEquals(SanityChecker.INSANE, new SanityChecker(SanityChecker.PREDICTION_TRAIN).check(record));
+      // test records are not checked past the names, empty delays are fine
+      values[FlightRecord.ARR_DELAY] = "";
+      tokenize(record, values);
+      assertEquals(SanityChecker.CORRUPT, new SanityChecker(SanityChecker.MAP_REDUCE).check(record));
+      assertEquals(SanityChecker.SANE, new SanityChecker(SanityChecker.PREDICTION_TEST).check(record));
+      // cancelled flights pass before the actual times are read
+      values[FlightRecord.CANCELLED] = "1";
+      tokenize(record, values);
+      assertEquals(SanityChecker.SANE, new SanityChecker(SanityChecker.MAP_REDUCE).check(record));
+   }
+
+   @Test
+   public void testSanityCheckerRuleOrder(){
+      try{
+         new SanityChecker(new int[]{SanityChecker.CRS_TIME_ZONE, SanityChecker.CRS_TIMES_NOT_ZERO});
+         fail("the time zone needs the CRS times first");
+      }
+      catch(IllegalArgumentException e){
+      }
+   }
+
+   @Test
+   public void testDiagnosticsRateLimit(){
+      java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+      Diagnostics diagnostics = new Diagnostics("test", new String[]{"A", "B"}, 2, 
+                                             new java.io.PrintStream(bytes));
+      int sampled = 0;
+      for (int i = 0; i < 1000; i++){
+         if (diagnostics.count(0)){
+            diagnostics.sample(0, "row" + i);
+            sampled++;
+         }
+      }
+      // first 2, then the counts 4, 8, ..., 512
+      assertEquals(2 + 8, sampled);
+      assertEquals(1000L, diagnostics.getCount(0));
+      assertEquals(0L, diagnostics.getCount(1));
+      assertTrue(bytes.toString().startsWith("diagnostics\tsource=test\treason=A\tcount=1\trecord=row0"));
+      // sampling off, only counted
+      Diagnostics counting = new Diagnostics("test", new String[]{"A", "B"});
+      assertFalse(counting.count(1));
+      counting.merge(diagnostics);
+      assertEquals(1000L, counting.getCount(0));
+      assertEquals(1L, counting.getCount(1));
+   }
+
+   @Test
+   public void testColumnFileRoundTrip() throws Exception{
+      String[] rows = new String[5];
+      for (int i = 0; i < rows.length; i++){
+         String[] values = new String[110];
+         Arrays.fill(values, "");
+         values[0] = "2015";
+         values[2] = Integer.toString(i + 1);
+         values[8] = "\"AA\"";
+         values[15] = "\"Boston, MA\"";
+         values[109] = i + ".5";
+         StringBuilder line = new StringBuilder();
+         for (int j = 0; j < values.length; j++){
+            line.append(j == 0 ? "" : ",").append(values[j]);
+         }
+         rows[i] = line.toString();
+      }
+      java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+      // two rows per block, the last block holds one row
+      ColumnFile.Writer writer = new ColumnFile.Writer(bytes, FlightRecord.BTS_LAYOUT, 2);
+      CsvTokenizer fields = new CsvTokenizer();
+      for (String row: rows){
+         byte[] line = row.getBytes();
+         fields.reset(line, 0, line.length);
+         writer.append(fields);
+      }
+      writer.close();
+      java.io.DataInputStream in = new java.io.DataInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray()));
+      ColumnFile.Header header = ColumnFile.Header.read(in);
+      assertEquals(FlightRecord.NAMES.length, header.getColumns().length);
+      ColumnFile.RowBuilder builder = new ColumnFile.RowBuilder(header.getColumns(), null);
+      FlightRecord record = new FlightRecord();
+      int row = 0;
+      for (int blocks = 0; blocks < 3; blocks++){
+         byte[] sync = new byte[ColumnFile.SYNC_SIZE];
+         in.readFully(sync);
+         assertTrue(Arrays.equals(header.getSync(), sync));
+         ColumnFile.Block block = ColumnFile.Block.read(in, header.getColumns().length);
+         assertEquals(blocks < 2 ? 2 : 1, block.getRows());
+         assertTrue(block.hasStats(FlightRecord.MONTH));
+         assertEquals(2 * blocks + 1, block.getMin(FlightRecord.MONTH));
+         builder.setBlock(block);
+         for (int i = 0; i < block.getRows(); i++, row++){
+            byte[] line = builder.next();
+            record.reset(line, 0, builder.getLength());
+            assertEquals(110, record.getTokenizer().getFieldCount());
+            assertEquals(row + 1, record.getInt(FlightRecord.MONTH));
+            assertTrue(record.fieldEquals(FlightRecord.CARRIER, "AA"));
+            assertEquals("Boston, MA", record.getString(FlightRecord.ORIGIN_CITY_NAME));
+            assertEquals(row + 0.5, record.getDouble(FlightRecord.AVG_TICKET_PRICE), 0.0);
+         }
+      }
+      assertEquals(rows.length, row);
+      byte[] sync = new byte[ColumnFile.SYNC_SIZE];
+      in.readFully(sync);
+      assertTrue(Arrays.equals(header.getSync(), sync));
+      ColumnFile.Stats stats = ColumnFile.Stats.readTrailer(in, header.getColumns().length);
+      assertEquals(1, stats.getMin(FlightRecord.MONTH));
+      assertEquals(5, stats.getMax(FlightRecord.MONTH));
+      assertFalse(stats.hasStats(FlightRecord.AVG_TICKET_PRICE));
+      in.readInt();
+      assertEquals(-1, in.read());
+   }
+
+   @Test
+   public void testFlightFilter() throws Exception{
+      FlightFilter filter = FlightFilter.parse("YEAR=2015, MONTH=2..3");
+      assertNull(FlightFilter.parse(""));
+      FlightRecord record = new FlightRecord();
+      String[] values = new String[110];
+      Arrays.fill(values, "");
+      values[0] = "2015";
+      values[2] = "3";
+      assertTrue(filter.matches(tokenize(record, values)));
+      values[2] = "4";
+      assertFalse(filter.matches(tokenize(record, values)));
+      values[2] = "";
+      assertFalse(filter.matches(tokenize(record, values)));
+      // min and max of the blocks - months 1..2 may match, 4..5 cannot
+      java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+      ColumnFile.Writer writer = new ColumnFile.Writer(bytes, FlightRecord.BTS_LAYOUT, 2);
+      CsvTokenizer fields = new CsvTokenizer();
+      for (int month: new int[]{1, 2, 4, 5}){
+         values[2] = Integer.toString(month);
+         byte[] line = tokenize(record, values).getTokenizer().getBytes();
+         fields.reset(line, 0, line.length);
+         writer.append(fields);
+      }
+      writer.close();
+      java.io.DataInputStream in = new java.io.DataInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray()));
+      ColumnFile.Header header = ColumnFile.Header.read(in);
+      int[] bound = filter.bind(header.getColumns());
+      in.skipBytes(ColumnFile.SYNC_SIZE);
+      assertTrue(filter.mayMatch(bound, ColumnFile.Block.read(in, header.getColumns().length)));
+      in.skipBytes(ColumnFile.SYNC_SIZE);
+      assertFalse(filter.mayMatch(bound, ColumnFile.Block.read(in, header.getColumns().length)));
+      in.skipBytes(ColumnFile.SYNC_SIZE);
+      // the whole file - 2015 may match, 2016 cannot
+      ColumnFile.Stats stats = ColumnFile.Stats.readTrailer(in, header.getColumns().length);
+      assertTrue(filter.mayMatch(bound, stats));
+      assertFalse(FlightFilter.parse("YEAR=2016").mayMatch(bound, stats));
+      try{
+         FlightFilter.parse("MONTHS=1");
+         fail();
+      }
+      catch(IllegalArgumentException e){
+      }
+   }
+
+   @Test
+   public void testPriceCube() throws Exception{
+      // sane records in the layout of FlightRecord.NAMES
+      String[] values = new String[FlightRecord.NAMES.length];
+      Arrays.fill(values, "1");
+      values[FlightRecord.CRS_ARR_TIME] = "1200";
+      values[FlightRecord.CRS_DEP_TIME] = "1000";
+      values[FlightRecord.CRS_ELAPSED_TIME] = "120";
+      values[FlightRecord.ARR_TIME] = "1200";
+      values[FlightRecord.DEP_TIME] = "1000";
+      values[FlightRecord.ACTUAL_ELAPSED_TIME] = "120";
+      values[FlightRecord.ARR_DELAY] = "0";
+      values[FlightRecord.ARR_DELAY_NEW] = "0";
+      values[FlightRecord.ARR_DEL15] = "0";
+      values[FlightRecord.CANCELLED] = "0";
+      values[FlightRecord.YEAR] = "2015";
+      values[FlightRecord.CARRIER] = "AA";
+      StringBuilder csv = new StringBuilder();
+      for (int i = 0; i < FlightRecord.NAMES.length; i++){
+         csv.append(i == 0 ? "" : ",").append(FlightRecord.NAMES[i]);
+      }
+      String[][] flights = {{"BOS", "1", "100"}, {"BOS", "1", "300"}, {"JFK", "1", "200"}, {"BOS", "2", "50"}};
+      for (String[] flight: flights){
+         values[FlightRecord.ORIGIN] = flight[0];
+         values[FlightRecord.MONTH] = flight[1];
+         values[FlightRecord.AVG_TICKET_PRICE] = flight[2];
+         csv.append('\n');
+         for (int i = 0; i < values.length; i++){
+            csv.append(i == 0 ? "" : ",").append(values[i]);
+         }
+      }
+      java.io.ByteArrayOutputStream gzipped = new java.io.ByteArrayOutputStream();
+      java.util.zip.GZIPOutputStream gzip = new java.util.zip.GZIPOutputStream(gzipped);
+      gzip.write(csv.toString().getBytes());
+      gzip.close();
+      PriceCube.Partition built = PriceCube.Partition.build("f.csv.gz", 10, 20, 
+            new java.io.ByteArrayInputStream(gzipped.toByteArray()), PriceCube.SOLUTION, 0.01);
+      // BOS and JFK in January, BOS in February
+      assertEquals(3, built.getCells().size());
+      java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+      built.write(bytes);
+      PriceCube.Partition partition = PriceCube.Partition.read(new java.io.ByteArrayInputStream(bytes.toByteArray()));
+      assertTrue(partition.isCurrent(10, 20, PriceCube.SOLUTION, 0.01));
+      assertFalse(partition.isCurrent(10, 21, PriceCube.SOLUTION, 0.01));
+      assertFalse(partition.isCurrent(10, 20, PriceCube.MAP_REDUCE, 0.01));
+      List<PriceCube.Partition> partitions = Arrays.asList(partition);
+      TreeMap<String, TreeMap<Integer, PriceAggregate>> all = PriceCube.byCarrierAndMonth(partitions, 
+            PriceCube.Query.parse(null), "mean");
+      assertEquals(200.0, all.get("AA").get(1).getPrice(), 1e-9);
+      assertEquals(50.0, all.get("AA").get(2).getPrice(), 1e-9);
+      TreeMap<String, TreeMap<Integer, PriceAggregate>> boston = PriceCube.byCarrierAndMonth(partitions, 
+            PriceCube.Query.parse("ORIGIN=BOS,MONTH=1"), "approx-median");
+      assertEquals(1, boston.get("AA").size());
+      assertEquals(200.0, boston.get("AA").get(1).getPrice(), 200.0 * 0.01);
+      assertTrue(PriceCube.activeCarriers(partitions, PriceCube.Query.parse("YEAR=2015"), 2015).contains("AA"));
+      assertTrue(PriceCube.activeCarriers(partitions, PriceCube.Query.parse("YEAR=2014"), 2015).isEmpty());
+   }
+
+   @Test
+   public void testCheckpointPartial() throws Exception{
+      // the median of two files is merged from the prices kept by their partials
+      List<Checkpoint.Partial> partials = new ArrayList<Checkpoint.Partial>();
+      double[][] prices = {{100, 400}, {300}};
+      for (int file = 0; file < prices.length; file++){
+         HashMap<String, PriceAggregate> priceHm = new HashMap<String, PriceAggregate>();
+         PriceAggregate aggregate = FileThread.newPriceAggregate("median");
+         for (double price: prices[file]){
+            aggregate.add(price);
+         }
+         priceHm.put("AA1", aggregate);
+         Checkpoint.Partial built = new Checkpoint.Partial("f" + file + ".csv.gz", 10, 20, "median", 0.0, 
+               1, prices[file].length, priceHm);
+         java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+         built.write(bytes);
+         Checkpoint.Partial partial = Checkpoint.Partial.read(new java.io.ByteArrayInputStream(bytes.toByteArray()));
+         assertTrue(partial.isCurrent(10, 20, 0.0));
+         assertFalse(partial.isCurrent(11, 20, 0.0));
+         partials.add(partial);
+      }
+      ReduceResults<Integer, Integer, HashMap<String, PriceAggregate>> result = Checkpoint.merge(partials);
+      assertEquals(Integer.valueOf(2), result.getA());
+      assertEquals(Integer.valueOf(3), result.getB());
+      assertEquals(300.0, result.getC().get("AA1").getPrice(), 1e-9);
+   }
+
+   @Test
+   public void testMapReturnsWhenAllWorkersFail() throws Exception{
+      // more batches than the queue holds, every worker dies on its first sane record
+      java.io.File file = java.io.File.createTempFile("flights", ".csv.gz");
+      file.deleteOnExit();
+      writeFlights(file, 2000);
+      int batchBytes = BatchReader.BATCHBYTES;
+      BatchReader.BATCHBYTES = 1024;
+      final ExecutorService executor = Executors.newFixedThreadPool(2);
+      final ExecutorService readerExecutor = Executors.newSingleThreadExecutor();
+      try{
+         final List<String> fileNames = Collections.singletonList(file.getPath());
+         // no statistic, so the workers fail to create the aggregate of a carrier
+         Future<List<Future<FileThread>>> run = Executors.newSingleThreadExecutor().submit(
+               new Callable<List<Future<FileThread>>>(){
+                  public List<Future<FileThread>> call() throws Exception{
+                     return Solution.map(fileNames, executor, readerExecutor, 2, null);
+                  }
+               });
+         try{
+            run.get(30, TimeUnit.SECONDS);
+            fail("map returned although its workers failed");
+         }
+         catch(ExecutionException e){
+            // the failure of the worker, rethrown by map
+            assertTrue(e.getCause() instanceof ExecutionException);
+         }
+         readerExecutor.shutdown();
+         assertTrue(readerExecutor.awaitTermination(30, TimeUnit.SECONDS));
+         // reduce reports the cancelled workers of such a run as a failure too
+         FutureTask<FileThread> cancelled = new FutureTask<FileThread>(new FileThread(null, "cancelled", "mean"));
+         cancelled.cancel(true);
+         try{
+            Solution.reduce(Collections.<Future<FileThread>>singletonList(cancelled));
+            fail("reduce returned the results of a cancelled worker");
+         }
+         catch(ExecutionException e){
+            assertTrue(e.getCause() instanceof CancellationException);
+         }
+      }
+      finally{
+         BatchReader.BATCHBYTES = batchBytes;
+         executor.shutdownNow();
+         readerExecutor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testCheckpointSkipsUnreadableFiles() throws Exception{
+      java.io.File input = java.nio.file.Files.createTempDirectory("input").toFile();
+      java.io.File state = java.nio.file.Files.createTempDirectory("state").toFile();
+      java.io.File file = new java.io.File(input, "flights.csv.gz");
+      writeFlights(file, 20000);
+      // a gzip cut in half is not read to the end
+      byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+      java.nio.file.Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length / 2));
+      int batchBytes = BatchReader.BATCHBYTES;
+      BatchReader.BATCHBYTES = 1024;
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      ExecutorService readerExecutor = Executors.newSingleThreadExecutor();
+      java.io.File partialFile = new java.io.File(state, "flights.csv.gz.mean" + Checkpoint.EXTENSION);
+      try{
+         try{
+            Checkpoint.refresh(input, state, "mean", executor, readerExecutor, 2);
+            fail("refresh returned the counts of a truncated file");
+         }
+         catch(ExecutionException e){
+            assertTrue(e.getCause() instanceof java.io.IOException);
+         }
+         assertFalse(partialFile.exists());
+         // a corrupt partial is built again instead of failing the run
+         writeFlights(file, 100);
+         java.nio.file.Files.write(partialFile.toPath(), "not a partial".getBytes());
+         ReduceResults<Integer, Integer, HashMap<String, PriceAggregate>> result =
+               Checkpoint.refresh(input, state, "mean", executor, readerExecutor, 2);
+         assertEquals(Integer.valueOf(100), result.getB());
+         Checkpoint.Partial partial = Checkpoint.Partial.read(new java.io.FileInputStream(partialFile));
+         assertEquals(Integer.valueOf(100), partial.getSaneCounter());
+      }
+      finally{
+         BatchReader.BATCHBYTES = batchBytes;
+         executor.shutdownNow();
+         readerExecutor.shutdownNow();
+         for (java.io.File dir : new java.io.File[]{input, state}){
+            for (java.io.File entry : dir.listFiles()){
+               entry.delete();
+            }
+            dir.delete();
+         }
+      }
+   }
+
+   // Writes a gzipped csv file of a header and the given number of sane rows
+   private static void writeFlights(java.io.File file, int rows) throws java.io.IOException{
+      String[] values = new String[FlightRecord.NAMES.length];
+      Arrays.fill(values, "1");
+      values[FlightRecord.CRS_ARR_TIME] = "1200";
+      values[FlightRecord.CRS_DEP_TIME] = "1000";
+      values[FlightRecord.CRS_ELAPSED_TIME] = "120";
+      values[FlightRecord.ARR_TIME] = "1200";
+      values[FlightRecord.DEP_TIME] = "1000";
+      values[FlightRecord.ACTUAL_ELAPSED_TIME] = "120";
+      values[FlightRecord.ARR_DELAY] = "0";
+      values[FlightRecord.ARR_DELAY_NEW] = "0";
+      values[FlightRecord.ARR_DEL15] = "0";
+      values[FlightRecord.CANCELLED] = "0";
+      values[FlightRecord.CARRIER] = "AA";
+      values[FlightRecord.ORIGIN] = "BOS";
+      values[FlightRecord.AVG_TICKET_PRICE] = "100";
+      java.io.PrintStream out = new java.io.PrintStream(new java.util.zip.GZIPOutputStream(
+            new java.io.FileOutputStream(file)));
+      out.println(Arrays.toString(FlightRecord.NAMES).replaceAll("[\\[\\] ]", ""));
+      String row = Arrays.toString(values).replaceAll("[\\[\\] ]", "");
+      for (int i = 0; i < rows; i++){
+         out.println(row);
+      }
+      out.close();
+   }
+
+   @Test
+   public void testPackCarrierMonthRoundTrip(){
+      String[] values = new String[110];
+      Arrays.fill(values, "");
+      FlightRecord record = new FlightRecord();
+      byte[] carrier = new byte[CarrierCount.PACKED_CARRIER_LENGTH];
+      for (String code : new String[]{"A", "AA", "9E", "ABCDE"}){
+         for (int month : new int[]{1, 12}){
+            values[FlightRecord.BTS_LAYOUT[FlightRecord.CARRIER]] = code;
+            long packed = CarrierCount.packCarrierMonth(tokenize(record, values), month);
+            assertTrue(packed >= 0);
+            assertEquals(month, (int) (packed & 0xffff));
+            int length = CarrierCount.unpackCarrier(packed, carrier);
+            assertEquals(code, new String(carrier, carrier.length - length, length));
+         }
+      }
+      // longer carrier codes are not packed
+      values[FlightRecord.BTS_LAYOUT[FlightRecord.CARRIER]] = "ABCDEF";
+      assertEquals(-1L, CarrierCount.packCarrierMonth(tokenize(record, values), 1));
+   }
+
+   @Test
+   public void testMonthSumTableClear(){
+      CarrierCount.MonthSumTable table = new CarrierCount.MonthSumTable(3);
+      assertTrue(table.capacity() > 3);
+      CarrierCount.MonthSum sum = table.get(7L, 1);
+      sum.add(10.0, false);
+      assertSame(sum, table.get(7L, 1));
+      table.get(8L, 2);
+      table.get(9L, 3);
+      assertEquals(3, table.size());
+      table.clear();
+      assertEquals(0, table.size());
+      for (int slot = 0; slot < table.capacity(); slot++){
+         assertNull(table.getSum(slot));
+      }
+      assertNotSame(sum, table.get(7L, 1));
+   }
+
+   @Test
+   public void testMeanMapperFlushesFullTable() throws Exception{
+      Configuration conf = new Configuration(false);
+      conf.setInt(CarrierCount.AGGREGATE_LIMIT, 2);
+      final List<String> written = new ArrayList<String>();
+      RecordWriter<Text, CarrierCount.MonthSum> writer = new RecordWriter<Text, CarrierCount.MonthSum>(){
+         public void write(Text key, CarrierCount.MonthSum value){
+            written.add(key + "," + value.getMonth() + "," + value.getMean());
+         }
+
+         public void close(TaskAttemptContext context){
+         }
+      };
+      CarrierCount.MeanMapper mapper = new CarrierCount.MeanMapper();
+      CarrierCount.MeanMapper.Context context = mapContext(conf, writer);
+      mapper.setup(context);
+      mapper.map(null, saneBtsLine("AA", 1, "100"), context);
+      mapper.map(null, saneBtsLine("AA", 1, "200"), context);
+      assertTrue(written.isEmpty());
+      // the second carrier and month fills the table, both sums are emitted
+      mapper.map(null, saneBtsLine("BB", 1, "50"), context);
+      assertEquals(new HashSet<String>(Arrays.asList("AA,1,150.0", "BB,1,50.0")), new HashSet<String>(written));
+      mapper.map(null, saneBtsLine("AA", 2, "30"), context);
+      // a carrier code too long to pack is written at once
+      mapper.map(null, saneBtsLine("ABCDEF", 3, "70"), context);
+      assertEquals("ABCDEF,3,70.0", written.get(2));
+      mapper.cleanup(context);
+      assertEquals(Arrays.asList("AA,2,30.0"), written.subList(3, written.size()));
+   }
+
+   @Test
+   public void testHistogramMedianMatchesMedianFinder() throws Exception{
+      Configuration conf = new Configuration(false);
+      Random random = new Random(7);
+      // odd and even counts, repeated prices
+      for (int size : new int[]{1, 2, 3, 10, 999, 1000}){
+         List<Text> lines = new ArrayList<Text>();
+         for (int i = 0; i < size; i++){
+            double price = random.nextInt(10) == 0 ? 250.0 : random.nextInt(100000) / 100.0;
+            lines.add(saneBtsLine("AA", 1, String.valueOf(price)));
+         }
+         assertEquals(exactMedian(lines), twoRoundMedian(conf, lines), 0.0);
+      }
+      // even count whose lower middle price is the upper bound of its bucket, so the upper middle
+      // price is in the next bucket
+      double logGamma = CarrierCount.logGamma(conf);
+      double bound = StrictMath.exp(50 * logGamma);
+      while (CarrierCount.bucketOf(bound, logGamma) > 50){
+         bound = Math.nextAfter(bound, 0.0);
+      }
+      while (CarrierCount.bucketOf(Math.nextUp(bound), logGamma) == 50){
+         bound = Math.nextUp(bound);
+      }
+      double next = Math.nextUp(bound);
+      assertEquals(51, CarrierCount.bucketOf(next, logGamma));
+      List<Text> lines = new ArrayList<Text>();
+      for (int i = 0; i < 500; i++){
+         lines.add(saneBtsLine("AA", 1, String.valueOf(bound / 2 * random.nextDouble())));
+         lines.add(saneBtsLine("AA", 1, String.valueOf(next * 2 + random.nextDouble())));
+      }
+      lines.add(saneBtsLine("AA", 1, String.valueOf(bound)));
+      lines.add(saneBtsLine("AA", 1, String.valueOf(next)));
+      Collections.shuffle(lines, random);
+      assertEquals(exactMedian(lines), twoRoundMedian(conf, lines), 0.0);
+   }
+
+   // Median of the prices of the lines by HistogramMapper, MedianBuckets and BucketMapper
+   private static double twoRoundMedian(Configuration conf, List<Text> lines) throws Exception{
+      final CarrierCount.MonthHistogram histogram = new CarrierCount.MonthHistogram();
+      RecordWriter<Text, CarrierCount.MonthHistogram> histogramWriter = new RecordWriter<Text, CarrierCount.MonthHistogram>(){
+         public void write(Text key, CarrierCount.MonthHistogram value){
+            histogram.merge(value);
+         }
+
+         public void close(TaskAttemptContext context){
+         }
+      };
+      CarrierCount.HistogramMapper histogramMapper = new CarrierCount.HistogramMapper();
+      CarrierCount.HistogramMapper.Context histogramContext = mapContext(conf, histogramWriter);
+      histogramMapper.setup(histogramContext);
+      for (Text line : lines){
+         histogramMapper.map(null, line, histogramContext);
+      }
+      histogramMapper.cleanup(histogramContext);
+      CarrierCount.MedianBuckets buckets = CarrierCount.MedianBuckets.of(histogram);
+      Configuration bucketConf = new Configuration(conf);
+      bucketConf.set(CarrierCount.MEDIAN_BUCKETS, "AA;1;" + buckets);
+      final List<Double> prices = new ArrayList<Double>();
+      RecordWriter<Text, CarrierCount.MonthPrice> priceWriter = new RecordWriter<Text, CarrierCount.MonthPrice>(){
+         public void write(Text key, CarrierCount.MonthPrice value){
+            prices.add(value.getPrice());
+         }
+
+         public void close(TaskAttemptContext context){
+         }
+      };
+      CarrierCount.BucketMapper bucketMapper = new CarrierCount.BucketMapper();
+      CarrierCount.BucketMapper.Context bucketContext = mapContext(bucketConf, priceWriter);
+      bucketMapper.setup(bucketContext);
+      for (Text line : lines){
+         bucketMapper.map(null, line, bucketContext);
+      }
+      double[] sorted = new double[prices.size()];
+      for (int i = 0; i < sorted.length; i++){
+         sorted[i] = prices.get(i);
+      }
+      Arrays.sort(sorted);
+      return buckets.median(sorted);
+   }
+
+   // Median of the prices of the lines by MedianFinder, the prices parsed like in the mappers
+   private static double exactMedian(List<Text> lines){
+      FlightRecord record = new FlightRecord();
+      double[] prices = new double[lines.size()];
+      for (int i = 0; i < prices.length; i++){
+         record.reset(lines.get(i).getBytes(), 0, lines.get(i).getLength());
+         prices[i] = record.getDouble(FlightRecord.AVG_TICKET_PRICE);
+      }
+      return MedianFinder.median(prices, prices.length);
+   }
+
+   // Context of a mapper which writes its output to the given writer
+   private static <K, V> Mapper<Object, Text, K, V>.Context mapContext(Configuration conf, RecordWriter<K, V> writer){
+      return new WrappedMapper<Object, Text, K, V>().getMapContext(new MapContextImpl<Object, Text, K, V>(conf,
+            TaskAttemptID.forName("attempt_1_0001_m_000000_0"), null, writer, null,
+            new TaskAttemptContextImpl.DummyReporter(), null));
+   }
+
+   @Test
+   public void testCarrierMonthPriceRawCompare() throws Exception{
+      // carriers of several lengths, months and slices of one and more varint bytes
+      String[] carriers = {"", "A", "AA", "AAB", "B6", "ZZZZZZ"};
+      int[] months = {1, 12, 200};
+      int[] slices = {0, 1, 130};
+      double[] prices = {-1.5, 0.0, 99.99, 100.0, Double.MAX_VALUE};
+      Random random = new Random(42);
+      List<CarrierCount.CarrierMonthPrice> keys = new ArrayList<CarrierCount.CarrierMonthPrice>();
+      for (int i = 0; i < 300; i++){
+         keys.add(carrierMonthPrice(carriers[random.nextInt(carriers.length)], months[random.nextInt(months.length)],
+               slices[random.nextInt(slices.length)], random.nextBoolean(), prices[random.nextInt(prices.length)]));
+      }
+      CarrierCount.CarrierMonthPriceComparator sort = new CarrierCount.CarrierMonthPriceComparator();
+      CarrierCount.CarrierMonthComparator group = new CarrierCount.CarrierMonthComparator();
+      for (CarrierCount.CarrierMonthPrice a : keys){
+         byte[] bytesA = serialize(a);
+         for (CarrierCount.CarrierMonthPrice b : keys){
+            byte[] bytesB = serialize(b);
+            assertEquals(Integer.signum(a.compareTo(b)),
+                  Integer.signum(sort.compare(bytesA, 0, bytesA.length, bytesB, 0, bytesB.length)));
+            assertEquals(Integer.signum(a.compareGroup(b)),
+                  Integer.signum(group.compare(bytesA, 0, bytesA.length, bytesB, 0, bytesB.length)));
+         }
+      }
+   }
+
+   @Test
+   public void testCarrierMonthGroupingIgnoresPrice() throws Exception{
+      CarrierCount.CarrierMonthComparator group = new CarrierCount.CarrierMonthComparator();
+      byte[] header = serialize(carrierMonthPrice("AA", 3, 1, true, 0.0));
+      byte[] low = serialize(carrierMonthPrice("AA", 3, 1, false, 10.0));
+      byte[] high = serialize(carrierMonthPrice("AA", 3, 1, false, 900.0));
+      byte[] nextSlice = serialize(carrierMonthPrice("AA", 3, 2, false, 10.0));
+      assertEquals(0, group.compare(header, 0, header.length, low, 0, low.length));
+      assertEquals(0, group.compare(low, 0, low.length, high, 0, high.length));
+      assertTrue(group.compare(low, 0, low.length, nextSlice, 0, nextSlice.length) < 0);
+      // the sort comparator still puts the header first and orders the prices
+      CarrierCount.CarrierMonthPriceComparator sort = new CarrierCount.CarrierMonthPriceComparator();
+      assertTrue(sort.compare(header, 0, header.length, low, 0, low.length) < 0);
+      assertTrue(sort.compare(low, 0, low.length, high, 0, high.length) < 0);
+   }
+
+   @Test
+   public void testCarrierMonthPartitionerSlices(){
+      CarrierCount.CarrierMonthPartitioner partitioner = new CarrierCount.CarrierMonthPartitioner();
+      for (String carrier : new String[]{"AA", "B6", "WN", "ZZZZZZ"}){
+         for (int month = 1; month <= 12; month++){
+            for (int partitions = 1; partitions <= 7; partitions++){
+               int first = partitioner.getPartition(carrierMonthPrice(carrier, month, 0, false, 0.0), null, partitions);
+               for (int slice = 0; slice < 2 * partitions; slice++){
+                  int partition = partitioner.getPartition(
+                        carrierMonthPrice(carrier, month, slice, false, 0.0), null, partitions);
+                  assertTrue(partition >= 0 && partition < partitions);
+                  // the slices go to consecutive reducers
+                  assertEquals((first + slice) % partitions, partition);
+               }
+            }
+         }
+      }
+   }
+
+   @Test
+   public void testEpochMinutesMatchesSimpleDateFormat() throws Exception{
+      // leap days, year boundaries and the ends of the day table, months and days of one digit
+      List<String> dates = new ArrayList<String>(Arrays.asList("1970-01-01", "1999-12-31", "2000-01-01",
+            "2000-02-28", "2000-02-29", "2000-03-01", "2012-02-29", "2013-02-28", "2013-03-01", "2013-12-31",
+            "2014-01-01", "2015-2-5", "2099-12-31"));
+      // midnight, 2400 and minutes past 59, which roll over into the next hour or day
+      List<Integer> times = new ArrayList<Integer>(Arrays.asList(0, 1, 59, 60, 99, 100, 1375, 2359, 2360, 2400));
+      Random random = new Random(42);
+      for (int i = 0; i < 200; i++){
+         dates.add(String.format("%04d-%02d-%02d", 1970 + random.nextInt(130), 1 + random.nextInt(12),
+               1 + random.nextInt(28)));
+         times.add(random.nextInt(25) * 100 + random.nextInt(100));
+      }
+      // EpochMinutes takes the dates as UTC, SimpleDateFormat as the default time zone
+      TimeZone timeZone = TimeZone.getDefault();
+      TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+      try{
+         for (String date : dates){
+            byte[] bytes = date.getBytes("US-ASCII");
+            long day = EpochMinutes.ofDate(bytes, 0, bytes.length);
+            for (int t = 0; t < times.size(); t += 1 + random.nextInt(3)){
+               int departure = times.get(t);
+               int arrival = times.get(random.nextInt(times.size()));
+               String[] timestamps = SimpleDateTimestamp.fetchTimestamp(date, String.valueOf(departure),
+                     String.valueOf(arrival)).split("\t");
+               long arrivalDay = arrival > departure ? day : day + EpochMinutes.MINUTES_PER_DAY;
+               assertEquals(date + " " + departure, Long.parseLong(timestamps[0]) / 60000,
+                     day + EpochMinutes.ofTime(departure));
+               assertEquals(date + " " + arrival, Long.parseLong(timestamps[1]) / 60000,
+                     arrivalDay + EpochMinutes.ofTime(arrival));
+            }
+         }
+      }
+      finally{
+         TimeZone.setDefault(timeZone);
+      }
+   }
+
+   @Test
+   public void testCodeDictionaryRoundTrip(){
+      // every code of up to three characters, in string order
+      String alphabet = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+      List<String> strings = new ArrayList<String>();
+      strings.add("");
+      for (char a : alphabet.toCharArray()){
+         strings.add("" + a);
+         for (char b : alphabet.toCharArray()){
+            strings.add("" + a + b);
+            for (char c : alphabet.toCharArray()){
+               strings.add("" + a + b + c);
+            }
+         }
+      }
+      Collections.sort(strings);
+      int previous = -1;
+      for (String string : strings){
+         int code = CodeDictionary.encode(string);
+         // the codes order like the strings and fit in the dictionary, and so in an unsigned short
+         assertTrue(string, code > previous && code < CodeDictionary.SIZE);
+         assertEquals(string, CodeDictionary.decode(code));
+         previous = code;
+      }
+      assertEquals(CodeDictionary.SIZE - 1, CodeDictionary.encode("ZZZ"));
+      assertTrue(CodeDictionary.SIZE <= 1 << 16);
+   }
+
+   @Test
+   public void testCodeDictionaryFoldsCaseAndTrims(){
+      assertEquals(CodeDictionary.encode("JFK"), CodeDictionary.encode("jfk"));
+      assertEquals(CodeDictionary.encode("B6"), CodeDictionary.encode("b6"));
+      assertEquals("B6", CodeDictionary.decode(CodeDictionary.encode("b6")));
+      assertEquals(CodeDictionary.encode("AA"), CodeDictionary.encode("  AA "));
+      // the code is read from the bytes of a record, blanks around it are skipped
+      byte[] bytes = "x, JFK ,y".getBytes();
+      assertEquals(CodeDictionary.encode("JFK"), CodeDictionary.encode(bytes, 2, 5));
+      assertEquals(0, CodeDictionary.encode("   "));
+      for (String string : new String[]{"ABCD", "A B", "A-B", "\"A\"", "\u00c9", " JFKX "}){
+         try{
+            CodeDictionary.encode(string);
+            fail(string);
+         }
+         catch(NumberFormatException e){
+            // expected
+         }
+      }
+      boolean[] flags = CodeDictionary.flags(new String[]{"AA", "jfk"});
+      assertTrue(flags[CodeDictionary.encode("AA")] && flags[CodeDictionary.encode("JFK")]);
+      assertFalse(flags[CodeDictionary.encode("B6")]);
+   }
+
+   @Test
+   public void testCodeDictionaryPairs(){
+      int[] codes = {0, 1, 36, 37, CodeDictionary.encode("AA"), CodeDictionary.encode("JFK"),
+            CodeDictionary.SIZE - 2, CodeDictionary.SIZE - 1};
+      for (int first : codes){
+         for (int second : codes){
+            int pair = CodeDictionary.pair(first, second);
+            assertEquals(first, CodeDictionary.first(pair));
+            assertEquals(second, CodeDictionary.second(pair));
+            // the pairs order like the codes, by the first and then the second code
+            for (int otherFirst : codes){
+               for (int otherSecond : codes){
+                  int cmp = first != otherFirst ? Integer.compare(first, otherFirst)
+                        : Integer.compare(second, otherSecond);
+                  assertEquals(Integer.signum(cmp),
+                        Integer.signum(Integer.compare(pair, CodeDictionary.pair(otherFirst, otherSecond))));
+               }
+            }
+         }
+      }
+   }
+
+   private static CarrierCount.CarrierMonthPrice carrierMonthPrice(String carrier, int month, int slice,
+         boolean header, double price){
+      CarrierCount.CarrierMonthPrice key = new CarrierCount.CarrierMonthPrice();
+      byte[] bytes = carrier.getBytes();
+      key.set(bytes, 0, bytes.length, month, slice, header, price);
+      return key;
+   }
+
+   private static byte[] serialize(org.apache.hadoop.io.Writable writable) throws java.io.IOException{
+      DataOutputBuffer out = new DataOutputBuffer();
+      writable.write(out);
+      return Arrays.copyOf(out.getData(), out.getLength());
+   }
+
+   // Line of the BTS layout which passes the MAP_REDUCE rules
+   private static Text saneBtsLine(String carrier, int month, String price){
+      String[] values = new String[110];
+      Arrays.fill(values, "1");
+      int[] layout = FlightRecord.BTS_LAYOUT;
+      values[layout[FlightRecord.YEAR]] = "2015";
+      values[layout[FlightRecord.MONTH]] = String.valueOf(month);
+      values[layout[FlightRecord.CARRIER]] = carrier;
+      values[layout[FlightRecord.CRS_ARR_TIME]] = "1200";
+      values[layout[FlightRecord.CRS_DEP_TIME]] = "1000";
+      values[layout[FlightRecord.CRS_ELAPSED_TIME]] = "120";
+      values[layout[FlightRecord.ARR_TIME]] = "1200";
+      values[layout[FlightRecord.DEP_TIME]] = "1000";
+      values[layout[FlightRecord.ACTUAL_ELAPSED_TIME]] = "120";
+      values[layout[FlightRecord.ARR_DELAY]] = "0";
+      values[layout[FlightRecord.ARR_DELAY_NEW]] = "0";
+      values[layout[FlightRecord.ARR_DEL15]] = "0";
+      values[layout[FlightRecord.CANCELLED]] = "0";
+      values[layout[FlightRecord.AVG_TICKET_PRICE]] = price;
+      StringBuilder line = new StringBuilder();
+      for (int i = 0; i < values.length; i++){
+         line.append(i == 0 ? "" : ",").append(values[i]);
+      }
+      return new Text(line.toString());
+   }
+
+   private static FlightRecord tokenize(FlightRecord record, String[] values){
+      StringBuilder line = new StringBuilder();
+      for (int i = 0; i < values.length; i++){
+         line.append(i == 0 ? "" : ",").append(values[i]);
+      }
+      byte[] bytes = line.toString().getBytes();
+      record.reset(bytes, 0, bytes.length);
+      return record;
+   }
+}
@@ -0,0 +1,102 @@
+/**
+ * EpochMinutes turns the FL_DATE and hhmm times of the BTS records into
+ * minutes since 1970-01-01 00:00, with integer arithmetic on a table of the
+ * first day of every year and month instead of a SimpleDateFormat per value,
+ * so nothing is allocated per record. The date is read from the bytes of the
+ * record. A time of 2400 is the midnight of the next day and minutes past 59
+ * roll over into the next hour, as with the lenient SimpleDateFormat. Dates
+ * are taken as UTC, the time zone of the clusters the jobs run on, so a
+ * difference of two time stamps is the difference of their wall clock times.
+ * @author Abhijeet, Afan
+ * @version 1.0
+ */
+public final class EpochMinutes {
+
+	/** minutes of a day, added for a flight which arrives the next day */
+	public static final int MINUTES_PER_DAY = 24 * 60;
+
+	// years of the day table
+	private static final int FIRST_YEAR = 1970;
+	private static final int LAST_YEAR = 2099;
+	// days from 1970-01-01 to the first day of every year of the table
+	private static final int[] YEAR_DAYS = new int[LAST_YEAR - FIRST_YEAR + 2];
+	// days from the first day of the year to the first day of every month, of common and leap years
+	private static final int[][] MONTH_DAYS = {
+		{0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334},
+		{0, 31, 60, 91, 121, 152, 182, 213, 244, 274, 305, 335}};
+
+	static {
+		for (int year = FIRST_YEAR; year <= LAST_YEAR; year++) {
+			YEAR_DAYS[year - FIRST_YEAR + 1] = YEAR_DAYS[year - FIRST_YEAR] + (isLeap(year) ? 366 : 365);
+		}
+	}
+
+	private EpochMinutes() {
+	}
+
+	private static boolean isLeap(int year) {
+		return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+	}
+
+	/**
+	 * Epoch minutes of the midnight of a yyyy-MM-dd date, the month and day may
+	 * have one digit and blanks around the date are skipped
+	 * @param bytes bytes holding the date
+	 * @param start start of the date
+	 * @param length length of the date
+	 * @return minutes since 1970-01-01 00:00
+	 * @throws NumberFormatException if it is not a date of the table
+	 */
+	public static long ofDate(byte[] bytes, int start, int length) {
+		int end = start + length;
+		while (start < end && bytes[start] == ' ') {
+			start++;
+		}
+		while (end > start && bytes[end - 1] == ' ') {
+			end--;
+		}
+		// year, month and day, part is the one being read
+		int year = 0;
+		int month = 0;
+		int day = 0;
+		int part = 0;
+		int digits = 0;
+		for (int i = start; i < end; i++) {
+			byte b = bytes[i];
+			if (b == '-' && digits > 0 && part < 2) {
+				part++;
+				digits = 0;
+			}
+			else if (b >= '0' && b <= '9' && digits < 4) {
+				int digit = b - '0';
+				if (part == 0) {
+					year = year * 10 + digit;
+				}
+				else if (part == 1) {
+					month = month * 10 + digit;
+				}
+				else {
+					day = day * 10 + digit;
+				}
+				digits++;
+			}
+			else {
+				throw new NumberFormatException("Not a date: " + new String(bytes, start, end - start));
+			}
+		}
+		if (part != 2 || digits == 0 || year < FIRST_YEAR || year > LAST_YEAR || month < 1 || month > 12) {
+			throw new NumberFormatException("Not a date: " + new String(bytes, start, end - start));
+		}
+		int days = YEAR_DAYS[year - FIRST_YEAR] + MONTH_DAYS[isLeap(year) ? 1 : 0][month - 1] + day - 1;
+		return (long) days * MINUTES_PER_DAY;
+	}
+
+	/**
+	 * Minutes after midnight of a time of the day
+	 * @param hhmm time as hours * 100 + minutes, e.g. 1435
+	 * @return minutes after midnight
+	 */
+	public static int ofTime(int hhmm) {
+		return hhmm / 100 * 60 + hhmm % 100;
+	}
+}
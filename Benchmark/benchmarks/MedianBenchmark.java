@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * JMH comparison of the sort based median(Collections.sort over the boxed
+ * price list, as Solution did before) with QuickSelect(MedianFinder) for a
+ * single carrier and month.
+ * JMH does not allow benchmarks in the default package, so MedianFinder is
+ * reached through a constant MethodHandle, which the JIT inlines like a 
+ * direct call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MedianBenchmark{
+
+    private static final MethodHandle MEDIAN = findMedian();
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private double[] prices;
+
+    private static MethodHandle findMedian(){
+        try{
+            return MethodHandles.publicLookup().findStatic(Class.forName("MedianFinder"),
+                    "median", MethodType.methodType(double.class, double[].class, int.class));
+        }
+        catch(ReflectiveOperationException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Setup
+    public void setUp(){
+        Random random = new Random(42);
+        this.prices = new double[this.size];
+        for (int i = 0; i < this.size; i++){
+            this.prices[i] = Math.round((random.nextGaussian() * 150 + 400) * 100) / 100.0;
+        }
+    }
+
+    @Benchmark
+    public double sortBoxed(){
+        ArrayList<Double> priceList = new ArrayList<Double>(this.size);
+        for (double price: this.prices){
+            priceList.add(price);
+        }
+        Collections.sort(priceList);
+        if (priceList.size() % 2 == 1){
+            return priceList.get((priceList.size() + 1) / 2 - 1);
+        }
+        double lower = priceList.get(priceList.size() / 2 - 1);
+        double upper = priceList.get(priceList.size() / 2);
+        return (lower + upper) / 2.0;
+    }
+
+    @Benchmark
+    public double quickSelect() throws Throwable{
+        double[] priceArr = Arrays.copyOf(this.prices, this.size);
+        return (double) MEDIAN.invokeExact(priceArr, this.size);
+    }
+}
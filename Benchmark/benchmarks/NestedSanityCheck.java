@@ -0,0 +1,218 @@
+/**
+ * The nested if sanity check of CarrierCount before SanityChecker, kept
+ * unchanged as the baseline of benchmarks/SanityBenchmark.java. It lives in
+ * the default package like FlightRecord, the benchmark reaches it through a
+ * MethodHandle.
+ * @author Abhijeet, Afan
+ * @version 1.0
+ */
+public class NestedSanityCheck {
+
+	// Main code block to check whether the flight is sane
+	// Status Code 0 indicates Sane Flights
+	// Status Code 1 indicates Insane Flights
+	// Status Code 2 indicates Wrong Format of the fields(Exceptions)
+	public static Integer isSane(FlightRecord record){
+		try{
+			int crsArrTime = record.getInt(FlightRecord.CRS_ARR_TIME);
+			int crsDepTime = record.getInt(FlightRecord.CRS_DEP_TIME);
+			int crsElapsedTime = record.getInt(FlightRecord.CRS_ELAPSED_TIME);
+			// crsArrTime and CRSDepTime should not be zero
+			if (crsArrTime != 0 && crsDepTime != 0){
+				int crstimeZone = calculateCRSTimeZone(crsArrTime,crsDepTime,crsElapsedTime);
+				return checkIDFieldsExist(crstimeZone,record); 
+			}else {
+				// for debugging purposes
+				// System.err.println("Error : CRSArrTime or CRSDepTime fields are not proper");
+				return 1;
+			}
+		}catch (Exception e){
+			// for debugging purposes
+			// System.err.println("Error : The record is not proper");
+			return 2;
+		}
+	}
+
+	// Function to check whether the ID fields exist or not
+	private static int checkIDFieldsExist(int crstimeZone, FlightRecord record) {
+		// crstimeZone % 60 should be 0
+		if (crstimeZone % 60 == 0)
+		{
+			int originAirportID = record.getInt(FlightRecord.ORIGIN_AIRPORT_ID);
+			int originAirportSeqID = record.getInt(FlightRecord.ORIGIN_AIRPORT_SEQ_ID);
+			int originCityMarketID = record.getInt(FlightRecord.ORIGIN_CITY_MARKET_ID);
+			int originStateFips = record.getInt(FlightRecord.ORIGIN_STATE_FIPS);
+			int originWAC = record.getInt(FlightRecord.ORIGIN_WAC);
+			int destAirportID = record.getInt(FlightRecord.DEST_AIRPORT_ID);
+			int destAirportSeqID = record.getInt(FlightRecord.DEST_AIRPORT_SEQ_ID);
+			int destCityMarketID = record.getInt(FlightRecord.DEST_CITY_MARKET_ID);
+			int destStateFips = record.getInt(FlightRecord.DEST_STATE_FIPS);
+			int destWAC = record.getInt(FlightRecord.DEST_WAC);
+			// AirportID,  AirportSeqID, CityMarketID, StateFips, Wac 
+			// should be larger than 0
+			if ((originAirportID > 0) && (originAirportSeqID > 0) && 
+					(originCityMarketID > 0) && (originStateFips > 0) && 
+					(originWAC > 0) && (destAirportID > 0) && 
+					(destAirportSeqID > 0) && (destCityMarketID > 0) && 
+					(destStateFips > 0) && (destWAC > 0)){ 
+				return checkForOriginDest(record, crstimeZone);
+			}else{
+				// for debugging purposes
+				// System.err.println("Error : The ID fields of the record are not proper");
+				return 1;
+			}
+		}else {
+			// for debugging purposes
+			// System.err.println("Error : The CRSTimeZone is not a multiple of 60");
+			return 1;
+		}
+	}
+
+	// Function to check whether Origin and Destination fields exist
+	private static int checkForOriginDest(FlightRecord record, int crstimeZone) {
+		// Origin, Destination,  CityName, State, StateName 
+		// should not be empty
+		if (!record.isEmpty(FlightRecord.ORIGIN) && !record.isEmpty(FlightRecord.ORIGIN_CITY_NAME) && 
+				!record.isEmpty(FlightRecord.ORIGIN_STATE_ABR) && !record.isEmpty(FlightRecord.ORIGIN_STATE_NM) && 
+				!record.isEmpty(FlightRecord.DEST) && !record.isEmpty(FlightRecord.DEST_CITY_NAME) && 
+				!record.isEmpty(FlightRecord.DEST_STATE_ABR) && !record.isEmpty(FlightRecord.DEST_STATE_NM)){
+			int cancelled = record.getInt(FlightRecord.CANCELLED);
+			// Check for flights that are not Cancelled(1 = yes)
+			if(cancelled == 0){
+				return checkForArrAndDepTime(record, crstimeZone);
+			}else {
+				// for debugging purposes
+				// System.err.println("Error : The Cancelled field is not proper");
+				return 0;
+			}
+		}else {
+			// for debugging purposes
+			// System.err.println("Error : The Origin and Destination fields are not proper");
+			return 1;
+		}
+	}
+
+	// Function to check for time zone difference
+	private static int checkForArrAndDepTime(FlightRecord record, int crstimeZone) {
+		int arrTime = record.getInt(FlightRecord.ARR_TIME);
+		int depTime = record.getInt(FlightRecord.DEP_TIME);
+		int actualElapsedTime = record.getInt(FlightRecord.ACTUAL_ELAPSED_TIME);
+		int actualTimeZone = findActualTimeZone(arrTime,depTime,actualElapsedTime);
+		int timeZoneDiff = actualTimeZone - crstimeZone;
+		//arrTime -  depTime - actualElapsedTime - timeZone should be zero
+		if (timeZoneDiff == 0){
+			return checkForArrDelay(record);
+		}else{
+			// for debugging purposes
+			// System.err.println("Error : The arrTime -  depTime - actualElapsedTime - timeZone is not zero");
+			return 1;
+		}
+	}
+
+	// Function to check for ArrDelay Fields
+	private static int checkForArrDelay(FlightRecord record) {
+		int arrDelay = (int)record.getDouble(FlightRecord.ARR_DELAY);
+		int arrDelayMinutes = (int)record.getDouble(FlightRecord.ARR_DELAY_NEW);
+		int arrDel15 = (int)record.getDouble(FlightRecord.ARR_DEL15);
+		int finalReturnVal = 0;
+		// if ArrDelay > 0 then ArrDelay should be equal to ArrDelayMinutes
+		if (arrDelay > 0){                                        
+			if (arrDelay == arrDelayMinutes){
+				// end of sanity check for flights that are not cancelled and
+				// arrDelay > 0 and arrDelay == arrDelayMinutes .
+				finalReturnVal =  0;  
+			}else {
+				// for debugging purposes
+				// System.err.println("Error : ArrDelay is not equal to ArrDelayMinutes");
+				finalReturnVal = 1;
+			}
+		}
+		// if ArrDelay < 0 then ArrDelayMinutes should be zero
+		else if(arrDelay < 0){
+			if (arrDelayMinutes == 0){
+				// end of sanity check for flights that are not cancelled and
+				// arrDelay < 0 and arrDelayMinutes equals zero.
+				finalReturnVal =  0;
+			}else {
+				// for debugging purposes
+				// System.err.println("Error : ArrayDelayMinutes is not equal to zero");
+				finalReturnVal = 1;
+			}
+		}
+		// if ArrDelayMinutes >= 15 then ArrDel15 should be 1(true)
+		if (arrDelayMinutes >= 15){
+			if (arrDel15 == 1){
+				// end of sanity check for flights that are not cancelled and
+				// arrDelayMinute >= 15 and arrDel15 == 1.
+				finalReturnVal =  0;
+			}else {
+				// for debugging purposes
+				// System.err.println("Error : ArrayDelay15 is not equal to 1");
+				finalReturnVal = 1;
+			}
+		}else {
+			// for debugging purposes
+			// System.err.println("Error : ArrDelayMinutes is not >= 15");
+			finalReturnVal =  0;
+		}
+		return finalReturnVal;
+	}
+
+	// Helper method to calculate the CRS time zone
+	private static int calculateCRSTimeZone(int crsArrTime, int crsDepTime, int crsElapsedTime) {
+		// Logic to split the Arrival and Departure hours from CRS time
+		int crsArrTimeHour = crsArrTime / 100;
+		int crsDepTimeHour = crsDepTime / 100; 
+		// Logic to split the Arrival and Departure minutes from CRS time
+		int crsArrTimeMin = crsArrTime % 100;
+		int crsDepTimeMin = crsDepTime % 100;
+		// Logic to find the time difference between CRS Arrival time and Departure times
+		int crsHourDiff;
+		if (crsArrTimeHour > crsDepTimeHour){
+			crsHourDiff = crsArrTimeHour - crsDepTimeHour;
+		}
+		else if (crsArrTimeHour == crsDepTimeHour){
+			if(crsArrTimeMin > crsDepTimeMin){
+				crsHourDiff = crsArrTimeHour - crsDepTimeHour;    
+			}
+			else{
+				// Time difference when the Arrival time is next day
+				crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour;                               
+			}
+		}
+		else{
+			// Time difference when the Arrival time is next day
+			crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour;
+		}                
+		return ((crsHourDiff * 60) + (crsArrTimeMin - crsDepTimeMin)) - crsElapsedTime;
+	}
+
+	// Helper method to calculate the Actual time zone
+	private static int findActualTimeZone(int arrTime, int depTime, int actualElapsedTime) {
+		// Logic to split the Arrival and Departure hours from Actual time
+		int arrTimeHour = arrTime / 100;
+		int depTimeHour = depTime / 100;
+		// Logic to split the Arrival and Departure hours from Actual time
+		int arrTimeMin = arrTime % 100;
+		int depTimeMin = depTime % 100;                                
+		// Logic to find the time difference between Actual Arrival time and Departure times
+		int hourDiff;
+		if (arrTimeHour > depTimeHour){
+			hourDiff = arrTimeHour - depTimeHour;
+		}
+		else if (arrTimeHour == depTimeHour){
+			if(arrTimeMin > depTimeMin){
+				hourDiff = arrTimeHour - depTimeHour;    
+			}
+			else{
+				// Time difference when the Arrival time is next day
+				hourDiff = (24 - depTimeHour) + arrTimeHour;       
+			}
+		}
+		else{
+			// Time difference when the Arrival time is next day
+			hourDiff = (24 - depTimeHour) + arrTimeHour;   
+		}
+		return ((hourDiff * 60) + (arrTimeMin - depTimeMin)) - actualElapsedTime;
+	}
+}
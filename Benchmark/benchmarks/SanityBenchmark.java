@@ -0,0 +1,152 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * JMH comparison of the nested if sanity check of CarrierCount(kept as
+ * NestedSanityCheck) with the table driven SanityChecker on the same rules,
+ * for a batch of 110 column records of which about a third have a zero, 
+ * negative or empty value in a checked column. The records are tokenized in
+ * the setup, the benchmarks only run the checks.
+ * The classes live in the default package, so they are reached through
+ * constant MethodHandles like in MedianBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SanityBenchmark{
+
+    private static final MethodHandle NEW_RECORD;
+    private static final MethodHandle RESET;
+    private static final MethodHandle CLEAR;
+    private static final MethodHandle NESTED;
+    private static final MethodHandle NEW_CHECKER;
+    private static final MethodHandle CHECK;
+    private static final int[] MAP_REDUCE;
+    static{
+        try{
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> record = Class.forName("FlightRecord");
+            Class<?> checker = Class.forName("SanityChecker");
+            NEW_RECORD = lookup.findConstructor(record, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            RESET = lookup.findVirtual(record, "reset",
+                    MethodType.methodType(int.class, byte[].class, int.class, int.class))
+                    .asType(MethodType.methodType(void.class, Object.class, byte[].class, int.class, int.class));
+            CLEAR = lookup.findVirtual(record, "clear", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            NESTED = lookup.findStatic(Class.forName("NestedSanityCheck"), "isSane",
+                    MethodType.methodType(Integer.class, record))
+                    .asType(MethodType.methodType(Integer.class, Object.class));
+            NEW_CHECKER = lookup.findConstructor(checker, MethodType.methodType(void.class, int[].class))
+                    .asType(MethodType.methodType(Object.class, int[].class));
+            CHECK = lookup.findVirtual(checker, "check", MethodType.methodType(int.class, record))
+                    .asType(MethodType.methodType(int.class, Object.class, Object.class));
+            MAP_REDUCE = (int[]) checker.getField("MAP_REDUCE").get(null);
+        }
+        catch(ReflectiveOperationException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Param({"4096"})
+    public int size;
+
+    // records are tokenized once, so that only the checks are measured
+    private Object[] records;
+    private Object checker;
+
+    @Setup
+    public void setUp() throws Throwable{
+        Random random = new Random(42);
+        this.records = new Object[this.size];
+        for (int i = 0; i < this.size; i++){
+            byte[] row = row(random).getBytes("UTF-8");
+            this.records[i] = (Object) NEW_RECORD.invokeExact();
+            RESET.invokeExact(this.records[i], row, 0, row.length);
+        }
+        this.checker = (Object) NEW_CHECKER.invokeExact(MAP_REDUCE);
+    }
+
+    /**
+     * row
+     * builds a csv record which is sane, unless one of its checked columns
+     * is replaced by a zero, an empty or a malformed value.
+     */
+    private static String row(Random random){
+        String[] fields = new String[110];
+        Arrays.fill(fields, "7");
+        fields[8] = "AA";
+        fields[14] = "BOS";
+        fields[15] = "\"Boston, MA\"";
+        fields[16] = "MA";
+        fields[18] = "Massachusetts";
+        fields[23] = "JFK";
+        fields[24] = "\"New York, NY\"";
+        fields[25] = "NY";
+        fields[27] = "New York";
+        int departure = 600 + random.nextInt(14) * 100 + random.nextInt(6) * 10;
+        int elapsed = 45 + random.nextInt(10) * 30;
+        int arrival = (departure / 100 * 60 + departure % 100 + elapsed + 60 * random.nextInt(4)) % 1440;
+        arrival = arrival / 60 * 100 + arrival % 60;
+        int delay = random.nextInt(60) - 20;
+        fields[29] = String.format("%04d", departure);
+        fields[40] = String.format("%04d", arrival);
+        fields[50] = String.valueOf(elapsed);
+        fields[30] = fields[29];
+        fields[41] = fields[40];
+        fields[51] = fields[50];
+        fields[42] = delay + ".00";
+        fields[43] = Math.max(delay, 0) + ".00";
+        fields[44] = delay >= 15 ? "1.00" : "0.00";
+        fields[47] = random.nextInt(50) == 0 ? "1" : "0";
+        fields[109] = String.valueOf(200 + random.nextInt(400));
+        int[] checked = {29, 40, 50, 11, 12, 13, 17, 19, 20, 21, 22, 26, 28, 14, 16, 23, 25, 41, 51, 43};
+        // missing values are empty in the BTS files
+        String[] broken = {"0", "-1", ""};
+        if (random.nextInt(3) == 0){
+            fields[checked[random.nextInt(checked.length)]] = broken[random.nextInt(broken.length)];
+        }
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < fields.length; i++){
+            builder.append(i == 0 ? "" : ",").append(fields[i]);
+        }
+        return builder.toString();
+    }
+
+    @Benchmark
+    public int nestedIf() throws Throwable{
+        int sane = 0;
+        for (Object record: this.records){
+            // forget the values parsed by the last invocation
+            CLEAR.invokeExact(record);
+            Integer code = (Integer) NESTED.invokeExact(record);
+            if (code.equals(0)){
+                sane++;
+            }
+        }
+        return sane;
+    }
+
+    @Benchmark
+    public int tableDriven() throws Throwable{
+        int sane = 0;
+        for (Object record: this.records){
+            CLEAR.invokeExact(record);
+            if ((int) CHECK.invokeExact(this.checker, record) == 0){
+                sane++;
+            }
+        }
+        return sane;
+    }
+}
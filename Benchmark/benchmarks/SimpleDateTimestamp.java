@@ -0,0 +1,58 @@
+import java.util.Date;
+import java.text.SimpleDateFormat;
+import java.text.ParseException;
+
+/**
+ * The SimpleDateFormat fetchTimestamp of FlightCount before EpochMinutes,
+ * kept unchanged as the baseline of benchmarks/TimestampBenchmark.java. It
+ * lives in the default package like EpochMinutes, the benchmark reaches it
+ * through a MethodHandle.
+ * @author Abhijeet, Afan
+ * @version 1.0
+ */
+public class SimpleDateTimestamp {
+
+	/**
+	 * Converting arrival and departure time to respective time stamps for the given flight date
+	 * @param dateVal
+	 * @param depVal
+	 * @param arrVal
+	 * @return
+	 * @throws ParseException
+	 */
+	public static String fetchTimestamp(String dateVal,String depVal, String arrVal)throws ParseException{
+
+		String depStringTs = null;
+		String arrStringTs = null;
+		Integer depValInt = Integer.parseInt(depVal);
+		Integer depValHour = depValInt / 100;			
+		Integer depValMin = depValInt % 100;
+		Integer arrValInt = Integer.parseInt(arrVal);
+		Integer arrValHour = arrValInt / 100;			
+		Integer arrValMin = arrValInt % 100;
+		// Formatting the given departure time stamp
+		depStringTs = dateVal + " " + depValHour.toString() + ":" + depValMin.toString();
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+		Date depTimestamp = sdf.parse(depStringTs);
+		// If the flight arrives next day 
+		if (arrValInt > depValInt){
+			arrStringTs = dateVal + " " + arrValHour.toString() + ":" + arrValMin.toString();
+		}
+		// Formatting the given arrival time stamp
+		else{
+			sdf = new SimpleDateFormat("yyyy-MM-dd");
+			Date date = sdf.parse(dateVal);
+			long milli = date.getTime() + (24 * 60 * 60 * 1000); // increment by 1 day
+			date.setTime(milli);
+			arrStringTs = sdf.format(date) + " " + arrValHour.toString() + ":" + arrValMin.toString();
+
+		}
+		sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+		Date arrTimestamp = sdf.parse(arrStringTs);
+		// convert to milliseconds
+		Long depInMS = depTimestamp.getTime();
+		Long arrInMS = arrTimestamp.getTime();
+		// return both the departure time and arrival time (in milliseconds)
+		return depInMS.toString() + "\t" + arrInMS.toString();
+	}
+}
@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * JMH comparison of the time stamps of a batch of flights computed by the
+ * SimpleDateFormat fetchTimestamp of FlightCount(kept as SimpleDateTimestamp)
+ * and by the EpochMinutes day table of FlightConnections and
+ * BestTwoHopConnection. Each path starts from what its mapper reads: the
+ * strings of the date and the times for SimpleDateFormat, the bytes of the
+ * date and the parsed times for EpochMinutes. About a tenth of the flights
+ * arrive the next day.
+ * The classes live in the default package, so they are reached through
+ * constant MethodHandles like in MedianBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimestampBenchmark{
+
+    private static final MethodHandle FETCH_TIMESTAMP;
+    private static final MethodHandle OF_DATE;
+    private static final MethodHandle OF_TIME;
+    private static final int MINUTES_PER_DAY;
+    static{
+        try{
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> epochMinutes = Class.forName("EpochMinutes");
+            FETCH_TIMESTAMP = lookup.findStatic(Class.forName("SimpleDateTimestamp"), "fetchTimestamp",
+                    MethodType.methodType(String.class, String.class, String.class, String.class));
+            OF_DATE = lookup.findStatic(epochMinutes, "ofDate",
+                    MethodType.methodType(long.class, byte[].class, int.class, int.class));
+            OF_TIME = lookup.findStatic(epochMinutes, "ofTime",
+                    MethodType.methodType(int.class, int.class));
+            MINUTES_PER_DAY = epochMinutes.getField("MINUTES_PER_DAY").getInt(null);
+        }
+        catch(ReflectiveOperationException e){
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Param({"4096"})
+    public int size;
+
+    private String[] dates;
+    private byte[][] dateBytes;
+    private String[] departures;
+    private String[] arrivals;
+    private int[] departureTimes;
+    private int[] arrivalTimes;
+
+    @Setup
+    public void setUp() throws Exception{
+        Random random = new Random(42);
+        this.dates = new String[this.size];
+        this.dateBytes = new byte[this.size][];
+        this.departures = new String[this.size];
+        this.arrivals = new String[this.size];
+        this.departureTimes = new int[this.size];
+        this.arrivalTimes = new int[this.size];
+        for (int i = 0; i < this.size; i++){
+            this.dates[i] = String.format("%04d-%02d-%02d", 1987 + random.nextInt(29),
+                                          1 + random.nextInt(12), 1 + random.nextInt(28));
+            this.dateBytes[i] = this.dates[i].getBytes("US-ASCII");
+            int departure = 500 + random.nextInt(18) * 100 + random.nextInt(60);
+            int arrival = random.nextInt(10) == 0 ? random.nextInt(5) * 100 + random.nextInt(60) :
+                                    Math.min(departure + 100 + random.nextInt(5) * 100, 2359);
+            this.departureTimes[i] = departure;
+            this.arrivalTimes[i] = arrival;
+            this.departures[i] = String.valueOf(departure);
+            this.arrivals[i] = String.valueOf(arrival);
+        }
+    }
+
+    @Benchmark
+    public long simpleDateFormat() throws Throwable{
+        long sum = 0;
+        for (int i = 0; i < this.size; i++){
+            String[] timestamps = ((String) FETCH_TIMESTAMP.invokeExact(this.dates[i],
+                                        this.departures[i], this.arrivals[i])).split("\t");
+            sum += Long.parseLong(timestamps[1]) - Long.parseLong(timestamps[0]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long epochMinutes() throws Throwable{
+        long sum = 0;
+        for (int i = 0; i < this.size; i++){
+            byte[] date = this.dateBytes[i];
+            long day = (long) OF_DATE.invokeExact(date, 0, date.length);
+            int departure = this.departureTimes[i];
+            int arrival = this.arrivalTimes[i];
+            long departureTs = day + (int) OF_TIME.invokeExact(departure);
+            long arrivalTs = (arrival > departure ? day : day + MINUTES_PER_DAY) + (int) OF_TIME.invokeExact(arrival);
+            sum += arrivalTs - departureTs;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+
+/**
+ * FlightColumns holds the flights of one reduce call of PreProcessReducer as parallel primitive
+ * columns, one entry per flight. Every FlightInfo value is decoded once by add, the connection
+ * loop then scans the scheduled times, flight types and location ids of the columns instead of
+ * FlightInfo objects. The locations are their CodeDictionary codes. The columns are kept and grown
+ * across reduce calls.
+ */
+public class FlightColumns {
+	private int size;
+	// time stamps in epoch minutes, 0 when the flight does not carry one
+	private long[] crsTimeLong = new long[64];
+	private long[] actualTime = new long[64];
+	private long[] startEndTime = new long[64];
+	// 'a' for an arriving, 'd' for a departing flight
+	private byte[] flightType = new byte[64];
+	private int[] location = new int[64];
+	private int[] dayOfWeek = new int[64];
+	private int[] month = new int[64];
+	private int[] dayOfMonth = new int[64];
+	private int[] crsTime = new int[64];
+	private int[] distanceGroup = new int[64];
+	private int[] year = new int[64];
+	private int[] flightNumber = new int[64];
+	// scheduled time and position of every flight, for sort
+	private long[] order = new long[64];
+	// columns swapped in by sort
+	private long[] longScratch = new long[64];
+	private int[] intScratch = new int[64];
+	private byte[] byteScratch = new byte[64];
+
+	/**
+	 * Drops the flights, for the next reduce call.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Decodes a flight into the columns.
+	 * @param flight the flight, e.g. the value object re-used by Hadoop
+	 */
+	public void add(FlightInfo flight) {
+		if (size == crsTimeLong.length) {
+			grow(size * 2);
+		}
+		crsTimeLong[size] = flight.getCrsTimeLong();
+		actualTime[size] = flight.getActualTime() != null ? flight.getActualTime() : 0;
+		startEndTime[size] = flight.getStartEndTime() != null ? flight.getStartEndTime() : 0;
+		flightType[size] = (byte) flight.getFlightType();
+		location[size] = flight.getLocation();
+		dayOfWeek[size] = flight.getDayOfWeek();
+		month[size] = flight.getMonth();
+		dayOfMonth[size] = flight.getDayOfMonth();
+		crsTime[size] = flight.getCrsTime();
+		distanceGroup[size] = flight.getDistanceGroup();
+		year[size] = flight.getYear() != null ? flight.getYear() : 0;
+		flightNumber[size] = flight.getFlightNumber() != null ? flight.getFlightNumber() : 0;
+		size++;
+	}
+
+	/**
+	 * Sorts the flights by scheduled time, flights of the same time keep their order like with
+	 * Collections.sort. The columns are rearranged, so that the scans stay sequential.
+	 */
+	public void sortByCrsTime() {
+		// the epoch minutes fit in the upper half, the position in the lower one
+		for (int i = 0; i < size; i++) {
+			order[i] = crsTimeLong[i] << 32 | i;
+		}
+		Arrays.sort(order, 0, size);
+		crsTimeLong = permute(crsTimeLong);
+		actualTime = permute(actualTime);
+		startEndTime = permute(startEndTime);
+		location = permute(location);
+		dayOfWeek = permute(dayOfWeek);
+		month = permute(month);
+		dayOfMonth = permute(dayOfMonth);
+		crsTime = permute(crsTime);
+		distanceGroup = permute(distanceGroup);
+		year = permute(year);
+		flightNumber = permute(flightNumber);
+		byte[] sortedType = byteScratch;
+		for (int i = 0; i < size; i++) {
+			sortedType[i] = flightType[(int) order[i]];
+		}
+		byteScratch = flightType;
+		flightType = sortedType;
+	}
+
+	// Returns the column in sorted order, the given column becomes the scratch column
+	private long[] permute(long[] column) {
+		long[] sorted = longScratch;
+		for (int i = 0; i < size; i++) {
+			sorted[i] = column[(int) order[i]];
+		}
+		longScratch = column;
+		return sorted;
+	}
+
+	private int[] permute(int[] column) {
+		int[] sorted = intScratch;
+		for (int i = 0; i < size; i++) {
+			sorted[i] = column[(int) order[i]];
+		}
+		intScratch = column;
+		return sorted;
+	}
+
+	private void grow(int capacity) {
+		crsTimeLong = Arrays.copyOf(crsTimeLong, capacity);
+		actualTime = Arrays.copyOf(actualTime, capacity);
+		startEndTime = Arrays.copyOf(startEndTime, capacity);
+		flightType = Arrays.copyOf(flightType, capacity);
+		location = Arrays.copyOf(location, capacity);
+		dayOfWeek = Arrays.copyOf(dayOfWeek, capacity);
+		month = Arrays.copyOf(month, capacity);
+		dayOfMonth = Arrays.copyOf(dayOfMonth, capacity);
+		crsTime = Arrays.copyOf(crsTime, capacity);
+		distanceGroup = Arrays.copyOf(distanceGroup, capacity);
+		year = Arrays.copyOf(year, capacity);
+		flightNumber = Arrays.copyOf(flightNumber, capacity);
+		order = new long[capacity];
+		longScratch = new long[capacity];
+		intScratch = new int[capacity];
+		byteScratch = new byte[capacity];
+	}
+
+	public long getCrsTimeLong(int i) {
+		return crsTimeLong[i];
+	}
+
+	public long getActualTime(int i) {
+		return actualTime[i];
+	}
+
+	public long getStartEndTime(int i) {
+		return startEndTime[i];
+	}
+
+	public char getFlightType(int i) {
+		return (char) flightType[i];
+	}
+
+	public int getLocation(int i) {
+		return location[i];
+	}
+
+	public int getDayOfWeek(int i) {
+		return dayOfWeek[i];
+	}
+
+	public int getMonth(int i) {
+		return month[i];
+	}
+
+	public int getDayOfMonth(int i) {
+		return dayOfMonth[i];
+	}
+
+	public int getCrsTime(int i) {
+		return crsTime[i];
+	}
+
+	public int getDistanceGroup(int i) {
+		return distanceGroup[i];
+	}
+
+	public int getYear(int i) {
+		return year[i];
+	}
+
+	public int getFlightNumber(int i) {
+		return flightNumber[i];
+	}
+}
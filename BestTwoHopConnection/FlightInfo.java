@@ -0,0 +1,170 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * FlightInfo class is used to store relevant information of a Flight object for computing connections
+ * based on arrival and departure times. It is the map output value of PreProcessMapper, written
+ * with varints and the location as its two byte CodeDictionary code; the actual time is sent for the history data, the start/end time, year and flight
+ * number for the test data.
+ */
+public class FlightInfo implements Writable {
+	Integer dayOfWeek;
+	Integer month;	
+	Integer dayOfMonth;
+	Integer crsTime;
+	Long crsTimeLong;
+	Long actualTime;
+	int location;
+	char flightType;
+	Integer distanceGroup;
+	Integer year;
+	Integer flightNumber;
+	Long startEndTime;
+
+
+	public Long getStartEndTime() {
+		return startEndTime;
+	}
+
+	public void setStartEndTime(Long startEndTime) {
+		this.startEndTime = startEndTime;
+	}
+
+	public Integer getYear() {
+		return year;
+	}
+
+	public void setYear(Integer year) {
+		this.year = year;
+	}
+
+	public Integer getFlightNumber() {
+		return flightNumber;
+	}
+
+	public void setFlightNumber(Integer flightNumber) {
+		this.flightNumber = flightNumber;
+	}
+
+	public FlightInfo() {
+
+	}
+
+	public Integer getDayOfWeek() {
+		return dayOfWeek;
+	}
+
+	public void setDayOfWeek(Integer dayOfWeek) {
+		this.dayOfWeek = dayOfWeek;
+	}
+
+	public Integer getMonth() {
+		return month;
+	}
+
+	public void setMonth(Integer month) {
+		this.month = month;
+	}
+
+	public Integer getDayOfMonth() {
+		return dayOfMonth;
+	}
+
+	public void setDayOfMonth(Integer dayOfMonth) {
+		this.dayOfMonth = dayOfMonth;
+	}
+
+	public Integer getCrsTime() {
+		return crsTime;
+	}
+
+	public void setCrsTime(Integer crsTime) {
+		this.crsTime = crsTime;
+	}
+
+	public Long getCrsTimeLong() {
+		return crsTimeLong;
+	}
+
+	public void setCrsTimeLong(Long crsTimeLong) {
+		this.crsTimeLong = crsTimeLong;
+	}
+
+	public Long getActualTime() {
+		return actualTime;
+	}
+
+	public void setActualTime(Long actualTime) {
+		this.actualTime = actualTime;
+	}
+
+	public int getLocation() {
+		return location;
+	}
+
+	public void setLocation(int location) {
+		this.location = location;
+	}
+
+	public char getFlightType() {
+		return flightType;
+	}
+
+	public void setFlightType(char flightType) {
+		this.flightType = flightType;
+	}
+
+	public Integer getDistanceGroup() {
+		return distanceGroup;
+	}
+
+	public void setDistanceGroup(Integer distanceGroup) {
+		this.distanceGroup = distanceGroup;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, dayOfWeek);
+		WritableUtils.writeVInt(out, month);
+		WritableUtils.writeVInt(out, distanceGroup);
+		WritableUtils.writeVInt(out, dayOfMonth);
+		WritableUtils.writeVInt(out, crsTime);
+		WritableUtils.writeVLong(out, crsTimeLong);
+		out.writeShort(location);
+		out.writeByte(flightType);
+		out.writeBoolean(actualTime != null);
+		if (actualTime != null) {
+			WritableUtils.writeVLong(out, actualTime);
+		} else {
+			WritableUtils.writeVLong(out, startEndTime);
+			WritableUtils.writeVInt(out, year);
+			WritableUtils.writeVInt(out, flightNumber);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		dayOfWeek = WritableUtils.readVInt(in);
+		month = WritableUtils.readVInt(in);
+		distanceGroup = WritableUtils.readVInt(in);
+		dayOfMonth = WritableUtils.readVInt(in);
+		crsTime = WritableUtils.readVInt(in);
+		crsTimeLong = WritableUtils.readVLong(in);
+		location = in.readUnsignedShort();
+		flightType = (char) in.readByte();
+		if (in.readBoolean()) {
+			actualTime = WritableUtils.readVLong(in);
+			startEndTime = null;
+			year = null;
+			flightNumber = null;
+		} else {
+			actualTime = null;
+			startEndTime = WritableUtils.readVLong(in);
+			year = WritableUtils.readVInt(in);
+			flightNumber = WritableUtils.readVInt(in);
+		}
+	}
+}
@@ -6,6 +6,7 @@ import java.net.URI;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
@@ -37,10 +38,14 @@ public class PreProcessFlight {
 		Configuration conf = new Configuration();
 		conf.set("mode", args[3]);
 		conf.set("requestFolder", args[2]);
+		// samples of the rejected records per failed rule, -Ddiagnostics.samples=N in HADOOP_OPTS
+		conf.setInt(Diagnostics.SAMPLES, Diagnostics.samplesFromProperty());
 		Job job = Job.getInstance(conf, "Pre-process Flight Data");
 		job.setJarByClass(PreProcessFlight.class);
 		job.setMapperClass(PreProcessMapper.class);
 		job.setReducerClass(PreProcessReducer.class);
+		job.setMapOutputKeyClass(IntWritable.class);
+		job.setMapOutputValueClass(FlightInfo.class);
 		job.setOutputKeyClass(Text.class);
 		job.setOutputValueClass(Text.class);		
 		FileInputFormat.addInputPath(job, new Path(args[0]));
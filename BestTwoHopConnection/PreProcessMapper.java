@@ -1,7 +1,5 @@
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
 
@@ -15,13 +13,42 @@ import org.apache.hadoop.mapreduce.Mapper;
  * @since: January 28, 2016
  */
 
-public class PreProcessMapper extends Mapper<Object, Text, Text, Text>{
+public class PreProcessMapper extends Mapper<Object, Text, IntWritable, FlightInfo>{
 	/**
 	 * `FlightConnectionMapper` class will output the two intermediate set of key-value pairs where,
-	 * key -> Combination of Carrier-Year-Origin and Carrier-Year-Destination.
-	 * value -> Tab separated values containing arrival times, departure times and flag indicating whether flight was missed.
+	 * key -> Combination of Carrier-Origin and Carrier-Destination, as a CodeDictionary pair of their codes.
+	 * value -> FlightInfo containing arrival times, departure times and flag indicating whether flight was missed.
 	 */
 
+	// Record re-used for every record, fields are read from the bytes of the Text
+	private FlightRecord flight = new FlightRecord();
+	// Sanity rules of the history and the test data
+	private SanityChecker trainChecker = new SanityChecker(SanityChecker.TWO_HOP_TRAIN);
+	private SanityChecker testChecker = new SanityChecker(SanityChecker.TWO_HOP_TEST);
+	// Counts of the rejected records per failed rule
+	private Diagnostics diagnostics;
+	// Keys and values re-used for every record
+	private IntWritable keyArriveFlight = new IntWritable();
+	private IntWritable keyDepartFlight = new IntWritable();
+	private FlightInfo arriveFlight = new FlightInfo();
+	private FlightInfo departFlight = new FlightInfo();
+
+	@Override
+	protected void setup(Context context) {
+		diagnostics = new Diagnostics(context.getTaskAttemptID().toString(), SanityChecker.RULE_NAMES,
+				context.getConfiguration().getInt(Diagnostics.SAMPLES, 0), System.err);
+	}
+
+	@Override
+	protected void cleanup(Context context) {
+		// rejected records per failed rule, as counters of the SanityChecker group
+		for (int rule = 0; rule < diagnostics.getReasonCount(); rule++) {
+			if (diagnostics.getCount(rule) > 0) {
+				context.getCounter("SanityChecker", diagnostics.getReason(rule)).increment(diagnostics.getCount(rule));
+			}
+		}
+	}
+
 	@Override
 	public void map(Object key, Text value, Context context) throws IOException, InterruptedException {
 		/**
@@ -32,113 +59,123 @@ public class PreProcessMapper extends Mapper<Object, Text, Text, Text>{
 		 */
 
 		boolean isTest = context.getConfiguration().get("mode").equals("test");        
-		CSVParser csvParser = new CSVParser(',','"');
-		String[] parsedString = csvParser.parseLine(value.toString());
-		Flight flight = FlightManager.getFlightDetails(parsedString);
+		// Splits the record into fields, without copying it
+		flight.reset(value.getBytes(), 0, value.getLength());
 
 		// Process only sane flights
-		if (FlightManager.isSane(flight, isTest)) {
+		SanityChecker checker = isTest ? testChecker : trainChecker;
+		if (checker.check(flight) == SanityChecker.SANE) {
 			try {
-				Text keyArriveFlight =  new Text (flight.getUniqueCarrier().trim() + "\t" + flight.getDest());          // arriving flight      
-				Text keyDepartFlight =  new Text (flight.getUniqueCarrier().trim() + "\t" + flight.getOrigin());      // departing flight
-				String[] features = getFeatures(flight, isTest).split("_");                                
-				context.write(keyDepartFlight, new Text(features[0]));    // Write Depart key-value pair to context
-				context.write(keyArriveFlight, new Text(features[1]));    // Write Arrive key-value pair to context
+				int carrier = convertCode(flight, FlightRecord.CARRIER);
+				keyArriveFlight.set(CodeDictionary.pair(carrier, convertCode(flight, FlightRecord.DEST)));          // arriving flight      
+				keyDepartFlight.set(CodeDictionary.pair(carrier, convertCode(flight, FlightRecord.ORIGIN)));      // departing flight
+				setFeatures(flight, isTest, departFlight, arriveFlight);
+				context.write(keyDepartFlight, departFlight);    // Write Depart key-value pair to context
+				context.write(keyArriveFlight, arriveFlight);    // Write Arrive key-value pair to context
 			}            
 			catch (Exception e) {
 				//Bad Data Format
 				// System.err.println("Bad Data Format in Sane Records. " + e.getMessage());
 			}
 		}
+		// insane or incorrect format, counted under the rule which failed
+		else if (diagnostics.count(checker.getFailedRule())) {
+			diagnostics.sample(checker.getFailedRule(), value);
+		}
 	}
 
 	/**
-	 * Fetches the required columns from Flight object as features.
-	 * @param fl Flight data object
+	 * Fetches the required columns from the flight record as features.
+	 * @param fl flight record
 	 * @param isTest boolean value whether the Job is for Test or Train.
-	 * @return result Feature columns for prediction model
+	 * @param departFlight set to the features of the departing flight
+	 * @param arriveFlight set to the features of the arriving flight
 	 */
-	public String getFeatures(Flight fl,boolean isTest) {
+	public void setFeatures(FlightRecord fl, boolean isTest, FlightInfo departFlight, FlightInfo arriveFlight) {
 
-		long crsDepartTimeOfFlight = convertToLong(fl.getCrsDepTime(),fl.getFlightDate()); // Scheduled Depart Time for departing Flight(long mins format)
-		long crsArrivalTimeOfFlight = convertToLong(fl.getCrsArrTime(),fl.getCrsDepTime(),fl.getFlightDate()); // Scheduled Arrival Time for arriving Flight(long mins format)
-		String commonFeatures = fl.getDayOfWeek()+ 
-				"\t"+fl.getMonth()+
-				"\t"+fl.getDistanceGroup()+
-				"\t"+fl.getDayOfMonth();
-		String departFlightFeatures = commonFeatures;
-		String arriveFlightFeatures = commonFeatures;        
-		departFlightFeatures +=  
-				"\t"+fl.getCrsDepTime() +                                                // Scheduled Depart Time for departing Flight(String format)
-				"\t"+crsDepartTimeOfFlight +   
-				"\t"+fl.getDest() +                                                      // destination airport of departing flight
-				"\t"+"d";                                                              // "d" for departing flight
-		arriveFlightFeatures += 
-				"\t"+fl.getCrsArrTime() +                                                                     // Scheduled Arrival Time for arriving Flight(String format)
-				"\t"+crsArrivalTimeOfFlight +     
-				"\t"+fl.getOrigin() +                                                                         // origin airport of arriving flight
-				"\t"+"a";                                                                                     // "a" for arriving flight
+		long flightDate = convertDate(fl);
+		long crsDepartTimeOfFlight = convertToLong(fl.getInt(FlightRecord.CRS_DEP_TIME), flightDate); // Scheduled Depart Time for departing Flight(long mins format)
+		long crsArrivalTimeOfFlight = convertToLong(fl.getInt(FlightRecord.CRS_ARR_TIME), fl.getInt(FlightRecord.CRS_DEP_TIME), flightDate); // Scheduled Arrival Time for arriving Flight(long mins format)
+		for (FlightInfo features : new FlightInfo[] {departFlight, arriveFlight}) {
+			features.setDayOfWeek(fl.getInt(FlightRecord.DAY_OF_WEEK));
+			features.setMonth(fl.getInt(FlightRecord.MONTH));
+			features.setDistanceGroup(fl.getInt(FlightRecord.DISTANCE_GROUP));
+			features.setDayOfMonth(fl.getInt(FlightRecord.DAY_OF_MONTH));
+		}
+		departFlight.setCrsTime(fl.getInt(FlightRecord.CRS_DEP_TIME));         // Scheduled Depart Time for departing Flight(hhmm format)
+		departFlight.setCrsTimeLong(crsDepartTimeOfFlight);
+		departFlight.setLocation(convertCode(fl, FlightRecord.DEST));          // destination airport of departing flight
+		departFlight.setFlightType('d');                                       // "d" for departing flight
+		arriveFlight.setCrsTime(fl.getInt(FlightRecord.CRS_ARR_TIME));        // Scheduled Arrival Time for arriving Flight(hhmm format)
+		arriveFlight.setCrsTimeLong(crsArrivalTimeOfFlight);
+		arriveFlight.setLocation(convertCode(fl, FlightRecord.ORIGIN));        // origin airport of arriving flight
+		arriveFlight.setFlightType('a');                                       // "a" for arriving flight
 		if (!isTest){
-			departFlightFeatures += "\t"+convertToLong(fl.getDepTime(),fl.getFlightDate()).toString();                     // Actual Depart Time for departing Flight
-			arriveFlightFeatures  +=  "\t"+convertToLong(fl.getArrTime(), fl.getDepTime(), fl.getFlightDate()).toString(); // Actual Arrival Time for arriving Flight
+			departFlight.setActualTime(convertToLong(fl.getInt(FlightRecord.DEP_TIME), flightDate));                     // Actual Depart Time for departing Flight
+			arriveFlight.setActualTime(convertToLong(fl.getInt(FlightRecord.ARR_TIME), fl.getInt(FlightRecord.DEP_TIME), flightDate)); // Actual Arrival Time for arriving Flight
 		} else {
-			departFlightFeatures += 
-					"\t"+crsArrivalTimeOfFlight+
-					"\t"+fl.getYear()+
-					"\t"+fl.getFlightNumber();
-			arriveFlightFeatures += 
-					"\t"+crsDepartTimeOfFlight+
-					"\t"+fl.getYear()+
-					"\t"+fl.getFlightNumber();
+			departFlight.setActualTime(null);
+			departFlight.setStartEndTime(crsArrivalTimeOfFlight);
+			departFlight.setYear(fl.getInt(FlightRecord.YEAR));
+			departFlight.setFlightNumber(fl.getInt(FlightRecord.FL_NUM));
+			arriveFlight.setActualTime(null);
+			arriveFlight.setStartEndTime(crsDepartTimeOfFlight);
+			arriveFlight.setYear(fl.getInt(FlightRecord.YEAR));
+			arriveFlight.setFlightNumber(fl.getInt(FlightRecord.FL_NUM));
 		}
-		return departFlightFeatures + "_" + arriveFlightFeatures;
 	}
 
 	/**
-	 * Converts the departure time and departure date into DateTime.
-	 * @param strTime
-	 * @param strDate
-	 * @return
+	 * Converts a carrier or airport of a record into its CodeDictionary code, read from the bytes of the record.
+	 * @param fl flight record
+	 * @param column CARRIER, ORIGIN or DEST
+	 * @return code of the column
 	 */
-	public Long convertToLong(String strTime,String strDate) {
-		Integer dTH = Integer.parseInt(strTime) / 100; // Departure Hour
-		Integer dTM = Integer.parseInt(strTime) % 100; // Departure Minute
-		String finalDate = strDate.trim()+" "+dTH+":"+dTM;
-		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-		Date d1 = null;
-		try {
-			d1 = format.parse(finalDate);
-		} catch (ParseException e) {
-			e.printStackTrace();
+	public int convertCode(FlightRecord fl, int column) {
+		int index = fl.getIndex(column);
+		if (index < 0) {
+			throw new NumberFormatException("Missing " + FlightRecord.NAMES[column]);
 		}
-		return d1.getTime();
+		CsvTokenizer tokenizer = fl.getTokenizer();
+		return CodeDictionary.encode(tokenizer.getBytes(), tokenizer.getStart(index), tokenizer.getLength(index));
 	}
 
 	/**
-	 * Converts the arrival time and arrival date into DateTime by adjusting based on departure time.
-	 * @param strATime
-	 * @param strDTime
-	 * @param strDate
-	 * @return
+	 * Converts the flight date of a record into epoch minutes, read from the bytes of the record.
+	 * @param fl flight record
+	 * @return minutes since 1970-01-01 00:00 of the midnight of the flight date
 	 */
-	public Long convertToLong(String strATime,String strDTime, String strDate) {
-		Integer aTH = Integer.parseInt(strATime) / 100; // Arrival Hour
-		Integer aTM = Integer.parseInt(strATime) % 100; // Arrival Minute
-		Integer dTH = Integer.parseInt(strDTime) / 100; // Departure Hour
-		String finalDate = strDate.trim()+" "+aTH+":"+aTM;
-		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-		Date d1 = null;
-		try {
-			d1 = format.parse(finalDate);
-		} catch (ParseException e) {
-			e.printStackTrace();
+	public long convertDate(FlightRecord fl) {
+		int index = fl.getIndex(FlightRecord.FL_DATE);
+		if (index < 0) {
+			throw new NumberFormatException("Missing FL_DATE");
 		}
-		long seconds;
+		CsvTokenizer tokenizer = fl.getTokenizer();
+		return EpochMinutes.ofDate(tokenizer.getBytes(), tokenizer.getStart(index), tokenizer.getLength(index));
+	}
+
+	/**
+	 * Converts the departure time and departure date into epoch minutes.
+	 * @param time departure time as hhmm
+	 * @param date epoch minutes of the flight date
+	 * @return epoch minutes of the departure
+	 */
+	public long convertToLong(int time, long date) {
+		return date + EpochMinutes.ofTime(time);
+	}
+
+	/**
+	 * Converts the arrival time and arrival date into epoch minutes by adjusting based on departure time.
+	 * @param aTime arrival time as hhmm
+	 * @param dTime departure time as hhmm
+	 * @param date epoch minutes of the flight date
+	 * @return epoch minutes of the arrival
+	 */
+	public long convertToLong(int aTime, int dTime, long date) {
 		// If departure time is on the next day of arrival time, add one day
-		if ( aTH < dTH) {
-			seconds = d1.getTime() + (1 * 24 * 60 * 60 * 1000);
+		if (aTime / 100 < dTime / 100) {
+			date += EpochMinutes.MINUTES_PER_DAY;
 		}
-		else seconds = d1.getTime();
-		return seconds;
+		return date + EpochMinutes.ofTime(aTime);
 	}
-}
\ No newline at end of file
+}
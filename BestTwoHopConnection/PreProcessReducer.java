@@ -7,15 +7,12 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Reducer;
 
@@ -28,9 +25,9 @@ import org.apache.hadoop.mapreduce.Reducer;
  * @version: 2.0
  */
 
-public class PreProcessReducer extends Reducer<Text, Text, Text, Text> {
+public class PreProcessReducer extends Reducer<IntWritable, FlightInfo, Text, Text> {
 	/**
-	 * Loops over Iterable<Text> to build a list of FlightInfo objects and compute connections
+	 * Loops over Iterable<FlightInfo> to decode the flights into FlightColumns and compute connections
 	 */
 	// List of popular airports fetched from prof's piazza post "@276"
 	static String[] popularAirports = { "ATL", "ORD", "DFW", "LAX", "DEN", "IAH", "PHX", 
@@ -38,11 +35,16 @@ public class PreProcessReducer extends Reducer<Text, Text, Text, Text> {
 			"JFK", "LGA", "BOS", "SLC", "SEA", "BWI", "MIA", 
 			"MDW", "PHL", "SAN", "FLL", "TPA", "DCA", "IAD", 
 	"HOU"};
+	// popularAirports as a flag per CodeDictionary code
+	static boolean[] isPopular = CodeDictionary.flags(popularAirports);
 
-	HashSet<String> requests = new HashSet<String>();
+	// requested year, month, day, origin and destination, see requestKey
+	HashSet<Long> requests = new HashSet<Long>();
+	// flights of the current key, re-used for every key
+	private FlightColumns flights = new FlightColumns();
 
 	@Override
-	protected void setup(Reducer<Text, Text, Text, Text>.Context context) throws IOException, InterruptedException {	
+	protected void setup(Reducer<IntWritable, FlightInfo, Text, Text>.Context context) throws IOException, InterruptedException {	
 		String requestFolder = context.getConfiguration().get("requestFolder");
 		FileSystem fileSystem = FileSystem.get(URI.create(requestFolder), context.getConfiguration());
 		FSDataInputStream fsDataInputStream = fileSystem.open(new Path(requestFolder+"/04req10k.csv.gz")); 	
@@ -50,131 +52,121 @@ public class PreProcessReducer extends Reducer<Text, Text, Text, Text> {
 		String line = br.readLine();
 		while(line != null) {
 			String cols[] = line.split(",");
-			String joinCols = merge(cols);
-			requests.add(joinCols);
+			try {
+				requests.add(requestKey(Integer.parseInt(cols[0]), Integer.parseInt(cols[1]), Integer.parseInt(cols[2]),
+						CodeDictionary.encode(cols[3]), CodeDictionary.encode(cols[4])));
+			}
+			catch (NumberFormatException e) {
+				// no flight can match a request which is not a date and two airports
+			}
 			line = br.readLine();
 		}
 		//System.out.println("Requests Size :: "+requests.size());
 	}
-	
-	private String merge(String[] cols) {	
-		String str = cols[0]+"_"+cols[1]+"_"+cols[2]+"_"+cols[3]+"_"+cols[4];
-		return str;
+
+	/**
+	 * Packs a request into one long.
+	 * @param year year of the arrival
+	 * @param month month of the arrival
+	 * @param day day of month of the arrival
+	 * @param ori CodeDictionary code of the origin
+	 * @param dest CodeDictionary code of the final destination
+	 * @return key of the request
+	 */
+	public static long requestKey(int year, int month, int day, int ori, int dest) {
+		return (((long) year * 13 + month) * 32 + day) * CodeDictionary.SIZE * CodeDictionary.SIZE
+				+ (long) ori * CodeDictionary.SIZE + dest;
 	}
 
 
 	@Override
-	public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException {
+	public void reduce(IntWritable key, Iterable<FlightInfo> values, Context context) throws IOException, InterruptedException {
 		boolean isTest = context.getConfiguration().get("mode").equals("test");
-		ArrayList<FlightInfo> flightInfoList = new ArrayList<>();
-		for(Text featuresVal : values) {
-			String[] features = featuresVal.toString().split("\t");
-			FlightInfo fInfo = new FlightInfo();			
-			fInfo.setDayOfWeek(Integer.parseInt(features[0]));
-			fInfo.setMonth(Integer.parseInt(features[1]));
-			fInfo.setDistanceGroup(Integer.parseInt(features[2]));
-			fInfo.setDayOfMonth(Integer.parseInt(features[3]));
-			fInfo.setCrsTime(features[4]);							// Set Destination/Arrival CRS Time in String
-			fInfo.setCrsTimeLong(Long.parseLong(features[5]));		// Set Destination/Arrival CRS Time in long
-			fInfo.setLocation(features[6]);							// Set Destination Airport for departing flight, Origin Airport for arriving flight
-			fInfo.setFlightType(features[7].charAt(0));				// 'd' for departing, 'a' for arrival Flight
-			if(!isTest) {
-				fInfo.setActualTime(Long.parseLong(features[8]));	// Set Destination/Arrival CRS Time (only for train data)
-			} else {
-				fInfo.setStartEndTime(Long.parseLong(features[8]));
-				fInfo.setYear(Integer.parseInt(features[9]));
-				fInfo.setFlightNumber(Integer.parseInt(features[10]));				
-			}
-			flightInfoList.add(fInfo);			
+		// Hadoop re-uses the value object, each value is decoded once into the columns
+		flights.clear();
+		for(FlightInfo featuresVal : values) {
+			flights.add(featuresVal);
 		}		
-		Collections.sort(flightInfoList, new TimeComparator());		// Sort the collection of FlightInfo objects according to time
-		// Compute the connections, missed connections and no connections between all FlightInfo objects
-		getAllConnection(flightInfoList, context, key, isTest);
+		flights.sortByCrsTime();		// Sort the flights according to time
+		// Compute the connections, missed connections and no connections between all flights
+		getAllConnection(flights, context, key, isTest);
 	}
 
 	/**
-	 * Writes the engineered features from the given list of FlightInfo objects along with missed connection flag.
-	 * @param flightInfoList ArrayList of FlightInfo objects
+	 * Writes the engineered features from the given flights along with missed connection flag.
+	 * @param flights flights of the key sorted by scheduled time
 	 * @param context 
 	 * @param key 
 	 * @param isTest 
 	 * @throws InterruptedException 
 	 * @throws IOException 
 	 */
-	private void getAllConnection(ArrayList<FlightInfo> flightInfoList, Reducer<Text, Text, Text, Text>.Context context, Text key, boolean isTest) throws IOException, InterruptedException {
-		try {
-			int flightIndex = 0;
-			for (FlightInfo arrivalFlight : flightInfoList) {
-				flightIndex ++;
-				// Look for a connection for this arriving flight
-				if(arrivalFlight.getFlightType() == 'a') {										// verify flight is indeed an arriving flight.
-					int departFlightIndex = flightIndex;
-					boolean isConnectionPossible = true;
-					// List is sorted.If no connection found for current -> no connection will be found for rest of list elements.
-					while(departFlightIndex < flightInfoList.size() && isConnectionPossible) { 
-						FlightInfo departFlight = flightInfoList.get(departFlightIndex);						
-						if (departFlight.getFlightType() == 'd' && !arrivalFlight.getLocation().equalsIgnoreCase(departFlight.getLocation())) {								// verify flight is indeed a departing flight
-							long diffScheduledTime = TimeUnit.MILLISECONDS.toMinutes(
-									departFlight.getCrsTimeLong() - arrivalFlight.getCrsTimeLong());
-							// Time difference should be more than (or equal to ) 30 minutes and less than (or equal to ) 1 hour
-							if (diffScheduledTime <= 60) {
-								if (diffScheduledTime >= 30){
-									if(isTest) {
-										generateData(departFlight, arrivalFlight, context, -1, key, diffScheduledTime); //end of parsing for test data
-									} 
-									else {
-										long diffActualTime = TimeUnit.MILLISECONDS.toMinutes(
-												departFlight.getActualTime() - arrivalFlight.getActualTime());
-										if(diffActualTime < 30) {
-											generateData(departFlight, arrivalFlight, context, 1, key, diffScheduledTime); // missed
-										}
-										else {
-											generateData(departFlight, arrivalFlight, context, 0, key, diffScheduledTime); // not missed
-										}
-									}
+	private void getAllConnection(FlightColumns flights, Reducer<IntWritable, FlightInfo, Text, Text>.Context context, IntWritable key, boolean isTest) throws IOException, InterruptedException {
+		int size = flights.size();
+		for (int arrivalFlight = 0; arrivalFlight < size; arrivalFlight++) {
+			// Look for a connection for this arriving flight
+			if(flights.getFlightType(arrivalFlight) == 'a') {										// verify flight is indeed an arriving flight.
+				long arrivalTime = flights.getCrsTimeLong(arrivalFlight);
+				int arrivalLocation = flights.getLocation(arrivalFlight);
+				// List is sorted.If no connection found for current -> no connection will be found for rest of list elements.
+				for (int departFlight = arrivalFlight + 1; departFlight < size; departFlight++) { 
+					long diffScheduledTime = flights.getCrsTimeLong(departFlight) - arrivalTime;
+					if (diffScheduledTime > 60) {
+						break;	// no connection
+					}
+					// verify flight is indeed a departing flight
+					if (flights.getFlightType(departFlight) == 'd' && arrivalLocation != flights.getLocation(departFlight)) {
+						// Time difference should be more than (or equal to ) 30 minutes and less than (or equal to ) 1 hour
+						if (diffScheduledTime >= 30){
+							if(isTest) {
+								generateData(flights, departFlight, arrivalFlight, context, -1, key, diffScheduledTime); //end of parsing for test data
+							} 
+							else {
+								long diffActualTime = flights.getActualTime(departFlight) - flights.getActualTime(arrivalFlight);
+								if(diffActualTime < 30) {
+									generateData(flights, departFlight, arrivalFlight, context, 1, key, diffScheduledTime); // missed
 								}
-							} else isConnectionPossible = false;	// no connection
+								else {
+									generateData(flights, departFlight, arrivalFlight, context, 0, key, diffScheduledTime); // not missed
+								}
+							}
 						}
-						departFlightIndex++;
 					}
 				}
 			}
-		} 
-		catch (NullPointerException  | NumberFormatException e)  {
-			e.printStackTrace();
 		}
 	}
 
-	private void generateData(FlightInfo departFlight, FlightInfo arrivalFlight,
-			Reducer<Text, Text, Text, Text>.Context context, int label, Text key, long scheduledLayoverDuration) throws IOException, InterruptedException {
-
+	private void generateData(FlightColumns flights, int departFlight, int arrivalFlight,
+			Reducer<IntWritable, FlightInfo, Text, Text>.Context context, int label, IntWritable key, long scheduledLayoverDuration) throws IOException, InterruptedException {
 
-		String engineeredFeatures = isPopularAirport(arrivalFlight.getLocation()) + "\t" + 		// starting origin ariport
-				//isPopularAirport(departFlight.getLocation()) + "\t" + 		// final destination airport
-				//isPopularAirport(key.toString().split("\t")[1]) + "\t" + 	// intermediate airport
+		int arrivalLocation = flights.getLocation(arrivalFlight);
+		String engineeredFeatures = isPopularAirport(arrivalLocation) + "\t" + 		// starting origin ariport
+				//isPopularAirport(flights.getLocation(departFlight)) + "\t" + 		// final destination airport
+				//isPopularAirport(CodeDictionary.second(key.get())) + "\t" + 	// intermediate airport
 				scheduledLayoverDuration + "\t" + 							// scheduled layover Duration
-				arrivalFlight.getDayOfWeek() + "\t" + 						// Day of Week [1-7]
-				arrivalFlight.getMonth() + "\t" + 							// Month [1-12]
+				flights.getDayOfWeek(arrivalFlight) + "\t" + 						// Day of Week [1-7]
+				flights.getMonth(arrivalFlight) + "\t" + 							// Month [1-12]
 				//binDayToWeek(arrivalFlight.getDayOfMonth()) + "\t" +		// Week No [0-4]
-				binScheduledTime(arrivalFlight.getCrsTime()) + "\t" +		// Binned Scheduled time [0-24]
-				arrivalFlight.getDistanceGroup();	
+				binScheduledTime(flights.getCrsTime(arrivalFlight)) + "\t" +		// Binned Scheduled time [0-24]
+				flights.getDistanceGroup(arrivalFlight);	
 
 
 		// Distance Group
 		if (label == -1){			// test data
-			if (isRequested(arrivalFlight.getYear(), arrivalFlight.getMonth(), arrivalFlight.getDayOfMonth(), 
-					arrivalFlight.getLocation(), departFlight.getLocation(), requests)) {
+			int departLocation = flights.getLocation(departFlight);
+			if (isRequested(flights.getYear(arrivalFlight), flights.getMonth(arrivalFlight), flights.getDayOfMonth(arrivalFlight), 
+					arrivalLocation, departLocation, requests)) {
 				String testKey = 
-						arrivalFlight.getYear() + "\t" + 
-								arrivalFlight.getMonth() + "\t"  + 
-								arrivalFlight.getDayOfMonth() + "\t" + 
-								arrivalFlight.getLocation() + "\t" + 
-								departFlight.getLocation() + "\t" + 
-								arrivalFlight.getFlightNumber() + "\t" + 
-								departFlight.getFlightNumber();
-
-				long difference = departFlight.getStartEndTime() - arrivalFlight.getStartEndTime();
-				long duration = TimeUnit.MILLISECONDS.toMinutes(difference);
+						flights.getYear(arrivalFlight) + "\t" + 
+								flights.getMonth(arrivalFlight) + "\t"  + 
+								flights.getDayOfMonth(arrivalFlight) + "\t" + 
+								CodeDictionary.decode(arrivalLocation) + "\t" + 
+								CodeDictionary.decode(departLocation) + "\t" + 
+								flights.getFlightNumber(arrivalFlight) + "\t" + 
+								flights.getFlightNumber(departFlight);
+
+				long duration = flights.getStartEndTime(departFlight) - flights.getStartEndTime(arrivalFlight);
 				context.write(new Text(testKey), new Text(engineeredFeatures + "\t" + duration));
 			} 
 
@@ -184,22 +176,18 @@ public class PreProcessReducer extends Reducer<Text, Text, Text, Text> {
 		}
 	}
 
-	public static boolean isRequested (Integer year, Integer month, Integer day, String ori, String dest, HashSet<String> requests) {
+	public static boolean isRequested (int year, int month, int day, int ori, int dest, HashSet<Long> requests) {
 
-		String key = year+"_"+month+"_"+day+"_"+ori+"_"+dest;		
-		return requests.contains(key);
+		return requests.contains(requestKey(year, month, day, ori, dest));
 	}
 
-	public static String isPopularAirport(String airport){
+	public static String isPopularAirport(int airport){
 		/**
 		 * Checks whether given airport is a popular airport or not.
-		 * @param	airport Given airport to verify.
+		 * @param	airport CodeDictionary code of the airport to verify.
 		 * @return	"1" if given airport is a popular airport, "0" otherwise.
 		 */
-		for(String s: popularAirports){
-			if(s.equals(airport)) return "1";
-		}
-		return "0";
+		return isPopular[airport] ? "1" : "0";
 	}
 
 	public static String binDayToWeek(Integer dayOfMonth){
@@ -212,143 +200,13 @@ public class PreProcessReducer extends Reducer<Text, Text, Text, Text> {
 		return week.toString();
 	}
 
-	public static String binScheduledTime(String scheduledTime){
+	public static String binScheduledTime(Integer scheduledTime){
 		/**
 		 * Bins time into 24 bins (division by 100).
-		 * @param	scheduledTime time in hhmm format as String.
+		 * @param	scheduledTime time in hhmm format.
 		 * @return	Bin of the given given time 
 		 */
-		Integer time = Integer.parseInt(scheduledTime)/100;
+		Integer time = scheduledTime/100;
 		return time.toString();
 	}
 }
-
-/**
- * FlightInfo class is used to store relevant information of a Flight object for computing connections
- * based on arrival and departure times.
- */
-class FlightInfo {
-	Integer dayOfWeek;
-	Integer month;	
-	Integer dayOfMonth;
-	String crsTime;
-	Long crsTimeLong;
-	Long actualTime;
-	String location;
-	char flightType;
-	Integer distanceGroup;
-	Integer year;
-	Integer flightNumber;
-	Long startEndTime;
-
-
-	public Long getStartEndTime() {
-		return startEndTime;
-	}
-
-	public void setStartEndTime(Long startEndTime) {
-		this.startEndTime = startEndTime;
-	}
-
-	public Integer getYear() {
-		return year;
-	}
-
-	public void setYear(Integer year) {
-		this.year = year;
-	}
-
-	public Integer getFlightNumber() {
-		return flightNumber;
-	}
-
-	public void setFlightNumber(Integer flightNumber) {
-		this.flightNumber = flightNumber;
-	}
-
-	public FlightInfo() {
-
-	}
-
-	public Integer getDayOfWeek() {
-		return dayOfWeek;
-	}
-
-	public void setDayOfWeek(Integer dayOfWeek) {
-		this.dayOfWeek = dayOfWeek;
-	}
-
-	public Integer getMonth() {
-		return month;
-	}
-
-	public void setMonth(Integer month) {
-		this.month = month;
-	}
-
-	public Integer getDayOfMonth() {
-		return dayOfMonth;
-	}
-
-	public void setDayOfMonth(Integer dayOfMonth) {
-		this.dayOfMonth = dayOfMonth;
-	}
-
-	public String getCrsTime() {
-		return crsTime;
-	}
-
-	public void setCrsTime(String crsTime) {
-		this.crsTime = crsTime;
-	}
-
-	public Long getCrsTimeLong() {
-		return crsTimeLong;
-	}
-
-	public void setCrsTimeLong(Long crsTimeLong) {
-		this.crsTimeLong = crsTimeLong;
-	}
-
-	public Long getActualTime() {
-		return actualTime;
-	}
-
-	public void setActualTime(Long actualTime) {
-		this.actualTime = actualTime;
-	}
-
-	public String getLocation() {
-		return location;
-	}
-
-	public void setLocation(String location) {
-		this.location = location;
-	}
-
-	public char getFlightType() {
-		return flightType;
-	}
-
-	public void setFlightType(char flightType) {
-		this.flightType = flightType;
-	}
-
-	public Integer getDistanceGroup() {
-		return distanceGroup;
-	}
-
-	public void setDistanceGroup(Integer distanceGroup) {
-		this.distanceGroup = distanceGroup;
-	}
-}
-
-/**
- * TimeComparator class implements logic to compare two FlightInfo objects.
- */
-class TimeComparator implements Comparator<FlightInfo> {
-	@Override
-	public int compare(FlightInfo flight1, FlightInfo flight2) {
-		return flight1.getCrsTimeLong().compareTo(flight2.getCrsTimeLong());
-	}
-}
@@ -0,0 +1,154 @@
+/**
+ * CodeDictionary maps the carrier and airport codes of the BTS records, up to
+ * three letters or digits, to small ints and back. The dictionary is static:
+ * the code of a string is its characters as base 37 digits, blank padded, so
+ * every job and every task gives the same code to the same airport without a
+ * dictionary file, and the codes order like the strings. A code fits in an
+ * unsigned short and is written as one. Lower case letters get the codes of
+ * the upper case ones, like equalsIgnoreCase. The strings of the codes are
+ * built once and then taken from a table.
+ * @author Abhijeet, Afan
+ * @version 1.0
+ */
+public final class CodeDictionary {
+
+	/** number of codes, every code is less */
+	public static final int SIZE = 37 * 37 * 37;
+
+	// longest code
+	private static final int LENGTH = 3;
+	// strings of the codes, filled when a code is first decoded
+	private static final String[] STRINGS = new String[SIZE];
+
+	private CodeDictionary() {
+	}
+
+	// digit of a character, -1 if it can not be part of a code
+	private static int digit(int c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0' + 1;
+		}
+		if (c >= 'A' && c <= 'Z') {
+			return c - 'A' + 11;
+		}
+		if (c >= 'a' && c <= 'z') {
+			return c - 'a' + 11;
+		}
+		return -1;
+	}
+
+	/**
+	 * Code of a carrier or airport, blanks around it are skipped
+	 * @param bytes bytes holding the string
+	 * @param start start of the string
+	 * @param length length of the string
+	 * @return code of the string
+	 * @throws NumberFormatException if it is longer than 3 characters or not alphanumeric
+	 */
+	public static int encode(byte[] bytes, int start, int length) {
+		int end = start + length;
+		while (start < end && bytes[start] == ' ') {
+			start++;
+		}
+		while (end > start && bytes[end - 1] == ' ') {
+			end--;
+		}
+		if (end - start > LENGTH) {
+			throw new NumberFormatException("Not a code: " + new String(bytes, start, end - start));
+		}
+		int code = 0;
+		for (int i = 0; i < LENGTH; i++) {
+			int digit = 0;
+			if (start + i < end) {
+				digit = digit(bytes[start + i]);
+				if (digit < 0) {
+					throw new NumberFormatException("Not a code: " + new String(bytes, start, end - start));
+				}
+			}
+			code = code * 37 + digit;
+		}
+		return code;
+	}
+
+	/**
+	 * Code of a carrier or airport
+	 * @param string the carrier or airport
+	 * @return code of the string
+	 * @throws NumberFormatException if it is longer than 3 characters or not alphanumeric
+	 */
+	public static int encode(String string) {
+		byte[] bytes = new byte[string.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			char c = string.charAt(i);
+			bytes[i] = c < 128 ? (byte) c : (byte) '?';
+		}
+		return encode(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * String of a code, upper case
+	 * @param code code of a carrier or airport
+	 * @return the carrier or airport
+	 */
+	public static String decode(int code) {
+		String string = STRINGS[code];
+		if (string == null) {
+			char[] chars = new char[LENGTH];
+			int length = 0;
+			int rest = code;
+			for (int i = LENGTH - 1; i >= 0; i--) {
+				int digit = rest % 37;
+				rest /= 37;
+				if (digit > 0) {
+					chars[i] = (char) (digit <= 10 ? '0' + digit - 1 : 'A' + digit - 11);
+					length = Math.max(length, i + 1);
+				}
+			}
+			string = new String(chars, 0, length);
+			// Strings are immutable, a race only builds the same string twice
+			STRINGS[code] = string;
+		}
+		return string;
+	}
+
+	/**
+	 * Table of a set of codes
+	 * @param strings carriers or airports
+	 * @return flag of every code, true for the codes of the strings
+	 */
+	public static boolean[] flags(String[] strings) {
+		boolean[] flags = new boolean[SIZE];
+		for (String string : strings) {
+			flags[encode(string)] = true;
+		}
+		return flags;
+	}
+
+	/**
+	 * One int of two codes, e.g. carrier and airport, which orders like the first and then the
+	 * second code
+	 * @param first first code
+	 * @param second second code
+	 * @return the pair
+	 */
+	public static int pair(int first, int second) {
+		// the pairs need 32 bits, they are shifted into the range of int
+		return (int) ((long) first * SIZE + second + Integer.MIN_VALUE);
+	}
+
+	/**
+	 * @param pair pair of two codes
+	 * @return first code of the pair
+	 */
+	public static int first(int pair) {
+		return (int) (((long) pair - Integer.MIN_VALUE) / SIZE);
+	}
+
+	/**
+	 * @param pair pair of two codes
+	 * @return second code of the pair
+	 */
+	public static int second(int pair) {
+		return (int) (((long) pair - Integer.MIN_VALUE) % SIZE);
+	}
+}
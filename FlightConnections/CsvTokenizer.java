@@ -0,0 +1,352 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * CsvTokenizer splits one CSV record held as raw UTF-8 bytes (the backing
+ * array of a Hadoop Text, a ByteBuffer or a slice of a decompressed file)
+ * into fields without copying it. Only the start and end offset of every
+ * field is recorded, the callers then decode just the columns they need as
+ * int, long or double and no String is created unless asked for.
+ * Fields may be quoted with '"', separators inside quotes belong to the
+ * field and a doubled quote inside a quoted field stands for one quote.
+ * The same instance is reset for every record.
+ * @author Abhijeet, Afan
+ * @version 1.0
+ */
+public class CsvTokenizer {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	// powers of ten which are exact doubles, for the fast path of getDouble
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final byte separator;
+	private final byte quote;
+	private byte[] bytes;
+	// start(inclusive) and end(exclusive) offset of each field in bytes
+	private int[] starts = new int[128];
+	private int[] ends = new int[128];
+	// true for quoted fields containing a doubled quote
+	private boolean[] escaped = new boolean[128];
+	private int count;
+	// number of leading fields dropped by skip
+	private int base;
+	private byte[] scratch = new byte[0];
+
+	/**
+	 * Constructs a tokenizer for comma separated records with '"' quotes.
+	 */
+	public CsvTokenizer() {
+		this(',', '"');
+	}
+
+	/**
+	 * Constructs a tokenizer with the given separator and quote character.
+	 * @param separator field separator, must be ASCII
+	 * @param quote quote character, must be ASCII
+	 */
+	public CsvTokenizer(char separator, char quote) {
+		this.separator = (byte) separator;
+		this.quote = (byte) quote;
+	}
+
+	/**
+	 * Tokenizes the record bytes[offset, offset + length). A trailing '\r' is
+	 * not part of the last field.
+	 * @param bytes array holding the record, it is not copied
+	 * @param offset start of the record
+	 * @param length length of the record
+	 * @return the number of fields
+	 */
+	public int reset(byte[] bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.count = 0;
+		this.base = 0;
+		int end = offset + length;
+		if (end > offset && bytes[end - 1] == '\r') {
+			end--;
+		}
+		int pos = offset;
+		while (true) {
+			if (pos < end && bytes[pos] == quote) {
+				// quoted field, runs until a quote which is not doubled
+				int start = pos + 1;
+				boolean hasEscape = false;
+				pos = start;
+				while (pos < end) {
+					if (bytes[pos] == quote) {
+						if (pos + 1 < end && bytes[pos + 1] == quote) {
+							hasEscape = true;
+							pos += 2;
+							continue;
+						}
+						break;
+					}
+					pos++;
+				}
+				int fieldEnd = pos;
+				// characters between the closing quote and the separator are ignored
+				while (pos < end && bytes[pos] != separator) {
+					pos++;
+				}
+				addField(start, fieldEnd, hasEscape);
+			}
+			else {
+				int start = pos;
+				while (pos < end && bytes[pos] != separator) {
+					pos++;
+				}
+				addField(start, pos, false);
+			}
+			if (pos >= end) {
+				break;
+			}
+			// skip the separator
+			pos++;
+		}
+		return count;
+	}
+
+	/**
+	 * Tokenizes the remaining bytes of the buffer. Heap buffers are used in
+	 * place, direct buffers are copied once into an internal array. The
+	 * position of the buffer is not changed.
+	 * @param buffer buffer holding one record
+	 * @return the number of fields
+	 */
+	public int reset(ByteBuffer buffer) {
+		if (buffer.hasArray()) {
+			return reset(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		}
+		int length = buffer.remaining();
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, 2 * scratch.length)];
+		}
+		buffer.duplicate().get(scratch, 0, length);
+		return reset(scratch, 0, length);
+	}
+
+	/**
+	 * Drops the first n fields, field n becomes field 0 (like
+	 * Arrays.copyOfRange(record, n, record.length)).
+	 * @param n number of fields to drop
+	 */
+	public void skip(int n) {
+		base = Math.min(count, base + n);
+	}
+
+	private void addField(int start, int end, boolean hasEscape) {
+		if (count == starts.length) {
+			int capacity = 2 * count;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			escaped = Arrays.copyOf(escaped, capacity);
+		}
+		starts[count] = start;
+		ends[count] = end;
+		escaped[count] = hasEscape;
+		count++;
+	}
+
+	private int index(int field) {
+		int i = base + field;
+		if (field < 0 || i >= count) {
+			throw new ArrayIndexOutOfBoundsException(field);
+		}
+		return i;
+	}
+
+	/**
+	 * @return the number of fields of the current record
+	 */
+	public int getFieldCount() {
+		return count - base;
+	}
+
+	/**
+	 * @return the array the current record is read from
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @param field index of the field
+	 * @return offset of the first byte of the field in getBytes()
+	 */
+	public int getStart(int field) {
+		return starts[index(field)];
+	}
+
+	/**
+	 * @param field index of the field
+	 * @return number of bytes of the field, quotes excluded
+	 */
+	public int getLength(int field) {
+		int i = index(field);
+		return ends[i] - starts[i];
+	}
+
+	/**
+	 * @param field index of the field
+	 * @return true if the field has no characters
+	 */
+	public boolean isEmpty(int field) {
+		int i = index(field);
+		return ends[i] == starts[i];
+	}
+
+	/**
+	 * Compares the field with an ASCII string without decoding it.
+	 * @param field index of the field
+	 * @param value ASCII string
+	 * @return true if the field equals value
+	 */
+	public boolean fieldEquals(int field, String value) {
+		int i = index(field);
+		if (escaped[i]) {
+			return getString(field).equals(value);
+		}
+		int length = ends[i] - starts[i];
+		if (length != value.length()) {
+			return false;
+		}
+		for (int j = 0; j < length; j++) {
+			if (bytes[starts[i] + j] != value.charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the field like Integer.parseInt.
+	 * @param field index of the field
+	 * @return value of the field
+	 * @throws NumberFormatException if the field is not an int
+	 */
+	public int getInt(int field) {
+		int i = index(field);
+		int pos = starts[i];
+		int end = ends[i];
+		boolean negative = false;
+		if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+			negative = bytes[pos] == '-';
+			pos++;
+		}
+		// up to 9 digits can not overflow, anything else goes the slow way
+		if (pos == end || end - pos > 9) {
+			return Integer.parseInt(getString(field));
+		}
+		int value = 0;
+		for (; pos < end; pos++) {
+			int digit = bytes[pos] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses the field like Long.parseLong.
+	 * @param field index of the field
+	 * @return value of the field
+	 * @throws NumberFormatException if the field is not a long
+	 */
+	public long getLong(int field) {
+		int i = index(field);
+		int pos = starts[i];
+		int end = ends[i];
+		boolean negative = false;
+		if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+			negative = bytes[pos] == '-';
+			pos++;
+		}
+		// up to 18 digits can not overflow, anything else goes the slow way
+		if (pos == end || end - pos > 18) {
+			return Long.parseLong(getString(field));
+		}
+		long value = 0;
+		for (; pos < end; pos++) {
+			int digit = bytes[pos] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses the field like Double.parseDouble. Plain decimals such as
+	 * "-12.50" with at most 15 digits are converted directly (both the digits
+	 * and the power of ten are exact doubles, so the quotient is the correctly
+	 * rounded value), everything else falls back to Double.parseDouble.
+	 * @param field index of the field
+	 * @return value of the field
+	 * @throws NumberFormatException if the field is not a double
+	 */
+	public double getDouble(int field) {
+		int i = index(field);
+		int pos = starts[i];
+		int end = ends[i];
+		boolean negative = false;
+		if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+			negative = bytes[pos] == '-';
+			pos++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = -1;
+		for (; pos < end; pos++) {
+			byte b = bytes[pos];
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (scale >= 0) {
+					scale++;
+				}
+			}
+			else if (b == '.' && scale < 0) {
+				scale = 0;
+			}
+			else {
+				break;
+			}
+		}
+		if (pos != end || digits == 0 || digits > 15) {
+			return Double.parseDouble(getString(field));
+		}
+		double value = mantissa;
+		if (scale > 0) {
+			value = value / POWERS_OF_TEN[scale];
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Decodes the field, this allocates a String unless the field is empty.
+	 * @param field index of the field
+	 * @return the field as String, doubled quotes replaced by one quote
+	 */
+	public String getString(int field) {
+		int i = index(field);
+		if (ends[i] == starts[i]) {
+			return "";
+		}
+		String value = new String(bytes, starts[i], ends[i] - starts[i], UTF8);
+		if (escaped[i]) {
+			String q = String.valueOf((char) quote);
+			value = value.replace(q + q, q);
+		}
+		return value;
+	}
+}
@@ -1,30 +1,44 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
 /**
  * This class acts as a POJO class for Flight data. This class contains the 
  * fields that are sent as values from the Mapper to Reducer class in the MR Job.
+ * It is written as one flag byte(departing, cancelled, has an actual time) and
+ * the actual time stamp as a varint. The scheduled time stamp is sent in the
+ * FlightKey, which orders the flights of a reduce call by it. The reducer
+ * reads it from the key.
  * @author Afan, Abhijeet
  * Version 1.0
  *
  */
-public class Flight {
+public class Flight implements Writable {
+	/** actual time of a flight which was cancelled */
+	public static final long NO_TIME = Long.MIN_VALUE;
+
+	// bits of the flag byte
+	private static final int DEPARTING = 1;
+	private static final int CANCELLED = 2;
+	private static final int HAS_ACTUAL_TIME = 4;
+
 	private String key;
-	private String crsTime;
-	private String actualTime;
-	private String cancelled;
+	// time stamp in epoch minutes, NO_TIME when the flight has no actual time
+	private long actualTime;
+	private boolean cancelled;
+	// departing from the airport of the key, arriving otherwise
+	private boolean departing;
 	private String location;
 	private String type;
 	
-	public String getActualTime() {
+	public long getActualTime() {
 		return actualTime;
 	}
-	public void setActualTime(String actualTime) {
+	public void setActualTime(long actualTime) {
 		this.actualTime = actualTime;
 	}
-	public String getCrsTime() {
-		return crsTime;
-	}
-	public void setCrsTime(String crsTime) {
-		this.crsTime = crsTime;
-	}
 	public String getKey() {
 		return key;
 	}
@@ -37,12 +51,18 @@ public class Flight {
 	public void setLocation(String location) {
 		this.location = location;
 	}
-	public String getCancelled() {
+	public boolean isCancelled() {
 		return cancelled;
 	}
-	public void setCancelled(String cancelled) {
+	public void setCancelled(boolean cancelled) {
 		this.cancelled = cancelled;
 	}
+	public boolean isDeparting() {
+		return departing;
+	}
+	public void setDeparting(boolean departing) {
+		this.departing = departing;
+	}
 	public String getType() {
 		return type;
 	}
@@ -50,10 +70,28 @@ public class Flight {
 		this.type = type;
 	}
 	
+	@Override
+	public void write(DataOutput out) throws IOException {
+		boolean hasActualTime = actualTime != NO_TIME;
+		out.writeByte((departing ? DEPARTING : 0) | (cancelled ? CANCELLED : 0)
+				| (hasActualTime ? HAS_ACTUAL_TIME : 0));
+		if (hasActualTime) {
+			WritableUtils.writeVLong(out, actualTime);
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		int flags = in.readByte();
+		departing = (flags & DEPARTING) != 0;
+		cancelled = (flags & CANCELLED) != 0;
+		actualTime = (flags & HAS_ACTUAL_TIME) != 0 ? WritableUtils.readVLong(in) : NO_TIME;
+	}
+
 	/**
 	 * Overriding the toString method to return the appended String values
 	 */
 	public String toString() {
-		return crsTime + "\t" + actualTime + "\t" + cancelled + "\t" + location + "\t" + type;
+		return actualTime + "\t" + cancelled + "\t" + location + "\t" + type;
 	}
 }
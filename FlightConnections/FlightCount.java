@@ -1,15 +1,12 @@
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.concurrent.TimeUnit;
-import java.text.SimpleDateFormat;
-import java.text.ParseException;
+import java.util.Arrays;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
@@ -22,6 +19,32 @@ import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
  * @version 1.0
  */
 public class FlightCount{	
+
+	/**
+	 * Creates the diagnostics of a task, records are sampled to the task log
+	 * when diagnostics.samples is set
+	 * @param context context of the task
+	 * @param reasons name of every reason id
+	 * @return Diagnostics of the task
+	 */
+	private static Diagnostics newDiagnostics(TaskAttemptContext context, String[] reasons){
+		return new Diagnostics(context.getTaskAttemptID().toString(), reasons,
+				context.getConfiguration().getInt(Diagnostics.SAMPLES, 0), System.err);
+	}
+
+	/**
+	 * Publishes the counts of every reason as counters of the given group
+	 * @param diagnostics diagnostics of the task
+	 * @param group counter group
+	 * @param context context of the task
+	 */
+	private static void publish(Diagnostics diagnostics, String group, TaskAttemptContext context){
+		for (int reason = 0; reason < diagnostics.getReasonCount(); reason++){
+			if (diagnostics.getCount(reason) > 0){
+				context.getCounter(group, diagnostics.getReason(reason)).increment(diagnostics.getCount(reason));
+			}
+		}
+	}
 	/**
 	 * Mapper class in the Map-Reduce model.
 	 * This class writes to the context two times in order to ensure self join on origin
@@ -29,14 +52,51 @@ public class FlightCount{
 	 * This process makes the reducer method a lot less expensive and computation is done a 
 	 * lot faster on a huge data set.
 	 * This class will output the intermediate set of key-value pairs where,
-	 * key  custom combination of flight code, year, origin/destination and month separated by tab. 
+	 * key  FlightKey of flight code, year, origin/destination, month and scheduled time stamp. 
 	 * Example, `AA\2014\JFK\11` where `AA` is the carrier code,`2014` is the flight year,
-	 * 'JFK' can be the origin or destination and 11 is the month number
-	 * value `arriving\20130211070200\20130211090200\0` where `arriving` is Type,`20130211070200`
-	 * is the scheduled time stamp, `20130211090200` is the actual time stamp and
-	 * `0` is the Cancellation status
+	 * 'JFK' can be the origin or destination and 11 is the month number, the time stamp is the
+	 * scheduled departure at the origin and the scheduled arrival at the destination
+	 * value Flight holding the Type(arriving or departing), the actual time stamp and the 
+	 * Cancellation status
 	 */
-	public static class FlightMapper extends Mapper<Object, Text, Text, Text>{	
+	public static class FlightMapper extends Mapper<Object, Text, FlightKey, Flight>{	
+
+		// reason of the sane records whose codes, date or times can not be parsed
+		private static final int UNPARSABLE = 0;
+		private static final String[] PARSE_REASONS = {"UNPARSABLE"};
+		// Record re-used for every record, fields are read from the bytes of the Text
+		private FlightRecord flightRecord = new FlightRecord();
+		// Sanity rules of the Map-Reduce jobs
+		private SanityChecker checker = new SanityChecker(SanityChecker.MAP_REDUCE);
+		// Counts of the rejected records per failed rule
+		private Diagnostics diagnostics;
+		// Counts of the sane records which were skipped since they could not be parsed
+		private Diagnostics parseErrors;
+		// Keys and value re-used for every record
+		private FlightKey mapKeyOrigin = new FlightKey();
+		private FlightKey mapKeyDest = new FlightKey();
+		private Flight mapValue = new Flight();
+		// Departure and arrival time stamps of the record, scheduled and actual
+		private long[] crsTs = new long[2];
+		private long[] actualTs = new long[2];
+
+		/**
+		 * Sets the key to carrier code, year, airport and month, the codes are
+		 * encoded from the bytes of the record without decoding them
+		 * @param key FlightKey to be set
+		 * @param record tokenized flight record
+		 * @param airport FlightRecord.ORIGIN or FlightRecord.DEST
+		 */
+		private static void setKey(FlightKey key, FlightRecord record, int airport){
+			key.set(fetchCode(record, FlightRecord.CARRIER), record.getInt(FlightRecord.YEAR),
+					fetchCode(record, airport), record.getInt(FlightRecord.MONTH));
+		}
+
+		@Override
+		protected void setup(Context context){
+			diagnostics = newDiagnostics(context, SanityChecker.RULE_NAMES);
+			parseErrors = newDiagnostics(context, PARSE_REASONS);
+		}
 
 		/**
 		 * Map to have a list of average price, and scheduled flight time and set 
@@ -44,50 +104,79 @@ public class FlightCount{
 		 */
 		public void map(Object key, Text value, Context context) throws IOException, InterruptedException{
 
-			// Parsing each record and storing it in a String array
-			CSVParser csvParser = new CSVParser(',','"');
-			String[] flightRecordList = csvParser.parseLine(value.toString());
-			// Initializing the val variable, this variable will be sent to the Reducer as text value
-			String val = "";
+			// Splitting the record into fields, without copying it
+			flightRecord.reset(value.getBytes(), 0, value.getLength());
 			// Check whether the flight is sane			
-			Integer code = isSane(flightRecordList);
+			int code = checker.check(flightRecord);
 			// Code 0 is returned when the flight is sane
-			if (code.equals(0)){
+			if (code == SanityChecker.SANE){
 				try{						
 					// Setting the carrier code, year and origin/destination and flight month as key
-					String mapKeyOrigin = flightRecordList[8] + "\t" + flightRecordList[0] + "\t" + flightRecordList[14] + "\t" + flightRecordList[2];
-					String mapKeyDest = flightRecordList[8] + "\t" + flightRecordList[0] + "\t" + flightRecordList[23] + "\t" + flightRecordList[2];
-					String cancelledStatus = flightRecordList[47];
-					// Initializing the arrival time stamp value as a dummy data
-					String arrTs = "DUMMY";
+					setKey(mapKeyOrigin, flightRecord, FlightRecord.ORIGIN);
+					setKey(mapKeyDest, flightRecord, FlightRecord.DEST);
+					String cancelledStatus = flightRecord.getString(FlightRecord.CANCELLED);
+					// Initializing the arrival time stamp value as no time
+					long arrTs = Flight.NO_TIME;
 
 					// we consider "departing" flights only if flight is not cancelled 
 					// we don't care about flights whose departure has been cancelled -> (no connections).
 					// Calculating the scheduled time stamp
-					String[] crsTs = fetchTimestamp(flightRecordList[5], flightRecordList[29], flightRecordList[40]).split("\t");
+					long flightDate = fetchDate(flightRecord);
+					fetchTimestamp(flightDate, flightRecord.getInt(FlightRecord.CRS_DEP_TIME), flightRecord.getInt(FlightRecord.CRS_ARR_TIME), crsTs);
 
 					// Sending the departure details only when the flight is not cancelled
 					// since if departure flight is cancelled , there is no missed or actual connection
 					if (cancelledStatus.equals("0")){
 						// Calculating the actual time stamp
-						String[] actualTs = fetchTimestamp(flightRecordList[5], flightRecordList[30], flightRecordList[41]).split("\t");
-						// Setting the Type, CRS_DEP_TIME, DEP_TIME, CANCELLED as value string
-						val =  "departing" + "\t" + crsTs[0] + "\t" + actualTs[0] + "\t" + cancelledStatus;
-						context.write(new Text(mapKeyOrigin), new Text(val));
+						fetchTimestamp(flightDate, flightRecord.getInt(FlightRecord.DEP_TIME), flightRecord.getInt(FlightRecord.ARR_TIME), actualTs);
+						// Setting the Type, CRS_DEP_TIME, DEP_TIME, CANCELLED as value
+						mapValue.setDeparting(true);
+						mapKeyOrigin.setTime(crsTs[0]);
+						mapValue.setActualTime(actualTs[0]);
+						mapValue.setCancelled(false);
+						context.write(mapKeyOrigin, mapValue);
 						arrTs = actualTs[1];
 					}
-					val =  "arriving" + "\t" + crsTs[1] + "\t" + arrTs + "\t" + cancelledStatus;
-					context.write(new Text(mapKeyDest), new Text(val));
-				}
-				// Debugger to check errors
-				catch(ParseException e){
-					System.err.println("Error.." + e.getMessage());
+					mapValue.setDeparting(false);
+					mapKeyDest.setTime(crsTs[1]);
+					mapValue.setActualTime(arrTs);
+					mapValue.setCancelled(!cancelledStatus.equals("0"));
+					context.write(mapKeyDest, mapValue);
 				}
+				// a column is missing or its code, date or time is malformed, counted and sampled
+				// instead of printed for every record
 				catch(ArrayIndexOutOfBoundsException e){
-					System.err.println("Error.." + e.getMessage());
+					unparsable(value, e);
+				}
+				catch(NumberFormatException e){
+					unparsable(value, e);
+				}
+			}
+			// insane or incorrect format, counted under the rule which failed
+			else{
+				int rule = checker.getFailedRule();
+				if (diagnostics.count(rule)){
+					diagnostics.sample(rule, value);
 				}
 			}
 		}
+
+		/**
+		 * Counts a sane record which could not be parsed and samples it with the error
+		 * @param value the record
+		 * @param e the error of the record
+		 */
+		private void unparsable(Text value, RuntimeException e){
+			if (parseErrors.count(UNPARSABLE)){
+				parseErrors.sample(UNPARSABLE, value + "\t" + e);
+			}
+		}
+
+		@Override
+		protected void cleanup(Context context){
+			publish(diagnostics, "SanityChecker", context);
+			publish(parseErrors, "FlightMapper", context);
+		}
 	}
 
 	/**
@@ -97,46 +186,119 @@ public class FlightCount{
 	 * and number of missed connections) to an output file.
 	 * @author Afan, Abhijeet
 	 */
-	public static class FlightReducer extends Reducer<Text, Text, Text, Text>{
+	public static class FlightReducer extends Reducer<FlightKey, Flight, FlightKey, Text>{
+
+		// reasons of the missed connections
+		private static final int MISSED_CANCELLED = 0;
+		private static final int MISSED_SHORT = 1;
+		private static final String[] MISSED_REASONS = {"MISSED_CANCELLED", "MISSED_SHORT"};
+		// Shortest connection, 30 minutes, and the shortest scheduled gap which is no connection
+		// any more, more than 360 minutes, in minutes like the time stamps
+		private static final long MIN_CONNECTION = 30;
+		private static final long NO_CONNECTION = 361;
+		// Counts of the missed connections per reason
+		private Diagnostics diagnostics;
+		// Key of the current reduce call, for the samples
+		private FlightKey currentKey;
+		// Arrivals scheduled less than 30 minutes before the flight being reduced, in scheduled order
+		private ArrivalQueue waiting = new ArrivalQueue();
+		// Arrivals scheduled 30 to 360 minutes before the last departure, in scheduled order
+		private ArrivalQueue window = new ArrivalQueue();
+		// Sorted actual times of the arrivals of the window which were not cancelled
+		private long[] actualTimes = new long[64];
+		private int arrived;
+		// Cancelled arrivals of the window
+		private int cancelled;
+
+		@Override
+		protected void setup(Context context){
+			diagnostics = newDiagnostics(context, MISSED_REASONS);
+		}
+
+		@Override
+		protected void cleanup(Context context){
+			publish(diagnostics, "FlightCount", context);
+		}
+
+		/**
+		 * Counts a missed connection and samples the pair of flights
+		 * @param reason MISSED_CANCELLED or MISSED_SHORT
+		 * @param arrivalTime scheduled time of the arriving flight
+		 * @param departureTime scheduled time of the departing flight
+		 * @param actTimeDiff actual minutes between the flights
+		 */
+		private void miss(int reason, long arrivalTime, long departureTime, long actTimeDiff){
+			if (diagnostics.count(reason)){
+				diagnostics.sample(reason, currentKey + "\tarrival=" + arrivalTime
+						+ "\tdeparture=" + departureTime + "\tactTimeDiff=" + actTimeDiff);
+			}
+		}
 
 		/**
 		 * Reduce method - This method writes the key(flight code, year, origin/destination
-		 * and month number) and the values (actual connections and missed connections) to the output
+		 * and month number) and the values (actual connections and missed connections) to the output.
+		 * The flights come sorted by scheduled time, the time of the current one is set in the key
+		 * by Hadoop. The arrivals are decoded once into the primitive columns of an ArrivalQueue,
+		 * no Flight is kept. An arrival can only connect to the departures scheduled 30 to 360 minutes
+		 * later, so only the arrivals of the last 360 minutes are kept. A cancelled arrival of the
+		 * window of a departure is a missed connection. An arrival which was not cancelled is a
+		 * connection if it actually arrived at least 30 minutes before the actual departure, which
+		 * a binary search in the sorted actual times of the window counts. When the missed
+		 * connections are sampled the pairs of the window are visited one by one instead.
 		 * @param key Key sent by Mapper
 		 * @param values Iterable of values sent by Mapper
 		 * @param context Context object sent by Job
 		 */
-		public void reduce(Text key, Iterable<Text> values, Context context) throws IOException, InterruptedException{
+		public void reduce(FlightKey key, Iterable<Flight> values, Context context) throws IOException, InterruptedException{
 
 			// Initializing the variables
-			Integer missed = 0;
-			Integer connection = 0;
-			ArrayList<Flight> departList = new ArrayList<Flight>();
-			ArrayList<Flight> arrivalList = new ArrayList<Flight>();
+			currentKey = key;
+			boolean sampling = diagnostics.isSampling();
+			long missed = 0;
+			long connection = 0;
+			long missedCancelled = 0;
+			long missedShort = 0;
 
 			// Iterating through the values
-			for (Text val: values){
-				String[] arr = val.toString().split("\t");
-				Flight fl = new Flight();
-				fl.setCrsTime(arr[1]);
-				fl.setActualTime(arr[2]);
-				fl.setCancelled(arr[3]);
-				// Storing the data for the departing flights
-				if (arr[0].equals("departing")){
-					departList.add(fl);
-					String[] res = compareDepartingWithAllArriving(fl, arrivalList, missed, connection).split("\t");
-					missed = Integer.parseInt(res[0]);
-					connection = Integer.parseInt(res[1]);
+			for (Flight val: values){
+				long crsTime = key.getTime();
+				// Departing flights are compared with the window and not kept
+				if (val.isDeparting()){
+					// arrivals scheduled at least 30 minutes before the departure enter the window
+					while (!waiting.isEmpty() && crsTime - waiting.getCrsTime(0) >= MIN_CONNECTION){
+						enter();
+					}
+					evict(crsTime);
+					if (sampling){
+						// the missed connections are counted and sampled by connects
+						for (int i = 0; i < window.size(); i++){
+							if (connects(i, crsTime, val.getActualTime())){
+								connection++;
+							}
+							else{
+								missed++;
+							}
+						}
+						continue;
+					}
+					// arrivals of the window which actually arrived at least 30 minutes before the
+					// actual departure
+					int connected = lowerBound(actualTimes, arrived, val.getActualTime() - MIN_CONNECTION + 1);
+					connection += connected;
+					missedShort += arrived - connected;
+					missedCancelled += cancelled;
 				}
-				// Storing the data for the arrival flights
+				// Arriving flights wait until they are scheduled 30 minutes before a departure
 				else{
-					arrivalList.add(fl);
-					String[] res = compareArrivalWithAllDeparting(fl, departList, missed, connection).split("\t");
-					missed = Integer.parseInt(res[0]);
-					connection = Integer.parseInt(res[1]);
+					evict(crsTime);
+					waiting.addLast(crsTime, val.getActualTime(), val.isCancelled());
 				}
-
 			}
+			// The arrivals of this key are dropped, for the next key
+			evict(Long.MAX_VALUE);
+			diagnostics.count(MISSED_CANCELLED, missedCancelled);
+			diagnostics.count(MISSED_SHORT, missedShort);
+			missed += missedCancelled + missedShort;
 			// Ignoring the records for zero missed and valid connections
 			if ((missed != 0) && (connection != 0)){
 				context.write(key, new Text(missed + "\t" + connection));
@@ -144,89 +306,162 @@ public class FlightCount{
 		}
 
 		/**
-		 * This method compares each arriving flight with the departing flight list and computes
-		 * for the number of missed connections and actual connections
-		 * @param arriveFlight  the arriving flight object
-		 * @param departList  the departing flight list
-		 * @param missed  the number of missed connections
-		 * @param connection the number of connections
-		 * @return the number of missed connections and actual connections as String
+		 * Moves the first waiting arrival to the window
 		 */
-		public String compareArrivalWithAllDeparting(Flight arriveFlight, ArrayList<Flight> departList, int missed, int connection) {
-			for (Flight departFlight : departList){
-				long crsTimeDiff = TimeUnit.MILLISECONDS.toMinutes(Long.parseLong(departFlight.getCrsTime()) - 
-						Long.parseLong(arriveFlight.getCrsTime()));
-				// if difference between scheduled departure and scheduled arrival time is within 30 and 360 minutes (inclusive).
-				// if difference between scheduled departure and scheduled arrival time is within 30 and 360 minutes (inclusive).
-				if ((crsTimeDiff <= 360) && (crsTimeDiff >= 30)){
-					// if arriving flight is cancelled, it's a missed connection(irrespective of whether departing flight is missed or not)
-					if (arriveFlight.getCancelled().equals("0")){
-						long actTimeDiff = 	TimeUnit.MILLISECONDS.toMinutes(Long.parseLong(departFlight.getActualTime()) - 
-								Long.parseLong(arriveFlight.getActualTime()));
-						System.out.println("arr cancelled: " +  arriveFlight.getCancelled());
-						System.out.println("dep cancelled: " + departFlight.getCancelled());
-						System.out.println("actTimeDiff: " + actTimeDiff);
-						//System.out.println(actTimeDiff);
-						if(actTimeDiff < 30){
-							missed += 1;
-						}
-						else{ // actual Time Difference is more that 30 mins
-							connection += 1;
-						}
-					}
-					else{// if arrival flight is cancelled
-						missed += 1;
-					}
+		private void enter(){
+			long actualTime = waiting.getActualTime(0);
+			boolean isCancelled = waiting.isCancelled(0);
+			window.addLast(waiting.getCrsTime(0), actualTime, isCancelled);
+			waiting.removeFirst();
+			if (isCancelled){
+				cancelled++;
+				return;
+			}
+			if (arrived == actualTimes.length){
+				actualTimes = Arrays.copyOf(actualTimes, arrived * 2);
+			}
+			int position = lowerBound(actualTimes, arrived, actualTime);
+			System.arraycopy(actualTimes, position, actualTimes, position + 1, arrived - position);
+			actualTimes[position] = actualTime;
+			arrived++;
+		}
+
+		/**
+		 * Drops the arrivals scheduled more than 360 minutes before the given time, they can
+		 * not connect to any later departure
+		 * @param crsTime scheduled time of the current flight
+		 */
+		private void evict(long crsTime){
+			while (!window.isEmpty() && crsTime - window.getCrsTime(0) >= NO_CONNECTION){
+				if (window.isCancelled(0)){
+					cancelled--;
 				}
-				else {// if scheduled flight time difference is more than 6 hrs or less than 30 mins
-					//noconnection += 1;
+				else{
+					int position = lowerBound(actualTimes, arrived, window.getActualTime(0));
+					System.arraycopy(actualTimes, position + 1, actualTimes, position, arrived - position - 1);
+					arrived--;
 				}
-			}	
-			return missed + "\t" + connection;
+				window.removeFirst();
+			}
+			// arrivals which never entered the window, no departure was scheduled 30 to 360
+			// minutes after them
+			while (!waiting.isEmpty() && crsTime - waiting.getCrsTime(0) >= NO_CONNECTION){
+				waiting.removeFirst();
+			}
 		}
 
 		/**
-		 * This method compares each departing flight with the arriving flight list and computes
-		 * for the number of missed connections and actual connections
-		 * @param departFlight the departing flight object
-		 * @param arrivalFlightList the arrival flight list
-		 * @param missed  the number of missed connections
-		 * @param connection the number of connections
-		 * @return the number of missed connections and actual connections as String
+		 * Decides a pair of flights of the window, a missed connection is counted and sampled
+		 * @param arrival index of the arriving flight in the window
+		 * @param crsTime scheduled time of the departing flight
+		 * @param actualTime actual time of the departing flight
+		 * @return true for a connection, false for a missed connection
 		 */
-		public String compareDepartingWithAllArriving(Flight departFlight, ArrayList<Flight> arrivalFlightList, int missed, int connection) {
-			for (Flight arriveFlight : arrivalFlightList){
-				long crsTimeDiff = TimeUnit.MILLISECONDS.toMinutes(Long.parseLong(departFlight.getCrsTime()) - 
-						Long.parseLong(arriveFlight.getCrsTime()));
-				//System.out.println("In Reducer: CRSTimeDiff");
-				//System.out.println(crsTimeDiff);
-				// if difference between scheduled departure and scheduled arrival time is within 30 and 360 mins (inclusive).
-				// if difference between scheduled departure and scheduled arrival time is within 30 and 360 mins (inclusive).
-				if ((crsTimeDiff <= 360) && (crsTimeDiff >= 30)){
-					// if arriving flight is cancelled, it's a missed connection(irrespective of whether departing flight is missed or not)
-					if (arriveFlight.getCancelled().equals("0")){
-						long actTimeDiff = 	TimeUnit.MILLISECONDS.toMinutes(Long.parseLong(departFlight.getActualTime()) - 
-								Long.parseLong(arriveFlight.getActualTime()));
-						System.out.println("arr cancelled: " +  arriveFlight.getCancelled());
-						System.out.println("dep cancelled: " + departFlight.getCancelled());
-						System.out.println("actTimeDiff: " + actTimeDiff);
-						//System.out.println(actTimeDiff);
-						if(actTimeDiff < 30){
-							missed += 1;
-						}
-						else{ // actual Time Difference is more that 30 mins
-							connection += 1;
-						}
-					}
-					else{// if arrival flight is cancelled
-						missed += 1;					
-					}
+		private boolean connects(int arrival, long crsTime, long actualTime){
+			// if arriving flight is cancelled, it's a missed connection(irrespective of whether departing flight is missed or not)
+			if (window.isCancelled(arrival)){
+				miss(MISSED_CANCELLED, window.getCrsTime(arrival), crsTime, 0);
+				return false;
+			}
+			long actTimeDiff = actualTime - window.getActualTime(arrival);
+			if (actTimeDiff < MIN_CONNECTION){
+				miss(MISSED_SHORT, window.getCrsTime(arrival), crsTime, actTimeDiff);
+				return false;
+			}
+			return true;
+		}
+
+		/**
+		 * @param values sorted values
+		 * @param size number of values
+		 * @param value value to look for
+		 * @return number of values less than the given value
+		 */
+		private static int lowerBound(long[] values, int size, long value){
+			int low = 0;
+			int high = size;
+			while (low < high){
+				int middle = (low + high) >>> 1;
+				if (values[middle] < value){
+					low = middle + 1;
+				}
+				else{
+					high = middle;
 				}
-				else {// if scheduled flight time difference is more than 6 hrs or less than 30 mins
-					//noconnection += 1;
+			}
+			return low;
+		}
+
+		/**
+		 * FIFO of arrivals held as parallel primitive columns in a ring buffer, so the window
+		 * is scanned without a Flight object or a pointer per arrival. The index of get is
+		 * relative to the first arrival.
+		 */
+		static final class ArrivalQueue{
+			private long[] crsTimes = new long[64];
+			private long[] actualTimes = new long[64];
+			private boolean[] cancelled = new boolean[64];
+			// the length of the columns is a power of two
+			private int mask = 63;
+			private int head;
+			private int size;
+
+			int size(){
+				return size;
+			}
+
+			boolean isEmpty(){
+				return size == 0;
+			}
+
+			long getCrsTime(int i){
+				return crsTimes[(head + i) & mask];
+			}
+
+			long getActualTime(int i){
+				return actualTimes[(head + i) & mask];
+			}
+
+			boolean isCancelled(int i){
+				return cancelled[(head + i) & mask];
+			}
+
+			void addLast(long crsTime, long actualTime, boolean isCancelled){
+				if (size == crsTimes.length){
+					grow();
 				}
+				int tail = (head + size) & mask;
+				crsTimes[tail] = crsTime;
+				actualTimes[tail] = actualTime;
+				cancelled[tail] = isCancelled;
+				size++;
+			}
+
+			void removeFirst(){
+				head = (head + 1) & mask;
+				size--;
+			}
+
+			// Doubles the columns, the arrivals are moved to the start
+			private void grow(){
+				crsTimes = unwrap(crsTimes);
+				actualTimes = unwrap(actualTimes);
+				boolean[] grown = new boolean[cancelled.length * 2];
+				int first = cancelled.length - head;
+				System.arraycopy(cancelled, head, grown, 0, first);
+				System.arraycopy(cancelled, 0, grown, first, head);
+				cancelled = grown;
+				mask = grown.length - 1;
+				head = 0;
+			}
+
+			private long[] unwrap(long[] column){
+				long[] grown = new long[column.length * 2];
+				int first = column.length - head;
+				System.arraycopy(column, head, grown, 0, first);
+				System.arraycopy(column, 0, grown, first, head);
+				return grown;
 			}
-			return missed + "\t" + connection;
 		}
 	}
 
@@ -238,6 +473,8 @@ public class FlightCount{
 	public static void main(String[] args)	 throws Exception{
 		// Initializing configuration
 		Configuration conf = new Configuration();
+		// Samples of the rejected records and missed connections, -Ddiagnostics.samples=N in HADOOP_OPTS
+		conf.setInt(Diagnostics.SAMPLES, Diagnostics.samplesFromProperty());
 		// Initializing the job
 		Job job = Job.getInstance(conf, "flight count");
 		// Setting the jar for the job
@@ -248,10 +485,12 @@ public class FlightCount{
 		job.setReducerClass(FlightReducer.class);
 
 
-		job.setMapOutputKeyClass(Text.class);
-		job.setMapOutputValueClass(Text.class);
-		// Setting the output key class
-		job.setOutputKeyClass(Text.class);
+		job.setMapOutputKeyClass(FlightKey.class);
+		job.setMapOutputValueClass(Flight.class);
+		// Flights of an airport are sorted by scheduled time and reduced together
+		job.setGroupingComparatorClass(FlightKey.GroupingComparator.class);
+		// Setting the output key class, written as the tab separated key
+		job.setOutputKeyClass(FlightKey.class);
 		// Setting the output value class
 		job.setOutputValueClass(Text.class);
 
@@ -267,297 +506,48 @@ public class FlightCount{
 	}
 
 	/**
-	 * Converting arrival and departure time to respective time stamps for the given flight date
-	 * @param dateVal
-	 * @param depVal
-	 * @param arrVal
-	 * @return
-	 * @throws ParseException
+	 * Epoch minutes of the FL_DATE of a record, read from the bytes of the record
+	 * @param record the record
+	 * @return minutes since 1970-01-01 00:00 of the midnight of the flight date
+	 * @throws NumberFormatException if the date is missing or not a date
 	 */
-	public static String fetchTimestamp(String dateVal,String depVal, String arrVal)throws ParseException{
-
-		String depStringTs = null;
-		String arrStringTs = null;
-		Integer depValInt = Integer.parseInt(depVal);
-		Integer depValHour = depValInt / 100;			
-		Integer depValMin = depValInt % 100;
-		Integer arrValInt = Integer.parseInt(arrVal);
-		Integer arrValHour = arrValInt / 100;			
-		Integer arrValMin = arrValInt % 100;
-		// Formatting the given departure time stamp
-		depStringTs = dateVal + " " + depValHour.toString() + ":" + depValMin.toString();
-		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-		Date depTimestamp = sdf.parse(depStringTs);
-		// If the flight arrives next day 
-		if (arrValInt > depValInt){
-			arrStringTs = dateVal + " " + arrValHour.toString() + ":" + arrValMin.toString();
-		}
-		// Formatting the given arrival time stamp
-		else{
-			sdf = new SimpleDateFormat("yyyy-MM-dd");
-			Date date = sdf.parse(dateVal);
-			long milli = date.getTime() + (24 * 60 * 60 * 1000); // increment by 1 day
-			date.setTime(milli);
-			arrStringTs = sdf.format(date) + " " + arrValHour.toString() + ":" + arrValMin.toString();
-
+	public static long fetchDate(FlightRecord record){
+		int index = record.getIndex(FlightRecord.FL_DATE);
+		if (index < 0){
+			throw new NumberFormatException("Missing FL_DATE");
 		}
-		sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm");
-		Date arrTimestamp = sdf.parse(arrStringTs);
-		// convert to milliseconds
-		Long depInMS = depTimestamp.getTime();
-		Long arrInMS = arrTimestamp.getTime();
-		// return both the departure time and arrival time (in milliseconds)
-		return depInMS.toString() + "\t" + arrInMS.toString();
+		CsvTokenizer tokenizer = record.getTokenizer();
+		return EpochMinutes.ofDate(tokenizer.getBytes(), tokenizer.getStart(index), tokenizer.getLength(index));
 	}
 
 	/**
-	 * Main code block to check whether the flight is sane
-	 * Status Code 0 indicates Sane Flights
-	 * Status Code 1 indicates Insane Flights
-	 * Status Code 2 indicates Wrong Format of the fields(Exceptions)
-	 * @param record List of Strings containing information about flight tuple
-	 * @return code [0=sane, 1=insane, 2=bad format]
+	 * CodeDictionary code of a carrier or airport column of a record, read from the bytes of the record
+	 * @param record the record
+	 * @param column CARRIER, ORIGIN or DEST
+	 * @return code of the column
+	 * @throws NumberFormatException if the column is missing or not a code
 	 */
-	public static Integer isSane(String[] record){
-		try{
-			Integer crsArrTime = Integer.parseInt(record[40]);
-			Integer crsDepTime = Integer.parseInt(record[29]);
-			Integer crsElapsedTime = Integer.parseInt(record[50]);
-			// crsArrTime and CRSDepTime should not be zero
-			if (crsArrTime != 0 && crsDepTime != 0){
-				Integer crstimeZone = calculateCRSTimeZone(crsArrTime,crsDepTime,crsElapsedTime);
-				return checkIDFieldsExist(crstimeZone,record); 
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : CRSArrTime or CRSDepTime fields are not proper");
-				return 1;
-			}
-		}catch (Exception e){
-			// for debugging purposes
-			// System.err.println("Error : The record is not proper");
-			return 2;
+	public static int fetchCode(FlightRecord record, int column){
+		int index = record.getIndex(column);
+		if (index < 0){
+			throw new NumberFormatException("Missing " + FlightRecord.NAMES[column]);
 		}
+		CsvTokenizer tokenizer = record.getTokenizer();
+		return CodeDictionary.encode(tokenizer.getBytes(), tokenizer.getStart(index), tokenizer.getLength(index));
 	}
 
 	/**
-	 * Function to check whether the ID fields exist or not
-	 * @param crstimeZone
-	 * @param record
-	 * @return
+	 * Converting arrival and departure time to respective time stamps for the given flight date,
+	 * the flight arrives the next day if it does not arrive after its departure
+	 * @param date epoch minutes of the flight date, see fetchDate
+	 * @param depVal departure time as hhmm
+	 * @param arrVal arrival time as hhmm
+	 * @param timestamps receives the departure and the arrival time stamp, in epoch minutes
 	 */
-	private static int checkIDFieldsExist(Integer crstimeZone, String[] record) {
-		// crstimeZone % 60 should be 0
-		if (crstimeZone % 60 == 0)
-		{
-			Integer originAirportID = Integer.parseInt(record[11]);
-			Integer originAirportSeqID = Integer.parseInt(record[12]);
-			Integer originCityMarketID = Integer.parseInt(record[13]);
-			Integer originStateFips = Integer.parseInt(record[17]);
-			Integer originWAC = Integer.parseInt(record[19]);
-			Integer destAirportID = Integer.parseInt(record[20]);
-			Integer destAirportSeqID = Integer.parseInt(record[21]);
-			Integer destCityMarketID = Integer.parseInt(record[22]);
-			Integer destStateFips = Integer.parseInt(record[26]);
-			Integer destWAC = Integer.parseInt(record[28]);
-			// AirportID,  AirportSeqID, CityMarketID, StateFips, Wac 
-			// should be larger than 0
-			if ((originAirportID > 0) && (originAirportSeqID > 0) && 
-					(originCityMarketID > 0) && (originStateFips > 0) && 
-					(originWAC > 0) && (destAirportID > 0) && 
-					(destAirportSeqID > 0) && (destCityMarketID > 0) && 
-					(destStateFips > 0) && (destWAC > 0)){ 
-				return checkForOriginDest(record, crstimeZone);
-			}else{
-				// for debugging purposes
-				// System.err.println("Error : The ID fields of the record are not proper");
-				return 1;
-			}
-		}else {
-			// for debugging purposes
-			// System.err.println("Error : The CRSTimeZone is not a multiple of 60");
-			return 1;
-		}
-	}
-
-	/**
-	 * Function to check whether Origin and Destination fields exist
-	 * @param record
-	 * @param crstimeZone
-	 * @return
-	 */
-	private static int checkForOriginDest(String[] record, Integer crstimeZone) {
-		String origin = record[14];
-		String originCityName = record[15];
-		String originStateABR = record[16];
-		String originStateNM = record[18];
-		String dest = record[23];
-		String destCityName = record[24];
-		String destStateABR = record[25];
-		String destStateNM = record[27];
-		// Origin, Destination,  CityName, State, StateName 
-		// should not be empty
-		if (!origin.equals("") && !originCityName.equals("") && 
-				!originStateABR.equals("") && !originStateNM.equals("") && 
-				!dest.equals("") && !destCityName.equals("") && 
-				!destStateABR.equals("") && !destStateNM.equals("")){
-			Integer cancelled = Integer.parseInt(record[47]);
-			// Check for flights that are not Cancelled(1 = yes)
-			if(cancelled.equals(0)){
-				return checkForArrAndDepTime(record, crstimeZone);
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : The Cancelled field is not proper");
-				return 0;
-			}
-		}else {
-			// for debugging purposes
-			// System.err.println("Error : The Origin and Destination fields are not proper");
-			return 1;
-		}
-	}
-
-	/**
-	 * Function to check for time zone difference
-	 * @param record
-	 * @param crstimeZone
-	 * @return
-	 */ 
-	private static int checkForArrAndDepTime(String[] record, Integer crstimeZone) {
-		Integer arrTime = Integer.parseInt(record[41]);
-		Integer depTime = Integer.parseInt(record[30]);
-		Integer actualElapsedTime = Integer.parseInt(record[51]);
-		Integer actualTimeZone = findActualTimeZone(arrTime,depTime,actualElapsedTime);
-		Integer timeZoneDiff = actualTimeZone - crstimeZone;
-		//arrTime -  depTime - actualElapsedTime - timeZone should be zero
-		if (timeZoneDiff == 0){
-			return checkForArrDelay(record);
-		}else{
-			// for debugging purposes
-			// System.err.println("Error : The arrTime -  depTime - actualElapsedTime - timeZone is not zero");
-			return 1;
-		}
-	}
-
-	/**
-	 * Function to check for ArrDelay Fields
-	 * @param record
-	 * @return
-	 */
-	private static int checkForArrDelay(String[] record) {
-		Integer arrDelay = (int)Double.parseDouble(record[42]);
-		Integer arrDelayMinutes = (int)Double.parseDouble(record[43]);
-		Integer arrDel15 = (int)Double.parseDouble(record[44]);
-		int finalReturnVal = 0;
-		// if ArrDelay > 0 then ArrDelay should be equal to ArrDelayMinutes
-		if (arrDelay > 0){                                        
-			if (arrDelay.equals(arrDelayMinutes)){
-				// end of sanity check for flights that are not cancelled and
-				// arrDelay > 0 and arrDelay == arrDelayMinutes .
-				finalReturnVal =  0;  
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : ArrDelay is not equal to ArrDelayMinutes");
-				finalReturnVal = 1;
-			}
-		}
-		// if ArrDelay < 0 then ArrDelayMinutes should be zero
-		else if(arrDelay < 0){
-			if (arrDelayMinutes.equals(0)){
-				// end of sanity check for flights that are not cancelled and
-				// arrDelay < 0 and arrDelayMinutes equals zero.
-				finalReturnVal =  0;
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : ArrayDelayMinutes is not equal to zero");
-				finalReturnVal = 1;
-			}
-		}
-		// if ArrDelayMinutes >= 15 then ArrDel15 should be 1(true)
-		if (arrDelayMinutes >= 15){
-			if (arrDel15.equals(1)){
-				// end of sanity check for flights that are not cancelled and
-				// arrDelayMinute >= 15 and arrDel15 == 1.
-				finalReturnVal =  0;
-			}else {
-				// for debugging purposes
-				// System.err.println("Error : ArrayDelay15 is not equal to 1");
-				finalReturnVal = 1;
-			}
-		}else {
-			// for debugging purposes
-			// System.err.println("Error : ArrDelayMinutes is not >= 15");
-			finalReturnVal =  0;
-		}
-		return finalReturnVal;
-	}
-
-	/**
-	 * Helper method to calculate the CRS time zone
-	 * @param crsArrTime
-	 * @param crsDepTime
-	 * @param crsElapsedTime
-	 * @return
-	 */
-	private static Integer calculateCRSTimeZone(Integer crsArrTime, Integer crsDepTime, Integer crsElapsedTime) {
-		// Logic to split the Arrival and Departure hours from CRS time
-		Integer crsArrTimeHour = crsArrTime / 100;
-		Integer crsDepTimeHour = crsDepTime / 100; 
-		// Logic to split the Arrival and Departure minutes from CRS time
-		Integer crsArrTimeMin = crsArrTime % 100;
-		Integer crsDepTimeMin = crsDepTime % 100;
-		// Logic to find the time difference between CRS Arrival time and Departure times
-		Integer crsHourDiff;
-		if (crsArrTimeHour > crsDepTimeHour){
-			crsHourDiff = crsArrTimeHour - crsDepTimeHour;
-		}
-		else if (crsArrTimeHour == crsDepTimeHour){
-			if(crsArrTimeMin > crsDepTimeMin){
-				crsHourDiff = crsArrTimeHour - crsDepTimeHour;    
-			}
-			else{
-				// Time difference when the Arrival time is next day
-				crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour;                               
-			}
-		}
-		else{
-			// Time difference when the Arrival time is next day
-			crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour;
-		}                
-		return ((crsHourDiff * 60) + (crsArrTimeMin - crsDepTimeMin)) - crsElapsedTime;
-	}
-
-	/**
-	 * Helper method to calculate the Actual time zone
-	 * @param arrTime Actual arrival time
-	 * @param depTime Actual departure time
-	 * @param actualElapsedTime Actual Elapsed time
-	 * @return The actual time zone
-	 */
-	public static Integer findActualTimeZone(Integer arrTime, Integer depTime, Integer actualElapsedTime) {
-		// Logic to split the Arrival and Departure hours from Actual time
-		Integer arrTimeHour = arrTime / 100;
-		Integer depTimeHour = depTime / 100;
-		// Logic to split the Arrival and Departure hours from Actual time
-		Integer arrTimeMin = arrTime % 100;
-		Integer depTimeMin = depTime % 100;                                
-		// Logic to find the time difference between Actual Arrival time and Departure times
-		Integer hourDiff;
-		if (arrTimeHour > depTimeHour){
-			hourDiff = arrTimeHour - depTimeHour;
-		}
-		else if (arrTimeHour == depTimeHour){
-			if(arrTimeMin > depTimeMin){
-				hourDiff = arrTimeHour - depTimeHour;    
-			}
-			else{
-				// Time difference when the Arrival time is next day
-				hourDiff = (24 - depTimeHour) + arrTimeHour;       
-			}
-		}
-		else{
-			// Time difference when the Arrival time is next day
-			hourDiff = (24 - depTimeHour) + arrTimeHour;   
-		}
-		return ((hourDiff * 60) + (arrTimeMin - depTimeMin)) - actualElapsedTime;
+	public static void fetchTimestamp(long date, int depVal, int arrVal, long[] timestamps){
+		timestamps[0] = date + EpochMinutes.ofTime(depVal);
+		// If the flight arrives next day
+		long arrDate = arrVal > depVal ? date : date + EpochMinutes.MINUTES_PER_DAY;
+		timestamps[1] = arrDate + EpochMinutes.ofTime(arrVal);
 	}
-}
\ No newline at end of file
+}
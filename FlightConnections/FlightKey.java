@@ -0,0 +1,200 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Map output key of FlightCount - carrier code, year, airport and month, the
+ * natural key, and the scheduled time stamp of the flight.
+ * It is serialized as the CodeDictionary codes of the carrier and airport,
+ * two bytes each, and the year, month and time stamp as varints. The
+ * registered Comparator orders the serialized keys without deserializing
+ * them, by the natural key and then by time. The GroupingComparator only
+ * compares the natural key, so a reduce call gets all flights of an airport
+ * in scheduled order. hashCode leaves the time out for the same reason.
+ * toString gives the tab separated natural key of the job output, e.g.
+ * `AA	2014	JFK	11`.
+ * @author Afan, Abhijeet
+ * Version 1.0
+ */
+public class FlightKey implements WritableComparable<FlightKey> {
+
+	// CodeDictionary codes
+	private int carrier;
+	private int year;
+	private int airport;
+	private int month;
+	// scheduled time stamp in epoch minutes
+	private long time;
+
+	static {
+		WritableComparator.define(FlightKey.class, new Comparator());
+	}
+
+	/**
+	 * Sets the natural key
+	 * @param carrier CodeDictionary code of the carrier
+	 * @param year year of the flight
+	 * @param airport CodeDictionary code of the airport
+	 * @param month month of the flight
+	 */
+	public void set(int carrier, int year, int airport, int month) {
+		this.carrier = carrier;
+		this.year = year;
+		this.airport = airport;
+		this.month = month;
+	}
+
+	public long getTime() {
+		return time;
+	}
+	public void setTime(long time) {
+		this.time = time;
+	}
+
+	public int getCarrier() {
+		return carrier;
+	}
+	public int getYear() {
+		return year;
+	}
+	public int getAirport() {
+		return airport;
+	}
+	public int getMonth() {
+		return month;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeShort(carrier);
+		WritableUtils.writeVInt(out, year);
+		out.writeShort(airport);
+		WritableUtils.writeVInt(out, month);
+		WritableUtils.writeVLong(out, time);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		carrier = in.readUnsignedShort();
+		year = WritableUtils.readVInt(in);
+		airport = in.readUnsignedShort();
+		month = WritableUtils.readVInt(in);
+		time = WritableUtils.readVLong(in);
+	}
+
+	@Override
+	public int compareTo(FlightKey other) {
+		int cmp = Integer.compare(carrier, other.carrier);
+		if (cmp == 0) {
+			cmp = Integer.compare(year, other.year);
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(airport, other.airport);
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(month, other.month);
+		}
+		if (cmp == 0) {
+			cmp = Long.compare(time, other.time);
+		}
+		return cmp;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof FlightKey && compareTo((FlightKey) other) == 0;
+	}
+
+	/**
+	 * Hash of the natural key, all flights of an airport go to the same reducer
+	 */
+	@Override
+	public int hashCode() {
+		return ((carrier * 31 + year) * 31 + airport) * 31 + month;
+	}
+
+	/**
+	 * Overriding the toString method to return the tab separated key
+	 */
+	@Override
+	public String toString() {
+		return CodeDictionary.decode(carrier) + "\t" + year + "\t" + CodeDictionary.decode(airport) + "\t" + month;
+	}
+
+	/**
+	 * Compares two serialized keys field by field on the raw bytes
+	 * @param withTime false to only compare the natural key
+	 */
+	private static int compare(byte[] b1, int s1, byte[] b2, int s2, boolean withTime) {
+		try {
+			// carrier
+			int cmp = Integer.compare(WritableComparator.readUnsignedShort(b1, s1),
+					WritableComparator.readUnsignedShort(b2, s2));
+			if (cmp != 0) {
+				return cmp;
+			}
+			s1 += 2;
+			s2 += 2;
+			// year
+			cmp = Integer.compare(WritableComparator.readVInt(b1, s1), WritableComparator.readVInt(b2, s2));
+			if (cmp != 0) {
+				return cmp;
+			}
+			s1 += WritableUtils.decodeVIntSize(b1[s1]);
+			s2 += WritableUtils.decodeVIntSize(b2[s2]);
+			// airport
+			cmp = Integer.compare(WritableComparator.readUnsignedShort(b1, s1),
+					WritableComparator.readUnsignedShort(b2, s2));
+			if (cmp != 0) {
+				return cmp;
+			}
+			s1 += 2;
+			s2 += 2;
+			// month
+			cmp = Integer.compare(WritableComparator.readVInt(b1, s1), WritableComparator.readVInt(b2, s2));
+			if (cmp != 0 || !withTime) {
+				return cmp;
+			}
+			s1 += WritableUtils.decodeVIntSize(b1[s1]);
+			s2 += WritableUtils.decodeVIntSize(b2[s2]);
+			// time
+			return Long.compare(WritableComparator.readVLong(b1, s1), WritableComparator.readVLong(b2, s2));
+		}
+		catch (IOException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Orders serialized keys like compareTo, by the natural key and then by time.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		public Comparator() {
+			super(FlightKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return FlightKey.compare(b1, s1, b2, s2, true);
+		}
+	}
+
+	/**
+	 * Groups serialized keys by the natural key, whatever their time.
+	 */
+	public static class GroupingComparator extends WritableComparator {
+
+		public GroupingComparator() {
+			super(FlightKey.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return FlightKey.compare(b1, s1, b2, s2, false);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+import java.util.*;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskCounter;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.util.Progress;
+import org.junit.Test;
+import junit.framework.*;
+import static org.junit.Assert.assertEquals;
+
+public class TestJunit extends TestCase {
+
+   @Test
+   public void testFlightKeyRawCompare() throws Exception{
+      // years, months and times of one and more varint bytes, negative times included
+      int[] carriers = {CodeDictionary.encode("AA"), CodeDictionary.encode("B6"), CodeDictionary.encode("ZZZ")};
+      int[] years = {0, 100, 2014, 70000};
+      int[] airports = {CodeDictionary.encode("BOS"), CodeDictionary.encode("JFK")};
+      int[] months = {1, 12, 200};
+      long[] times = {-200L, -5L, 0L, 100L, 23000000L, 1L << 40};
+      Random random = new Random(42);
+      List<FlightKey> keys = new ArrayList<FlightKey>();
+      for (int i = 0; i < 300; i++){
+         keys.add(flightKey(carriers[random.nextInt(carriers.length)], years[random.nextInt(years.length)],
+               airports[random.nextInt(airports.length)], months[random.nextInt(months.length)],
+               times[random.nextInt(times.length)]));
+      }
+      // the keys are serialized one after the other, as in a sort buffer
+      DataOutputBuffer out = new DataOutputBuffer();
+      int[] starts = new int[keys.size() + 1];
+      for (int i = 0; i < keys.size(); i++){
+         starts[i] = out.getLength();
+         keys.get(i).write(out);
+      }
+      starts[keys.size()] = out.getLength();
+      byte[] bytes = out.getData();
+      FlightKey.Comparator sort = new FlightKey.Comparator();
+      FlightKey.GroupingComparator group = new FlightKey.GroupingComparator();
+      for (int i = 0; i < keys.size(); i++){
+         for (int j = 0; j < keys.size(); j++){
+            FlightKey a = keys.get(i);
+            FlightKey b = keys.get(j);
+            int lengthA = starts[i + 1] - starts[i];
+            int lengthB = starts[j + 1] - starts[j];
+            assertEquals(Integer.signum(a.compareTo(b)),
+                  Integer.signum(sort.compare(bytes, starts[i], lengthA, bytes, starts[j], lengthB)));
+            // the natural key orders the groups like the sort
+            FlightKey sameTime = flightKey(b.getCarrier(), b.getYear(), b.getAirport(), b.getMonth(), a.getTime());
+            assertEquals(Integer.signum(a.compareTo(sameTime)),
+                  Integer.signum(group.compare(bytes, starts[i], lengthA, bytes, starts[j], lengthB)));
+         }
+      }
+   }
+
+   @Test
+   public void testFlightKeyGroupingIgnoresTime() throws Exception{
+      FlightKey.GroupingComparator group = new FlightKey.GroupingComparator();
+      int carrier = CodeDictionary.encode("AA");
+      int airport = CodeDictionary.encode("JFK");
+      byte[] early = serialize(flightKey(carrier, 2014, airport, 11, 5L));
+      byte[] late = serialize(flightKey(carrier, 2014, airport, 11, 23000000L));
+      byte[] nextMonth = serialize(flightKey(carrier, 2014, airport, 12, 5L));
+      assertEquals(0, group.compare(early, 0, early.length, late, 0, late.length));
+      assertEquals(0, group.compare(late, 0, late.length, early, 0, early.length));
+      assertTrue(group.compare(late, 0, late.length, nextMonth, 0, nextMonth.length) < 0);
+      // the sort comparator still orders the flights of the group by time
+      FlightKey.Comparator sort = new FlightKey.Comparator();
+      assertTrue(sort.compare(early, 0, early.length, late, 0, late.length) < 0);
+      assertEquals(flightKey(carrier, 2014, airport, 11, 5L).hashCode(),
+            flightKey(carrier, 2014, airport, 11, 23000000L).hashCode());
+   }
+
+   @Test
+   public void testFlightReducerMatchesPairwiseCount() throws Exception{
+      checkFlightReducer(0);
+   }
+
+   @Test
+   public void testSampledFlightReducerMatchesPairwiseCount() throws Exception{
+      // the pairs of the window are decided one by one by connects when the missed connections are sampled
+      checkFlightReducer(1);
+   }
+
+   @Test
+   public void testArrivalQueueGrowsAcrossWraparound(){
+      FlightCount.FlightReducer.ArrivalQueue queue = new FlightCount.FlightReducer.ArrivalQueue();
+      long first = 0;
+      long next = 0;
+      // the head is moved to the middle of the 64 entries, so the queue wraps around before it grows
+      for (int i = 0; i < 50; i++){
+         queue.addLast(next, next + 7, next % 3 == 0);
+         next++;
+      }
+      for (int i = 0; i < 40; i++){
+         queue.removeFirst();
+         first++;
+      }
+      for (int i = 0; i < 200; i++){
+         queue.addLast(next, next + 7, next % 3 == 0);
+         next++;
+         if (i % 4 == 0){
+            queue.removeFirst();
+            first++;
+         }
+         assertEquals(next - first, queue.size());
+         for (int j = 0; j < queue.size(); j++){
+            assertEquals(first + j, queue.getCrsTime(j));
+            assertEquals(first + j + 7, queue.getActualTime(j));
+            assertEquals((first + j) % 3 == 0, queue.isCancelled(j));
+         }
+      }
+      while (!queue.isEmpty()){
+         assertEquals(first, queue.getCrsTime(0));
+         queue.removeFirst();
+         first++;
+      }
+      assertEquals(next, first);
+   }
+
+   // Runs a FlightReducer on random flights of several keys and compares its output and counters
+   // with the pairwise rule, an arrival scheduled 30 to 360 minutes before a departure is a missed
+   // connection when it was cancelled or actually arrived less than 30 minutes before the departure
+   private static void checkFlightReducer(int samples) throws Exception{
+      Random random = new Random(7);
+      List<FlightKey> keys = new ArrayList<FlightKey>();
+      List<Flight> flights = new ArrayList<Flight>();
+      Map<String, String> expected = new HashMap<String, String>();
+      long expectedCancelled = 0;
+      long expectedShort = 0;
+      for (String airport : new String[]{"BOS", "JFK", "ORD"}){
+         for (int month = 1; month <= 12; month++){
+            // a few hours of dense traffic, with more than 64 arrivals in a window, or a few days
+            int span = random.nextBoolean() ? 600 : 4320;
+            int count = random.nextInt(400);
+            long start = 23000000L + month * 50000L;
+            int groupStart = keys.size();
+            for (int i = 0; i < count; i++){
+               long crsTime = start + random.nextInt(span);
+               boolean departing = random.nextBoolean();
+               // only arrivals can be cancelled, the mapper drops cancelled departures
+               boolean cancelled = !departing && random.nextInt(10) == 0;
+               keys.add(flightKey(CodeDictionary.encode("AA"), 2014, CodeDictionary.encode(airport), month, crsTime));
+               Flight flight = new Flight();
+               flight.setDeparting(departing);
+               flight.setCancelled(cancelled);
+               flight.setActualTime(cancelled ? Flight.NO_TIME : crsTime + random.nextInt(240) - 30);
+               flights.add(flight);
+            }
+            long missedCancelled = 0;
+            long missedShort = 0;
+            long connection = 0;
+            for (int a = groupStart; a < keys.size(); a++){
+               for (int d = groupStart; d < keys.size(); d++){
+                  if (flights.get(a).isDeparting() || !flights.get(d).isDeparting()){
+                     continue;
+                  }
+                  long gap = keys.get(d).getTime() - keys.get(a).getTime();
+                  if (gap < 30 || gap > 360){
+                     continue;
+                  }
+                  if (flights.get(a).isCancelled()){
+                     missedCancelled++;
+                  }
+                  else if (flights.get(d).getActualTime() - flights.get(a).getActualTime() < 30){
+                     missedShort++;
+                  }
+                  else{
+                     connection++;
+                  }
+               }
+            }
+            long missed = missedCancelled + missedShort;
+            if (missed != 0 && connection != 0){
+               expected.put(keys.get(groupStart).toString(), missed + "\t" + connection);
+            }
+            expectedCancelled += missedCancelled;
+            expectedShort += missedShort;
+         }
+      }
+      // the map output is sorted by key and time, as the shuffle does
+      Integer[] order = new Integer[keys.size()];
+      for (int i = 0; i < order.length; i++){
+         order[i] = i;
+      }
+      final List<FlightKey> sortKeys = keys;
+      Arrays.sort(order, new Comparator<Integer>(){
+         public int compare(Integer a, Integer b){
+            return sortKeys.get(a).compareTo(sortKeys.get(b));
+         }
+      });
+      List<byte[]> rawKeys = new ArrayList<byte[]>();
+      List<byte[]> rawValues = new ArrayList<byte[]>();
+      for (int i : order){
+         rawKeys.add(serialize(keys.get(i)));
+         rawValues.add(serialize(flights.get(i)));
+      }
+      Configuration conf = new Configuration();
+      conf.setInt(Diagnostics.SAMPLES, samples);
+      Map<String, String> output = new HashMap<String, String>();
+      Counters counters = new Counters();
+      new FlightCount.FlightReducer().run(reduceContext(conf, rawKeys, rawValues, output, counters));
+      assertFalse(expected.isEmpty());
+      assertEquals(expected, output);
+      assertEquals(expectedCancelled, counters.findCounter("FlightCount", "MISSED_CANCELLED").getValue());
+      assertEquals(expectedShort, counters.findCounter("FlightCount", "MISSED_SHORT").getValue());
+   }
+
+   // Context of a reducer which reads the given sorted map output, grouped by the natural key,
+   // and collects the tab separated output and the counters
+   private static Reducer<FlightKey, Flight, FlightKey, Text>.Context reduceContext(Configuration conf,
+         final List<byte[]> keys, final List<byte[]> values, final Map<String, String> output,
+         final Counters counters) throws Exception{
+      RawKeyValueIterator input = new RawKeyValueIterator(){
+         private DataInputBuffer key = new DataInputBuffer();
+         private DataInputBuffer value = new DataInputBuffer();
+         private int current = -1;
+
+         public DataInputBuffer getKey(){
+            key.reset(keys.get(current), keys.get(current).length);
+            return key;
+         }
+
+         public DataInputBuffer getValue(){
+            value.reset(values.get(current), values.get(current).length);
+            return value;
+         }
+
+         public boolean next(){
+            return ++current < keys.size();
+         }
+
+         public void close(){
+         }
+
+         public Progress getProgress(){
+            return null;
+         }
+      };
+      RecordWriter<FlightKey, Text> writer = new RecordWriter<FlightKey, Text>(){
+         public void write(FlightKey key, Text value){
+            output.put(key.toString(), value.toString());
+         }
+
+         public void close(TaskAttemptContext context){
+         }
+      };
+      StatusReporter reporter = new StatusReporter(){
+         public Counter getCounter(Enum<?> name){
+            return counters.findCounter(name);
+         }
+
+         public Counter getCounter(String group, String name){
+            return counters.findCounter(group, name);
+         }
+
+         public void progress(){
+         }
+
+         public float getProgress(){
+            return 0;
+         }
+
+         public void setStatus(String status){
+         }
+      };
+      return new WrappedReducer<FlightKey, Flight, FlightKey, Text>().getReducerContext(
+            new ReduceContextImpl<FlightKey, Flight, FlightKey, Text>(conf,
+                  TaskAttemptID.forName("attempt_1_0001_r_000000_0"), input,
+                  counters.findCounter(TaskCounter.REDUCE_INPUT_GROUPS),
+                  counters.findCounter(TaskCounter.REDUCE_INPUT_RECORDS), writer, null, reporter,
+                  new FlightKey.GroupingComparator(), FlightKey.class, Flight.class));
+   }
+
+   private static FlightKey flightKey(int carrier, int year, int airport, int month, long time){
+      FlightKey key = new FlightKey();
+      key.set(carrier, year, airport, month);
+      key.setTime(time);
+      return key;
+   }
+
+   private static byte[] serialize(org.apache.hadoop.io.Writable writable) throws java.io.IOException{
+      DataOutputBuffer out = new DataOutputBuffer();
+      writable.write(out);
+      return Arrays.copyOf(out.getData(), out.getLength());
+   }
+}
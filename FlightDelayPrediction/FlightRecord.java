@@ -0,0 +1,260 @@
+import java.util.HashMap;
+
+/**
+ * FlightRecord is a reusable, typed view of one BTS on-time record held by a
+ * CsvTokenizer. One instance is reset for every row: numeric columns are
+ * parsed on first use into primitive arrays and kept until the next reset,
+ * text columns are tested and compared on the record bytes. Reading a row
+ * allocates no objects, and a sanity check failing early never parses the
+ * columns it does not reach.
+ * Columns are addressed by the ids below, a layout maps every id to its index
+ * in the record. A column missing from the layout or from a short record
+ * reads as "", so it is empty and parsing it as a number fails.
+ * @author Abhijeet, Afan
+ * @version 1.0
+ */
+public class FlightRecord {
+
+	// column ids
+	public static final int YEAR = 0;
+	public static final int QUARTER = 1;
+	public static final int MONTH = 2;
+	public static final int DAY_OF_MONTH = 3;
+	public static final int DAY_OF_WEEK = 4;
+	public static final int FL_DATE = 5;
+	public static final int AIRLINE_ID = 6;
+	public static final int CARRIER = 7;
+	public static final int FL_NUM = 8;
+	public static final int ORIGIN_AIRPORT_ID = 9;
+	public static final int ORIGIN_AIRPORT_SEQ_ID = 10;
+	public static final int ORIGIN_CITY_MARKET_ID = 11;
+	public static final int ORIGIN = 12;
+	public static final int ORIGIN_CITY_NAME = 13;
+	public static final int ORIGIN_STATE_ABR = 14;
+	public static final int ORIGIN_STATE_FIPS = 15;
+	public static final int ORIGIN_STATE_NM = 16;
+	public static final int ORIGIN_WAC = 17;
+	public static final int DEST_AIRPORT_ID = 18;
+	public static final int DEST_AIRPORT_SEQ_ID = 19;
+	public static final int DEST_CITY_MARKET_ID = 20;
+	public static final int DEST = 21;
+	public static final int DEST_CITY_NAME = 22;
+	public static final int DEST_STATE_ABR = 23;
+	public static final int DEST_STATE_FIPS = 24;
+	public static final int DEST_STATE_NM = 25;
+	public static final int DEST_WAC = 26;
+	public static final int CRS_DEP_TIME = 27;
+	public static final int DEP_TIME = 28;
+	public static final int CRS_ARR_TIME = 29;
+	public static final int ARR_TIME = 30;
+	public static final int ARR_DELAY = 31;
+	public static final int ARR_DELAY_NEW = 32;
+	public static final int ARR_DEL15 = 33;
+	public static final int CANCELLED = 34;
+	public static final int CRS_ELAPSED_TIME = 35;
+	public static final int ACTUAL_ELAPSED_TIME = 36;
+	public static final int DISTANCE_GROUP = 37;
+	public static final int AVG_TICKET_PRICE = 38;
+
+	/** header name of every column id */
+	public static final String[] NAMES = {"YEAR", "QUARTER", "MONTH",
+		"DAY_OF_MONTH", "DAY_OF_WEEK", "FL_DATE", "AIRLINE_ID", "CARRIER",
+		"FL_NUM", "ORIGIN_AIRPORT_ID", "ORIGIN_AIRPORT_SEQ_ID",
+		"ORIGIN_CITY_MARKET_ID", "ORIGIN", "ORIGIN_CITY_NAME",
+		"ORIGIN_STATE_ABR", "ORIGIN_STATE_FIPS", "ORIGIN_STATE_NM", "ORIGIN_WAC",
+		"DEST_AIRPORT_ID", "DEST_AIRPORT_SEQ_ID", "DEST_CITY_MARKET_ID", "DEST",
+		"DEST_CITY_NAME", "DEST_STATE_ABR", "DEST_STATE_FIPS", "DEST_STATE_NM",
+		"DEST_WAC", "CRS_DEP_TIME", "DEP_TIME", "CRS_ARR_TIME", "ARR_TIME",
+		"ARR_DELAY", "ARR_DELAY_NEW", "ARR_DEL15", "CANCELLED",
+		"CRS_ELAPSED_TIME", "ACTUAL_ELAPSED_TIME", "DISTANCE_GROUP",
+		"AVG_TICKET_PRICE"};
+
+	/** index of every column id in the 110 column BTS csv files */
+	public static final int[] BTS_LAYOUT = {0, 1, 2, 3, 4, 5, 7, 8, 10, 11, 12,
+		13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30,
+		40, 41, 42, 43, 44, 47, 50, 51, 55, 109};
+
+	private int[] layout;
+	private CsvTokenizer tokenizer;
+	// parsed values, valid for the ids whose bit is set in intsParsed/doublesParsed
+	private final int[] ints = new int[NAMES.length];
+	private final double[] doubles = new double[NAMES.length];
+	private long intsParsed;
+	private long doublesParsed;
+
+	/**
+	 * Constructs a record in the BTS_LAYOUT, reading from its own tokenizer.
+	 */
+	public FlightRecord() {
+		this(BTS_LAYOUT);
+	}
+
+	/**
+	 * Constructs a record reading from its own tokenizer.
+	 * @param layout index of every column id, -1 for missing columns
+	 */
+	public FlightRecord(int[] layout) {
+		this(layout, new CsvTokenizer());
+	}
+
+	/**
+	 * Constructs a record reading from the given tokenizer.
+	 * @param layout index of every column id, -1 for missing columns
+	 * @param tokenizer tokenizer holding the rows
+	 */
+	public FlightRecord(int[] layout, CsvTokenizer tokenizer) {
+		setLayout(layout);
+		this.tokenizer = tokenizer;
+	}
+
+	/**
+	 * Resolves the column ids against the header of a file.
+	 * @param headers column names of the file
+	 * @return layout for the file, -1 for the columns it does not have
+	 */
+	public static int[] layoutOf(String[] headers) {
+		// last occurrence wins, as in CsvReader
+		HashMap<String, Integer> position = new HashMap<String, Integer>();
+		for (int i = 0; i < headers.length; i++) {
+			position.put(headers[i], i);
+		}
+		int[] layout = new int[NAMES.length];
+		for (int column = 0; column < NAMES.length; column++) {
+			Integer index = position.get(NAMES[column]);
+			layout[column] = index == null ? -1 : index;
+		}
+		return layout;
+	}
+
+	/**
+	 * Changes the layout, e.g. when the rows of another file follow.
+	 * @param layout index of every column id, -1 for missing columns
+	 */
+	public void setLayout(int[] layout) {
+		if (layout.length != NAMES.length) {
+			throw new IllegalArgumentException("Layout has " + layout.length
+					+ " columns, expected " + NAMES.length);
+		}
+		this.layout = layout;
+		clear();
+	}
+
+	/**
+	 * @return the current layout
+	 */
+	public int[] getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Tokenizes the next row.
+	 * @param bytes array holding the row, it is not copied
+	 * @param offset start of the row
+	 * @param length length of the row
+	 * @return the number of fields of the row
+	 */
+	public int reset(byte[] bytes, int offset, int length) {
+		clear();
+		return tokenizer.reset(bytes, offset, length);
+	}
+
+	/**
+	 * Forgets the parsed values, for a row reset directly on the tokenizer.
+	 */
+	public void clear() {
+		intsParsed = 0;
+		doublesParsed = 0;
+	}
+
+	/**
+	 * @return the tokenizer holding the row
+	 */
+	public CsvTokenizer getTokenizer() {
+		return tokenizer;
+	}
+
+	/**
+	 * @param column column id
+	 * @return index of the column in the row, -1 if the row does not have it
+	 */
+	public int getIndex(int column) {
+		int index = layout[column];
+		return index < tokenizer.getFieldCount() ? index : -1;
+	}
+
+	/**
+	 * @param column column id
+	 * @return true if the column is missing or has no characters
+	 */
+	public boolean isEmpty(int column) {
+		int index = getIndex(column);
+		return index < 0 || tokenizer.isEmpty(index);
+	}
+
+	/**
+	 * @param column column id
+	 * @param value ASCII string
+	 * @return true if the column equals value
+	 */
+	public boolean fieldEquals(int column, String value) {
+		int index = getIndex(column);
+		return index < 0 ? value.isEmpty() : tokenizer.fieldEquals(index, value);
+	}
+
+	/**
+	 * Parses the column like Integer.parseInt, once per row.
+	 * @param column column id
+	 * @return value of the column
+	 * @throws NumberFormatException if the column is missing or not an int
+	 */
+	public int getInt(int column) {
+		long bit = 1L << column;
+		if ((intsParsed & bit) == 0) {
+			int index = getIndex(column);
+			if (index < 0) {
+				throw new NumberFormatException("For input string: \"\"");
+			}
+			ints[column] = tokenizer.getInt(index);
+			intsParsed |= bit;
+		}
+		return ints[column];
+	}
+
+	/**
+	 * Parses the column like Double.parseDouble, once per row.
+	 * @param column column id
+	 * @return value of the column
+	 * @throws NumberFormatException if the column is missing or not a double
+	 */
+	public double getDouble(int column) {
+		long bit = 1L << column;
+		if ((doublesParsed & bit) == 0) {
+			int index = getIndex(column);
+			if (index < 0) {
+				throw new NumberFormatException("empty String");
+			}
+			doubles[column] = tokenizer.getDouble(index);
+			doublesParsed |= bit;
+		}
+		return doubles[column];
+	}
+
+	/**
+	 * Decodes the column, this allocates a String unless it is empty.
+	 * @param column column id
+	 * @return value of the column, "" if missing
+	 */
+	public String getString(int column) {
+		int index = getIndex(column);
+		return index < 0 ? "" : tokenizer.getString(index);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int column = 0; column < NAMES.length; column++) {
+			builder.append(column == 0 ? "" : ",").append(getString(column));
+		}
+		return builder.toString();
+	}
+}
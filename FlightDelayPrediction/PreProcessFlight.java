@@ -32,6 +32,8 @@ public class PreProcessFlight{
 	public static void main(String[] args) throws Exception{
 		Configuration conf = new Configuration();
 		conf.set("pipelineType", args[2]);	//sets up a config variable as "train"/"test"
+		// samples of the rejected records per failed rule, -Ddiagnostics.samples=N in HADOOP_OPTS
+		conf.setInt(Diagnostics.SAMPLES, Diagnostics.samplesFromProperty());
 		Job job = Job.getInstance(conf, "Flight Sanity Check");
 		job.setJarByClass(PreProcessFlight.class);		
 		job.setMapperClass(PreProcessMapper.class);
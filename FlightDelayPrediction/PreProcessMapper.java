@@ -1,5 +1,4 @@
 import java.io.IOException;
-import java.util.Arrays;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
@@ -22,6 +21,32 @@ public class PreProcessMapper extends Mapper<Object, Text, Text, Text>{
 									"JFK", "LGA", "BOS", "SLC", "SEA", "BWI", "MIA", 
 									"MDW", "PHL", "SAN", "FLL", "TPA", "DCA", "IAD", 
 									"HOU"};
+		// popularAirports as a flag per CodeDictionary code
+		static boolean[] isPopular = CodeDictionary.flags(popularAirports);
+		// Record re-used for every record, fields are read from the bytes of the Text
+		private FlightRecord flightRecord = new FlightRecord();
+		// Sanity rules of the history and the test data
+		private SanityChecker trainChecker = new SanityChecker(SanityChecker.PREDICTION_TRAIN);
+		private SanityChecker testChecker = new SanityChecker(SanityChecker.PREDICTION_TEST);
+		// Counts of the rejected records per failed rule
+		private Diagnostics diagnostics;
+
+		@Override
+		protected void setup(Context context){
+			diagnostics = new Diagnostics(context.getTaskAttemptID().toString(), SanityChecker.RULE_NAMES,
+					context.getConfiguration().getInt(Diagnostics.SAMPLES, 0), System.err);
+		}
+
+		@Override
+		protected void cleanup(Context context){
+			// rejected records per failed rule, as counters of the SanityChecker group
+			for (int rule = 0; rule < diagnostics.getReasonCount(); rule++){
+				if (diagnostics.getCount(rule) > 0){
+					context.getCounter("SanityChecker", diagnostics.getReason(rule)).increment(diagnostics.getCount(rule));
+				}
+			}
+		}
+
 		@Override
 		public void map(Object key, Text value, Context context) throws IOException, InterruptedException{
 			/**
@@ -32,41 +57,41 @@ public class PreProcessMapper extends Mapper<Object, Text, Text, Text>{
 			 */
 			Configuration conf = context.getConfiguration();
         	boolean isTestJob = conf.get("pipelineType").equals("test");		//checks "Train" or "Test" value
-        	// Fetches input data into an array			
-			CSVParser csvParser = new CSVParser(',','"');
-			String[] flightRecordList = csvParser.parseLine(value.toString());
-			boolean initialCheck = (flightRecordList.length == 110);	
+        	// Splits the input record into fields, without copying it
+			flightRecord.reset(value.getBytes(), 0, value.getLength());
+			boolean initialCheck = (flightRecord.getTokenizer().getFieldCount() == 110);	
 			if (isTestJob){
-				flightRecordList = Arrays.copyOfRange(flightRecordList, 1, flightRecordList.length);	//delete first column in test dataset (index)
-				initialCheck = (flightRecordList.length == 111);	
+				flightRecord.getTokenizer().skip(1);	//delete first column in test dataset (index)
+				initialCheck = (flightRecord.getTokenizer().getFieldCount() == 111);	
 			}
 			if (initialCheck){
 				// Check whether the flight is sane			
-				Integer code = isSane(flightRecordList, isTestJob);
+				SanityChecker checker = isTestJob ? testChecker : trainChecker;
+				int code = checker.check(flightRecord);
 				// Code 0 is returned when the flight is sane
-				if (code.equals(0)){
+				if (code == SanityChecker.SANE){
 					try{
 						// Setting the unique Flight Number as key
-						String mapKey = flightRecordList[10];
+						String mapKey = flightRecord.getString(FlightRecord.FL_NUM);
 						String features = "";
 						if (isTestJob){
 							//create the test data id(for join with validation data in Spark)
-							features = 	flightRecordList[10] + "_" + flightRecordList[5] + "_" + flightRecordList[29] + "\t"; 
+							features = 	mapKey + "_" + flightRecord.getString(FlightRecord.FL_DATE) + "_" + flightRecord.getString(FlightRecord.CRS_DEP_TIME) + "\t"; 
 						}
-						features += flightRecordList[1] + "\t" + 						// Quarter
-									flightRecordList[2] + "\t" +						// Month
-									binDayToWeek(flightRecordList[3]) + "\t" + 			// WeekNo from DayOfMonth
-									flightRecordList[4] + "\t" + 						// DayOfWeek
-									isPopularAirport(flightRecordList[14]) + "\t" + 	// Origin Airport == Popular?
-									isPopularAirport(flightRecordList[23])  + "\t" + 	// Dest Airport == Popular?
-									binScheduledTime(flightRecordList[29]) + "\t" + 	// CRS_DEP_TIME hour
-									binScheduledTime(flightRecordList[40])  + "\t" + 	// CRS_ARR_TIME hour
-									flightRecordList[55];								// Distance Group
+						features += flightRecord.getString(FlightRecord.QUARTER) + "\t" + 						// Quarter
+									flightRecord.getString(FlightRecord.MONTH) + "\t" +						// Month
+									binDayToWeek(flightRecord.getString(FlightRecord.DAY_OF_MONTH)) + "\t" + 			// WeekNo from DayOfMonth
+									flightRecord.getString(FlightRecord.DAY_OF_WEEK) + "\t" + 						// DayOfWeek
+									isPopularAirport(flightRecord, FlightRecord.ORIGIN) + "\t" + 	// Origin Airport == Popular?
+									isPopularAirport(flightRecord, FlightRecord.DEST)  + "\t" + 	// Dest Airport == Popular?
+									binScheduledTime(flightRecord.getString(FlightRecord.CRS_DEP_TIME)) + "\t" + 	// CRS_DEP_TIME hour
+									binScheduledTime(flightRecord.getString(FlightRecord.CRS_ARR_TIME))  + "\t" + 	// CRS_ARR_TIME hour
+									flightRecord.getString(FlightRecord.DISTANCE_GROUP);								// Distance Group
 						if (isTestJob){
 							context.write(new Text(mapKey), new Text(features));
 						}
 						else{
-							String label = isDelay(flightRecordList[42]);	
+							String label = isDelay(flightRecord.getString(FlightRecord.ARR_DELAY));	
 							if (!label.equals("NA")){				 // ignore training data when label is "NA" (empty or null)
 								context.write(new Text(mapKey), new Text(features + "\t" + label));
 							}
@@ -76,19 +101,33 @@ public class PreProcessMapper extends Mapper<Object, Text, Text, Text>{
 						System.err.println("Error.." + e.getMessage());
 					}
 				} //close sanityCheck 
+				// insane or incorrect format, counted under the rule which failed
+				else if (diagnostics.count(checker.getFailedRule())){
+					diagnostics.sample(checker.getFailedRule(), value);
+				}
 			} //close initalCheck
 		} // close map
 		
-		public static String isPopularAirport(String airport){
+		public static String isPopularAirport(FlightRecord record, int column){
 			/**
-			 * Checks whether given airport is a popular airport or not.
-			 * @param	airport Given airport to verify.
+			 * Checks whether given airport is a popular airport or not, by its CodeDictionary code
+			 * read from the bytes of the record.
+			 * @param	record Flight record.
+			 * @param	column FlightRecord.ORIGIN or FlightRecord.DEST.
 			 * @return	"1" if given airport is a popular airport, "0" otherwise.
 			 */
-			for(String s: popularAirports){
-				if(s.equals(airport)) return "1";
+			int index = record.getIndex(column);
+			if (index < 0){
+				return "0";
+			}
+			CsvTokenizer tokenizer = record.getTokenizer();
+			try{
+				return isPopular[CodeDictionary.encode(tokenizer.getBytes(), tokenizer.getStart(index), tokenizer.getLength(index))] ? "1" : "0";
+			}
+			catch(NumberFormatException e){
+				// not a code, so not one of popularAirports
+				return "0";
 			}
-			return "0";
 		}
 
 		public static String binDayToWeek(String dayOfMonth){
@@ -123,206 +162,4 @@ public class PreProcessMapper extends Mapper<Object, Text, Text, Text>{
 			}
 			return "NA";
 		}
-		
-		/**
-		 * Main code block to check whether the flight is sane
-		 * Status Code 0 indicates Sane Flights
-		 * Status Code 1 indicates Insane Flights
-		 * Status Code 2 indicates Wrong Format of the fields(Exceptions)
-		 * @param record List of Strings containing information about flight tuple
-		 * @return code "0" for sanity passed, "1" for sanity failed and "2" for bad format
-		 */
-		public static Integer isSane(String[] record, boolean isTestJob){
-			try{
-				Integer crsArrTime = Integer.parseInt(record[40]);
-				Integer crsDepTime = Integer.parseInt(record[29]);
-				Integer crsElapsedTime = Integer.parseInt(record[50]);
-				// crsArrTime and CRSDepTime should not be zero
-				if (crsArrTime != 0 && crsDepTime != 0){
-					Integer crstimeZone = calculateCRSTimeZone(crsArrTime,crsDepTime,crsElapsedTime);
-					return checkIDFieldsExist(crstimeZone,record, isTestJob); 
-				}else {
-					return 1;
-				}
-			}catch (Exception e){
-				return 2;
-			}
-		}
-
-		/**
-		 * Function to check whether the ID fields exist or not
-		 * @param crstimeZone
-		 * @param record
-		 * @return
-		 */
-		private static int checkIDFieldsExist(Integer crstimeZone, String[] record, boolean isTestJob) {
-			// crstimeZone % 60 should be 0
-			if (crstimeZone % 60 == 0)
-			{
-				Integer originAirportID = Integer.parseInt(record[11]);
-				Integer originAirportSeqID = Integer.parseInt(record[12]);
-				Integer originCityMarketID = Integer.parseInt(record[13]);
-				Integer originStateFips = Integer.parseInt(record[17]);
-				Integer originWAC = Integer.parseInt(record[19]);
-				Integer destAirportID = Integer.parseInt(record[20]);
-				Integer destAirportSeqID = Integer.parseInt(record[21]);
-				Integer destCityMarketID = Integer.parseInt(record[22]);
-				Integer destStateFips = Integer.parseInt(record[26]);
-				Integer destWAC = Integer.parseInt(record[28]);
-				// AirportID,  AirportSeqID, CityMarketID, StateFips, Wac 
-				// should be larger than 0
-				if ((originAirportID > 0) && (originAirportSeqID > 0) && 
-						(originCityMarketID > 0) && (originStateFips > 0) && 
-						(originWAC > 0) && (destAirportID > 0) && 
-						(destAirportSeqID > 0) && (destCityMarketID > 0) && 
-						(destStateFips > 0) && (destWAC > 0)){ 
-					return checkForOriginDest(record, crstimeZone, isTestJob);
-				}else{
-					return 1;
-				}
-			}else {
-				return 1;
-			}
-		}
-
-		/**
-		 * Function to check whether Origin and Destination fields exist
-		 * @param record
-		 * @param crstimeZone
-		 * @return code "0" for sanity passed, "1" for sanity failed and "2" for bad format
-		 */
-		private static int checkForOriginDest(String[] record, Integer crstimeZone, boolean isTestJob) {
-			String origin = record[14];
-			String originCityName = record[15];
-			String originStateABR = record[16];
-			String originStateNM = record[18];
-			String dest = record[23];
-			String destCityName = record[24];
-			String destStateABR = record[25];
-			String destStateNM = record[27];
-			// Origin, Destination,  CityName, State, StateName 
-			// should not be empty
-			if (!origin.equals("") && !originCityName.equals("") && 
-					!originStateABR.equals("") && !originStateNM.equals("") && 
-					!dest.equals("") && !destCityName.equals("") && 
-					!destStateABR.equals("") && !destStateNM.equals("")){
-				if (isTestJob) return 0; // if pipeline is for "test", do not proceed with further sanity check
-				Integer cancelled = Integer.parseInt(record[47]);
-				// Check for flights that are not Cancelled(1 = yes)
-				return (cancelled.equals(0)) ? checkForArrAndDepTime(record, crstimeZone) : 0;
-			}else {
-				return 1;
-			}
-		}
-
-		/**
-		 * Function to check for time zone difference
-		 * @param record
-		 * @param crstimeZone
-		 * @return code "0" for sanity passed, "1" for sanity failed and "2" for bad format
-		 */ 
-		private static int checkForArrAndDepTime(String[] record, Integer crstimeZone) {
-			Integer arrTime = Integer.parseInt(record[41]);
-			Integer depTime = Integer.parseInt(record[30]);
-			Integer actualElapsedTime = Integer.parseInt(record[51]);
-			Integer actualTimeZone = findActualTimeZone(arrTime,depTime,actualElapsedTime);
-			Integer timeZoneDiff = actualTimeZone - crstimeZone;
-			//arrTime -  depTime - actualElapsedTime - timeZone should be zero
-			return (timeZoneDiff == 0) ? checkForArrDelay(record) : 1;
-		}
-
-		/**
-		 * Function to check for ArrDelay Fields
-		 * @param record
-		 * @return code "0" for sanity passed, "1" for sanity failed and "2" for bad format
-		 */
-		private static int checkForArrDelay(String[] record) {
-			Integer arrDelay = (int)Double.parseDouble(record[42]);
-			Integer arrDelayMinutes = (int)Double.parseDouble(record[43]);
-			Integer arrDel15 = (int)Double.parseDouble(record[44]);
-			int finalReturnVal = 0;			
-			if (arrDelay > 0){
-				if (arrDelay.equals(arrDelayMinutes)){
-					if (arrDelayMinutes >= 15){
-						finalReturnVal = (arrDel15.equals(1)) ? 0: 1;
-					}
-				}
-				else{
-					finalReturnVal = 1;
-				}
-				
-			}
-			else{
-				finalReturnVal = (arrDelayMinutes.equals(0)) ? 0 : 1;
-			}		
-			return finalReturnVal;
-		}
-
-		/**
-		 * Helper method to calculate the CRS time zone
-		 * @param crsArrTime
-		 * @param crsDepTime
-		 * @param crsElapsedTime
-		 * @return
-		 */
-		private static Integer calculateCRSTimeZone(Integer crsArrTime, Integer crsDepTime, Integer crsElapsedTime) {
-			// Splitting the Arrival and Departure hours from CRS time
-			Integer crsArrTimeHour = crsArrTime / 100;
-			Integer crsDepTimeHour = crsDepTime / 100; 
-			// Splitting the Arrival and Departure minutes from CRS time
-			Integer crsArrTimeMin = crsArrTime % 100;
-			Integer crsDepTimeMin = crsDepTime % 100;
-			// Finding the time difference between CRS Arrival time and Departure times
-			Integer crsHourDiff;
-			if (crsArrTimeHour > crsDepTimeHour){
-				crsHourDiff = crsArrTimeHour - crsDepTimeHour;
-			}
-			else if (crsArrTimeHour == crsDepTimeHour){
-				if(crsArrTimeMin > crsDepTimeMin){
-					crsHourDiff = crsArrTimeHour - crsDepTimeHour;    
-				}
-				else{					
-					crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour; // Time difference when the Arrival time is next day
-				}
-			}
-			else{				
-				crsHourDiff = (24 - crsDepTimeHour) + crsArrTimeHour; // Time difference when the Arrival time is next day
-			}                
-			return ((crsHourDiff * 60) + (crsArrTimeMin - crsDepTimeMin)) - crsElapsedTime;
-		}
-
-		/**
-		 * Helper method to calculate the Actual time zone
-		 * @param arrTime Actual arrival time
-		 * @param depTime Actual departure time
-		 * @param actualElapsedTime Actual Elapsed time
-		 * @return The actual time zone
-		 */
-		public static Integer findActualTimeZone(Integer arrTime, Integer depTime, Integer actualElapsedTime) {
-			// Splitting the Arrival and Departure hours from Actual time
-			Integer arrTimeHour = arrTime / 100;
-			Integer depTimeHour = depTime / 100;
-			// Splitting the Arrival and Departure hours from Actual time
-			Integer arrTimeMin = arrTime % 100;
-			Integer depTimeMin = depTime % 100;                                
-			// Finding the time difference between Actual Arrival time and Departure times
-			Integer hourDiff;
-			if (arrTimeHour > depTimeHour){
-				hourDiff = arrTimeHour - depTimeHour;
-			}
-			else if (arrTimeHour == depTimeHour){
-				if(arrTimeMin > depTimeMin){
-					hourDiff = arrTimeHour - depTimeHour;    
-				}
-				else{
-					// Time difference when the Arrival time is next day
-					hourDiff = (24 - depTimeHour) + arrTimeHour;       
-				}
-			}
-			else{
-				// Time difference when the Arrival time is next day
-				hourDiff = (24 - depTimeHour) + arrTimeHour;   
-			}
-			return ((hourDiff * 60) + (arrTimeMin - depTimeMin)) - actualElapsedTime;
-		}
 	}
\ No newline at end of file
@@ -0,0 +1,370 @@
+/**
+ * SanityChecker evaluates the BTS sanity rules on a FlightRecord. The rules
+ * of a job are given as a table of rule ids which are evaluated in order,
+ * the first rule which fails decides the code:
+ *	0 - sane, 1 - insane, 2 - a column the rules read is missing or not a number.
+ * For every layout of the record the rules are compiled once into a flat
+ * program holding the field index of every column they read, the checks
+ * then parse the fields straight from the tokenizer into int locals.
+ * The tables below reproduce the sanity checks the jobs had before, each
+ * with its own quirks (e.g. what makes the arrival delay insane).
+ * An instance keeps the compiled program, so it must not be shared between
+ * threads.
+ * @author Abhijeet, Afan
+ * @version 1.0
+ */
+public class SanityChecker {
+
+	// codes returned by check
+	public static final int SANE = 0;
+	public static final int INSANE = 1;
+	public static final int CORRUPT = 2;
+
+	// rule ids
+	/** CRSArrTime and CRSDepTime are not zero, CRSElapsedTime is parsed as well */
+	public static final int CRS_TIMES_NOT_ZERO = 0;
+	/** CRSArrTime and CRSDepTime are larger than zero, CRSElapsedTime is parsed as well */
+	public static final int CRS_TIMES_POSITIVE = 1;
+	/** timeZone = CRSArrTime - CRSDepTime - CRSElapsedTime, timeZone % 60 should be 0 */
+	public static final int CRS_TIME_ZONE = 2;
+	/** AirportID, AirportSeqID, CityMarketID, StateFips, Wac of origin and destination are larger than 0 */
+	public static final int IDS_POSITIVE = 3;
+	/** AirportID, AirportSeqID, CityMarketID, StateFips, Wac of the origin are larger than 0 */
+	public static final int ORIGIN_IDS_POSITIVE = 4;
+	/** Origin, Destination, CityName, State, StateName are not empty */
+	public static final int NAMES_PRESENT = 5;
+	/** OriginState, Origin, Destination and OriginCityName are not empty */
+	public static final int ORIGIN_NAMES_PRESENT = 6;
+	/** cancelled flights are sane, the rules after this one only check flights which flew */
+	public static final int NOT_CANCELLED = 7;
+	/** ArrTime - DepTime - ActualElapsedTime - timeZone should be zero */
+	public static final int ACTUAL_TIME_ZONE = 8;
+	/**
+	 * ArrDelay > 0 and equal to ArrDelayMinutes, or ArrDelay < 0 and ArrDelayMinutes
+	 * is zero, is sane, otherwise ArrDelayMinutes >= 15 needs ArrDel15 (delays
+	 * truncated to int)
+	 */
+	public static final int ARR_DELAY_OR_DEL15 = 9;
+	/** ArrDelayMinutes >= 15 needs ArrDel15, the other delay checks are overruled (delays truncated to int) */
+	public static final int ARR_DEL15 = 10;
+	/**
+	 * ArrDelay > 0 needs ArrDelayMinutes equal to it and ArrDel15 from 15 minutes,
+	 * otherwise ArrDelayMinutes should be zero (delays truncated to int)
+	 */
+	public static final int ARR_DELAY_STRICT = 11;
+	/** the delay columns compared by the delay checks are numbers, their values are not checked */
+	public static final int ARR_DELAY_PARSES = 12;
+
+	/** name of every rule id, e.g. for the counters of the rejected records */
+	public static final String[] RULE_NAMES = {"CRS_TIMES_NOT_ZERO", "CRS_TIMES_POSITIVE",
+		"CRS_TIME_ZONE", "IDS_POSITIVE", "ORIGIN_IDS_POSITIVE", "NAMES_PRESENT",
+		"ORIGIN_NAMES_PRESENT", "NOT_CANCELLED", "ACTUAL_TIME_ZONE", "ARR_DELAY_OR_DEL15",
+		"ARR_DEL15", "ARR_DELAY_STRICT", "ARR_DELAY_PARSES"};
+
+	// rules of every job
+	/** FileThread, the local Solution */
+	public static final int[] SOLUTION = {CRS_TIMES_NOT_ZERO, CRS_TIME_ZONE, IDS_POSITIVE,
+		NAMES_PRESENT, NOT_CANCELLED, ACTUAL_TIME_ZONE, ARR_DELAY_OR_DEL15};
+	/** CarrierCount and FlightCount */
+	public static final int[] MAP_REDUCE = {CRS_TIMES_NOT_ZERO, CRS_TIME_ZONE, IDS_POSITIVE,
+		NAMES_PRESENT, NOT_CANCELLED, ACTUAL_TIME_ZONE, ARR_DEL15};
+	/** FlightDelayPrediction on history data */
+	public static final int[] PREDICTION_TRAIN = {CRS_TIMES_NOT_ZERO, CRS_TIME_ZONE, IDS_POSITIVE,
+		NAMES_PRESENT, NOT_CANCELLED, ACTUAL_TIME_ZONE, ARR_DELAY_STRICT};
+	/** FlightDelayPrediction on test data, which has no actual times */
+	public static final int[] PREDICTION_TEST = {CRS_TIMES_NOT_ZERO, CRS_TIME_ZONE, IDS_POSITIVE,
+		NAMES_PRESENT};
+	/** BestTwoHopConnection on history data */
+	public static final int[] TWO_HOP_TRAIN = {CRS_TIMES_POSITIVE, CRS_TIME_ZONE, ORIGIN_IDS_POSITIVE,
+		ORIGIN_NAMES_PRESENT, NOT_CANCELLED, ACTUAL_TIME_ZONE, ARR_DELAY_PARSES};
+	/** BestTwoHopConnection on test data */
+	public static final int[] TWO_HOP_TEST = {CRS_TIMES_POSITIVE, CRS_TIME_ZONE, ORIGIN_IDS_POSITIVE,
+		ORIGIN_NAMES_PRESENT};
+
+	// column ids read by every rule, in the order the program holds them
+	private static final int[] TIMES = {FlightRecord.CRS_ARR_TIME, FlightRecord.CRS_DEP_TIME,
+		FlightRecord.CRS_ELAPSED_TIME};
+	private static final int[] ORIGIN_IDS = {FlightRecord.ORIGIN_AIRPORT_ID,
+		FlightRecord.ORIGIN_AIRPORT_SEQ_ID, FlightRecord.ORIGIN_CITY_MARKET_ID,
+		FlightRecord.ORIGIN_STATE_FIPS, FlightRecord.ORIGIN_WAC};
+	private static final int[] DELAYS = {FlightRecord.ARR_DELAY, FlightRecord.ARR_DELAY_NEW,
+		FlightRecord.ARR_DEL15};
+	private static final int[][] COLUMNS = {
+		TIMES,
+		TIMES,
+		{},
+		{FlightRecord.ORIGIN_AIRPORT_ID, FlightRecord.ORIGIN_AIRPORT_SEQ_ID,
+			FlightRecord.ORIGIN_CITY_MARKET_ID, FlightRecord.ORIGIN_STATE_FIPS, FlightRecord.ORIGIN_WAC,
+			FlightRecord.DEST_AIRPORT_ID, FlightRecord.DEST_AIRPORT_SEQ_ID,
+			FlightRecord.DEST_CITY_MARKET_ID, FlightRecord.DEST_STATE_FIPS, FlightRecord.DEST_WAC},
+		ORIGIN_IDS,
+		{FlightRecord.ORIGIN, FlightRecord.ORIGIN_CITY_NAME, FlightRecord.ORIGIN_STATE_ABR,
+			FlightRecord.ORIGIN_STATE_NM, FlightRecord.DEST, FlightRecord.DEST_CITY_NAME,
+			FlightRecord.DEST_STATE_ABR, FlightRecord.DEST_STATE_NM},
+		{FlightRecord.ORIGIN_STATE_ABR, FlightRecord.ORIGIN, FlightRecord.DEST,
+			FlightRecord.ORIGIN_CITY_NAME},
+		{FlightRecord.CANCELLED},
+		{FlightRecord.ARR_TIME, FlightRecord.DEP_TIME, FlightRecord.ACTUAL_ELAPSED_TIME},
+		DELAYS,
+		DELAYS,
+		DELAYS,
+		DELAYS};
+
+	private final int[] rules;
+	// layout the program was compiled for
+	private int[] layout;
+	// rule id, number of columns and field index of every column, for every rule
+	private int[] program;
+	// set when a field read by the rules is missing, empty or not a number
+	private boolean malformed;
+	// rule which decided the last check, -1 if the record was sane
+	private int failedRule;
+
+	/**
+	 * Constructs a checker for a table of rules.
+	 * @param rules rule ids in the order they are evaluated, e.g. SanityChecker.SOLUTION
+	 */
+	public SanityChecker(int[] rules) {
+		boolean crsTimes = false;
+		boolean crsTimeZone = false;
+		for (int rule : rules) {
+			if (rule < 0 || rule >= COLUMNS.length) {
+				throw new IllegalArgumentException("Unknown rule " + rule);
+			}
+			if ((rule == CRS_TIME_ZONE && !crsTimes) || (rule == ACTUAL_TIME_ZONE && !crsTimeZone)) {
+				throw new IllegalArgumentException("Rule " + rule + " needs the CRS times and time zone first");
+			}
+			crsTimes |= rule == CRS_TIMES_NOT_ZERO || rule == CRS_TIMES_POSITIVE;
+			crsTimeZone |= rule == CRS_TIME_ZONE;
+		}
+		this.rules = rules.clone();
+	}
+
+	/**
+	 * Resolves the columns of every rule to their field index in the layout.
+	 */
+	private void compile(int[] layout) {
+		int length = 0;
+		for (int rule : rules) {
+			length += 2 + COLUMNS[rule].length;
+		}
+		int[] program = new int[length];
+		int pc = 0;
+		for (int rule : rules) {
+			program[pc++] = rule;
+			program[pc++] = COLUMNS[rule].length;
+			for (int column : COLUMNS[rule]) {
+				program[pc++] = layout[column];
+			}
+		}
+		this.program = program;
+		this.layout = layout;
+	}
+
+	/**
+	 * @return id of the rule which made the last checked record insane or
+	 * corrupt, -1 if it was sane
+	 */
+	public int getFailedRule() {
+		return failedRule;
+	}
+
+	/**
+	 * Checks whether the flight is sane.
+	 * @param record record holding the flight
+	 * @return code [0=sane, 1=insane, 2=bad format]
+	 */
+	public int check(FlightRecord record) {
+		if (record.getLayout() != layout) {
+			compile(record.getLayout());
+		}
+		CsvTokenizer fields = record.getTokenizer();
+		int count = fields.getFieldCount();
+		int[] program = this.program;
+		malformed = false;
+		int crsArrTime = 0;
+		int crsDepTime = 0;
+		int crsElapsedTime = 0;
+		int crsTimeZone = 0;
+		int pc = 0;
+		// every rule parses all its fields before it compares any, so the
+		// codes are the ones of the jobs which stopped at the first bad field
+		while (pc < program.length) {
+			int rule = program[pc];
+			failedRule = rule;
+			int first = pc + 2;
+			pc = first + program[pc + 1];
+			switch (rule) {
+			case CRS_TIMES_NOT_ZERO:
+			case CRS_TIMES_POSITIVE:
+				crsArrTime = getInt(fields, count, program[first]);
+				crsDepTime = getInt(fields, count, program[first + 1]);
+				crsElapsedTime = getInt(fields, count, program[first + 2]);
+				if (malformed) {
+					return CORRUPT;
+				}
+				if (rule == CRS_TIMES_NOT_ZERO ? crsArrTime == 0 || crsDepTime == 0
+						: crsArrTime <= 0 || crsDepTime <= 0) {
+					return INSANE;
+				}
+				break;
+			case CRS_TIME_ZONE:
+				crsTimeZone = getDifferenceMinutes(crsArrTime, crsDepTime) - crsElapsedTime;
+				if (crsTimeZone % 60 != 0) {
+					return INSANE;
+				}
+				break;
+			case IDS_POSITIVE:
+			case ORIGIN_IDS_POSITIVE:
+				boolean positive = true;
+				for (int i = first; i < pc; i++) {
+					positive &= getInt(fields, count, program[i]) > 0;
+				}
+				if (malformed) {
+					return CORRUPT;
+				}
+				if (!positive) {
+					return INSANE;
+				}
+				break;
+			case NAMES_PRESENT:
+			case ORIGIN_NAMES_PRESENT:
+				for (int i = first; i < pc; i++) {
+					int index = program[i];
+					if (index < 0 || index >= count || fields.isEmpty(index)) {
+						return INSANE;
+					}
+				}
+				break;
+			case NOT_CANCELLED:
+				int cancelled = getInt(fields, count, program[first]);
+				if (malformed) {
+					return CORRUPT;
+				}
+				if (cancelled != 0) {
+					failedRule = -1;
+					return SANE;
+				}
+				break;
+			case ACTUAL_TIME_ZONE:
+				int arrTime = getInt(fields, count, program[first]);
+				int depTime = getInt(fields, count, program[first + 1]);
+				int actualElapsedTime = getInt(fields, count, program[first + 2]);
+				if (malformed) {
+					return CORRUPT;
+				}
+				if (getDifferenceMinutes(arrTime, depTime) - actualElapsedTime != crsTimeZone) {
+					return INSANE;
+				}
+				break;
+			case ARR_DELAY_PARSES:
+				// parses what the delay comparisons read, a bad value is the
+				// only failure (a bad value reads as 0 and stops the comparisons)
+				double delay = getDouble(fields, count, program[first]);
+				if (delay > 0.0) {
+					if (delay == getDouble(fields, count, program[first + 1])
+							&& delay >= 15.0) {
+						getDouble(fields, count, program[first + 2]);
+					}
+				}
+				else if (delay < 0.0) {
+					getDouble(fields, count, program[first + 1]);
+				}
+				if (malformed) {
+					return CORRUPT;
+				}
+				break;
+			default:
+				int arrDelay = (int) getDouble(fields, count, program[first]);
+				int arrDelayMinutes = (int) getDouble(fields, count, program[first + 1]);
+				int arrDel15 = (int) getDouble(fields, count, program[first + 2]);
+				if (malformed) {
+					return CORRUPT;
+				}
+				if (checkArrDelay(rule, arrDelay, arrDelayMinutes, arrDel15) != SANE) {
+					return INSANE;
+				}
+				break;
+			}
+		}
+		failedRule = -1;
+		return SANE;
+	}
+
+	/**
+	 * The three ways the jobs check the arrival delay.
+	 */
+	private static int checkArrDelay(int rule, int arrDelay, int arrDelayMinutes, int arrDel15) {
+		if (rule == ARR_DELAY_STRICT) {
+			if (arrDelay > 0) {
+				if (arrDelay != arrDelayMinutes) {
+					return INSANE;
+				}
+				return (arrDelayMinutes >= 15 && arrDel15 != 1) ? INSANE : SANE;
+			}
+			return (arrDelayMinutes == 0) ? SANE : INSANE;
+		}
+		if (rule == ARR_DELAY_OR_DEL15
+				&& ((arrDelay > 0 && arrDelay == arrDelayMinutes) || (arrDelay < 0 && arrDelayMinutes == 0))) {
+			return SANE;
+		}
+		// ArrDelayMinutes >= 15 then ArrDel15 should be 1(true)
+		return (arrDelayMinutes >= 15 && arrDel15 != 1) ? INSANE : SANE;
+	}
+
+	/**
+	 * Parses a field like Integer.parseInt, a missing or empty field is
+	 * malformed without the cost of an exception.
+	 * @return value of the field, 0 if it is malformed
+	 */
+	private int getInt(CsvTokenizer fields, int count, int index) {
+		if (index < 0 || index >= count || fields.isEmpty(index)) {
+			malformed = true;
+			return 0;
+		}
+		try {
+			return fields.getInt(index);
+		}
+		catch (NumberFormatException e) {
+			malformed = true;
+			return 0;
+		}
+	}
+
+	/**
+	 * Parses a field like Double.parseDouble, a missing or empty field is
+	 * malformed without the cost of an exception.
+	 * @return value of the field, 0 if it is malformed
+	 */
+	private double getDouble(CsvTokenizer fields, int count, int index) {
+		if (index < 0 || index >= count || fields.isEmpty(index)) {
+			malformed = true;
+			return 0;
+		}
+		try {
+			return fields.getDouble(index);
+		}
+		catch (NumberFormatException e) {
+			malformed = true;
+			return 0;
+		}
+	}
+
+	/**
+	 * Difference in minutes from departure to arrival, both given as hhmm. An arrival
+	 * at or before the departure is on the next day.
+	 * @param arrival arrival time as hhmm
+	 * @param departure departure time as hhmm
+	 * @return minutes between departure and arrival
+	 */
+	public static int getDifferenceMinutes(int arrival, int departure) {
+		int arrivalHour = arrival / 100;
+		int departureHour = departure / 100;
+		int minutes = (arrivalHour - departureHour) * 60 + (arrival % 100 - departure % 100);
+		if (arrivalHour < departureHour || (arrivalHour == departureHour && arrival % 100 <= departure % 100)) {
+			// arrival on the next day
+			minutes += 24 * 60;
+		}
+		return minutes;
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * <SOURCE_HEADER>
+ *
+ * <NAME>
+ * FileStats
+ * </NAME>
+ *
+ * <SOURCE>
+ * $Revision: 1.0 $
+ * $Date: 2016/01/19 $
+ * </SOURCE>
+ *
+ * <COPYRIGHT>
+ * The following source code is protected under all standard copyright laws.
+ * </COPYRIGHT>
+ *
+ * </SOURCE_HEADER>
+ */
+
+import java.io.*;
+
+/**
+ * @author Abhijeet Sharma
+ * @version 1.0, 01/19/2016
+ * Year and month range of the flights of a gzipped input file. It is kept in
+ * a ".stats" file next to the input file together with the length and
+ * modification time of the file, so the stats of a changed file are not used.
+ * FileThread skips the files whose range does not hold the queried month
+ * without decompressing them.
+ */
+class FileStats{
+    public static final String SUFFIX = ".stats";
+
+    private int minYear = Integer.MAX_VALUE;
+    private int maxYear = Integer.MIN_VALUE;
+    private int minMonth = Integer.MAX_VALUE;
+    private int maxMonth = Integer.MIN_VALUE;
+
+    /**
+     * add
+     * widens the range by the year and month of a row, rows whose year or
+     * month is not a number can never match a query and are left out.
+     */
+    public void add(String year, String month){
+        try{
+            int y = Integer.parseInt(year);
+            int m = Integer.parseInt(month);
+            this.minYear = Math.min(this.minYear, y);
+            this.maxYear = Math.max(this.maxYear, y);
+            this.minMonth = Math.min(this.minMonth, m);
+            this.maxMonth = Math.max(this.maxMonth, m);
+        }
+        catch(NumberFormatException e){
+        }
+    }
+
+    /**
+     * mayContain
+     * @return  false if no row of the file is of the given year and month.
+     */
+    public boolean mayContain(int year, int month){
+        return year >= this.minYear && year <= this.maxYear &&
+               month >= this.minMonth && month <= this.maxMonth;
+    }
+
+    /**
+     * read
+     * reads the stats of an input file.
+     * @param   file input file.
+     * @return  FileStats object, null if there are none or the file changed
+     *          since they were written.
+     */
+    public static FileStats read(File file){
+        File statsFile = new File(file.getPath() + SUFFIX);
+        if (!statsFile.exists()){
+            return null;
+        }
+        try(BufferedReader br = new BufferedReader(new FileReader(statsFile))){
+            String[] values = br.readLine().trim().split(" ");
+            if (Long.parseLong(values[0]) != file.length() ||
+                Long.parseLong(values[1]) != file.lastModified()){
+                return null;
+            }
+            FileStats stats = new FileStats();
+            stats.minYear = Integer.parseInt(values[2]);
+            stats.maxYear = Integer.parseInt(values[3]);
+            stats.minMonth = Integer.parseInt(values[4]);
+            stats.maxMonth = Integer.parseInt(values[5]);
+            return stats;
+        }
+        catch(IOException | RuntimeException e){
+            // unreadable stats are written again by the next full read
+            return null;
+        }
+    }
+
+    /**
+     * write
+     * writes the stats of an input file next to it, an input directory
+     * which is not writable only loses the skipping.
+     * @param   file input file.
+     */
+    public void write(File file){
+        File statsFile = new File(file.getPath() + SUFFIX);
+        try(PrintWriter pw = new PrintWriter(new FileWriter(statsFile))){
+            pw.println(file.length() + " " + file.lastModified() + " " + this.minYear + " " +
+                       this.maxYear + " " + this.minMonth + " " + this.maxMonth);
+        }
+        catch(IOException e){
+            System.out.println(e.getClass().getName() + "\n" + e.getMessage());
+        }
+    }
+}
@@ -29,8 +29,13 @@ import com.csvreader.CsvReader;
  * Class for each thread submitted by Solution.java
  */
 class FileThread implements Callable<FileThread>{
+    // the queried month, its prices are collected
+    static final String QUERY_YEAR = "2015";
+    static final String QUERY_MONTH = "1";
+
     private Thread t;
     private final String threadName;
+    private final boolean pushdown;
 
     private String fileName;
     private HashMap<String, ArrayList<Double>> hm;
@@ -44,7 +49,19 @@ class FileThread implements Callable<FileThread>{
      * 
      */
     public FileThread(String fileName){
+        this(fileName, false);
+    }
+
+    /**
+     * Constructor
+     * @param filename(threadname for thread) to be parsed.
+     * @param pushdown true to only read the rows of the queried month - files
+     *        whose FileStats do not hold it are skipped, other rows are neither
+     *        parsed nor counted.
+     */
+    public FileThread(String fileName, boolean pushdown){
         this.threadName = fileName;
+        this.pushdown = pushdown;
         //System.out.println("Creating " + this.threadName);
         this.fileName = fileName;
         this.hm = new HashMap<String, ArrayList<Double>>();
@@ -150,6 +167,16 @@ class FileThread implements Callable<FileThread>{
         try{
             //System.out.println("Running " + this.threadName);
             String file = this.getFileName(); 
+            FileStats stats = null;
+            if (this.pushdown){
+                FileStats known = FileStats.read(new File(file));
+                // the file has no flight of the queried month, it is not decompressed
+                if (known != null && !known.mayContain(Integer.parseInt(QUERY_YEAR), 
+                                                       Integer.parseInt(QUERY_MONTH))){
+                    return this;
+                }
+                stats = new FileStats();
+            }
             FileInputStream fis = new FileInputStream(file);
             GZIPInputStream gis = new GZIPInputStream(fis);
             InputStreamReader isr = new InputStreamReader(gis);
@@ -164,11 +191,20 @@ class FileThread implements Callable<FileThread>{
             //Read CSV record-wise
             while (field.readRecord()) {
                 rowNum += 1;
+                if (this.pushdown){
+                    String year = field.get("YEAR");
+                    String month = field.get("MONTH");
+                    stats.add(year, month);
+                    // rows of other months are skipped before they are parsed
+                    if (!month.equals(QUERY_MONTH) || !year.equals(QUERY_YEAR)){
+                        continue;
+                    }
+                }
                 FlightInfo flightInfo = this.getFlightInfo(field, rowNum);
                 Integer code = this.isSane(flightInfo);
                 if (code.equals(0)){
                     this.updateSaneCounter();
-                    if (flightInfo.getMonth().equals("1") && flightInfo.getYear().equals("2015")){
+                    if (flightInfo.getMonth().equals(QUERY_MONTH) && flightInfo.getYear().equals(QUERY_YEAR)){
                         if (flightInfo.getAvgTicketPrice() != ""){
                             this.updateHashMap(flightInfo.getCarrier(), Double.parseDouble(flightInfo.getAvgTicketPrice()));
                         }
@@ -181,6 +217,10 @@ class FileThread implements Callable<FileThread>{
                     this.updateCorruptCounter();
                 }
             }
+            field.close();
+            if (stats != null){
+                stats.write(new File(file));
+            }
             Thread.sleep(50);
         }
         catch(InterruptedException e){
@@ -42,30 +42,33 @@ public class Solution{
     /**
      * Main Method
      *
-     * @param   args command-line arguments [-p for Parallel processing, -input=DIR for source directory]
+     * @param   args command-line arguments [-p for Parallel processing, -input=DIR for source directory,
+     *          -pushdown to skip the files and rows of other months than the queried one]
      *
      */
     public static void main(String[] args){
         try{
             boolean doParallel = false;
+            boolean pushdown = false;
             String dirPath = "";
             try{
                 // check for command-line arguments
-                if (args.length == 2 && args[0].equals("-p")){
-                    doParallel = true;
-                    dirPath = args[1].split("=")[1];
-                    
+                for (String arg: args){
+                    if (arg.equals("-p")){
+                        doParallel = true;
+                    }
+                    else if (arg.equals("-pushdown")){
+                        pushdown = true;
+                    }
+                    else{
+                        dirPath = arg.split("=")[1];
+                    }
                 }
-                else if (args.length == 2 && args[1].equals("-p")){
-                    doParallel = true;
-                    dirPath = args[0].split("=")[1];
-                    
-                }
-                else{
-                    dirPath = args[0].split("=")[1];
-                }                
             }
             catch(ArrayIndexOutOfBoundsException e){
+                dirPath = "";
+            }
+            if (dirPath.isEmpty()){
                 System.err.println("Insufficient number of Arguments");
                 System.exit(0);
             }
@@ -85,7 +88,7 @@ public class Solution{
             }
     
             // call Map function
-            List<Future<FileThread>> futures = map(folder, dirPath, executor);
+            List<Future<FileThread>> futures = map(folder, dirPath, executor, pushdown);
     
             // call Reduce function
             ReduceResults<Integer, Integer, HashMap<String, ArrayList<Double>>> result = reduce(futures);
@@ -128,18 +131,23 @@ public class Solution{
      * @param   folder File directory folder object.
      * @param   dirPath String directory path.
      * @param   executor ExecutorService object.
+     * @param   pushdown true to skip the files and rows of other months.
      *
      * @return  List object.
      */
     public static List<Future<FileThread>> map(File folder, String dirPath , 
-                                                        ExecutorService executor){
+                                                        ExecutorService executor, boolean pushdown){
         List<Future<FileThread>> futures = null;
         try{
             Set<Callable<FileThread>> callables = new HashSet<Callable<FileThread>>();
             for (final File fileEntry : folder.listFiles()){
                 String fileName = fileEntry.getName();
+                // stats of the input files written by earlier runs
+                if (fileName.endsWith(FileStats.SUFFIX)){
+                    continue;
+                }
                 String completeFileName = dirPath + "//" + fileName;
-                Callable<FileThread> fileThread = new FileThread(completeFileName);
+                Callable<FileThread> fileThread = new FileThread(completeFileName, pushdown);
                 callables.add(fileThread);
             }
             futures = executor.invokeAll(callables);            
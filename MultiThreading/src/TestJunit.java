@@ -60,5 +60,29 @@ public class TestJunit extends TestCase {
    public void testCalculateMedianPrice(){
       assertEquals(2.75, Solution.calculateMedianPrice(this.al));
    }
+
+   @Test
+   public void testFileStats() throws Exception{
+      java.io.File file = java.io.File.createTempFile("flights", ".csv.gz");
+      java.io.File statsFile = new java.io.File(file.getPath() + FileStats.SUFFIX);
+      try{
+         FileStats stats = new FileStats();
+         stats.add("2015", "1");
+         stats.add("2015", "3");
+         stats.add("YEAR", "");
+         stats.write(file);
+         FileStats read = FileStats.read(file);
+         assertTrue(read.mayContain(2015, 2));
+         assertFalse(read.mayContain(2015, 4));
+         assertFalse(read.mayContain(2014, 1));
+         // the stats of a changed file are not used
+         file.setLastModified(file.lastModified() - 10000);
+         assertNull(FileStats.read(file));
+      }
+      finally{
+         file.delete();
+         statsFile.delete();
+      }
+   }
 }
 